@@ -0,0 +1,139 @@
+package com.rk.benchmark;
+
+import com.codahale.metrics.MetricRegistry;
+import com.rk.api.Account;
+import com.rk.api.Currency;
+import com.rk.api.Order;
+import com.rk.api.OrderBuilder;
+import com.rk.api.OrderStatus;
+import com.rk.api.OrderType;
+import com.rk.core.AccountCache;
+import com.rk.core.AccountEventFeed;
+import com.rk.core.AccountIndex;
+import com.rk.core.CurrencyConverter;
+import com.rk.core.OrderCompletionRegistry;
+import com.rk.core.OrderMetrics;
+import com.rk.core.OrderProcessingWorker;
+import com.rk.core.RateMatrix;
+import com.rk.core.RetryingOrderConsumer;
+import com.rk.db.dao.AccountDAO;
+import com.rk.db.dao.OrderDAO;
+import io.dropwizard.hibernate.UnitOfWorkAwareProxyFactory;
+import io.dropwizard.util.Duration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Same-currency transfers processed by {@link OrderProcessingWorker} from several threads against embedded HSQLDB,
+ * with accounts loaded and written back (ENTITY) or changed by single-statement debit and credit (ATOMIC).
+ * Contention is set by the number of accounts orders are spread over; conflicting ENTITY orders are retried by
+ * {@link RetryingOrderConsumer}, number of conflicts is printed on tear down.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class AccountPostingBenchmark {
+    private static final int ORDERS_COUNT = 1024;
+    private static final BigDecimal INITIAL_BALANCE = new BigDecimal("100000000");
+
+    public enum Posting {
+        ENTITY, ATOMIC
+    }
+
+    @Param
+    public Posting posting;
+
+    /**
+     * 2 - every order competes for the same pair of accounts, 64 - conflicts are rare.
+     */
+    @Param({"2", "64"})
+    public int accountsCount;
+
+    private final AtomicInteger next = new AtomicInteger();
+    private final MetricRegistry metrics = new MetricRegistry();
+    private BenchmarkDatabase database;
+    private RetryingOrderConsumer consumer;
+    private Order[] orders;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = new BenchmarkDatabase();
+        final OrderDAO orderDAO = new OrderDAO(database.getSessionFactory());
+        final AccountDAO accountDAO = new AccountDAO(database.getSessionFactory());
+        database.inTransaction(session -> populate(orderDAO, accountDAO));
+
+        final UnitOfWorkAwareProxyFactory proxyFactory = new UnitOfWorkAwareProxyFactory("benchmark",
+                database.getSessionFactory());
+        final AccountIndex accountIndex = new AccountIndex(
+                proxyFactory.create(AccountIndex.DatabaseSource.class, AccountDAO.class, accountDAO), metrics);
+        accountIndex.rebuild();
+        final CurrencyConverter currencyConverter = new CurrencyConverter(
+                RateMatrix.build(Collections.emptyMap(), null));
+        final OrderProcessingWorker worker = proxyFactory.create(OrderProcessingWorker.class,
+                new Class[] {OrderDAO.class, AccountDAO.class, CurrencyConverter.class, AccountCache.class,
+                        OrderCompletionRegistry.class, AccountEventFeed.class, OrderMetrics.class, AccountIndex.class,
+                        boolean.class},
+                new Object[] {orderDAO, accountDAO, currencyConverter, null, null, null, null, accountIndex,
+                        posting == Posting.ATOMIC});
+        consumer = new RetryingOrderConsumer(worker, Integer.MAX_VALUE, Duration.milliseconds(1),
+                Duration.milliseconds(10), metrics);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.out.printf("Conflicts: %d%n",
+                metrics.meter(MetricRegistry.name(RetryingOrderConsumer.class, "conflicts")).getCount());
+        database.close();
+    }
+
+    @Benchmark
+    public OrderStatus accept() {
+        final Order order = OrderBuilder.anOrder()
+                .copyOf(orders[next.getAndIncrement() & (ORDERS_COUNT - 1)])
+                .build();
+        consumer.accept(order);
+        return order.getStatus();
+    }
+
+    private void populate(OrderDAO orderDAO, AccountDAO accountDAO) {
+        final int[] accountIds = new int[accountsCount];
+        for (int i = 0; i < accountsCount; i++) {
+            accountIds[i] = accountDAO.create(new Account(null, Currency.USD, INITIAL_BALANCE));
+        }
+
+        orders = new Order[ORDERS_COUNT];
+        for (int i = 0; i < ORDERS_COUNT; i++) {
+            final Order order = OrderBuilder.anOrder()
+                    .withType(OrderType.TRANSFER)
+                    .withSenderAccount(accountIds[i % accountsCount])
+                    .withReceiverAccount(accountIds[(i + 1) % accountsCount])
+                    .withOperationCurrencyCode(Currency.USD)
+                    .withAmount(BigDecimal.ONE)
+                    .withStatus(OrderStatus.NEW)
+                    .build();
+            orderDAO.create(order);
+            orders[i] = order;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.rk.benchmark;
+
+import com.codahale.metrics.MetricRegistry;
+import com.rk.api.Account;
+import com.rk.api.ExchangeRate;
+import com.rk.api.Order;
+import com.rk.configuration.MoneyTransferConfiguration;
+import com.rk.db.EmbeddedDatabaseManager;
+import io.dropwizard.db.DataSourceFactory;
+import io.dropwizard.db.ManagedDataSource;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.context.internal.ManagedSessionContext;
+
+import java.util.function.Consumer;
+
+/**
+ * Embedded HSQLDB server started the same way as in the application, plus a Hibernate session factory on top of the
+ * application's default pooled datasource.
+ */
+final class BenchmarkDatabase implements AutoCloseable {
+    private final ManagedDataSource dataSource;
+    private final EmbeddedDatabaseManager databaseManager;
+    private final SessionFactory sessionFactory;
+
+    /**
+     * @param extraEntities benchmark-specific entities to map in addition to the application ones
+     */
+    BenchmarkDatabase(Class<?>... extraEntities) {
+        final MoneyTransferConfiguration applicationConfiguration = new MoneyTransferConfiguration();
+        final DataSourceFactory dataSourceFactory = applicationConfiguration.getDataSourceFactory();
+
+        dataSource = dataSourceFactory.build(new MetricRegistry(), "benchmark_datasource");
+        databaseManager = applicationConfiguration.getEmbeddedDatabaseConfiguration()
+                .build(dataSource, new MetricRegistry());
+        databaseManager.start();
+
+        final Configuration configuration = new Configuration()
+                .addAnnotatedClass(Account.class)
+                .addAnnotatedClass(ExchangeRate.class)
+                .addAnnotatedClass(Order.class)
+                .setProperty(AvailableSettings.CURRENT_SESSION_CONTEXT_CLASS, "managed");
+        for (Class<?> entity : extraEntities) {
+            configuration.addAnnotatedClass(entity);
+        }
+        dataSourceFactory.getProperties().forEach(configuration::setProperty);
+        configuration.getProperties().put(AvailableSettings.DATASOURCE, dataSource);
+        sessionFactory = configuration.buildSessionFactory();
+    }
+
+    SessionFactory getSessionFactory() {
+        return sessionFactory;
+    }
+
+    /**
+     * Run action in its own transaction outside of benchmarked code, e.g. to populate tables.
+     */
+    void inTransaction(Consumer<Session> action) {
+        final Session session = sessionFactory.openSession();
+        ManagedSessionContext.bind(session);
+        try {
+            session.beginTransaction();
+            action.accept(session);
+            session.getTransaction().commit();
+        } finally {
+            ManagedSessionContext.unbind(sessionFactory);
+            session.close();
+        }
+    }
+
+    @Override
+    public void close() {
+        sessionFactory.close();
+        try {
+            databaseManager.stop();
+            dataSource.stop();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
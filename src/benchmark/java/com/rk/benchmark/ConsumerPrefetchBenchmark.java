@@ -0,0 +1,113 @@
+package com.rk.benchmark;
+
+import com.rk.configuration.ConnectionFactoryConfiguration;
+import com.rk.messaging.SimpleMessageListenerContainer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.jms.BytesMessage;
+import javax.jms.Connection;
+import javax.jms.DeliveryMode;
+import javax.jms.JMSException;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bursts of {@value #BURST} messages consumed by {@value #SESSIONS} listener sessions of the embedded vm:// broker
+ * with different queue prefetch. A message takes {@value #WORK_MICROS} us, like a database round trip, and every
+ * {@value #SLOW_EVERY}th one takes {@value #SLOW_WORK_MICROS} us, like a lock wait. Broker spreads a burst over idle
+ * sessions evenly whatever the prefetch is, but messages prefetched by a session wait behind its slow message while
+ * other sessions may be idle. {@link #burst()} measures throughput in messages, {@link #burstCompletion()} samples
+ * time until the last message of a burst is processed, so JMH reports its p99 for every prefetch.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConsumerPrefetchBenchmark {
+    private static final int BURST = 200;
+    private static final int SESSIONS = 4;
+    private static final long WORK_MICROS = 100;
+    private static final int SLOW_EVERY = 20;
+    private static final long SLOW_WORK_MICROS = 2000;
+
+    @Param({"1", "10", "100", "1000"})
+    public int queuePrefetch;
+
+    private final Semaphore processed = new Semaphore(0);
+    private SimpleMessageListenerContainer container;
+    private Connection producerConnection;
+    private Session producerSession;
+    private MessageProducer producer;
+
+    @Setup(Level.Trial)
+    public void setUp() throws JMSException {
+        final ConnectionFactoryConfiguration configuration = new ConnectionFactoryConfiguration();
+        configuration.setBrokerUrl("vm://prefetch-benchmark?broker.persistent=false&broker.useJmx=false");
+        configuration.setQueuePrefetch(queuePrefetch);
+
+        producerConnection = configuration.getConnectionFactory().createConnection();
+        producerConnection.start();
+        producerSession = producerConnection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        producer = producerSession.createProducer(configuration.getOrdersQueue());
+        producer.setDeliveryMode(DeliveryMode.NON_PERSISTENT);
+
+        container = SimpleMessageListenerContainer.aContainer(configuration.getConnectionFactory(),
+                configuration.getOrdersQueue()).withConsumers(SESSIONS).withListener(message -> {
+                    try {
+                        LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(((BytesMessage) message).readLong()));
+                    } catch (JMSException e) {
+                        throw new IllegalStateException(e);
+                    }
+                    processed.release();
+                }).build();
+        container.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws JMSException {
+        container.stop();
+        producerConnection.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public void burst() throws JMSException, InterruptedException {
+        sendBurstAndAwait();
+    }
+
+    /**
+     * Latency of the slowest message of a burst, which waits behind slow messages prefetched by its session.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    public void burstCompletion() throws JMSException, InterruptedException {
+        sendBurstAndAwait();
+    }
+
+    private void sendBurstAndAwait() throws JMSException, InterruptedException {
+        for (int i = 0; i < BURST; i++) {
+            final BytesMessage message = producerSession.createBytesMessage();
+            message.writeLong(i % SLOW_EVERY == 0 ? SLOW_WORK_MICROS : WORK_MICROS);
+            producer.send(message);
+        }
+        processed.acquire(BURST);
+    }
+}
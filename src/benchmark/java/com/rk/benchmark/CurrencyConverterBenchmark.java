@@ -0,0 +1,60 @@
+package com.rk.benchmark;
+
+import com.codahale.metrics.MetricRegistry;
+import com.rk.api.Currency;
+import com.rk.api.ExchangeRate;
+import com.rk.api.Money;
+import com.rk.core.CurrencyConverter;
+import com.rk.core.ExchangeRateCache;
+import com.rk.core.OrderPosting;
+import io.dropwizard.util.Duration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link CurrencyConverter#convert(Currency, Currency, long, RoundingMode)} with rates served by
+ * {@link ExchangeRateCache}, the same way order processing does it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CurrencyConverterBenchmark {
+    private CurrencyConverter converter;
+    private long amount;
+
+    @Setup
+    public void setUp() {
+        final ExchangeRateCache cache = new ExchangeRateCache(
+                () -> Collections.singletonList(new ExchangeRate(Currency.EUR, Currency.USD, new BigDecimal("1.170000"))),
+                Duration.seconds(0), Currency.USD, new MetricRegistry());
+        cache.reload();
+        converter = new CurrencyConverter(cache);
+        amount = Money.toMicros(new BigDecimal("123.450000"));
+    }
+
+    @Benchmark
+    public long sameCurrency() throws CurrencyConverter.ConvertingException {
+        return converter.convert(Currency.EUR, Currency.EUR, amount, OrderPosting.CONVERSION_ROUNDING);
+    }
+
+    @Benchmark
+    public long crossCurrency() throws CurrencyConverter.ConvertingException {
+        return converter.convert(Currency.EUR, Currency.USD, amount, OrderPosting.CONVERSION_ROUNDING);
+    }
+}
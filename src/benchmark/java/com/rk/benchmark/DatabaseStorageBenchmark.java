@@ -0,0 +1,204 @@
+package com.rk.benchmark;
+
+import com.codahale.metrics.MetricRegistry;
+import com.rk.configuration.EmbeddedDatabaseConfiguration;
+import com.rk.configuration.MoneyTransferConfiguration;
+import com.rk.db.EmbeddedDatabaseManager;
+import io.dropwizard.db.DataSourceFactory;
+import io.dropwizard.db.ManagedDataSource;
+import io.dropwizard.util.Duration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Embedded HSQLDB in each storage mode with {@code orders} orders inserted before the trial, and another
+ * {@value #ORDERS_BEFORE_ITERATION} before every iteration, so the database log is not empty.
+ *
+ * <ul>
+ *     <li>insert - orders per second inserted by JDBC batches of {@value #BATCH_SIZE} in one transaction, as
+ *     Hibernate does on flush</li>
+ *     <li>restart - clean stop, which checkpoints the database, and start until orders can be counted</li>
+ *     <li>recover - crash, i.e. {@code SHUTDOWN IMMEDIATELY} without checkpoint, and start, which replays the log</li>
+ * </ul>
+ * In MEMORY mode restart and recovery start an empty database, all orders are lost.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class DatabaseStorageBenchmark {
+    private static final int BATCH_SIZE = 100;
+    private static final int ORDERS_BEFORE_ITERATION = 100_000;
+    private static final String INSERT_ORDER = "insert into orders (order_id, creation_date, order_type, "
+            + "receiver_account, operation_currency_code, amount, order_status, derived_rate) "
+            + "values (?, ?, 1, 1, 'USD', ?, 0, false)";
+
+    @Param
+    public EmbeddedDatabaseConfiguration.Storage storage;
+
+    @Param({"10000000"})
+    public int orders;
+
+    private final BigDecimal amount = BigDecimal.ONE;
+    private Path directory;
+    private ManagedDataSource dataSource;
+    private EmbeddedDatabaseManager databaseManager;
+    private int nextId;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("database-storage-benchmark");
+        open();
+        insert(orders);
+    }
+
+    @Setup(Level.Iteration)
+    public void insertBeforeIteration() throws Exception {
+        insert(ORDERS_BEFORE_ITERATION);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Warmup(iterations = 3, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void insert() throws SQLException {
+        insert(BATCH_SIZE);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 3)
+    public long restart(Stopped stopped) throws Exception {
+        open();
+        return count();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 3)
+    public long recover(Crashed crashed) throws Exception {
+        open();
+        return count();
+    }
+
+    /**
+     * Database stopped cleanly before the measured start.
+     */
+    @State(Scope.Benchmark)
+    public static class Stopped {
+        @Setup(Level.Invocation)
+        public void stop(DatabaseStorageBenchmark benchmark) throws Exception {
+            benchmark.close();
+        }
+    }
+
+    /**
+     * Database shut down without checkpoint before the measured start, its server stops with its only database and
+     * the manager is dropped.
+     */
+    @State(Scope.Benchmark)
+    public static class Crashed {
+        @Setup(Level.Invocation)
+        public void crash(DatabaseStorageBenchmark benchmark) throws Exception {
+            benchmark.execute("SHUTDOWN IMMEDIATELY");
+            benchmark.dataSource.stop();
+            // the connection thread stops the server after the response, a server started meanwhile in the same JVM
+            // fails to accept the first connection
+            Thread.sleep(1000);
+        }
+    }
+
+    private void open() throws Exception {
+        final DataSourceFactory dataSourceFactory = new MoneyTransferConfiguration().getDataSourceFactory();
+        // the server is not listening yet when the pool is created
+        dataSourceFactory.setInitialSize(0);
+        dataSourceFactory.setMinSize(0);
+        dataSourceFactory.setMaxWaitForConnection(Duration.seconds(30));
+        dataSource = dataSourceFactory.build(new MetricRegistry(), "benchmark_datasource");
+        final EmbeddedDatabaseConfiguration configuration = new EmbeddedDatabaseConfiguration();
+        configuration.setStorage(storage);
+        configuration.setPath(directory.resolve("money_transfer").toString());
+        configuration.setCheckpointInterval(Duration.seconds(0));
+        databaseManager = configuration.build(dataSource, new MetricRegistry());
+        databaseManager.start();
+        execute("merge into accounts using (values(1)) as src(id) on accounts.account_id = src.id "
+                + "when not matched then insert (account_id, balance, currency_code) values (1, 0, 'USD')");
+        nextId = (int) Math.max(nextId, count());
+    }
+
+    private void close() throws Exception {
+        databaseManager.stop();
+        dataSource.stop();
+    }
+
+    private void insert(int count) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(INSERT_ORDER)) {
+            connection.setAutoCommit(false);
+            final Timestamp now = new Timestamp(System.currentTimeMillis());
+            for (int i = 1; i <= count; i++) {
+                statement.setInt(1, ++nextId);
+                statement.setTimestamp(2, now);
+                statement.setBigDecimal(3, amount);
+                statement.addBatch();
+                if (i % BATCH_SIZE == 0 || i == count) {
+                    statement.executeBatch();
+                    connection.commit();
+                }
+            }
+        }
+    }
+
+    private long count() throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("select count(*) from orders")) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+}
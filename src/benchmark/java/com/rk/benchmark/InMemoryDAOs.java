@@ -0,0 +1,138 @@
+package com.rk.benchmark;
+
+import com.rk.api.Account;
+import com.rk.api.Currency;
+import com.rk.api.ExchangeRate;
+import com.rk.api.Order;
+import com.rk.db.dao.AccountDAO;
+import com.rk.db.dao.ExchangeRateDAO;
+import com.rk.db.dao.OrderDAO;
+import org.hibernate.SessionFactory;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Map-backed DAO implementations which let benchmarks measure processing logic without database round trips.
+ * They never touch the session factory they are constructed with.
+ */
+final class InMemoryDAOs {
+    private InMemoryDAOs() {}
+
+    private static SessionFactory unusedSessionFactory() {
+        return (SessionFactory) Proxy.newProxyInstance(SessionFactory.class.getClassLoader(),
+                new Class[] {SessionFactory.class}, (proxy, method, args) -> {
+                    throw new UnsupportedOperationException("In-memory DAO does not use session factory");
+                });
+    }
+
+    static class InMemoryAccountDAO extends AccountDAO {
+        private final Map<Integer, Account> accounts = new ConcurrentHashMap<>();
+        private final AtomicInteger sequence = new AtomicInteger();
+
+        InMemoryAccountDAO() {
+            super(unusedSessionFactory());
+        }
+
+        @Override
+        public int create(Account account) {
+            account.setId(sequence.incrementAndGet());
+            accounts.put(account.getId(), account);
+            return account.getId();
+        }
+
+        @Override
+        public void update(Account account) {
+            accounts.put(account.getId(), account);
+        }
+
+        @Override
+        public Account findById(int id) {
+            return accounts.get(id);
+        }
+
+        @Override
+        public List<Account> findByIds(Collection<Integer> ids) {
+            final List<Account> found = new ArrayList<>(ids.size());
+            for (Integer id : ids) {
+                final Account account = accounts.get(id);
+                if (account != null) found.add(account);
+            }
+            return found;
+        }
+    }
+
+    static class InMemoryOrderDAO extends OrderDAO {
+        private final Map<Integer, Order> orders = new ConcurrentHashMap<>();
+        private final AtomicInteger sequence = new AtomicInteger();
+
+        InMemoryOrderDAO() {
+            super(unusedSessionFactory());
+        }
+
+        @Override
+        public int create(Order order) {
+            order.setId(sequence.incrementAndGet());
+            orders.put(order.getId(), order);
+            return order.getId();
+        }
+
+        @Override
+        public void update(Order order) {
+            orders.put(order.getId(), order);
+        }
+
+        @Override
+        public Order findById(int id) {
+            return orders.get(id);
+        }
+
+        /**
+         * There is no transaction, so the action is run at once as if it were committed.
+         */
+        @Override
+        public void afterCompletion(Consumer<Boolean> action) {
+            action.accept(true);
+        }
+    }
+
+    static class InMemoryExchangeRateDAO extends ExchangeRateDAO {
+        private final Map<Currency, Map<Currency, ExchangeRate>> rates = new EnumMap<>(Currency.class);
+
+        InMemoryExchangeRateDAO() {
+            super(unusedSessionFactory());
+            for (Currency currency : Currency.values()) {
+                rates.put(currency, new EnumMap<>(Currency.class));
+            }
+        }
+
+        @Override
+        public void create(ExchangeRate exchangeRate) {
+            update(exchangeRate);
+        }
+
+        @Override
+        public void update(ExchangeRate rate) {
+            rates.get(rate.getCurrencyCodeFrom()).put(rate.getCurrencyCodeTo(), rate);
+        }
+
+        @Override
+        public ExchangeRate find(Currency codeFrom, Currency codeTo) {
+            return rates.get(codeFrom).get(codeTo);
+        }
+
+        @Override
+        public List<ExchangeRate> findAll() {
+            final List<ExchangeRate> all = new ArrayList<>();
+            rates.values().forEach(row -> all.addAll(row.values()));
+            return all;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.rk.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.rk.api.Account;
+import com.rk.api.Currency;
+import com.rk.api.ExchangeRate;
+import com.rk.api.Order;
+import com.rk.api.OrderBuilder;
+import com.rk.api.OrderStatus;
+import com.rk.api.OrderType;
+import io.dropwizard.jackson.Jackson;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson serialization followed by deserialization of API entities with the object mapper Dropwizard configures for
+ * Jersey resources.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonRoundTripBenchmark {
+    private Order order;
+    private Account account;
+    private ExchangeRate exchangeRate;
+
+    private ObjectWriter writer;
+    private ObjectReader orderReader;
+    private ObjectReader accountReader;
+    private ObjectReader exchangeRateReader;
+
+    @Setup
+    public void setUp() {
+        final ObjectMapper objectMapper = Jackson.newObjectMapper();
+        writer = objectMapper.writer();
+        orderReader = objectMapper.readerFor(Order.class);
+        accountReader = objectMapper.readerFor(Account.class);
+        exchangeRateReader = objectMapper.readerFor(ExchangeRate.class);
+
+        order = OrderBuilder.anOrder()
+                .withId(42)
+                .withCreationDate(new Date())
+                .withType(OrderType.TRANSFER)
+                .withSenderAccount(1)
+                .withReceiverAccount(2)
+                .withOperationCurrencyCode(Currency.EUR)
+                .withAmount(new BigDecimal("123.450000"))
+                .withStatus(OrderStatus.DONE)
+                .build();
+        account = new Account(1, Currency.USD, new BigDecimal("1000.000000"));
+        exchangeRate = new ExchangeRate(Currency.EUR, Currency.USD, new BigDecimal("1.170000"));
+    }
+
+    @Benchmark
+    public Order order() throws IOException {
+        return orderReader.readValue(writer.writeValueAsBytes(order));
+    }
+
+    @Benchmark
+    public Account account() throws IOException {
+        return accountReader.readValue(writer.writeValueAsBytes(account));
+    }
+
+    @Benchmark
+    public ExchangeRate exchangeRate() throws IOException {
+        return exchangeRateReader.readValue(writer.writeValueAsBytes(exchangeRate));
+    }
+}
@@ -0,0 +1,85 @@
+package com.rk.benchmark;
+
+import com.rk.api.Money;
+import com.rk.core.OrderPosting;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Money math of posting a cross-currency transfer: convert amount for sender and receiver, check sender balance,
+ * debit sender and credit receiver. {@code bigDecimal} replicates the arithmetic used before {@link Money}, where
+ * scale of balances grew with every conversion, {@code fixedPoint} is the current arithmetic on micro-units.
+ * Run with {@code -prof gc} to compare allocation rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoneyBenchmark {
+    private static final BigDecimal AMOUNT = new BigDecimal("123.450000");
+    private static final BigDecimal SENDER_RATE = new BigDecimal("0.854700");
+    private static final BigDecimal RECEIVER_RATE = new BigDecimal("1.170000");
+    private static final BigDecimal INITIAL_BALANCE = new BigDecimal("100000000.000000");
+
+    private BigDecimal senderBalance;
+    private BigDecimal receiverBalance;
+
+    private long amountMicros;
+    private long senderRate;
+    private long receiverRate;
+    private long senderBalanceMicros;
+    private long receiverBalanceMicros;
+
+    @Setup
+    public void setUp() {
+        senderBalance = INITIAL_BALANCE;
+        receiverBalance = INITIAL_BALANCE;
+        amountMicros = Money.toMicros(AMOUNT);
+        senderRate = Money.toRate(SENDER_RATE);
+        receiverRate = Money.toRate(RECEIVER_RATE);
+        senderBalanceMicros = Money.toMicros(INITIAL_BALANCE);
+        receiverBalanceMicros = Money.toMicros(INITIAL_BALANCE);
+    }
+
+    @Benchmark
+    public void bigDecimal(Blackhole blackhole) {
+        final BigDecimal required = AMOUNT.multiply(SENDER_RATE);
+        final BigDecimal transfer = AMOUNT.multiply(RECEIVER_RATE);
+        if (senderBalance.compareTo(required) < 0) {
+            senderBalance = INITIAL_BALANCE;
+        }
+        // balances are stored with scale 6, so reading them back after commit rounds the grown scale away
+        senderBalance = senderBalance.subtract(required).setScale(Money.SCALE, RoundingMode.HALF_EVEN);
+        receiverBalance = receiverBalance.add(transfer).setScale(Money.SCALE, RoundingMode.HALF_EVEN);
+        blackhole.consume(senderBalance);
+        blackhole.consume(receiverBalance);
+    }
+
+    @Benchmark
+    public void fixedPoint(Blackhole blackhole) {
+        final long required = Money.convert(amountMicros, senderRate, OrderPosting.CONVERSION_ROUNDING);
+        final long transfer = Money.convert(amountMicros, receiverRate, OrderPosting.CONVERSION_ROUNDING);
+        if (senderBalanceMicros < required) {
+            senderBalanceMicros = Money.toMicros(INITIAL_BALANCE);
+        }
+        senderBalanceMicros = Money.subtract(senderBalanceMicros, required);
+        receiverBalanceMicros = Money.add(receiverBalanceMicros, transfer);
+        blackhole.consume(senderBalanceMicros);
+        blackhole.consume(receiverBalanceMicros);
+    }
+}
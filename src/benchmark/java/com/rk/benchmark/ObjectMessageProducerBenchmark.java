@@ -0,0 +1,99 @@
+package com.rk.benchmark;
+
+import com.codahale.metrics.MetricRegistry;
+import com.rk.api.Currency;
+import com.rk.api.Order;
+import com.rk.api.OrderBuilder;
+import com.rk.api.OrderStatus;
+import com.rk.api.OrderType;
+import com.rk.configuration.ConnectionFactoryConfiguration;
+import com.rk.messaging.ManagedMessageConnectionFactoryContainer;
+import com.rk.messaging.ObjectMessageProducer;
+import com.rk.messaging.OrderCodec;
+import com.rk.messaging.SimpleMessageListenerContainer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.jms.JMSException;
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ObjectMessageProducer#send(Object)} and
+ * {@link ObjectMessageProducer#sendAsync(Object, ObjectMessageProducer.CompletionCallback)} of an order
+ * to the embedded vm:// broker through the same pooled connection factory the application uses. A single no-op
+ * consumer drains the queue, so producer flow control does not kick in. Asynchronous send measures how long the caller
+ * is blocked, which includes waiting for the in-flight window when the producer falls behind.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ObjectMessageProducerBenchmark {
+    private ManagedMessageConnectionFactoryContainer connectionFactoryContainer;
+    private SimpleMessageListenerContainer drainingContainer;
+    private ObjectMessageProducer<Order> producer;
+    private Order order;
+    private final ObjectMessageProducer.CompletionCallback<Order> callback =
+            new ObjectMessageProducer.CompletionCallback<Order>() {
+                @Override
+                public void onCompletion(Order obj) {
+                }
+
+                @Override
+                public void onException(Order obj, Exception exception) {
+                    throw new IllegalStateException(exception);
+                }
+            };
+
+    @Setup
+    public void setUp() throws Exception {
+        final ConnectionFactoryConfiguration configuration = new ConnectionFactoryConfiguration();
+        connectionFactoryContainer = configuration.getManagedMessageConnectionFactoryContainer();
+        connectionFactoryContainer.start();
+        drainingContainer = SimpleMessageListenerContainer.aContainer(configuration.getConnectionFactory(),
+                configuration.getOrdersQueue()).withListener(message -> {}).build();
+        drainingContainer.start();
+
+        producer = configuration.getOrdersMessageProducer(connectionFactoryContainer.getConnectionFactory(),
+                new OrderCodec(), new MetricRegistry());
+        producer.start();
+        order = OrderBuilder.anOrder()
+                .withId(1)
+                .withType(OrderType.TRANSFER)
+                .withSenderAccount(1)
+                .withReceiverAccount(2)
+                .withOperationCurrencyCode(Currency.EUR)
+                .withAmount(BigDecimal.TEN)
+                .withStatus(OrderStatus.NEW)
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        producer.stop();
+        drainingContainer.stop();
+        connectionFactoryContainer.stop();
+    }
+
+    @Benchmark
+    public void send() throws JMSException {
+        producer.send(order);
+    }
+
+    @Benchmark
+    public void sendAsync() throws JMSException {
+        producer.sendAsync(order, callback);
+    }
+}
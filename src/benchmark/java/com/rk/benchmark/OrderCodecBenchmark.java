@@ -0,0 +1,88 @@
+package com.rk.benchmark;
+
+import com.rk.api.Currency;
+import com.rk.api.Order;
+import com.rk.api.OrderBuilder;
+import com.rk.api.OrderStatus;
+import com.rk.api.OrderType;
+import com.rk.messaging.OrderCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding of an order by {@link OrderCodec} compared to Java serialization, which is what
+ * {@link javax.jms.ObjectMessage} used for orders before. Encoded sizes are printed on setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderCodecBenchmark {
+    private final OrderCodec codec = new OrderCodec();
+    private Order order;
+    private byte[] binary;
+    private byte[] serialized;
+
+    @Setup
+    public void setUp() throws IOException {
+        order = OrderBuilder.anOrder()
+                .withId(123456)
+                .withType(OrderType.TRANSFER)
+                .withSenderAccount(1001)
+                .withReceiverAccount(2002)
+                .withOperationCurrencyCode(Currency.EUR)
+                .withAmount(new BigDecimal("123.450000"))
+                .withStatus(OrderStatus.NEW)
+                .withCreationDate(new Date())
+                .build();
+        binary = codec.encode(order);
+        serialized = javaSerialization();
+        System.out.printf("Encoded order size: binary %d bytes, Java serialization %d bytes%n",
+                binary.length, serialized.length);
+    }
+
+    @Benchmark
+    public byte[] binaryEncode() {
+        return codec.encode(order);
+    }
+
+    @Benchmark
+    public Order binaryDecode() {
+        return codec.decode(binary);
+    }
+
+    @Benchmark
+    public byte[] javaSerialization() throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(order);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Benchmark
+    public Order javaDeserialization() throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(serialized))) {
+            return (Order) in.readObject();
+        }
+    }
+}
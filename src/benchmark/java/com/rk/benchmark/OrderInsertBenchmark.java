@@ -0,0 +1,161 @@
+package com.rk.benchmark;
+
+import com.rk.api.Account;
+import com.rk.api.Currency;
+import com.rk.api.Order;
+import com.rk.api.OrderBuilder;
+import com.rk.api.OrderStatus;
+import com.rk.api.OrderType;
+import com.rk.db.dao.AccountDAO;
+import com.rk.db.dao.OrderDAO;
+import org.hibernate.annotations.CreationTimestamp;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hibernate insert of a batch of orders in one transaction into embedded HSQLDB, results are per order.
+ *
+ * <ul>
+ *     <li>IDENTITY - {@link IdentityOrder}, the orders table mapped with identity id as {@link Order} was before: every
+ *     insert is executed immediately to get its id, Hibernate does not batch such inserts</li>
+ *     <li>POOLED - {@link OrderDAO#createAll(List)}: ids are allocated in memory from a block of the sequence and
+ *     inserts are sent in JDBC batches on flush</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderInsertBenchmark {
+    private static final int BATCH_SIZE = 100;
+
+    public enum IdAllocation {
+        IDENTITY, POOLED
+    }
+
+    @Param
+    public IdAllocation idAllocation;
+
+    private BenchmarkDatabase database;
+    private OrderDAO orderDAO;
+    private int receiverId;
+
+    /**
+     * Columns of the orders table needed for an income order, id generated by identity column.
+     */
+    @Entity(name = "IdentityOrder")
+    @Table(name = "orders")
+    public static class IdentityOrder {
+        @Id
+        @Column(name = "order_id")
+        @GeneratedValue(strategy = GenerationType.IDENTITY)
+        private Integer id;
+
+        @CreationTimestamp
+        @Temporal(TemporalType.TIMESTAMP)
+        @Column(name = "creation_date")
+        private Date creationDate;
+
+        @Column(name = "receiver_account")
+        private Integer receiverAccount;
+
+        @Enumerated(EnumType.STRING)
+        @Column(name = "operation_currency_code")
+        private Currency operationCurrencyCode;
+
+        @Column(name = "amount")
+        private BigDecimal amount;
+
+        @Enumerated(EnumType.ORDINAL)
+        @Column(name = "order_type")
+        private OrderType orderType;
+
+        @Enumerated(EnumType.ORDINAL)
+        @Column(name = "order_status")
+        private OrderStatus status;
+
+        @Column(name = "derived_rate")
+        private boolean derivedRate;
+
+        IdentityOrder() {}
+
+        IdentityOrder(Order order) {
+            receiverAccount = order.getReceiverAccount();
+            operationCurrencyCode = order.getOperationCurrency();
+            amount = order.getAmount();
+            orderType = order.getOrderType();
+            status = order.getStatus();
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = new BenchmarkDatabase(IdentityOrder.class);
+        orderDAO = new OrderDAO(database.getSessionFactory());
+        final AccountDAO accountDAO = new AccountDAO(database.getSessionFactory());
+        database.inTransaction(session ->
+                receiverId = accountDAO.create(new Account(null, Currency.USD, BigDecimal.ZERO)));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int insert() {
+        final List<Order> orders = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            orders.add(OrderBuilder.anOrder()
+                    .withType(OrderType.INCOME)
+                    .withReceiverAccount(receiverId)
+                    .withOperationCurrencyCode(Currency.USD)
+                    .withAmount(BigDecimal.ONE)
+                    .withStatus(OrderStatus.NEW)
+                    .build());
+        }
+        if (idAllocation == IdAllocation.POOLED) {
+            database.inTransaction(session -> orderDAO.createAll(orders));
+        } else {
+            database.inTransaction(session -> {
+                for (Order order : orders) {
+                    final IdentityOrder identityOrder = new IdentityOrder(order);
+                    session.persist(identityOrder);
+                    order.setId(identityOrder.id);
+                }
+            });
+        }
+        return orders.get(BATCH_SIZE - 1).getId();
+    }
+}
@@ -0,0 +1,93 @@
+package com.rk.benchmark;
+
+import com.codahale.metrics.MetricRegistry;
+import com.rk.api.Currency;
+import com.rk.api.Order;
+import com.rk.api.OrderBuilder;
+import com.rk.api.OrderStatus;
+import com.rk.api.OrderType;
+import com.rk.core.OrderJournal;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Orders appended to and completed in {@link OrderJournal}, as by order submission and processing. With {@code sync}
+ * a single appending thread forces the segment for every order, like a broker persisting every message, and
+ * concurrent appending threads share forces by group commit. Without {@code sync} an append only copies the record
+ * into the mapped segment.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderJournalBenchmark {
+    @Param({"true", "false"})
+    public boolean sync;
+
+    private final AtomicInteger ids = new AtomicInteger();
+    private Path directory;
+    private OrderJournal journal;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("order-journal-benchmark");
+        journal = new OrderJournal(directory, 16 * 1024 * 1024, sync, new MetricRegistry());
+        journal.start();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        journal.stop();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void appendOneByOne() throws IOException {
+        appendAndComplete();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void appendConcurrently() throws IOException {
+        appendAndComplete();
+    }
+
+    private void appendAndComplete() throws IOException {
+        final Order order = OrderBuilder.anOrder()
+                .withId(ids.incrementAndGet())
+                .withType(OrderType.TRANSFER)
+                .withSenderAccount(1)
+                .withReceiverAccount(2)
+                .withOperationCurrencyCode(Currency.EUR)
+                .withAmount(BigDecimal.TEN)
+                .withStatus(OrderStatus.NEW)
+                .build();
+        journal.append(order);
+        journal.complete(order.getId());
+    }
+}
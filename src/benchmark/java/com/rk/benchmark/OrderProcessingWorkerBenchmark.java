@@ -0,0 +1,161 @@
+package com.rk.benchmark;
+
+import com.codahale.metrics.MetricRegistry;
+import com.rk.api.Account;
+import com.rk.api.Currency;
+import com.rk.api.ExchangeRate;
+import com.rk.api.Order;
+import com.rk.api.OrderBuilder;
+import com.rk.api.OrderStatus;
+import com.rk.api.OrderType;
+import com.rk.core.AccountCache;
+import com.rk.core.AccountEventFeed;
+import com.rk.core.AccountIndex;
+import com.rk.core.CurrencyConverter;
+import com.rk.core.ExchangeRateCache;
+import com.rk.core.OrderCompletionRegistry;
+import com.rk.core.OrderMetrics;
+import com.rk.core.OrderProcessingWorker;
+import com.rk.db.dao.AccountDAO;
+import com.rk.db.dao.ExchangeRateDAO;
+import com.rk.db.dao.OrderDAO;
+import io.dropwizard.hibernate.UnitOfWorkAwareProxyFactory;
+import io.dropwizard.util.Duration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * {@link OrderProcessingWorker#accept(Order)} for a transfer between accounts of different currencies, so both account
+ * lookups and both conversions are on the path. IN_MEMORY storage measures processing logic alone, HSQLDB measures it
+ * together with the unit of work and the embedded database round trips. Instrumented worker records
+ * {@link OrderMetrics} stage timers, the difference with plain one is the cost of instrumentation.
+ *
+ * <p>The same pre-created orders are processed over and over again: the worker does not check order status, and
+ * account balances are big enough to never run out.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderProcessingWorkerBenchmark {
+    private static final int ACCOUNTS_COUNT = 64;
+    private static final int ORDERS_COUNT = 1024;
+    private static final BigDecimal INITIAL_BALANCE = new BigDecimal("100000000");
+
+    public enum Storage {
+        IN_MEMORY, HSQLDB
+    }
+
+    @Param
+    public Storage storage;
+
+    @Param({"false", "true"})
+    public boolean instrumented;
+
+    private BenchmarkDatabase database;
+    private Consumer<Order> worker;
+    private Order[] orders;
+    private final Map<Integer, Currency> accountCurrencies = new HashMap<>();
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final OrderDAO orderDAO;
+        final AccountDAO accountDAO;
+        final ExchangeRateDAO exchangeRateDAO;
+        if (storage == Storage.IN_MEMORY) {
+            orderDAO = new InMemoryDAOs.InMemoryOrderDAO();
+            accountDAO = new InMemoryDAOs.InMemoryAccountDAO();
+            exchangeRateDAO = new InMemoryDAOs.InMemoryExchangeRateDAO();
+            populate(orderDAO, accountDAO, exchangeRateDAO);
+            worker = new OrderProcessingWorker(orderDAO, accountDAO, currencyConverter(exchangeRateDAO::findAll),
+                    null, null, null, orderMetrics(), null, false);
+        } else {
+            database = new BenchmarkDatabase();
+            orderDAO = new OrderDAO(database.getSessionFactory());
+            accountDAO = new AccountDAO(database.getSessionFactory());
+            exchangeRateDAO = new ExchangeRateDAO(database.getSessionFactory());
+            database.inTransaction(session -> populate(orderDAO, accountDAO, exchangeRateDAO));
+            final UnitOfWorkAwareProxyFactory proxyFactory = new UnitOfWorkAwareProxyFactory("benchmark",
+                    database.getSessionFactory());
+            worker = proxyFactory.create(
+                    OrderProcessingWorker.class,
+                    new Class[] {OrderDAO.class, AccountDAO.class, CurrencyConverter.class, AccountCache.class,
+                            OrderCompletionRegistry.class, AccountEventFeed.class, OrderMetrics.class,
+                            AccountIndex.class, boolean.class},
+                    new Object[] {orderDAO, accountDAO, currencyConverter(proxyFactory.create(
+                            ExchangeRateCache.DatabaseLoader.class, ExchangeRateDAO.class, exchangeRateDAO)),
+                            null, null, null, orderMetrics(), null, false});
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (database != null) database.close();
+    }
+
+    private OrderMetrics orderMetrics() {
+        return instrumented ? new OrderMetrics(accountCurrencies::get, new MetricRegistry()) : null;
+    }
+
+    private static CurrencyConverter currencyConverter(Supplier<List<ExchangeRate>> exchangeRatesLoader) {
+        final ExchangeRateCache cache = new ExchangeRateCache(exchangeRatesLoader, Duration.seconds(0), Currency.USD,
+                new MetricRegistry());
+        cache.reload();
+        return new CurrencyConverter(cache);
+    }
+
+    @Benchmark
+    public OrderStatus accept() {
+        final Order order = orders[next++ & (ORDERS_COUNT - 1)];
+        worker.accept(order);
+        return order.getStatus();
+    }
+
+    private void populate(OrderDAO orderDAO, AccountDAO accountDAO, ExchangeRateDAO exchangeRateDAO) {
+        exchangeRateDAO.create(new ExchangeRate(Currency.EUR, Currency.USD, new BigDecimal("1.17")));
+        exchangeRateDAO.create(new ExchangeRate(Currency.USD, Currency.EUR, new BigDecimal("0.85")));
+
+        final int[] accountIds = new int[ACCOUNTS_COUNT];
+        for (int i = 0; i < ACCOUNTS_COUNT; i++) {
+            final Currency currency = i % 2 == 0 ? Currency.EUR : Currency.USD;
+            accountIds[i] = accountDAO.create(new Account(null, currency, INITIAL_BALANCE));
+            accountCurrencies.put(accountIds[i], currency);
+        }
+
+        orders = new Order[ORDERS_COUNT];
+        for (int i = 0; i < ORDERS_COUNT; i++) {
+            final Order order = OrderBuilder.anOrder()
+                    .withType(OrderType.TRANSFER)
+                    .withSenderAccount(accountIds[i % ACCOUNTS_COUNT])
+                    .withReceiverAccount(accountIds[(i + 1) % ACCOUNTS_COUNT])
+                    .withOperationCurrencyCode(Currency.EUR)
+                    .withAmount(BigDecimal.ONE)
+                    .withStatus(OrderStatus.NEW)
+                    .build();
+            orderDAO.create(order);
+            orders[i] = order;
+        }
+    }
+}
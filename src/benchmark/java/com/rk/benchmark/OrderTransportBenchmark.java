@@ -0,0 +1,135 @@
+package com.rk.benchmark;
+
+import com.codahale.metrics.MetricRegistry;
+import com.rk.api.Currency;
+import com.rk.api.Order;
+import com.rk.api.OrderBuilder;
+import com.rk.api.OrderStatus;
+import com.rk.api.OrderType;
+import com.rk.configuration.ConnectionFactoryConfiguration;
+import com.rk.messaging.ConsumerPool;
+import com.rk.messaging.ManagedMessageConnectionFactoryContainer;
+import com.rk.messaging.MessageSender;
+import com.rk.messaging.OrderCodec;
+import com.rk.messaging.RingBuffer;
+import com.rk.messaging.RingBufferConsumerContainer;
+import com.rk.messaging.RingBufferMessageSender;
+import com.rk.messaging.SimpleMessageListenerContainer;
+import com.rk.messaging.WaitStrategy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Orders passed from {@link MessageSender#send(Object)} to a no-op order consumer through the embedded vm:// broker,
+ * encoded and decoded as the application does, or through the in-process ring buffer with every wait strategy.
+ * {@code burst} sends {@value #BURST} orders and waits until all of them are consumed, {@code roundTrip} sends one
+ * order and waits until it is consumed, its sample time percentiles are the latency of the transport.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderTransportBenchmark {
+    private static final int BURST = 100;
+    private static final int CONSUMERS = 2;
+
+    /**
+     * BROKER or a wait strategy of the ring buffer.
+     */
+    @Param({"BROKER", "BUSY_SPIN", "YIELDING", "SLEEPING", "BLOCKING"})
+    public String transport;
+
+    private final Semaphore consumed = new Semaphore(0);
+    private ManagedMessageConnectionFactoryContainer connectionFactoryContainer;
+    private MessageSender<Order> sender;
+    private ConsumerPool consumers;
+    private Order order;
+    private List<Order> burst;
+
+    @Setup
+    public void setUp() throws Exception {
+        final ConnectionFactoryConfiguration configuration = new ConnectionFactoryConfiguration();
+        configuration.setBrokerUrl("vm://transport-benchmark?broker.persistent=false&broker.useJmx=false");
+        final Consumer<Order> orderConsumer = order -> consumed.release();
+        if ("BROKER".equals(transport)) {
+            final OrderCodec codec = new OrderCodec();
+            connectionFactoryContainer = configuration.getManagedMessageConnectionFactoryContainer();
+            connectionFactoryContainer.start();
+            sender = configuration.getOrdersMessageProducer(connectionFactoryContainer.getConnectionFactory(), codec,
+                    new MetricRegistry());
+            consumers = SimpleMessageListenerContainer.aContainer(configuration.getConnectionFactory(),
+                    configuration.getOrdersQueue())
+                    .withConsumers(CONSUMERS)
+                    .withListener(SimpleMessageListenerContainer.listenerFor(codec, orderConsumer))
+                    .build();
+        } else {
+            configuration.setWaitStrategy(WaitStrategy.valueOf(transport));
+            final RingBuffer<Order> ringBuffer = configuration.getOrdersRingBuffer();
+            sender = new RingBufferMessageSender<>(configuration.getOrdersQueueName(), ringBuffer,
+                    configuration.getSendTimeout().toMilliseconds(), new MetricRegistry());
+            consumers = new RingBufferConsumerContainer<>(configuration.getOrdersQueueName(), ringBuffer, CONSUMERS,
+                    orderConsumer);
+        }
+        sender.start();
+        consumers.start();
+
+        order = OrderBuilder.anOrder()
+                .withId(1)
+                .withType(OrderType.TRANSFER)
+                .withSenderAccount(1)
+                .withReceiverAccount(2)
+                .withOperationCurrencyCode(Currency.EUR)
+                .withAmount(BigDecimal.TEN)
+                .withStatus(OrderStatus.NEW)
+                .build();
+        burst = new ArrayList<>(BURST);
+        for (int i = 0; i < BURST; i++) {
+            burst.add(order);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        consumers.stop();
+        sender.stop();
+        if (connectionFactoryContainer != null) {
+            connectionFactoryContainer.stop();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OperationsPerInvocation(BURST)
+    public void burst() throws Exception {
+        for (Order sent : burst) {
+            sender.send(sent);
+        }
+        consumed.acquire(BURST);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    public void roundTrip() throws Exception {
+        sender.send(order);
+        consumed.acquire();
+    }
+}
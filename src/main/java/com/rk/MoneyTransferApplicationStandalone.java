@@ -3,20 +3,53 @@ package com.rk;
 import com.rk.api.Account;
 import com.rk.api.ExchangeRate;
 import com.rk.api.Order;
+import com.rk.configuration.AccountEventsConfiguration;
 import com.rk.configuration.ConnectionFactoryConfiguration;
+import com.rk.configuration.ConsumerPoolConfiguration;
 import com.rk.messaging.ManagedMessageConnectionFactoryContainer;
 import com.rk.configuration.MoneyTransferConfiguration;
+import com.rk.configuration.OrderAwaitConfiguration;
+import com.rk.configuration.OrderBatchConfiguration;
+import com.rk.configuration.OrderExecutorConfiguration;
+import com.rk.configuration.OrderProcessingConfiguration;
+import com.rk.core.AccountCache;
+import com.rk.core.AccountEventFeed;
+import com.rk.core.AccountIndex;
+import com.rk.core.BatchOrderProcessingWorker;
+import com.rk.core.BoundedExecutor;
+import com.rk.core.CurrencyConverter;
+import com.rk.core.ExchangeRateCache;
+import com.rk.core.IdempotencyCache;
+import com.rk.core.LimitedOrderConsumer;
+import com.rk.core.OrderBatchSubmitter;
+import com.rk.core.OrderCompletionRegistry;
+import com.rk.core.OrderJournal;
+import com.rk.core.OrderMetrics;
 import com.rk.core.OrderProcessingWorker;
-import com.rk.db.InMemoryDatabaseManager;
+import com.rk.core.RetryingBatchOrderConsumer;
+import com.rk.core.RetryingOrderConsumer;
+import com.rk.core.ShardedOrderExecutor;
 import com.rk.db.dao.AccountDAO;
 import com.rk.db.dao.ExchangeRateDAO;
 
 import com.rk.db.dao.OrderDAO;
-import com.rk.messaging.ObjectMessageProducer;
+import com.rk.messaging.AdaptiveConsumerScaler;
+import com.rk.messaging.ConsumerPool;
+import com.rk.messaging.MessageSender;
+import com.rk.messaging.OrderCodec;
+import com.rk.messaging.QueueDepthProbe;
+import com.rk.messaging.RingBuffer;
+import com.rk.messaging.RingBufferConsumerContainer;
+import com.rk.messaging.RingBufferMessageSender;
 import com.rk.messaging.SimpleMessageListenerContainer;
+import com.rk.resources.AccountEventsResource;
 import com.rk.resources.AccountResource;
 import com.rk.resources.ExchangeRateResource;
+import com.rk.resources.IdempotencyKeyFilter;
+import com.rk.resources.OrderAwaitResource;
+import com.rk.resources.OrderBatchResource;
 import com.rk.resources.OrderResource;
+import com.rk.resources.OrderStreamResource;
 import io.dropwizard.Application;
 import io.dropwizard.db.DataSourceFactory;
 import io.dropwizard.db.PooledDataSourceFactory;
@@ -27,13 +60,17 @@ import io.dropwizard.lifecycle.Managed;
 import io.dropwizard.migrations.MigrationsBundle;
 import io.dropwizard.setup.Bootstrap;
 import io.dropwizard.setup.Environment;
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.eclipse.jetty.util.component.LifeCycle;
 
 import javax.sql.DataSource;
+import javax.validation.Validator;
 
+import java.util.List;
 import java.util.function.Consumer;
+import java.util.function.IntFunction;
 
 public class MoneyTransferApplicationStandalone extends Application<MoneyTransferConfiguration> {
-    private static final String DEFAULT_QUEUE_NAME = "orders";
     private static final String DATASOURCE_NAME = "money_transfer_datasource";
 
     private final HibernateBundle<MoneyTransferConfiguration> hibernate = new HibernateBundle<MoneyTransferConfiguration>(
@@ -81,28 +118,249 @@ public class MoneyTransferApplicationStandalone extends Application<MoneyTransfe
         final ManagedMessageConnectionFactoryContainer managedMessageConnectionFactoryContainer = connectionFactoryConfiguration
                 .getManagedMessageConnectionFactoryContainer();
 
-        final ObjectMessageProducer messageProducer = new ObjectMessageProducer(DEFAULT_QUEUE_NAME,
-                managedMessageConnectionFactoryContainer.getConnectionFactory());
+        final OrderCodec orderCodec = new OrderCodec();
+        final boolean isInProcessTransport = connectionFactoryConfiguration.getTransport()
+                == ConnectionFactoryConfiguration.Transport.RING_BUFFER;
+        final RingBuffer<Order> ordersRingBuffer;
+        final MessageSender<Order> messageProducer;
+        final QueueDepthProbe ordersQueueDepthProbe;
+        if (isInProcessTransport) {
+            ordersRingBuffer = connectionFactoryConfiguration.getOrdersRingBuffer();
+            messageProducer = new RingBufferMessageSender<>(connectionFactoryConfiguration.getOrdersQueueName(),
+                    ordersRingBuffer,
+                    connectionFactoryConfiguration.getSendTimeout().toMilliseconds(),
+                    environment.metrics());
+            ordersQueueDepthProbe = ordersRingBuffer::size;
+        } else {
+            ordersRingBuffer = null;
+            messageProducer = connectionFactoryConfiguration.getOrdersMessageProducer(
+                    managedMessageConnectionFactoryContainer.getConnectionFactory(), orderCodec, environment.metrics());
+            ordersQueueDepthProbe = connectionFactoryConfiguration.getOrdersQueueDepthProbe();
+        }
+
+        final UnitOfWorkAwareProxyFactory unitOfWorkAwareProxyFactory = new UnitOfWorkAwareProxyFactory(hibernate);
+
+        //exchange rates configuration
+        final ExchangeRateCache exchangeRateCache = new ExchangeRateCache(
+                unitOfWorkAwareProxyFactory.create(ExchangeRateCache.DatabaseLoader.class, ExchangeRateDAO.class, exchangeRateDAO),
+                configuration.getExchangeRatesConfiguration().getTtl(),
+                configuration.getExchangeRatesConfiguration().getPivotCurrency(),
+                environment.metrics());
+        final CurrencyConverter currencyConverter = new CurrencyConverter(exchangeRateCache);
+
+        //accounts configuration
+        final AccountCache accountCache = new AccountCache(
+                unitOfWorkAwareProxyFactory.create(AccountCache.DatabaseLoader.class, AccountDAO.class, accountDAO),
+                configuration.getAccountCacheConfiguration().getMaxSize(),
+                environment.metrics());
+        final AccountIndex accountIndex = new AccountIndex(
+                unitOfWorkAwareProxyFactory.create(AccountIndex.DatabaseSource.class, AccountDAO.class, accountDAO),
+                environment.metrics());
+        final AccountEventsConfiguration accountEventsConfiguration = configuration.getAccountEventsConfiguration();
+        final AccountEventFeed accountEventFeed = new AccountEventFeed(
+                accountEventsConfiguration.getBufferSize(),
+                accountEventsConfiguration.getMaxLag(),
+                accountEventsConfiguration.getMaxSubscribers(),
+                environment.metrics());
+
+        //order completion configuration
+        final OrderAwaitConfiguration orderAwaitConfiguration = configuration.getOrderAwaitConfiguration();
+        final OrderCompletionRegistry orderCompletionRegistry = new OrderCompletionRegistry(
+                orderAwaitConfiguration.getMaxWaiters(), environment.metrics());
+
+        //pipeline instrumentation
+        final OrderMetrics orderMetrics = new OrderMetrics(accountIndex::getCurrency, environment.metrics());
 
-        final Consumer<Order> orderProcessingWorker = new UnitOfWorkAwareProxyFactory(hibernate).create(
-                OrderProcessingWorker.class,
-                new Class[] {OrderDAO.class, AccountDAO.class, ExchangeRateDAO.class},
-                new Object[] {orderDAO, accountDAO, exchangeRateDAO});
+        //order journal configuration
+        final OrderJournal orderJournal = configuration.getOrderJournalConfiguration().build(environment.metrics());
+        final IntFunction<Order> orderLoader = unitOfWorkAwareProxyFactory.create(
+                OrderAwaitResource.DatabaseLoader.class, OrderDAO.class, orderDAO);
 
-        final Managed messageListeningContainer = new SimpleMessageListenerContainer(
-                connectionFactoryConfiguration.getConnectionFactory(),
-                connectionFactoryConfiguration.getOrdersQueue(),
-                Runtime.getRuntime().availableProcessors(),
-                SimpleMessageListenerContainer.listenerFor(orderProcessingWorker));
+        //order processing configuration
+        final OrderProcessingConfiguration orderProcessingConfiguration = configuration.getOrderProcessingConfiguration();
+        final ConsumerPoolConfiguration consumerPoolConfiguration = orderProcessingConfiguration.getConsumers();
+        final int initialConsumers = consumerPoolConfiguration.isAdaptive()
+                ? consumerPoolConfiguration.getMinSize() : consumerPoolConfiguration.getSize();
+        final ConsumerPool messageListeningContainer;
+        if (orderProcessingConfiguration.getMode() == OrderProcessingConfiguration.Mode.BATCH) {
+            if (isInProcessTransport) {
+                throw new IllegalStateException("BATCH mode is not supported by RING_BUFFER transport");
+            }
+            final BatchOrderProcessingWorker batchOrderProcessingWorker = unitOfWorkAwareProxyFactory.create(
+                    BatchOrderProcessingWorker.class,
+                    new Class[] {OrderDAO.class, AccountDAO.class, CurrencyConverter.class, AccountCache.class,
+                            OrderCompletionRegistry.class, AccountEventFeed.class, OrderMetrics.class},
+                    new Object[] {orderDAO, accountDAO, currencyConverter, accountCache, orderCompletionRegistry,
+                            accountEventFeed, orderMetrics});
+            Consumer<List<Order>> batchOrderConsumer = new RetryingBatchOrderConsumer(batchOrderProcessingWorker,
+                    orderProcessingConfiguration.getMaxConflictRetries(),
+                    orderProcessingConfiguration.getConflictBackoff(),
+                    orderProcessingConfiguration.getMaxConflictBackoff(),
+                    environment.metrics());
+            if (orderJournal != null) {
+                batchOrderConsumer = orderJournal.completingAll(batchOrderConsumer);
+            }
+            messageListeningContainer = SimpleMessageListenerContainer.aContainer(
+                    connectionFactoryConfiguration.getConnectionFactory(),
+                    connectionFactoryConfiguration.getOrdersQueue())
+                    .withConsumers(initialConsumers)
+                    .withBatchListener(
+                            SimpleMessageListenerContainer.batchListenerFor(orderCodec, batchOrderConsumer),
+                            orderProcessingConfiguration.getBatchSize(),
+                            orderProcessingConfiguration.getBatchWait().toMilliseconds())
+                    .withMetrics(environment.metrics(), connectionFactoryConfiguration.getOrdersDispatchProbe())
+                    .build();
+        } else {
+            final boolean isAtomicPosting =
+                    orderProcessingConfiguration.getPosting() == OrderProcessingConfiguration.Posting.ATOMIC;
+            final OrderProcessingWorker orderProcessingWorker = unitOfWorkAwareProxyFactory.create(
+                    OrderProcessingWorker.class,
+                    new Class[] {OrderDAO.class, AccountDAO.class, CurrencyConverter.class, AccountCache.class,
+                            OrderCompletionRegistry.class, AccountEventFeed.class, OrderMetrics.class,
+                            AccountIndex.class, boolean.class},
+                    new Object[] {orderDAO, accountDAO, currencyConverter, accountCache, orderCompletionRegistry,
+                            accountEventFeed, orderMetrics, accountIndex, isAtomicPosting});
+            Consumer<Order> orderConsumer = new RetryingOrderConsumer(orderProcessingWorker,
+                    orderProcessingConfiguration.getMaxConflictRetries(),
+                    orderProcessingConfiguration.getConflictBackoff(),
+                    orderProcessingConfiguration.getMaxConflictBackoff(),
+                    environment.metrics());
+            if (orderJournal != null) {
+                // completed after the order is committed, not when a sharded executor takes it
+                orderConsumer = orderJournal.completing(orderConsumer);
+            }
+            final OrderExecutorConfiguration orderExecutorConfiguration = orderProcessingConfiguration.getExecutor();
+            if (orderExecutorConfiguration.getMaxConcurrentTransactions() > 0) {
+                orderConsumer = new LimitedOrderConsumer(orderConsumer,
+                        orderExecutorConfiguration.getMaxConcurrentTransactions(),
+                        environment.metrics());
+            }
+            BoundedExecutor orderExecutor = null;
+            ShardedOrderExecutor shardedOrderExecutor = null;
+            if (orderProcessingConfiguration.getMode() == OrderProcessingConfiguration.Mode.SHARDED) {
+                shardedOrderExecutor = new ShardedOrderExecutor(orderConsumer,
+                        orderProcessingConfiguration.getLanesCount(),
+                        orderProcessingConfiguration.getLaneCapacity(),
+                        environment.metrics());
+                // stopped after the container, which waits for the orders it has handed over
+                environment.lifecycle().manage(shardedOrderExecutor);
+            } else if (!isInProcessTransport) {
+                // in-process consumers are threads of the application already
+                orderExecutor = orderExecutorConfiguration.build(environment.metrics());
+                if (orderExecutor != null) {
+                    // stopped after the container, which waits for the orders it has handed over
+                    environment.lifecycle().manage(orderExecutor);
+                }
+            }
+            if (isInProcessTransport) {
+                messageListeningContainer = new RingBufferConsumerContainer<>(
+                        connectionFactoryConfiguration.getOrdersQueueName(),
+                        ordersRingBuffer,
+                        initialConsumers,
+                        shardedOrderExecutor != null ? shardedOrderExecutor : orderConsumer);
+            } else {
+                final SimpleMessageListenerContainer.Builder containerBuilder = SimpleMessageListenerContainer
+                        .aContainer(connectionFactoryConfiguration.getConnectionFactory(),
+                                connectionFactoryConfiguration.getOrdersQueue())
+                        .withConsumers(initialConsumers)
+                        .withListener(SimpleMessageListenerContainer.listenerFor(orderCodec, orderConsumer))
+                        .withMetrics(environment.metrics(), connectionFactoryConfiguration.getOrdersDispatchProbe());
+                if (shardedOrderExecutor != null) {
+                    // message is acknowledged after its lane has processed the order
+                    containerBuilder.withExecutor(
+                            SimpleMessageListenerContainer.executorFor(orderCodec, shardedOrderExecutor::execute));
+                } else {
+                    containerBuilder.withExecutor(orderExecutor);
+                }
+                messageListeningContainer = containerBuilder.build();
+            }
+        }
 
         //resources registration
-        environment.jersey().register(new AccountResource(accountDAO));
-        environment.jersey().register(new ExchangeRateResource(exchangeRateDAO));
-        environment.jersey().register(new OrderResource(orderDAO, accountDAO, messageProducer));
+        environment.jersey().register(new AccountResource(accountDAO, accountIndex, accountCache));
+        environment.jersey().register(new AccountEventsResource(accountEventFeed, accountIndex,
+                environment.lifecycle().executorService("account-events-%d")
+                        .minThreads(accountEventsConfiguration.getMaxSubscribers())
+                        .maxThreads(accountEventsConfiguration.getMaxSubscribers())
+                        .allowCoreThreadTimeOut(true)
+                        .build(),
+                environment.getObjectMapper(),
+                accountEventsConfiguration.getHeartbeat().toMilliseconds()));
+        environment.jersey().register(new ExchangeRateResource(exchangeRateDAO, exchangeRateCache));
+        final IdempotencyCache idempotencyCache = new IdempotencyCache(
+                configuration.getIdempotencyConfiguration().getWindow(),
+                configuration.getIdempotencyConfiguration().getMaxCachedKeys(),
+                environment.metrics());
+        environment.jersey().register(new IdempotencyKeyFilter(idempotencyCache));
+        environment.jersey().register(new OrderResource(orderDAO, accountIndex, messageProducer,
+                connectionFactoryConfiguration.isAsyncSend(), idempotencyCache, orderMetrics, orderJournal));
+        environment.jersey().register(new OrderAwaitResource(
+                orderLoader,
+                orderCompletionRegistry,
+                environment.lifecycle().executorService("order-await-%d")
+                        .minThreads(Runtime.getRuntime().availableProcessors())
+                        .maxThreads(Runtime.getRuntime().availableProcessors())
+                        .build(),
+                orderAwaitConfiguration.getMaxTimeout(),
+                environment.metrics()));
+        final OrderBatchConfiguration orderBatchConfiguration = configuration.getOrderBatchConfiguration();
+        final OrderBatchSubmitter orderBatchSubmitter = unitOfWorkAwareProxyFactory.create(OrderBatchSubmitter.class,
+                new Class[] {OrderDAO.class, AccountIndex.class, MessageSender.class, Validator.class,
+                        OrderJournal.class},
+                new Object[] {orderDAO, accountIndex, messageProducer, environment.getValidator(), orderJournal});
+        environment.jersey().register(new OrderBatchResource(orderBatchSubmitter, orderBatchConfiguration.getMaxSize()));
+        environment.jersey().register(new OrderStreamResource(orderBatchSubmitter,
+                ordersQueueDepthProbe,
+                environment.getObjectMapper(),
+                orderBatchConfiguration.getStreamChunkSize(),
+                orderBatchConfiguration.getMaxQueueDepth(),
+                orderBatchConfiguration.getThrottlePause().toMilliseconds(),
+                environment.metrics()));
 
         //managed objects configuration
-        environment.lifecycle().getManagedObjects().add(0, new JettyManaged(new InMemoryDatabaseManager(dataSource)));
-        environment.lifecycle().manage(managedMessageConnectionFactoryContainer);
+        environment.lifecycle().getManagedObjects().add(0, new JettyManaged(
+                configuration.getEmbeddedDatabaseConfiguration().build(dataSource, environment.metrics())));
+        environment.lifecycle().manage(exchangeRateCache);
+        environment.lifecycle().manage(accountIndex);
+        environment.lifecycle().addLifeCycleListener(new AbstractLifeCycle.AbstractLifeCycleListener() {
+            @Override
+            public void lifeCycleStopping(LifeCycle event) {
+                accountEventFeed.shutdown();
+            }
+        });
+        if (!isInProcessTransport) {
+            environment.lifecycle().manage(managedMessageConnectionFactoryContainer);
+        }
+        if (orderJournal != null) {
+            // stopped after the consumers, so their completions are appended
+            environment.lifecycle().manage(orderJournal);
+        }
+        environment.lifecycle().manage(messageProducer);
         environment.lifecycle().manage(messageListeningContainer);
+        if (orderJournal != null) {
+            // started after the consumers, which process replayed orders, and before the server accepts new ones
+            environment.lifecycle().manage(new Managed() {
+                @Override
+                public void start() throws Exception {
+                    orderJournal.replay(orderLoader, messageProducer);
+                }
+
+                @Override
+                public void stop() {
+                }
+            });
+        }
+        if (consumerPoolConfiguration.isAdaptive()) {
+            // started after the container and stopped before it
+            environment.lifecycle().manage(new AdaptiveConsumerScaler(messageListeningContainer,
+                    ordersQueueDepthProbe,
+                    consumerPoolConfiguration.getMinSize(),
+                    consumerPoolConfiguration.getMaxSize(),
+                    consumerPoolConfiguration.getInterval().toMilliseconds(),
+                    consumerPoolConfiguration.getCooldown().toMilliseconds(),
+                    consumerPoolConfiguration.getDrainTime().toMilliseconds(),
+                    consumerPoolConfiguration.getScaleDownRatio(),
+                    environment.metrics()));
+        }
     }
 }
@@ -1,12 +1,20 @@
 package com.rk.api;
 
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+
+import javax.persistence.Access;
+import javax.persistence.AccessType;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.Table;
+import javax.persistence.Transient;
+import javax.persistence.Version;
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 import java.math.BigDecimal;
@@ -15,23 +23,40 @@ import java.util.Objects;
 @Entity
 @Table(name = "accounts")
 public class Account {
+    /**
+     * Ids are taken from database sequence in blocks of 50 (increment of the sequence), so inserts need no round trip
+     * to get an id and are batched.
+     */
     @Min(0)
     @Id
     @Column(name = "account_id")
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "accounts_seq")
+    @GenericGenerator(name = "accounts_seq", strategy = "enhanced-sequence", parameters = {
+            @Parameter(name = "sequence_name", value = "accounts_seq"),
+            @Parameter(name = "initial_value", value = "0"),
+            @Parameter(name = "increment_size", value = "50"),
+            @Parameter(name = "optimizer", value = "pooled-lo")})
     private Integer id;
 
     @NotNull
     @Column(name = "currency_code")
     private Currency currency;
 
-    @Column(name = "balance")
-    private BigDecimal balance;
+    @Transient
+    private long balanceMicros;
+
+    /**
+     * Incremented on every update. Update of an account changed by a concurrent transaction since it was loaded fails
+     * instead of overwriting the other balance change.
+     */
+    @Version
+    @Column(name = "version")
+    private Long version;
 
     public Account(Integer id, Currency currency, BigDecimal balance) {
         this.id = id;
         this.currency = currency;
-        this.balance = balance;
+        setBalance(balance);
     }
 
     public Account() {}
@@ -52,12 +77,37 @@ public class Account {
         this.currency = currency;
     }
 
+    @Access(AccessType.PROPERTY)
+    @Column(name = "balance")
     public BigDecimal getBalance() {
-        return balance;
+        return Money.toBigDecimal(balanceMicros);
     }
 
     public void setBalance(BigDecimal balance) {
-        this.balance = balance;
+        this.balanceMicros = balance == null ? 0 : Money.toMicros(balance);
+    }
+
+    /**
+     * @return balance in {@link Money} micro-units
+     */
+    @JsonIgnore
+    public long getBalanceMicros() {
+        return balanceMicros;
+    }
+
+    @JsonIgnore
+    public void setBalanceMicros(long balanceMicros) {
+        this.balanceMicros = balanceMicros;
+    }
+
+    @JsonIgnore
+    public Long getVersion() {
+        return version;
+    }
+
+    @JsonIgnore
+    public void setVersion(Long version) {
+        this.version = version;
     }
 
     @Override
@@ -67,13 +117,13 @@ public class Account {
         Account account = (Account) o;
         return Objects.equals(id, account.id) &&
                 currency == account.currency &&
-                balance.compareTo(account.balance) == 0;
+                balanceMicros == account.balanceMicros;
     }
 
     @Override
     public int hashCode() {
 
-        return Objects.hash(id, currency, balance);
+        return Objects.hash(id, currency, balanceMicros);
     }
 
     @Override
@@ -81,7 +131,7 @@ public class Account {
         final StringBuilder sb = new StringBuilder("Account{");
         sb.append("id=").append(id);
         sb.append(", currency=").append(currency);
-        sb.append(", balance=").append(balance);
+        sb.append(", balance=").append(getBalance());
         sb.append('}');
         return sb.toString();
     }
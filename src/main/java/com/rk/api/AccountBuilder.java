@@ -6,6 +6,7 @@ public final class AccountBuilder {
     private int id;
     private Currency currency;
     private BigDecimal balance;
+    private Long version;
 
     private AccountBuilder() {
     }
@@ -33,6 +34,7 @@ public final class AccountBuilder {
         id = other.getId();
         balance = other.getBalance();
         currency = other.getCurrency();
+        version = other.getVersion();
         return this;
     }
 
@@ -45,6 +47,7 @@ public final class AccountBuilder {
         account.setId(id);
         account.setCurrency(currency);
         account.setBalance(balance);
+        account.setVersion(version);
         return account;
     }
 }
@@ -0,0 +1,134 @@
+package com.rk.api;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.math.BigDecimal;
+import java.util.Objects;
+
+/**
+ * Committed change of account balance by an order. Id is a sequence number of the event, assigned in the order events
+ * are published, it is not kept across restarts.
+ */
+public class AccountEvent {
+    public enum Type {
+        DEBIT, CREDIT
+    }
+
+    private long id;
+    private Type type;
+    private int accountId;
+    private int orderId;
+    private Currency currency;
+    private long amountMicros;
+    private long balanceMicros;
+
+    /**
+     * @param amountMicros micro-units the balance was changed by, in account currency
+     * @param balanceMicros micro-units of the balance after the change
+     */
+    public AccountEvent(Type type, int accountId, int orderId, Currency currency, long amountMicros,
+                        long balanceMicros) {
+        this.type = type;
+        this.accountId = accountId;
+        this.orderId = orderId;
+        this.currency = currency;
+        this.amountMicros = amountMicros;
+        this.balanceMicros = balanceMicros;
+    }
+
+    public AccountEvent() {}
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public void setType(Type type) {
+        this.type = type;
+    }
+
+    public int getAccountId() {
+        return accountId;
+    }
+
+    public void setAccountId(int accountId) {
+        this.accountId = accountId;
+    }
+
+    public int getOrderId() {
+        return orderId;
+    }
+
+    public void setOrderId(int orderId) {
+        this.orderId = orderId;
+    }
+
+    public Currency getCurrency() {
+        return currency;
+    }
+
+    public void setCurrency(Currency currency) {
+        this.currency = currency;
+    }
+
+    public BigDecimal getAmount() {
+        return Money.toBigDecimal(amountMicros);
+    }
+
+    public void setAmount(BigDecimal amount) {
+        this.amountMicros = amount == null ? 0 : Money.toMicros(amount);
+    }
+
+    @JsonIgnore
+    public long getAmountMicros() {
+        return amountMicros;
+    }
+
+    /**
+     * @return balance after the change
+     */
+    public BigDecimal getBalance() {
+        return Money.toBigDecimal(balanceMicros);
+    }
+
+    public void setBalance(BigDecimal balance) {
+        this.balanceMicros = balance == null ? 0 : Money.toMicros(balance);
+    }
+
+    @JsonIgnore
+    public long getBalanceMicros() {
+        return balanceMicros;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        AccountEvent that = (AccountEvent) o;
+        return id == that.id &&
+                accountId == that.accountId &&
+                orderId == that.orderId &&
+                amountMicros == that.amountMicros &&
+                balanceMicros == that.balanceMicros &&
+                type == that.type &&
+                currency == that.currency;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, type, accountId, orderId, currency, amountMicros, balanceMicros);
+    }
+
+    @Override
+    public String toString() {
+        return "AccountEvent{id=" + id + ", type=" + type + ", accountId=" + accountId + ", orderId=" + orderId +
+                ", currency=" + currency + ", amount=" + getAmount() + ", balance=" + getBalance() + '}';
+    }
+}
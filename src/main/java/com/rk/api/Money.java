@@ -0,0 +1,127 @@
+package com.rk.api;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Fixed-point money arithmetic.
+ *
+ * <p>Money amount is a {@code long} count of micro-units ({@link #SCALE} decimal digits, the scale of money columns in
+ * database), exchange rate is a {@code long} count of nano-units ({@link #RATE_SCALE} decimal digits). Entities keep
+ * amounts as micro-units and convert them from and to {@link BigDecimal} only for JSON and database, so posting an order
+ * does not allocate. All operations throw {@link ArithmeticException} on overflow instead of silently wrapping.</p>
+ *
+ * <p>Conversion result is rounded to micro-units with explicitly given rounding mode. Conversion is calculated exactly
+ * before rounding even if intermediate product does not fit into {@code long}.</p>
+ */
+public final class Money {
+    public static final int SCALE = 6;
+    public static final int RATE_SCALE = 9;
+
+    private static final long RATE_UNIT = 1_000_000_000L;
+    private static final long HALF_RATE_UNIT = RATE_UNIT / 2;
+    private static final long[] POWERS_OF_TEN = {1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L};
+
+    private Money() {}
+
+    /**
+     * @param amount amount, rounded to micro-units with HALF_EVEN if it has more decimal digits
+     * @return amount in micro-units
+     */
+    public static long toMicros(BigDecimal amount) {
+        return amount.setScale(SCALE, RoundingMode.HALF_EVEN).unscaledValue().longValueExact();
+    }
+
+    public static BigDecimal toBigDecimal(long micros) {
+        return BigDecimal.valueOf(micros, SCALE);
+    }
+
+    /**
+     * @param rate exchange rate, rounded to nano-units with HALF_EVEN if it has more decimal digits
+     * @return exchange rate in nano-units
+     */
+    public static long toRate(BigDecimal rate) {
+        return rate.setScale(RATE_SCALE, RoundingMode.HALF_EVEN).unscaledValue().longValueExact();
+    }
+
+    public static BigDecimal rateToBigDecimal(long rate) {
+        return BigDecimal.valueOf(rate, RATE_SCALE);
+    }
+
+    public static long add(long micros, long addend) {
+        return Math.addExact(micros, addend);
+    }
+
+    public static long subtract(long micros, long subtrahend) {
+        return Math.subtractExact(micros, subtrahend);
+    }
+
+    /**
+     * Multiply amount by exchange rate.
+     * @param micros non-negative amount in micro-units
+     * @param rate non-negative exchange rate in nano-units
+     * @param roundingMode how to round the exact product to micro-units
+     * @return converted amount in micro-units
+     */
+    public static long convert(long micros, long rate, RoundingMode roundingMode) {
+        if (micros < 0 || rate < 0) {
+            throw new IllegalArgumentException("Amount and rate should not be negative");
+        }
+        // micros * rate / 10^9 with both factors split by 10^9, so every partial product fits into long
+        final long microsHigh = micros / RATE_UNIT;
+        final long microsLow = micros % RATE_UNIT;
+        final long rateHigh = rate / RATE_UNIT;
+        final long rateLow = rate % RATE_UNIT;
+        final long lowProduct = microsLow * rateLow;
+
+        long result = Math.multiplyExact(Math.multiplyExact(microsHigh, rateHigh), RATE_UNIT);
+        result = Math.addExact(result, Math.multiplyExact(microsHigh, rateLow));
+        result = Math.addExact(result, Math.multiplyExact(microsLow, rateHigh));
+        result = Math.addExact(result, lowProduct / RATE_UNIT);
+        return round(result, lowProduct % RATE_UNIT, RATE_UNIT, HALF_RATE_UNIT, roundingMode);
+    }
+
+    /**
+     * Round non-negative amount to fewer decimal digits, e.g. to cents.
+     * @param micros non-negative amount in micro-units
+     * @param scale number of decimal digits to keep, from 0 to {@link #SCALE}
+     * @param roundingMode how to round
+     * @return rounded amount in units of the requested scale
+     */
+    public static long round(long micros, int scale, RoundingMode roundingMode) {
+        if (micros < 0) {
+            throw new IllegalArgumentException("Amount should not be negative");
+        }
+        final long divisor = POWERS_OF_TEN[SCALE - scale];
+        return round(micros / divisor, micros % divisor, divisor, divisor / 2, roundingMode);
+    }
+
+    private static long round(long truncated, long remainder, long divisor, long half, RoundingMode roundingMode) {
+        if (remainder == 0) {
+            return truncated;
+        }
+        final boolean increment;
+        switch (roundingMode) {
+            case UP:
+            case CEILING:
+                increment = true;
+                break;
+            case DOWN:
+            case FLOOR:
+                increment = false;
+                break;
+            case HALF_UP:
+                increment = remainder >= half && (divisor % 2 == 0 || remainder > half);
+                break;
+            case HALF_DOWN:
+                increment = remainder > half || (divisor % 2 != 0 && remainder == half);
+                break;
+            case HALF_EVEN:
+                increment = remainder > half || (remainder == half && divisor % 2 == 0 && (truncated & 1) == 1);
+                break;
+            default:
+                throw new ArithmeticException("Rounding necessary");
+        }
+        return increment ? Math.addExact(truncated, 1) : truncated;
+    }
+}
@@ -8,7 +8,11 @@ import java.util.Objects;
 import io.dropwizard.validation.ValidationMethod;
 import org.apache.commons.lang3.ObjectUtils;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
+import javax.persistence.Access;
+import javax.persistence.AccessType;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.EnumType;
@@ -19,6 +23,7 @@ import javax.persistence.Id;
 import javax.persistence.Table;
 import javax.persistence.Temporal;
 import javax.persistence.TemporalType;
+import javax.persistence.Transient;
 import javax.validation.constraints.DecimalMin;
 import javax.validation.constraints.NotNull;
 import java.math.BigDecimal;
@@ -26,14 +31,23 @@ import java.math.BigDecimal;
 @Entity
 @Table(name = "orders")
 public class Order implements Serializable {
+    /**
+     * Ids are taken from database sequence in blocks of 50 (increment of the sequence), so inserts need no round trip
+     * to get an id and are batched.
+     */
     @Id
     @Column(name = "order_id")
-    @GeneratedValue(strategy=GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "orders_seq")
+    @GenericGenerator(name = "orders_seq", strategy = "enhanced-sequence", parameters = {
+            @Parameter(name = "sequence_name", value = "orders_seq"),
+            @Parameter(name = "initial_value", value = "0"),
+            @Parameter(name = "increment_size", value = "50"),
+            @Parameter(name = "optimizer", value = "pooled-lo")})
     private Integer id;
 
     @CreationTimestamp
     @Temporal(TemporalType.TIMESTAMP)
-    @Column(name = "creation_date")
+    @Column(name = "creation_date", updatable = false)
     private Date creationDate;
 
     @Column(name = "receiver_account")
@@ -47,10 +61,14 @@ public class Order implements Serializable {
     @Column(name = "operation_currency_code")
     private Currency operationCurrencyCode;
 
-    @NotNull
-    @DecimalMin("0.0001")
-    @Column
-    private BigDecimal amount;
+    @Transient
+    private long amountMicros;
+
+    @Transient
+    private boolean hasAmount;
+
+    @Transient
+    private boolean isAmountTooPrecise;
 
     @NotNull
     @Enumerated(EnumType.ORDINAL)
@@ -64,6 +82,13 @@ public class Order implements Serializable {
     @Enumerated(EnumType.ORDINAL)
     private OrderStatus status;
 
+    @Column(name = "derived_rate")
+    private boolean derivedRate;
+
+    @JsonIgnore
+    @Column(name = "idempotency_key", updatable = false)
+    private String idempotencyKey;
+
     public Integer getId() {
         return id;
     }
@@ -104,12 +129,39 @@ public class Order implements Serializable {
         this.status = status;
     }
 
+    /**
+     * @return amount, null if it is missing
+     */
+    @NotNull
+    @DecimalMin("0.0001")
+    @Access(AccessType.PROPERTY)
+    @Column(name = "amount")
     public BigDecimal getAmount() {
-        return amount;
+        return hasAmount ? Money.toBigDecimal(amountMicros) : null;
     }
 
+    /**
+     * @param amount amount, an amount with more decimal digits than {@link Money#SCALE} is rejected by validation
+     */
     public void setAmount(BigDecimal amount) {
-        this.amount = amount;
+        this.hasAmount = amount != null;
+        this.isAmountTooPrecise = hasAmount && amount.stripTrailingZeros().scale() > Money.SCALE;
+        this.amountMicros = hasAmount ? Money.toMicros(amount) : 0;
+    }
+
+    /**
+     * @return amount in {@link Money} micro-units
+     */
+    @JsonIgnore
+    public long getAmountMicros() {
+        return amountMicros;
+    }
+
+    @JsonIgnore
+    public void setAmountMicros(long amountMicros) {
+        this.hasAmount = true;
+        this.isAmountTooPrecise = false;
+        this.amountMicros = amountMicros;
     }
 
     public String getDescription() {
@@ -120,6 +172,30 @@ public class Order implements Serializable {
         this.description = description;
     }
 
+    /**
+     * @return true if processing of the order used an exchange rate derived from other rates (inverse or cross rate)
+     */
+    public boolean isDerivedRate() {
+        return derivedRate;
+    }
+
+    public void setDerivedRate(boolean derivedRate) {
+        this.derivedRate = derivedRate;
+    }
+
+    /**
+     * @return key of the request which created the order, null if the request had no key
+     */
+    @JsonIgnore
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    @JsonIgnore
+    public void setIdempotencyKey(String idempotencyKey) {
+        this.idempotencyKey = idempotencyKey;
+    }
+
     public OrderType getOrderType() {
         return orderType;
     }
@@ -144,10 +220,11 @@ public class Order implements Serializable {
         sb.append(", receiverAccount=").append(receiverAccount);
         sb.append(", senderAccount=").append(senderAccount);
         sb.append(", operationCurrencyCode=").append(operationCurrencyCode);
-        sb.append(", amount=").append(amount);
+        sb.append(", amount=").append(getAmount());
         sb.append(", orderType=").append(orderType);
         sb.append(", description='").append(description).append('\'');
         sb.append(", status='").append(status).append('\'');
+        sb.append(", derivedRate=").append(derivedRate);
         sb.append('}');
         return sb.toString();
     }
@@ -163,16 +240,24 @@ public class Order implements Serializable {
                 Objects.equals(receiverAccount, order.receiverAccount) &&
                 Objects.equals(senderAccount, order.senderAccount) &&
                 operationCurrencyCode == order.operationCurrencyCode &&
-                Objects.equals(amount, order.amount) &&
+                hasAmount == order.hasAmount &&
+                amountMicros == order.amountMicros &&
                 orderType == order.orderType &&
                 Objects.equals(description, order.description) &&
-                Objects.equals(status, order.status);
+                Objects.equals(status, order.status) &&
+                derivedRate == order.derivedRate;
     }
 
     @Override
     public int hashCode() {
         return Objects.hash(id, creationDate, receiverAccount, senderAccount, operationCurrencyCode,
-                amount, orderType, description, status);
+                amountMicros, orderType, description, status, derivedRate);
+    }
+
+    @ValidationMethod(message = "Amount cannot have more than " + Money.SCALE + " decimal digits")
+    @JsonIgnore
+    public boolean isAmountWithinScale() {
+        return !isAmountTooPrecise;
     }
 
     @ValidationMethod(message = "Income order cannot contains sender")
@@ -0,0 +1,73 @@
+package com.rk.api;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Result of a single order of bulk submission: id of created order or reasons why the order was rejected.
+ */
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+public class OrderBatchItem {
+    private int index;
+    private Integer id;
+    private List<String> errors = new ArrayList<>();
+
+    public OrderBatchItem(int index) {
+        this.index = index;
+    }
+
+    public OrderBatchItem() {}
+
+    /**
+     * @return position of the order in the request
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    /**
+     * @return id of created order, null if the order was rejected
+     */
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public List<String> getErrors() {
+        return errors;
+    }
+
+    public void setErrors(List<String> errors) {
+        this.errors = errors;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        OrderBatchItem that = (OrderBatchItem) o;
+        return index == that.index &&
+                Objects.equals(id, that.id) &&
+                Objects.equals(errors, that.errors);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(index, id, errors);
+    }
+
+    @Override
+    public String toString() {
+        return "OrderBatchItem{index=" + index + ", id=" + id + ", errors=" + errors + '}';
+    }
+}
@@ -13,6 +13,7 @@ public final class OrderBuilder {
     private OrderStatus status;
     private OrderType orderType;
     private Date creationDate;
+    private boolean derivedRate;
 
     private OrderBuilder() {
     }
@@ -66,6 +67,11 @@ public final class OrderBuilder {
         return this;
     }
 
+    public OrderBuilder withDerivedRate(boolean derivedRate) {
+        this.derivedRate = derivedRate;
+        return this;
+    }
+
     public OrderBuilder copyOf(Order order) {
         id = order.getId();
         receiverAccount = order.getReceiverAccount();
@@ -75,6 +81,8 @@ public final class OrderBuilder {
         description = order.getDescription();
         status = order.getStatus();
         orderType = order.getOrderType();
+        derivedRate = order.isDerivedRate();
+        creationDate = order.getCreationDate();
         return this;
     }
 
@@ -89,6 +97,7 @@ public final class OrderBuilder {
         order.setStatus(status);
         order.setOrderType(orderType);
         order.setCreationDate(creationDate);
+        order.setDerivedRate(derivedRate);
         return order;
     }
 }
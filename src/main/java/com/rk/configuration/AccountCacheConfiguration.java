@@ -0,0 +1,22 @@
+package com.rk.configuration;
+
+import javax.validation.constraints.Min;
+
+/**
+ * Settings of the cache accounts are read from by account API.
+ */
+public class AccountCacheConfiguration {
+    /**
+     * Maximum number of cached accounts, the least recently used ones are evicted.
+     */
+    @Min(1)
+    private int maxSize = 100_000;
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+    }
+}
@@ -0,0 +1,67 @@
+package com.rk.configuration;
+
+import io.dropwizard.util.Duration;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+/**
+ * Settings of account event streams.
+ */
+public class AccountEventsConfiguration {
+    /**
+     * Number of the last events of all accounts kept in memory, a client can resume a stream only within them.
+     */
+    @Min(1)
+    private int bufferSize = 100_000;
+
+    /**
+     * Number of events a stream can be behind before it is closed.
+     */
+    @Min(1)
+    private int maxLag = 1_000;
+
+    /**
+     * Maximum number of open streams, every stream holds a thread while it is open.
+     */
+    @Min(1)
+    private int maxSubscribers = 100;
+
+    /**
+     * Comment is sent to an idle stream this often, so closed connections are detected.
+     */
+    @NotNull
+    private Duration heartbeat = Duration.seconds(15);
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    public int getMaxLag() {
+        return maxLag;
+    }
+
+    public void setMaxLag(int maxLag) {
+        this.maxLag = maxLag;
+    }
+
+    public int getMaxSubscribers() {
+        return maxSubscribers;
+    }
+
+    public void setMaxSubscribers(int maxSubscribers) {
+        this.maxSubscribers = maxSubscribers;
+    }
+
+    public Duration getHeartbeat() {
+        return heartbeat;
+    }
+
+    public void setHeartbeat(Duration heartbeat) {
+        this.heartbeat = heartbeat;
+    }
+}
@@ -1,18 +1,61 @@
 package com.rk.configuration;
 
+import com.codahale.metrics.MetricRegistry;
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.rk.messaging.ConsumerDispatchProbe;
+import com.rk.messaging.EmbeddedActiveMQConsumerDispatchProbe;
+import com.rk.messaging.EmbeddedActiveMQQueueDepthProbe;
 import com.rk.messaging.ManagedActiveMQPoolingConnectionFactoryContainer;
 import com.rk.messaging.ManagedMessageConnectionFactoryContainer;
+import com.rk.messaging.MessageCodec;
+import com.rk.messaging.ObjectMessageProducer;
+import com.rk.messaging.QueueDepthProbe;
+import com.rk.messaging.RingBuffer;
+import com.rk.messaging.WaitStrategy;
+import io.dropwizard.util.Duration;
 import org.apache.activemq.ActiveMQConnectionFactory;
+import org.apache.activemq.ActiveMQPrefetchPolicy;
 import org.apache.activemq.command.ActiveMQQueue;
 import org.apache.activemq.pool.PooledConnectionFactory;
 import org.hibernate.validator.constraints.NotEmpty;
 
 import javax.jms.ConnectionFactory;
 import javax.jms.Queue;
+import javax.validation.constraints.Max;
 import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.net.URI;
 
 public class ConnectionFactoryConfiguration {
+    /**
+     * <ul>
+     *     <li>BROKER - orders are sent through the message broker of {@code brokerUrl}</li>
+     *     <li>RING_BUFFER - orders are passed by reference through a ring buffer within the JVM, only for a single
+     *     instance which both accepts and processes orders, not supported in BATCH mode</li>
+     * </ul>
+     */
+    public enum Transport {
+        BROKER, RING_BUFFER
+    }
+
+    private static final String VM_SCHEME = "vm";
+
+    @NotNull
+    private Transport transport = Transport.BROKER;
+
+    /**
+     * Number of slots of the in-process ring buffer, rounded up to a power of two. Orders of a bulk request are put
+     * into the buffer at once, so it should be larger than the maximum bulk request.
+     */
+    @Min(1)
+    private int ringBufferSize = 16_384;
+
+    /**
+     * How threads wait for the in-process ring buffer when it is full or empty.
+     */
+    @NotNull
+    private WaitStrategy waitStrategy = WaitStrategy.BLOCKING;
+
     @NotEmpty
     private String brokerUrl = "vm://localhost?broker.persistent=false";
     @Min(1)
@@ -20,6 +63,78 @@ public class ConnectionFactoryConfiguration {
 
     private String ordersQueueName = "orders";
 
+    /**
+     * Maximum number of producer sessions kept open between sends.
+     */
+    @Min(1)
+    private int producerSessions = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * If true, order is sent to the queue in background and API responds without waiting for the broker.
+     */
+    private boolean asyncSend = false;
+
+    /**
+     * Maximum number of orders accepted by API but not yet sent to the queue in asynchronous mode.
+     */
+    @Min(1)
+    private int maxInFlightSends = 1024;
+
+    /**
+     * How long a send may wait for a free producer session or for a place in the in-flight window.
+     */
+    @NotNull
+    private Duration sendTimeout = Duration.seconds(1);
+
+    /**
+     * How many messages the broker pushes to a consumer session ahead of acknowledgement. Big prefetch sends a burst
+     * of messages to the first session while others stay idle; 1 spreads messages evenly; 0 makes sessions poll the
+     * broker for every message.
+     */
+    @Min(0)
+    private int queuePrefetch = ActiveMQPrefetchPolicy.DEFAULT_QUEUE_PREFETCH;
+
+    /**
+     * If true, broker dispatches messages to consumers by its own threads instead of the producing thread.
+     */
+    private boolean dispatchAsync = true;
+
+    /**
+     * If true, consumed messages are acknowledged in batches instead of one by one.
+     */
+    private boolean optimizeAcknowledge = false;
+
+    /**
+     * Priority of orders queue consumers over consumers of other applications of the same broker, 0 to 127.
+     */
+    @Min(0)
+    @Max(127)
+    private int consumerPriority = 0;
+
+    public Transport getTransport() {
+        return transport;
+    }
+
+    public void setTransport(Transport transport) {
+        this.transport = transport;
+    }
+
+    public int getRingBufferSize() {
+        return ringBufferSize;
+    }
+
+    public void setRingBufferSize(int ringBufferSize) {
+        this.ringBufferSize = ringBufferSize;
+    }
+
+    public WaitStrategy getWaitStrategy() {
+        return waitStrategy;
+    }
+
+    public void setWaitStrategy(WaitStrategy waitStrategy) {
+        this.waitStrategy = waitStrategy;
+    }
+
     public String getBrokerUrl() {
         return brokerUrl;
     }
@@ -44,9 +159,79 @@ public class ConnectionFactoryConfiguration {
         this.ordersQueueName = ordersQueueName;
     }
 
+    public int getProducerSessions() {
+        return producerSessions;
+    }
+
+    public void setProducerSessions(int producerSessions) {
+        this.producerSessions = producerSessions;
+    }
+
+    public boolean isAsyncSend() {
+        return asyncSend;
+    }
+
+    public void setAsyncSend(boolean asyncSend) {
+        this.asyncSend = asyncSend;
+    }
+
+    public int getMaxInFlightSends() {
+        return maxInFlightSends;
+    }
+
+    public void setMaxInFlightSends(int maxInFlightSends) {
+        this.maxInFlightSends = maxInFlightSends;
+    }
+
+    public Duration getSendTimeout() {
+        return sendTimeout;
+    }
+
+    public void setSendTimeout(Duration sendTimeout) {
+        this.sendTimeout = sendTimeout;
+    }
+
+    public int getQueuePrefetch() {
+        return queuePrefetch;
+    }
+
+    public void setQueuePrefetch(int queuePrefetch) {
+        this.queuePrefetch = queuePrefetch;
+    }
+
+    public boolean isDispatchAsync() {
+        return dispatchAsync;
+    }
+
+    public void setDispatchAsync(boolean dispatchAsync) {
+        this.dispatchAsync = dispatchAsync;
+    }
+
+    public boolean isOptimizeAcknowledge() {
+        return optimizeAcknowledge;
+    }
+
+    public void setOptimizeAcknowledge(boolean optimizeAcknowledge) {
+        this.optimizeAcknowledge = optimizeAcknowledge;
+    }
+
+    public int getConsumerPriority() {
+        return consumerPriority;
+    }
+
+    public void setConsumerPriority(int consumerPriority) {
+        this.consumerPriority = consumerPriority;
+    }
+
+    /**
+     * Get orders queue to consume, consumer options are set as destination options.
+     * @return Queue
+     */
     @JsonIgnore
     public Queue getOrdersQueue() {
-        return new ActiveMQQueue(getOrdersQueueName());
+        return new ActiveMQQueue(consumerPriority == 0
+                ? getOrdersQueueName()
+                : getOrdersQueueName() + "?consumer.priority=" + consumerPriority);
     }
 
     /**
@@ -62,6 +247,57 @@ public class ConnectionFactoryConfiguration {
         return new ManagedActiveMQPoolingConnectionFactoryContainer(pooledConnectionFactory);
     }
 
+    /**
+     * Get producer of orders queue. The producer is managed and should be started after the connection factory.
+     * @param connectionFactory factory to take producer connection from, preferably pooled one
+     * @param codec encoding of queued objects
+     * @return instance of ObjectMessageProducer
+     */
+    @JsonIgnore
+    public <T> ObjectMessageProducer<T> getOrdersMessageProducer(ConnectionFactory connectionFactory,
+                                                                 MessageCodec<T> codec, MetricRegistry metrics) {
+        return new ObjectMessageProducer<>(getOrdersQueueName(), connectionFactory, codec, producerSessions,
+                maxInFlightSends, sendTimeout.toMilliseconds(), metrics);
+    }
+
+    /**
+     * Get in-process orders queue. Every call creates a new buffer, the same instance should be given to the sender
+     * and to the consumers.
+     * @return instance of RingBuffer
+     */
+    @JsonIgnore
+    public <T> RingBuffer<T> getOrdersRingBuffer() {
+        return new RingBuffer<>(ringBufferSize, waitStrategy);
+    }
+
+    /**
+     * Get probe of orders queue depth. Depth can be measured only for embedded broker, for other brokers the probe
+     * always returns {@link QueueDepthProbe#UNKNOWN_DEPTH}.
+     * @return instance of QueueDepthProbe
+     */
+    @JsonIgnore
+    public QueueDepthProbe getOrdersQueueDepthProbe() {
+        final URI uri = URI.create(brokerUrl);
+        if (!VM_SCHEME.equals(uri.getScheme()) || uri.getHost() == null) {
+            return () -> QueueDepthProbe.UNKNOWN_DEPTH;
+        }
+        return new EmbeddedActiveMQQueueDepthProbe(uri.getHost(), getOrdersQueueName());
+    }
+
+    /**
+     * Get probe of messages dispatched to consumers of orders queue. Like queue depth, dispatched messages can be
+     * measured only for embedded broker.
+     * @return instance of ConsumerDispatchProbe
+     */
+    @JsonIgnore
+    public ConsumerDispatchProbe getOrdersDispatchProbe() {
+        final URI uri = URI.create(brokerUrl);
+        if (!VM_SCHEME.equals(uri.getScheme()) || uri.getHost() == null) {
+            return consumer -> ConsumerDispatchProbe.UNKNOWN_COUNT;
+        }
+        return new EmbeddedActiveMQConsumerDispatchProbe(uri.getHost(), getOrdersQueueName());
+    }
+
     /**
      * Get connection factory.
      * @return ConnectionFactory
@@ -71,9 +307,17 @@ public class ConnectionFactoryConfiguration {
         return getActiveMQConnectionFactory();
     }
 
+    /**
+     * Both producer and consumer factories get the same policy, so it does not depend on which connection creates
+     * the queue consumer.
+     */
     private ActiveMQConnectionFactory getActiveMQConnectionFactory() {
-        final ActiveMQConnectionFactory activeMQConnectionFactory = new ActiveMQConnectionFactory(brokerUrl);
-        activeMQConnectionFactory.setTrustAllPackages(true);
-        return activeMQConnectionFactory;
+        final ActiveMQConnectionFactory connectionFactory = new ActiveMQConnectionFactory(brokerUrl);
+        final ActiveMQPrefetchPolicy prefetchPolicy = new ActiveMQPrefetchPolicy();
+        prefetchPolicy.setQueuePrefetch(queuePrefetch);
+        connectionFactory.setPrefetchPolicy(prefetchPolicy);
+        connectionFactory.setDispatchAsync(dispatchAsync);
+        connectionFactory.setOptimizeAcknowledge(optimizeAcknowledge);
+        return connectionFactory;
     }
 }
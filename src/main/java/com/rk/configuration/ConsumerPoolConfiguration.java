@@ -0,0 +1,119 @@
+package com.rk.configuration;
+
+import io.dropwizard.util.Duration;
+
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+/**
+ * Settings of the pool of orders queue consumers: fixed size, or adaptive between minimum and maximum size.
+ */
+public class ConsumerPoolConfiguration {
+    /**
+     * Number of consumers of a fixed pool.
+     */
+    @Min(1)
+    private int size = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * If true, the pool starts with {@code minSize} consumers and is resized by queue depth and listener latency.
+     */
+    private boolean adaptive = false;
+
+    @Min(1)
+    private int minSize = 1;
+
+    @Min(1)
+    private int maxSize = Runtime.getRuntime().availableProcessors() * 4;
+
+    /**
+     * How often the pool is checked.
+     */
+    @NotNull
+    private Duration interval = Duration.seconds(1);
+
+    /**
+     * How long the pool is left as it is after a change.
+     */
+    @NotNull
+    private Duration cooldown = Duration.seconds(10);
+
+    /**
+     * Time the queue backlog should be handled within, less time needs more consumers for the same backlog.
+     */
+    @NotNull
+    private Duration drainTime = Duration.seconds(1);
+
+    /**
+     * The pool shrinks when estimated consumers are below this part of the current consumers.
+     */
+    @DecimalMin("0.01")
+    @DecimalMax("1")
+    private double scaleDownRatio = 0.5;
+
+    public int getSize() {
+        return size;
+    }
+
+    public void setSize(int size) {
+        this.size = size;
+    }
+
+    public boolean isAdaptive() {
+        return adaptive;
+    }
+
+    public void setAdaptive(boolean adaptive) {
+        this.adaptive = adaptive;
+    }
+
+    public int getMinSize() {
+        return minSize;
+    }
+
+    public void setMinSize(int minSize) {
+        this.minSize = minSize;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public Duration getInterval() {
+        return interval;
+    }
+
+    public void setInterval(Duration interval) {
+        this.interval = interval;
+    }
+
+    public Duration getCooldown() {
+        return cooldown;
+    }
+
+    public void setCooldown(Duration cooldown) {
+        this.cooldown = cooldown;
+    }
+
+    public Duration getDrainTime() {
+        return drainTime;
+    }
+
+    public void setDrainTime(Duration drainTime) {
+        this.drainTime = drainTime;
+    }
+
+    public double getScaleDownRatio() {
+        return scaleDownRatio;
+    }
+
+    public void setScaleDownRatio(double scaleDownRatio) {
+        this.scaleDownRatio = scaleDownRatio;
+    }
+}
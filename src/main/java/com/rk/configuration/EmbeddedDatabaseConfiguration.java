@@ -0,0 +1,185 @@
+package com.rk.configuration;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableList;
+import com.rk.db.EmbeddedDatabaseManager;
+import io.dropwizard.util.Duration;
+import io.dropwizard.util.Size;
+import io.dropwizard.util.SizeUnit;
+import io.dropwizard.validation.MaxSize;
+import io.dropwizard.validation.MinSize;
+import org.hibernate.validator.constraints.NotEmpty;
+
+import javax.sql.DataSource;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Settings of the embedded HSQLDB server the default datasource connects to. File settings are applied on every
+ * start and stored in the database, some of them take effect after the next checkpoint.
+ */
+public class EmbeddedDatabaseConfiguration {
+    /**
+     * <ul>
+     *     <li>MEMORY - all tables are in memory and lost on stop</li>
+     *     <li>FILE - database is kept in files under {@code path}, {@code cachedTables} are kept in the data file and
+     *     only partly cached in memory, other tables are in memory and written to the script on checkpoint</li>
+     * </ul>
+     */
+    public enum Storage {
+        MEMORY, FILE
+    }
+
+    @NotNull
+    private Storage storage = Storage.MEMORY;
+
+    /**
+     * Path and name of database files without extension, relative to the working directory unless absolute.
+     */
+    @NotEmpty
+    private String path = "data/money_transfer";
+
+    /**
+     * Tables kept on disk, the ones which grow without limit.
+     */
+    @NotNull
+    private List<String> cachedTables = ImmutableList.of("orders");
+
+    /**
+     * Size of the log which triggers a checkpoint, it is also the most log replayed after a crash.
+     */
+    @NotNull
+    @MinSize(value = 1, unit = SizeUnit.MEGABYTES)
+    private Size logSize = Size.megabytes(50);
+
+    /**
+     * Delay of syncing the log to disk after commit, 0 syncs on every commit. Transactions committed within the delay
+     * survive a crash of the application, but not of the operating system.
+     */
+    @NotNull
+    private Duration writeDelay = Duration.milliseconds(500);
+
+    /**
+     * Access the data file of cached tables through memory mapping while it is at most {@code nioMaxSize}.
+     */
+    private boolean nioDataFile = true;
+
+    @NotNull
+    @MinSize(value = 64, unit = SizeUnit.MEGABYTES)
+    @MaxSize(value = 256, unit = SizeUnit.GIGABYTES)
+    private Size nioMaxSize = Size.gigabytes(1);
+
+    /**
+     * Memory for rows of cached tables, the cache is bounded by both size and number of rows.
+     */
+    @NotNull
+    @MinSize(value = 100, unit = SizeUnit.KILOBYTES)
+    private Size cacheSize = Size.megabytes(64);
+
+    @Min(100)
+    private int cacheRows = 100_000;
+
+    /**
+     * Interval of background checkpoints, 0 leaves them to log size and stop.
+     */
+    @NotNull
+    private Duration checkpointInterval = Duration.minutes(5);
+
+    public Storage getStorage() {
+        return storage;
+    }
+
+    public void setStorage(Storage storage) {
+        this.storage = storage;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public List<String> getCachedTables() {
+        return cachedTables;
+    }
+
+    public void setCachedTables(List<String> cachedTables) {
+        this.cachedTables = cachedTables;
+    }
+
+    public Size getLogSize() {
+        return logSize;
+    }
+
+    public void setLogSize(Size logSize) {
+        this.logSize = logSize;
+    }
+
+    public Duration getWriteDelay() {
+        return writeDelay;
+    }
+
+    public void setWriteDelay(Duration writeDelay) {
+        this.writeDelay = writeDelay;
+    }
+
+    public boolean isNioDataFile() {
+        return nioDataFile;
+    }
+
+    public void setNioDataFile(boolean nioDataFile) {
+        this.nioDataFile = nioDataFile;
+    }
+
+    public Size getNioMaxSize() {
+        return nioMaxSize;
+    }
+
+    public void setNioMaxSize(Size nioMaxSize) {
+        this.nioMaxSize = nioMaxSize;
+    }
+
+    public Size getCacheSize() {
+        return cacheSize;
+    }
+
+    public void setCacheSize(Size cacheSize) {
+        this.cacheSize = cacheSize;
+    }
+
+    public int getCacheRows() {
+        return cacheRows;
+    }
+
+    public void setCacheRows(int cacheRows) {
+        this.cacheRows = cacheRows;
+    }
+
+    public Duration getCheckpointInterval() {
+        return checkpointInterval;
+    }
+
+    public void setCheckpointInterval(Duration checkpointInterval) {
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    public EmbeddedDatabaseManager build(DataSource dataSource, MetricRegistry metrics) {
+        if (storage == Storage.MEMORY) {
+            return new EmbeddedDatabaseManager(dataSource, EmbeddedDatabaseManager.MEMORY_DATABASE,
+                    Collections.emptyList(), Collections.emptyList(), 0, metrics);
+        }
+        final List<String> settings = ImmutableList.of(
+                "SET FILES LOG SIZE " + logSize.toMegabytes(),
+                "SET FILES WRITE DELAY " + writeDelay.toMilliseconds() + " MILLIS",
+                "SET FILES NIO " + (nioDataFile ? "TRUE" : "FALSE"),
+                "SET FILES NIO SIZE " + nioMaxSize.toMegabytes(),
+                "SET FILES CACHE SIZE " + cacheSize.toKilobytes(),
+                "SET FILES CACHE ROWS " + cacheRows);
+        return new EmbeddedDatabaseManager(dataSource, "file:" + path, settings, cachedTables,
+                checkpointInterval.toMilliseconds(), metrics);
+    }
+}
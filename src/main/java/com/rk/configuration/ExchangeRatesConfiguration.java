@@ -0,0 +1,40 @@
+package com.rk.configuration;
+
+import com.rk.api.Currency;
+import io.dropwizard.util.Duration;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * Exchange rate cache and rate derivation settings.
+ */
+public class ExchangeRatesConfiguration {
+    /**
+     * Period of full cache reload from database. Rates written through the API are visible immediately, reload is
+     * needed only for rates changed directly in database. Zero disables reload.
+     */
+    @NotNull
+    private Duration ttl = Duration.minutes(1);
+
+    /**
+     * Currency to derive cross rates through when there is no direct or inverse rate for a pair. Null disables cross
+     * rates.
+     */
+    private Currency pivotCurrency = Currency.USD;
+
+    public Duration getTtl() {
+        return ttl;
+    }
+
+    public void setTtl(Duration ttl) {
+        this.ttl = ttl;
+    }
+
+    public Currency getPivotCurrency() {
+        return pivotCurrency;
+    }
+
+    public void setPivotCurrency(Currency pivotCurrency) {
+        this.pivotCurrency = pivotCurrency;
+    }
+}
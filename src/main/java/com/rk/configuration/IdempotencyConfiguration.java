@@ -0,0 +1,40 @@
+package com.rk.configuration;
+
+import io.dropwizard.util.Duration;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+/**
+ * Settings of order idempotency keys.
+ */
+public class IdempotencyConfiguration {
+    /**
+     * Repeated request with the same key within this window gets the original response. Key cannot be reused after the
+     * window, such request is rejected.
+     */
+    @NotNull
+    private Duration window = Duration.hours(24);
+
+    /**
+     * Maximum number of responses kept in memory. Older keys are still found in database.
+     */
+    @Min(1)
+    private int maxCachedKeys = 100_000;
+
+    public Duration getWindow() {
+        return window;
+    }
+
+    public void setWindow(Duration window) {
+        this.window = window;
+    }
+
+    public int getMaxCachedKeys() {
+        return maxCachedKeys;
+    }
+
+    public void setMaxCachedKeys(int maxCachedKeys) {
+        this.maxCachedKeys = maxCachedKeys;
+    }
+}
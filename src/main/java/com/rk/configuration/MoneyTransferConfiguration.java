@@ -19,6 +19,123 @@ public class MoneyTransferConfiguration extends Configuration {
     @Valid
     private ConnectionFactoryConfiguration connectionFactoryConfiguration = new ConnectionFactoryConfiguration();
 
+    @Valid
+    private OrderProcessingConfiguration orderProcessingConfiguration = new OrderProcessingConfiguration();
+
+    @Valid
+    private ExchangeRatesConfiguration exchangeRatesConfiguration = new ExchangeRatesConfiguration();
+
+    @Valid
+    private IdempotencyConfiguration idempotencyConfiguration = new IdempotencyConfiguration();
+
+    @Valid
+    private OrderBatchConfiguration orderBatchConfiguration = new OrderBatchConfiguration();
+
+    @Valid
+    private AccountCacheConfiguration accountCacheConfiguration = new AccountCacheConfiguration();
+
+    @Valid
+    private OrderAwaitConfiguration orderAwaitConfiguration = new OrderAwaitConfiguration();
+
+    @Valid
+    private AccountEventsConfiguration accountEventsConfiguration = new AccountEventsConfiguration();
+
+    @Valid
+    private OrderJournalConfiguration orderJournalConfiguration = new OrderJournalConfiguration();
+
+    @Valid
+    private EmbeddedDatabaseConfiguration embeddedDatabaseConfiguration = new EmbeddedDatabaseConfiguration();
+
+    @JsonProperty("embeddedDatabase")
+    public void setEmbeddedDatabaseConfiguration(EmbeddedDatabaseConfiguration embeddedDatabaseConfiguration) {
+        this.embeddedDatabaseConfiguration = embeddedDatabaseConfiguration;
+    }
+
+    @JsonProperty("embeddedDatabase")
+    public EmbeddedDatabaseConfiguration getEmbeddedDatabaseConfiguration() {
+        return embeddedDatabaseConfiguration;
+    }
+
+    @JsonProperty("orderJournal")
+    public void setOrderJournalConfiguration(OrderJournalConfiguration orderJournalConfiguration) {
+        this.orderJournalConfiguration = orderJournalConfiguration;
+    }
+
+    @JsonProperty("orderJournal")
+    public OrderJournalConfiguration getOrderJournalConfiguration() {
+        return orderJournalConfiguration;
+    }
+
+    @JsonProperty("accountEvents")
+    public void setAccountEventsConfiguration(AccountEventsConfiguration accountEventsConfiguration) {
+        this.accountEventsConfiguration = accountEventsConfiguration;
+    }
+
+    @JsonProperty("accountEvents")
+    public AccountEventsConfiguration getAccountEventsConfiguration() {
+        return accountEventsConfiguration;
+    }
+
+    @JsonProperty("orderAwait")
+    public void setOrderAwaitConfiguration(OrderAwaitConfiguration orderAwaitConfiguration) {
+        this.orderAwaitConfiguration = orderAwaitConfiguration;
+    }
+
+    @JsonProperty("orderAwait")
+    public OrderAwaitConfiguration getOrderAwaitConfiguration() {
+        return orderAwaitConfiguration;
+    }
+
+    @JsonProperty("accountCache")
+    public void setAccountCacheConfiguration(AccountCacheConfiguration accountCacheConfiguration) {
+        this.accountCacheConfiguration = accountCacheConfiguration;
+    }
+
+    @JsonProperty("accountCache")
+    public AccountCacheConfiguration getAccountCacheConfiguration() {
+        return accountCacheConfiguration;
+    }
+
+    @JsonProperty("orderBatch")
+    public void setOrderBatchConfiguration(OrderBatchConfiguration orderBatchConfiguration) {
+        this.orderBatchConfiguration = orderBatchConfiguration;
+    }
+
+    @JsonProperty("orderBatch")
+    public OrderBatchConfiguration getOrderBatchConfiguration() {
+        return orderBatchConfiguration;
+    }
+
+    @JsonProperty("idempotency")
+    public void setIdempotencyConfiguration(IdempotencyConfiguration idempotencyConfiguration) {
+        this.idempotencyConfiguration = idempotencyConfiguration;
+    }
+
+    @JsonProperty("idempotency")
+    public IdempotencyConfiguration getIdempotencyConfiguration() {
+        return idempotencyConfiguration;
+    }
+
+    @JsonProperty("exchangeRates")
+    public void setExchangeRatesConfiguration(ExchangeRatesConfiguration exchangeRatesConfiguration) {
+        this.exchangeRatesConfiguration = exchangeRatesConfiguration;
+    }
+
+    @JsonProperty("exchangeRates")
+    public ExchangeRatesConfiguration getExchangeRatesConfiguration() {
+        return exchangeRatesConfiguration;
+    }
+
+    @JsonProperty("orderProcessing")
+    public void setOrderProcessingConfiguration(OrderProcessingConfiguration orderProcessingConfiguration) {
+        this.orderProcessingConfiguration = orderProcessingConfiguration;
+    }
+
+    @JsonProperty("orderProcessing")
+    public OrderProcessingConfiguration getOrderProcessingConfiguration() {
+        return orderProcessingConfiguration;
+    }
+
     @JsonProperty("ConnectionFactory")
     public void setConnectionFactoryConfiguration(ConnectionFactoryConfiguration connectionFactoryConfiguration) {
         this.connectionFactoryConfiguration = connectionFactoryConfiguration;
@@ -48,7 +165,10 @@ public class MoneyTransferConfiguration extends Configuration {
 
         dataSourceFactory.setProperties(ImmutableMap.of(
                 "charSet", "UTF-8", "hibernate.dialect",
-                "org.hibernate.dialect.HSQLDialect"));
+                "org.hibernate.dialect.HSQLDialect",
+                "hibernate.jdbc.batch_size", "50",
+                "hibernate.order_inserts", "true",
+                "hibernate.order_updates", "true"));
 
         dataSourceFactory.setMaxWaitForConnection(Duration.seconds(1));
         dataSourceFactory.setValidationQuery("select 1 from INFORMATION_SCHEMA.SYSTEM_USERS");
@@ -0,0 +1,43 @@
+package com.rk.configuration;
+
+import io.dropwizard.util.Duration;
+import io.dropwizard.validation.MinDuration;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Settings of requests waiting for order processing.
+ */
+public class OrderAwaitConfiguration {
+    /**
+     * Wait time of a request without timeout, as well as the upper bound of requested timeout.
+     */
+    @NotNull
+    @MinDuration(value = 0, unit = TimeUnit.MILLISECONDS, inclusive = false)
+    private Duration maxTimeout = Duration.seconds(30);
+
+    /**
+     * Maximum number of requests waiting at the same time, further requests get current order status at once if the
+     * order is processed and 503 otherwise.
+     */
+    @Min(1)
+    private int maxWaiters = 10_000;
+
+    public Duration getMaxTimeout() {
+        return maxTimeout;
+    }
+
+    public void setMaxTimeout(Duration maxTimeout) {
+        this.maxTimeout = maxTimeout;
+    }
+
+    public int getMaxWaiters() {
+        return maxWaiters;
+    }
+
+    public void setMaxWaiters(int maxWaiters) {
+        this.maxWaiters = maxWaiters;
+    }
+}
@@ -0,0 +1,68 @@
+package com.rk.configuration;
+
+import io.dropwizard.util.Duration;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+/**
+ * Settings of bulk order submission: batch requests and streaming ingestion.
+ */
+public class OrderBatchConfiguration {
+    /**
+     * Maximum number of orders in one request. All orders of a request are inserted in one transaction and sent in one
+     * broker transaction, so this also bounds the size of both.
+     */
+    @Min(1)
+    private int maxSize = 10_000;
+
+    /**
+     * Number of orders of a stream created in one transaction and sent in one broker transaction.
+     */
+    @Min(1)
+    private int streamChunkSize = 500;
+
+    /**
+     * Stream reading is paused while orders queue has more messages than this.
+     */
+    @Min(1)
+    private long maxQueueDepth = 10_000;
+
+    /**
+     * How long stream reading is paused before queue depth is checked again.
+     */
+    @NotNull
+    private Duration throttlePause = Duration.milliseconds(50);
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public int getStreamChunkSize() {
+        return streamChunkSize;
+    }
+
+    public void setStreamChunkSize(int streamChunkSize) {
+        this.streamChunkSize = streamChunkSize;
+    }
+
+    public long getMaxQueueDepth() {
+        return maxQueueDepth;
+    }
+
+    public void setMaxQueueDepth(long maxQueueDepth) {
+        this.maxQueueDepth = maxQueueDepth;
+    }
+
+    public Duration getThrottlePause() {
+        return throttlePause;
+    }
+
+    public void setThrottlePause(Duration throttlePause) {
+        this.throttlePause = throttlePause;
+    }
+}
@@ -0,0 +1,129 @@
+package com.rk.configuration;
+
+import com.codahale.metrics.MetricRegistry;
+import com.rk.core.BoundedExecutor;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Settings of the executor orders received from the queue are processed in, and of the limit of concurrent
+ * processing transactions.
+ */
+public class OrderExecutorConfiguration {
+    /**
+     * <ul>
+     *     <li>DIRECT - orders are processed in message listener threads of the broker client, messages are
+     *     acknowledged when the listener returns</li>
+     *     <li>THREAD_POOL - orders are processed by a fixed pool of {@code threads} threads</li>
+     *     <li>FORK_JOIN - orders are processed by a fork-join pool of {@code threads} parallelism, which adds threads
+     *     when its workers block</li>
+     *     <li>VIRTUAL - every order is processed in its own virtual thread, requires Java 21 or later</li>
+     * </ul>
+     */
+    public enum Kind {
+        DIRECT, THREAD_POOL, FORK_JOIN, VIRTUAL
+    }
+
+    private static final String NAME = "orders";
+
+    @NotNull
+    private Kind kind = Kind.DIRECT;
+
+    @Min(1)
+    private int threads = Runtime.getRuntime().availableProcessors() * 2;
+
+    /**
+     * Maximum number of orders handed over to the executor and not yet processed, listeners wait when it is reached.
+     */
+    @Min(1)
+    private int capacity = 1024;
+
+    /**
+     * Maximum number of orders processed at the same time, 0 means no limit besides the number of threads.
+     */
+    @Min(0)
+    private int maxConcurrentTransactions = 0;
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public void setKind(Kind kind) {
+        this.kind = kind;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public int getMaxConcurrentTransactions() {
+        return maxConcurrentTransactions;
+    }
+
+    public void setMaxConcurrentTransactions(int maxConcurrentTransactions) {
+        this.maxConcurrentTransactions = maxConcurrentTransactions;
+    }
+
+    /**
+     * @return executor of the configured kind, null for DIRECT
+     * @throws IllegalStateException if virtual threads are configured but not supported by the running JVM
+     */
+    public BoundedExecutor build(MetricRegistry metrics) {
+        final ExecutorService executorService;
+        switch (kind) {
+            case THREAD_POOL:
+                executorService = Executors.newFixedThreadPool(threads, namedThreads());
+                break;
+            case FORK_JOIN:
+                // FIFO mode: tasks are never joined, so they are taken in submission order
+                executorService = new ForkJoinPool(threads, pool -> {
+                    final ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                    thread.setName("order-executor-" + thread.getPoolIndex());
+                    return thread;
+                }, null, true);
+                break;
+            case VIRTUAL:
+                executorService = newVirtualThreadPerTaskExecutor();
+                break;
+            default:
+                return null;
+        }
+        return new BoundedExecutor(NAME, executorService, capacity, metrics);
+    }
+
+    private static ThreadFactory namedThreads() {
+        final AtomicInteger index = new AtomicInteger();
+        return runnable -> new Thread(runnable, "order-executor-" + index.getAndIncrement());
+    }
+
+    /**
+     * The service is built for Java 8, so virtual threads are looked up at runtime.
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Virtual threads require Java 21 or later, running on "
+                    + System.getProperty("java.version"), e);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.rk.configuration;
+
+import com.codahale.metrics.MetricRegistry;
+import com.rk.core.OrderJournal;
+import io.dropwizard.util.Size;
+import io.dropwizard.util.SizeUnit;
+import io.dropwizard.validation.MaxSize;
+import io.dropwizard.validation.MinSize;
+import org.hibernate.validator.constraints.NotEmpty;
+
+import javax.validation.constraints.NotNull;
+import java.nio.file.Paths;
+
+/**
+ * Settings of the write-ahead journal of accepted orders.
+ */
+public class OrderJournalConfiguration {
+    private boolean enabled = false;
+
+    /**
+     * Directory of journal segments, relative to the working directory unless absolute.
+     */
+    @NotEmpty
+    private String directory = "journal";
+
+    /**
+     * Size of a segment file, it is mapped into memory as a whole.
+     */
+    @NotNull
+    @MinSize(value = 1, unit = SizeUnit.MEGABYTES)
+    @MaxSize(value = 1, unit = SizeUnit.GIGABYTES)
+    private Size segmentSize = Size.megabytes(16);
+
+    /**
+     * Wait until accepted orders are forced to disk before they are sent. Without it orders survive a crash of the
+     * application, but not of the operating system.
+     */
+    private boolean sync = true;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    public Size getSegmentSize() {
+        return segmentSize;
+    }
+
+    public void setSegmentSize(Size segmentSize) {
+        this.segmentSize = segmentSize;
+    }
+
+    public boolean isSync() {
+        return sync;
+    }
+
+    public void setSync(boolean sync) {
+        this.sync = sync;
+    }
+
+    /**
+     * @return journal of accepted orders, null if it is not enabled
+     */
+    public OrderJournal build(MetricRegistry metrics) {
+        if (!enabled) {
+            return null;
+        }
+        return new OrderJournal(Paths.get(directory), (int) segmentSize.toBytes(), sync, metrics);
+    }
+}
@@ -0,0 +1,167 @@
+package com.rk.configuration;
+
+import io.dropwizard.util.Duration;
+
+import javax.validation.Valid;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+/**
+ * Order processing settings: how orders received from the queue are handed to the worker.
+ */
+public class OrderProcessingConfiguration {
+    /**
+     * <ul>
+     *     <li>CONCURRENT - orders are processed directly in message listener threads, or in the configured
+     *     executor, so two orders of the same account can be processed at the same time</li>
+     *     <li>SHARDED - orders are routed by account id to single-threaded lanes, so orders of the same account are
+     *     processed one by one</li>
+     *     <li>BATCH - messages are consumed in batches, every batch is processed in a single transaction</li>
+     * </ul>
+     */
+    public enum Mode {
+        CONCURRENT, SHARDED, BATCH
+    }
+
+    /**
+     * <ul>
+     *     <li>ENTITY - accounts are loaded, changed in memory and written back, concurrent changes are detected by
+     *     account version</li>
+     *     <li>ATOMIC - balances are changed by single conditional update statements without loading accounts, not
+     *     supported in BATCH mode</li>
+     * </ul>
+     */
+    public enum Posting {
+        ENTITY, ATOMIC
+    }
+
+    @NotNull
+    private Mode mode = Mode.CONCURRENT;
+
+    @NotNull
+    private Posting posting = Posting.ENTITY;
+
+    @Min(1)
+    private int lanesCount = Runtime.getRuntime().availableProcessors();
+
+    @Min(1)
+    private int laneCapacity = 1024;
+
+    @Min(1)
+    private int batchSize = 100;
+
+    @NotNull
+    private Duration batchWait = Duration.milliseconds(50);
+
+    /**
+     * How many times an order is processed again after a concurrent update of its account, it fails after that.
+     */
+    @Min(0)
+    private int maxConflictRetries = 5;
+
+    /**
+     * Backoff before the first retry, it is doubled for every next retry up to {@code maxConflictBackoff}. Actual
+     * pause is random between zero and the backoff.
+     */
+    @NotNull
+    private Duration conflictBackoff = Duration.milliseconds(5);
+
+    @NotNull
+    private Duration maxConflictBackoff = Duration.milliseconds(100);
+
+    @Valid
+    @NotNull
+    private ConsumerPoolConfiguration consumers = new ConsumerPoolConfiguration();
+
+    @Valid
+    @NotNull
+    private OrderExecutorConfiguration executor = new OrderExecutorConfiguration();
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public void setMode(Mode mode) {
+        this.mode = mode;
+    }
+
+    public Posting getPosting() {
+        return posting;
+    }
+
+    public void setPosting(Posting posting) {
+        this.posting = posting;
+    }
+
+    public int getLanesCount() {
+        return lanesCount;
+    }
+
+    public void setLanesCount(int lanesCount) {
+        this.lanesCount = lanesCount;
+    }
+
+    public int getLaneCapacity() {
+        return laneCapacity;
+    }
+
+    public void setLaneCapacity(int laneCapacity) {
+        this.laneCapacity = laneCapacity;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public Duration getBatchWait() {
+        return batchWait;
+    }
+
+    public void setBatchWait(Duration batchWait) {
+        this.batchWait = batchWait;
+    }
+
+    public int getMaxConflictRetries() {
+        return maxConflictRetries;
+    }
+
+    public void setMaxConflictRetries(int maxConflictRetries) {
+        this.maxConflictRetries = maxConflictRetries;
+    }
+
+    public Duration getConflictBackoff() {
+        return conflictBackoff;
+    }
+
+    public void setConflictBackoff(Duration conflictBackoff) {
+        this.conflictBackoff = conflictBackoff;
+    }
+
+    public Duration getMaxConflictBackoff() {
+        return maxConflictBackoff;
+    }
+
+    public void setMaxConflictBackoff(Duration maxConflictBackoff) {
+        this.maxConflictBackoff = maxConflictBackoff;
+    }
+
+    public ConsumerPoolConfiguration getConsumers() {
+        return consumers;
+    }
+
+    public void setConsumers(ConsumerPoolConfiguration consumers) {
+        this.consumers = consumers;
+    }
+
+    public OrderExecutorConfiguration getExecutor() {
+        return executor;
+    }
+
+    public void setExecutor(OrderExecutorConfiguration executor) {
+        this.executor = executor;
+    }
+}
@@ -0,0 +1,131 @@
+package com.rk.core;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.RatioGauge;
+import com.codahale.metrics.Timer;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.rk.api.Account;
+import com.rk.api.AccountBuilder;
+import com.rk.db.dao.AccountDAO;
+import io.dropwizard.hibernate.UnitOfWork;
+
+import java.util.Collection;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.function.IntFunction;
+
+/**
+ * Bounded read-through cache of committed accounts for account reads.
+ *
+ * <p>Missing account is loaded from database and cached, the least recently used accounts are evicted when the cache is
+ * full. Order processing publishes accounts it has changed by {@link #putAll(Collection)} after its transaction
+ * commits, so a balance of a rolled back transaction is never cached. Of the cached and the put account the newer by
+ * version is kept, so neither a load which has read the row before a commit nor commits published out of order can
+ * bring an older balance back; a put waits for a concurrent load of the same account. Absent accounts are not cached.
+ * Accounts are copied on put and get, so cached accounts are not changed by callers.</p>
+ */
+public class AccountCache {
+    private final IntFunction<Account> loader;
+    private final Cache<Integer, Account> accounts;
+    private final Meter hits;
+    private final Meter misses;
+    private final Meter evictions;
+    private final Timer loads;
+
+    /**
+     * Loads an account from database in its own read-only unit of work. Intended to be created with
+     * {@link io.dropwizard.hibernate.UnitOfWorkAwareProxyFactory}.
+     */
+    public static class DatabaseLoader implements IntFunction<Account> {
+        private final AccountDAO accountDAO;
+
+        public DatabaseLoader(AccountDAO accountDAO) {
+            this.accountDAO = accountDAO;
+        }
+
+        @Override
+        @UnitOfWork(readOnly = true)
+        public Account apply(int id) {
+            return accountDAO.findById(id);
+        }
+    }
+
+    /**
+     * @param loader loads account by id, returns null if there is no such account
+     * @param maxSize maximum number of cached accounts
+     * @param metrics registry for hit, miss, eviction and load metrics
+     */
+    public AccountCache(IntFunction<Account> loader, int maxSize, MetricRegistry metrics) {
+        Objects.requireNonNull(loader);
+        Objects.requireNonNull(metrics);
+        this.loader = loader;
+        this.hits = metrics.meter(MetricRegistry.name(AccountCache.class, "hits"));
+        this.misses = metrics.meter(MetricRegistry.name(AccountCache.class, "misses"));
+        this.evictions = metrics.meter(MetricRegistry.name(AccountCache.class, "evictions"));
+        this.loads = metrics.timer(MetricRegistry.name(AccountCache.class, "loads"));
+        this.accounts = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .removalListener((RemovalNotification<Integer, Account> notification) -> {
+                    if (notification.wasEvicted()) {
+                        evictions.mark();
+                    }
+                })
+                .build();
+        metrics.register(MetricRegistry.name(AccountCache.class, "size"), (Gauge<Long>) accounts::size);
+        metrics.register(MetricRegistry.name(AccountCache.class, "hit-ratio"), new RatioGauge() {
+            @Override
+            protected Ratio getRatio() {
+                return Ratio.of(hits.getFifteenMinuteRate(),
+                        hits.getFifteenMinuteRate() + misses.getFifteenMinuteRate());
+            }
+        });
+    }
+
+    /**
+     * @return copy of the committed account, it is loaded if it is not cached; null if there is no such account
+     */
+    public Account get(int id) {
+        Account account = accounts.getIfPresent(id);
+        if (account != null) {
+            hits.mark();
+        } else {
+            misses.mark();
+            try {
+                account = accounts.get(id, () -> load(id));
+            } catch (CacheLoader.InvalidCacheLoadException e) {
+                return null;
+            } catch (ExecutionException | UncheckedExecutionException e) {
+                throw new IllegalStateException("Unable to load account " + id, e.getCause());
+            }
+        }
+        return AccountBuilder.anAccount().copyOf(account).build();
+    }
+
+    /**
+     * Replace cached accounts with the given ones unless cached ones are newer. Should be called after the accounts are
+     * committed.
+     */
+    public void putAll(Collection<Account> committed) {
+        for (Account account : committed) {
+            accounts.asMap().merge(account.getId(), AccountBuilder.anAccount().copyOf(account).build(),
+                    AccountCache::newer);
+        }
+    }
+
+    private static Account newer(Account cached, Account committed) {
+        return cached.getVersion() != null && committed.getVersion() != null
+                && cached.getVersion() > committed.getVersion() ? cached : committed;
+    }
+
+    private Account load(int id) {
+        try (Timer.Context ignored = loads.time()) {
+            return loader.apply(id);
+        }
+    }
+}
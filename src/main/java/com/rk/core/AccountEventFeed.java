@@ -0,0 +1,232 @@
+package com.rk.core;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.rk.api.AccountEvent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-memory feed of committed balance changes with per-account subscriptions.
+ *
+ * <p>Published events get ids in sequence and are kept in a ring buffer of the last {@code capacity} events of all
+ * accounts, so a subscriber can resume from the id of the last event it has seen without database. Every
+ * subscription has its own queue of {@code maxLag} events. Publishing never waits for subscribers: an event which does
+ * not fit into the queue of a subscription drops the subscription, and the subscriber is expected to resume from
+ * the ring buffer. Appending to the ring buffer and delivery to queues are done under one lock, which subscription
+ * holds while it copies the events to replay, so an event is either replayed or queued, never both or neither. The
+ * copied events are filtered by account after the lock is released.</p>
+ */
+public class AccountEventFeed {
+    private static final AccountEvent END = new AccountEvent();
+
+    private final AccountEvent[] ring;
+    private final int maxLag;
+    private final int maxSubscriptions;
+    private final Map<Integer, Set<Subscription>> subscriptions = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriptionsCount = new AtomicInteger();
+    private final Meter published;
+    private final Meter dropped;
+    private final Meter rejected;
+    private long nextId = 1;
+
+    /**
+     * Events of one account delivered to a subscriber, starting with events replayed from the ring buffer.
+     */
+    public class Subscription implements AutoCloseable {
+        private final int accountId;
+        private final List<AccountEvent> replay;
+        private final boolean isResumed;
+        private final BlockingQueue<AccountEvent> queue;
+        private volatile boolean isEnded;
+
+        private Subscription(int accountId, List<AccountEvent> replay, boolean isResumed) {
+            this.accountId = accountId;
+            this.replay = replay;
+            this.isResumed = isResumed;
+            this.queue = new ArrayBlockingQueue<>(maxLag);
+        }
+
+        /**
+         * @return events of the account published after the requested one and before the subscription
+         */
+        public List<AccountEvent> getReplay() {
+            return replay;
+        }
+
+        /**
+         * @return false if events after the requested one are not in the ring buffer any more, or the requested
+         * event is not known, so some of them are missed and the account should be read again
+         */
+        public boolean isResumed() {
+            return isResumed;
+        }
+
+        /**
+         * @return next event, null if there is no event within the timeout
+         * @throws EndOfFeedException if the subscription is dropped or the feed is stopped
+         */
+        public AccountEvent poll(long timeout, TimeUnit unit) throws InterruptedException, EndOfFeedException {
+            final AccountEvent event = isEnded && queue.isEmpty() ? END : queue.poll(timeout, unit);
+            if (event == END) {
+                throw new EndOfFeedException();
+            }
+            return event;
+        }
+
+        private void offer(AccountEvent event) {
+            if (!queue.offer(event)) {
+                dropped.mark();
+                end();
+            }
+        }
+
+        private void end() {
+            if (remove(this)) {
+                isEnded = true;
+                // the subscriber resumes from the ring buffer, queued events would only be repeated
+                queue.clear();
+                queue.offer(END);
+            }
+        }
+
+        @Override
+        public void close() {
+            remove(this);
+        }
+    }
+
+    /**
+     * Thrown when no more events will be delivered to a subscription.
+     */
+    public static class EndOfFeedException extends Exception {
+        private EndOfFeedException() {
+            super("Subscription is ended");
+        }
+    }
+
+    /**
+     * @param capacity number of the last events kept for resumption
+     * @param maxLag number of events a subscriber can be behind before it is dropped
+     * @param maxSubscriptions maximum number of subscriptions of all accounts
+     */
+    public AccountEventFeed(int capacity, int maxLag, int maxSubscriptions, MetricRegistry metrics) {
+        Objects.requireNonNull(metrics);
+        if (capacity < 1 || maxLag < 1) {
+            throw new IllegalArgumentException("Capacity and lag should be positive");
+        }
+        this.ring = new AccountEvent[capacity];
+        this.maxLag = maxLag;
+        this.maxSubscriptions = maxSubscriptions;
+        this.published = metrics.meter(MetricRegistry.name(AccountEventFeed.class, "published"));
+        this.dropped = metrics.meter(MetricRegistry.name(AccountEventFeed.class, "dropped"));
+        this.rejected = metrics.meter(MetricRegistry.name(AccountEventFeed.class, "rejected"));
+        metrics.register(MetricRegistry.name(AccountEventFeed.class, "subscriptions"),
+                (Gauge<Integer>) subscriptionsCount::get);
+    }
+
+    /**
+     * Assign ids to the events, keep them for resumption and deliver them to subscribers of their accounts. Should be
+     * called after the changes are committed.
+     */
+    public void publish(List<AccountEvent> events) {
+        synchronized (ring) {
+            for (AccountEvent event : events) {
+                event.setId(nextId);
+                ring[(int) (nextId % ring.length)] = event;
+                nextId++;
+                final Set<Subscription> accountSubscriptions = subscriptions.get(event.getAccountId());
+                if (accountSubscriptions != null) {
+                    for (Subscription subscription : accountSubscriptions) {
+                        subscription.offer(event);
+                    }
+                }
+            }
+        }
+        published.mark(events.size());
+    }
+
+    /**
+     * @param accountId account to receive events of
+     * @param lastEventId id of the last event the subscriber has seen, null to receive only new events
+     * @return subscription which should be closed by the subscriber, null if there are too many subscriptions
+     */
+    public Subscription subscribe(int accountId, Long lastEventId) {
+        if (subscriptionsCount.incrementAndGet() > maxSubscriptions) {
+            subscriptionsCount.decrementAndGet();
+            rejected.mark();
+            return null;
+        }
+        final AccountEvent[] missed;
+        final Subscription subscription;
+        synchronized (ring) {
+            final long oldestId = Math.max(1, nextId - ring.length);
+            final boolean isResumed = lastEventId == null
+                    || (lastEventId >= oldestId - 1 && lastEventId < nextId);
+            missed = lastEventId == null ? new AccountEvent[0] : copyFrom(isResumed ? lastEventId + 1 : oldestId);
+            subscription = new Subscription(accountId, new ArrayList<>(), isResumed);
+            subscriptions.compute(accountId, (id, accountSubscriptions) -> {
+                final Set<Subscription> result = accountSubscriptions == null
+                        ? Collections.newSetFromMap(new ConcurrentHashMap<>()) : accountSubscriptions;
+                result.add(subscription);
+                return result;
+            });
+        }
+        // publishers are not blocked while events of other accounts are skipped
+        for (AccountEvent event : missed) {
+            if (event.getAccountId() == accountId) {
+                subscription.replay.add(event);
+            }
+        }
+        return subscription;
+    }
+
+    /**
+     * @return events of the ring buffer from the given id to the last one, should be called holding the ring lock
+     */
+    private AccountEvent[] copyFrom(long firstId) {
+        final AccountEvent[] copy = new AccountEvent[(int) (nextId - firstId)];
+        final int start = (int) (firstId % ring.length);
+        final int head = Math.min(copy.length, ring.length - start);
+        System.arraycopy(ring, start, copy, 0, head);
+        System.arraycopy(ring, 0, copy, head, copy.length - head);
+        return copy;
+    }
+
+    private boolean remove(Subscription subscription) {
+        final boolean[] isRemoved = new boolean[1];
+        subscriptions.computeIfPresent(subscription.accountId, (id, accountSubscriptions) -> {
+            isRemoved[0] = accountSubscriptions.remove(subscription);
+            return accountSubscriptions.isEmpty() ? null : accountSubscriptions;
+        });
+        if (isRemoved[0]) {
+            subscriptionsCount.decrementAndGet();
+        }
+        return isRemoved[0];
+    }
+
+    /**
+     * End all subscriptions. Should be called before server waits for open requests on shutdown, otherwise streams
+     * keep it waiting.
+     */
+    public void shutdown() {
+        synchronized (ring) {
+            for (Set<Subscription> accountSubscriptions : new ArrayList<>(subscriptions.values())) {
+                for (Subscription subscription : new ArrayList<>(accountSubscriptions)) {
+                    subscription.end();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.rk.core;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.rk.api.Currency;
+import com.rk.db.dao.AccountDAO;
+import io.dropwizard.hibernate.UnitOfWork;
+import io.dropwizard.lifecycle.Managed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * In-memory index of existing account ids and their currencies, so order validation does not query database.
+ *
+ * <p>Account ids are dense autoincrement integers, so the index is a growable array with one byte per id: zero for a
+ * missing account, currency ordinal plus one for an existing one. A million accounts take a megabyte. Readers do not
+ * lock; writers are serialized and publish the array through a volatile field, so an account is visible to readers as
+ * soon as {@link #add(int, Currency)} returns.</p>
+ *
+ * <p>The index is built from database on start and updated by {@link #add(int, Currency)} after an account is
+ * committed. Accounts are never deleted and are created only through the API, so the index is not reloaded.</p>
+ */
+public class AccountIndex implements Managed {
+    private static final Logger logger = LoggerFactory.getLogger(AccountIndex.class);
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final Currency[] CURRENCIES = Currency.values();
+
+    private final Source source;
+    private final Timer rebuilds;
+    private volatile byte[] currencies = new byte[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * Source of all existing accounts.
+     */
+    public interface Source {
+        void forEachAccount(ObjIntConsumer<Currency> consumer);
+    }
+
+    /**
+     * Reads accounts from database in a read-only transaction.
+     */
+    public static class DatabaseSource implements Source {
+        private final AccountDAO accountDAO;
+
+        public DatabaseSource(AccountDAO accountDAO) {
+            this.accountDAO = accountDAO;
+        }
+
+        @Override
+        @UnitOfWork(readOnly = true)
+        public void forEachAccount(ObjIntConsumer<Currency> consumer) {
+            accountDAO.forEachIdAndCurrency(consumer);
+        }
+    }
+
+    /**
+     * @param source source of existing accounts to build index from
+     * @param metrics registry for size, memory and rebuild metrics
+     */
+    public AccountIndex(Source source, MetricRegistry metrics) {
+        Objects.requireNonNull(source);
+        Objects.requireNonNull(metrics);
+        this.source = source;
+        this.rebuilds = metrics.timer(MetricRegistry.name(AccountIndex.class, "rebuilds"));
+        metrics.register(MetricRegistry.name(AccountIndex.class, "size"), (Gauge<Integer>) this::size);
+        metrics.register(MetricRegistry.name(AccountIndex.class, "memory-bytes"),
+                (Gauge<Integer>) () -> currencies.length);
+    }
+
+    public boolean contains(int id) {
+        return getCurrency(id) != null;
+    }
+
+    /**
+     * @return currency of the account, null if the account does not exist
+     */
+    public Currency getCurrency(int id) {
+        final byte[] current = currencies;
+        if (id < 0 || id >= current.length || current[id] == 0) {
+            return null;
+        }
+        return CURRENCIES[current[id] - 1];
+    }
+
+    /**
+     * Add committed account to the index.
+     */
+    public synchronized void add(int id, Currency currency) {
+        final byte[] current = currencies;
+        if (id >= current.length || current[id] == 0) {
+            size++;
+        }
+        currencies = put(current, id, currency);
+    }
+
+    /**
+     * @return the array with the currency set, a grown copy if the id does not fit
+     */
+    private static byte[] put(byte[] array, int id, Currency currency) {
+        if (id < 0) {
+            throw new IllegalArgumentException("Account id should not be negative: " + id);
+        }
+        Objects.requireNonNull(currency);
+        byte[] result = array;
+        if (id >= result.length) {
+            result = Arrays.copyOf(result, Math.max(id + 1, result.length * 2));
+        }
+        result[id] = (byte) (currency.ordinal() + 1);
+        return result;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Replace the index with accounts currently stored in database. Accounts added concurrently wait for the rebuild,
+     * readers see the previous index until the new one is built.
+     */
+    public synchronized void rebuild() {
+        try (Timer.Context ignored = rebuilds.time()) {
+            final byte[][] rebuilt = {new byte[INITIAL_CAPACITY]};
+            final int[] count = {0};
+            source.forEachAccount((currency, id) -> {
+                if (id >= rebuilt[0].length || rebuilt[0][id] == 0) {
+                    count[0]++;
+                }
+                rebuilt[0] = put(rebuilt[0], id, currency);
+            });
+            size = count[0];
+            currencies = rebuilt[0];
+        }
+        logger.info("Account index rebuilt, {} accounts take {} bytes", size, currencies.length);
+    }
+
+    @Override
+    public void start() {
+        rebuild();
+    }
+
+    @Override
+    public void stop() {
+    }
+}
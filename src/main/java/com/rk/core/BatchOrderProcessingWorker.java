@@ -0,0 +1,176 @@
+package com.rk.core;
+
+import com.rk.api.Account;
+import com.rk.api.AccountEvent;
+import com.rk.api.Order;
+import com.rk.api.OrderStatus;
+import com.rk.db.dao.AccountDAO;
+import com.rk.db.dao.OrderDAO;
+import io.dropwizard.hibernate.UnitOfWork;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Worker which processes a batch of orders in a single transaction.
+ *
+ * <p>All accounts involved in the batch are loaded by one query, orders are applied one by one in memory and all
+ * account and order updates are flushed together at commit, so they are written with JDBC batching. Order which
+ * cannot be applied gets its own FAILED status and does not affect other orders of the batch. Orders of the same
+ * account are applied in the batch order. Redelivered duplicates of an order within the batch are skipped. Changed
+ * accounts are published to {@link AccountCache}, processed orders to {@link OrderCompletionRegistry} and balance
+ * changes to {@link AccountEventFeed} after the transaction commits.</p>
+ */
+public class BatchOrderProcessingWorker implements Consumer<List<Order>> {
+    private final Logger logger = LoggerFactory.getLogger(getClass().getName());
+
+    private final OrderDAO orderDAO;
+    private final AccountDAO accountDAO;
+    private final CurrencyConverter currencyConverter;
+    private final AccountCache accountCache;
+    private final OrderCompletionRegistry completionRegistry;
+    private final AccountEventFeed eventFeed;
+    private final OrderMetrics orderMetrics;
+
+    /**
+     * @param accountCache cache to publish committed accounts to, nothing is published if it is null
+     * @param completionRegistry registry to notify about processed orders after commit, ignored if it is null
+     * @param eventFeed feed to publish committed balance changes to, ignored if it is null
+     * @param orderMetrics timers of processing stages, nothing is measured if it is null; account load and commit of
+     *                     the batch are recorded for every order of it
+     */
+    public BatchOrderProcessingWorker(OrderDAO orderDAO, AccountDAO accountDAO, CurrencyConverter currencyConverter,
+                                      AccountCache accountCache, OrderCompletionRegistry completionRegistry,
+                                      AccountEventFeed eventFeed, OrderMetrics orderMetrics) {
+        this.orderDAO = orderDAO;
+        this.accountDAO = accountDAO;
+        this.currencyConverter = currencyConverter;
+        this.accountCache = accountCache;
+        this.completionRegistry = completionRegistry;
+        this.eventFeed = eventFeed;
+        this.orderMetrics = orderMetrics;
+    }
+
+    @Override
+    @UnitOfWork
+    public void accept(List<Order> orders) {
+        logger.debug("Start batch processing job for {} orders", orders.size());
+        final OrderPosting posting = new OrderPosting(currencyConverter);
+        final long loadStart = System.nanoTime();
+        final Map<Integer, Account> accounts = loadAccounts(orders);
+        final long loadNanos = System.nanoTime() - loadStart;
+
+        final Set<Integer> processedIds = new HashSet<>(orders.size() * 2);
+        final Map<Integer, Account> changed = new HashMap<>(accounts.size() * 2);
+        final List<Order> processed = new ArrayList<>(orders.size());
+        final List<AccountEvent> events = new ArrayList<>();
+        final List<OrderMetrics.Sample> samples = new ArrayList<>(orderMetrics == null ? 0 : orders.size());
+        for (Order order : orders) {
+            if (!processedIds.add(order.getId())) {
+                logger.debug("Skipping duplicate of order_id: {} in batch", order.getId());
+                continue;
+            }
+            final OrderMetrics.Sample sample = orderMetrics == null
+                    ? OrderMetrics.Sample.NONE : orderMetrics.sample(order);
+            if (orderMetrics != null) {
+                sample.sinceCreation(OrderMetrics.Stage.QUEUE_WAIT);
+                sample.add(OrderMetrics.Stage.ACCOUNT_LOAD, loadNanos);
+                samples.add(sample);
+            }
+            try {
+                final List<Account> orderChanged = new ArrayList<>(2);
+                final OrderPosting.Amounts amounts = posting.apply(order, accounts::get, orderChanged);
+                sample.lap(OrderMetrics.Stage.PRICING);
+                for (Account account : orderChanged) {
+                    accountDAO.update(account);
+                    changed.put(account.getId(), account);
+                }
+                sample.lap(OrderMetrics.Stage.BALANCE_UPDATE);
+                if (eventFeed != null) {
+                    // balances are captured now, later orders of the batch change the same accounts
+                    events.addAll(amounts.toEvents(order.getId(), accounts::get));
+                }
+                order.setStatus(OrderStatus.DONE);
+            } catch (OrderPosting.PostingException e) {
+                sample.lap(OrderMetrics.Stage.PRICING);
+                logger.warn("Error during processing of order_id: {} with message: {}", order.getId(), e.getMessage());
+                order.setStatus(OrderStatus.FAILED);
+                order.setDescription(e.getMessage());
+            }
+            orderDAO.update(order);
+            processed.add(order);
+        }
+        if (accountCache != null && !changed.isEmpty()) {
+            final List<Account> committed = new ArrayList<>(changed.values());
+            accountDAO.afterCommit(() -> accountCache.putAll(committed));
+        }
+        if (completionRegistry != null) {
+            orderDAO.afterCommit(() -> processed.forEach(completionRegistry::complete));
+        }
+        if (eventFeed != null && !events.isEmpty()) {
+            accountDAO.afterCommit(() -> eventFeed.publish(events));
+        }
+        if (orderMetrics != null) {
+            recordAfterCompletion(processed, samples);
+        }
+        logger.debug("Finish batch processing job for {} orders", orders.size());
+    }
+
+    /**
+     * Mark the order FAILED without processing it.
+     */
+    @UnitOfWork
+    public void reject(Order order, String description) {
+        logger.debug("Rejecting order_id: {} with message: {}", order.getId(), description);
+        order.setStatus(OrderStatus.FAILED);
+        order.setDescription(description);
+        orderDAO.update(order);
+        if (completionRegistry != null) {
+            orderDAO.afterCommit(() -> completionRegistry.complete(order));
+        }
+    }
+
+    /**
+     * Flush and commit are done by unit of work after the worker returns, so they are timed by transaction completion.
+     */
+    private void recordAfterCompletion(List<Order> processed, List<OrderMetrics.Sample> samples) {
+        final long completionStart = System.nanoTime();
+        orderDAO.afterCompletion(isCommitted -> {
+            final long commitNanos = System.nanoTime() - completionStart;
+            for (int i = 0; i < samples.size(); i++) {
+                final OrderMetrics.Sample sample = samples.get(i);
+                sample.add(OrderMetrics.Stage.PROCESSING_COMMIT, commitNanos);
+                final OrderMetrics.Outcome outcome;
+                if (!isCommitted) {
+                    outcome = OrderMetrics.Outcome.ERROR;
+                } else {
+                    sample.sinceCreation(OrderMetrics.Stage.END_TO_END);
+                    outcome = processed.get(i).getStatus() == OrderStatus.DONE
+                            ? OrderMetrics.Outcome.OK : OrderMetrics.Outcome.REJECTED;
+                }
+                sample.record(outcome);
+            }
+        });
+    }
+
+    private Map<Integer, Account> loadAccounts(List<Order> orders) {
+        final Set<Integer> ids = new HashSet<>();
+        for (Order order : orders) {
+            if (order.getSenderAccount() != null) ids.add(order.getSenderAccount());
+            if (order.getReceiverAccount() != null) ids.add(order.getReceiverAccount());
+        }
+
+        final Map<Integer, Account> accounts = new HashMap<>(ids.size() * 2);
+        for (Account account : accountDAO.findByIds(ids)) {
+            accounts.put(account.getId(), account);
+        }
+        return accounts;
+    }
+}
@@ -0,0 +1,101 @@
+package com.rk.core;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import io.dropwizard.lifecycle.Managed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executor which keeps at most {@code capacity} tasks submitted to the underlying executor service, queued or running.
+ *
+ * <p>{@link #execute(Runnable)} blocks while the executor is full, so a message listener which hands messages over to
+ * it stops taking messages instead of piling them up in memory. The underlying service may be a thread pool, a
+ * fork-join pool or an executor starting a virtual thread per task, bounding is the same for all of them. Number of
+ * tasks waiting for a thread and number of running tasks are exposed as {@code queue-depth} and {@code active}.</p>
+ */
+public class BoundedExecutor implements Executor, Managed {
+    private static final Logger logger = LoggerFactory.getLogger(BoundedExecutor.class);
+    private static final long STOP_TIMEOUT_SECONDS = 30;
+
+    private final String name;
+    private final ExecutorService executorService;
+    private final Semaphore permits;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+
+    /**
+     * @param name name of the executor in metrics and logs
+     * @param executorService service which runs the tasks, it is shut down on stop
+     * @param capacity maximum number of tasks queued or running
+     */
+    public BoundedExecutor(String name, ExecutorService executorService, int capacity, MetricRegistry metrics) {
+        Objects.requireNonNull(name);
+        Objects.requireNonNull(executorService);
+        Objects.requireNonNull(metrics);
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity should be positive");
+        }
+        this.name = name;
+        this.executorService = executorService;
+        this.permits = new Semaphore(capacity);
+        metrics.register(MetricRegistry.name(BoundedExecutor.class, name, "queue-depth"), (Gauge<Integer>) queued::get);
+        metrics.register(MetricRegistry.name(BoundedExecutor.class, name, "active"), (Gauge<Integer>) active::get);
+    }
+
+    /**
+     * Submit the task, waiting for a free place if the executor is full.
+     * @throws RejectedExecutionException if the thread is interrupted while waiting or the executor is stopped
+     */
+    @Override
+    public void execute(Runnable task) {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for a place in " + name + " executor", e);
+        }
+        queued.incrementAndGet();
+        try {
+            executorService.execute(() -> {
+                queued.decrementAndGet();
+                active.incrementAndGet();
+                try {
+                    task.run();
+                } finally {
+                    active.decrementAndGet();
+                    permits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            queued.decrementAndGet();
+            permits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public void start() {
+    }
+
+    /**
+     * Lets already submitted tasks finish and stops the threads.
+     */
+    @Override
+    public void stop() throws InterruptedException {
+        logger.debug("Stopping {} executor", name);
+        executorService.shutdown();
+        if (!executorService.awaitTermination(STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            logger.warn("{} executor did not finish {} tasks in time", name, queued.get() + active.get());
+            executorService.shutdownNow();
+        }
+    }
+}
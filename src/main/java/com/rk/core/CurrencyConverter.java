@@ -1,20 +1,22 @@
 package com.rk.core;
 
 import com.rk.api.Currency;
-import com.rk.db.dao.ExchangeRateDAO;
+import com.rk.api.Money;
 
-import java.math.BigDecimal;
-import java.util.Optional;
+import java.math.RoundingMode;
+import java.util.Objects;
 
 /**
- * Class intended to encapsulate currency conversion math
+ * Class intended to encapsulate currency conversion math. It has no state of its own, so a single instance can be
+ * shared between workers as long as its rate provider is thread-safe.
  */
 public class CurrencyConverter {
     private static final String NO_EXCHANGE_RATE_MSG = "No exchange rate info for %s->%s currencies";
-    private final ExchangeRateDAO exchangeRateDAO;
+    private final ExchangeRateProvider exchangeRateProvider;
 
-    public CurrencyConverter(ExchangeRateDAO exchangeRateDAO) {
-        this.exchangeRateDAO = exchangeRateDAO;
+    public CurrencyConverter(ExchangeRateProvider exchangeRateProvider) {
+        Objects.requireNonNull(exchangeRateProvider);
+        this.exchangeRateProvider = exchangeRateProvider;
     }
 
     public class ConvertingException extends Exception {
@@ -23,11 +25,26 @@ public class CurrencyConverter {
         }
     }
 
-    public BigDecimal convert(Currency from, Currency to, BigDecimal amount) throws ConvertingException {
-        BigDecimal multiplier = from == to
-                ? BigDecimal.ONE
-                : Optional.ofNullable(exchangeRateDAO.find(from, to))
-                .orElseThrow(() -> new ConvertingException(String.format(NO_EXCHANGE_RATE_MSG, from, to))).getRate();
-        return amount.multiply(multiplier);
+    /**
+     * @param micros non-negative amount in {@link Money} micro-units
+     * @param roundingMode how to round converted amount to micro-units
+     * @return converted amount in micro-units
+     */
+    public long convert(Currency from, Currency to, long micros, RoundingMode roundingMode) throws ConvertingException {
+        if (from == to) {
+            return micros;
+        }
+        final long multiplier = exchangeRateProvider.getRate(from, to);
+        if (multiplier == ExchangeRateProvider.NO_RATE) {
+            throw new ConvertingException(String.format(NO_EXCHANGE_RATE_MSG, from, to));
+        }
+        return Money.convert(micros, multiplier, roundingMode);
+    }
+
+    /**
+     * @return true if conversion between the currencies uses a rate derived from other rates
+     */
+    public boolean isDerived(Currency from, Currency to) {
+        return from != to && exchangeRateProvider.isDerived(from, to);
     }
 }
@@ -0,0 +1,187 @@
+package com.rk.core;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.rk.api.Currency;
+import com.rk.api.ExchangeRate;
+import com.rk.db.dao.ExchangeRateDAO;
+import io.dropwizard.hibernate.UnitOfWork;
+import io.dropwizard.lifecycle.Managed;
+import io.dropwizard.util.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Shared in-memory snapshot of all exchange rates.
+ *
+ * <p>Snapshot is an immutable {@link RateMatrix} which is replaced as a whole, so readers never lock, never allocate
+ * and always see a consistent set of rates. Direct rates are loaded on start, rates written through the API are
+ * published by {@link #put(ExchangeRate)} after their transaction commits, and all direct rates are reloaded from
+ * database every TTL to pick up rates changed directly in database. Every change rebuilds the matrix with derived
+ * inverse and cross rates.</p>
+ *
+ * <p>All changes and rebuilds are done one by one in a single background thread, so a reload which has read the table
+ * before a concurrent API write cannot hide that write, and a newer matrix is never replaced by an older one.</p>
+ */
+public class ExchangeRateCache implements ExchangeRateProvider, Managed {
+    private static final Logger logger = LoggerFactory.getLogger(ExchangeRateCache.class);
+
+    private final Supplier<? extends Collection<ExchangeRate>> loader;
+    private final Duration ttl;
+    private final Currency pivot;
+    private final Meter hits;
+    private final Meter misses;
+    private final Timer reloads;
+    private final Meter reloadFailures;
+    private final Timer rebuilds;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("exchange-rates").setDaemon(true).build());
+    private final Map<Currency, Map<Currency, BigDecimal>> directRates = new EnumMap<>(Currency.class);
+    private volatile RateMatrix matrix = RateMatrix.EMPTY;
+
+    /**
+     * Loads all exchange rates from database in its own read-only unit of work. Intended to be created with
+     * {@link io.dropwizard.hibernate.UnitOfWorkAwareProxyFactory}.
+     */
+    public static class DatabaseLoader implements Supplier<List<ExchangeRate>> {
+        private final ExchangeRateDAO exchangeRateDAO;
+
+        public DatabaseLoader(ExchangeRateDAO exchangeRateDAO) {
+            this.exchangeRateDAO = exchangeRateDAO;
+        }
+
+        @Override
+        @UnitOfWork(readOnly = true)
+        public List<ExchangeRate> get() {
+            return exchangeRateDAO.findAll();
+        }
+    }
+
+    /**
+     * @param loader supplier of all exchange rates stored in database
+     * @param ttl period of full reload, reload by timer is disabled if it is not positive
+     * @param pivot currency to derive cross rates through, cross rates are not derived if it is null
+     * @param metrics registry for hit, miss, reload and rebuild metrics
+     */
+    public ExchangeRateCache(Supplier<? extends Collection<ExchangeRate>> loader, Duration ttl, Currency pivot,
+                             MetricRegistry metrics) {
+        Objects.requireNonNull(loader);
+        Objects.requireNonNull(ttl);
+        Objects.requireNonNull(metrics);
+        this.loader = loader;
+        this.ttl = ttl;
+        this.pivot = pivot;
+        this.hits = metrics.meter(MetricRegistry.name(ExchangeRateCache.class, "hits"));
+        this.misses = metrics.meter(MetricRegistry.name(ExchangeRateCache.class, "misses"));
+        this.reloads = metrics.timer(MetricRegistry.name(ExchangeRateCache.class, "reloads"));
+        this.reloadFailures = metrics.meter(MetricRegistry.name(ExchangeRateCache.class, "reload-failures"));
+        this.rebuilds = metrics.timer(MetricRegistry.name(ExchangeRateCache.class, "rebuilds"));
+        metrics.register(MetricRegistry.name(ExchangeRateCache.class, "size"),
+                (Gauge<Integer>) () -> matrix.getDirectCount());
+        metrics.register(MetricRegistry.name(ExchangeRateCache.class, "derived"),
+                (Gauge<Integer>) () -> matrix.getDerivedCount());
+    }
+
+    @Override
+    public long getRate(Currency from, Currency to) {
+        final long rate = matrix.getRate(from, to);
+        if (rate == NO_RATE) {
+            misses.mark();
+        } else {
+            hits.mark();
+        }
+        return rate;
+    }
+
+    @Override
+    public boolean isDerived(Currency from, Currency to) {
+        return matrix.isDerived(from, to);
+    }
+
+    /**
+     * Publish new or changed exchange rate. Should be called after the rate is committed to database.
+     * @return future which is completed when the rate and rates derived from it are visible to readers
+     */
+    public CompletableFuture<Void> put(ExchangeRate exchangeRate) {
+        final Currency from = exchangeRate.getCurrencyCodeFrom();
+        final Currency to = exchangeRate.getCurrencyCodeTo();
+        final BigDecimal rate = exchangeRate.getRate();
+        return CompletableFuture.runAsync(() -> {
+            directRates.computeIfAbsent(from, currency -> new EnumMap<>(Currency.class)).put(to, rate);
+            rebuild();
+        }, executor);
+    }
+
+    /**
+     * Replace all direct rates with exchange rates currently stored in database and wait until they are visible.
+     */
+    public void reload() {
+        try {
+            CompletableFuture.runAsync(this::reloadInBackground, executor).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public void start() {
+        reload();
+        if (ttl.getQuantity() > 0) {
+            executor.scheduleWithFixedDelay(this::refresh, ttl.toMilliseconds(), ttl.toMilliseconds(),
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    private void reloadInBackground() {
+        try (Timer.Context ignored = reloads.time()) {
+            final Collection<ExchangeRate> loaded = loader.get();
+            directRates.clear();
+            for (ExchangeRate exchangeRate : loaded) {
+                directRates.computeIfAbsent(exchangeRate.getCurrencyCodeFrom(), currency -> new EnumMap<>(Currency.class))
+                        .put(exchangeRate.getCurrencyCodeTo(), exchangeRate.getRate());
+            }
+        }
+        rebuild();
+    }
+
+    private void rebuild() {
+        try (Timer.Context ignored = rebuilds.time()) {
+            matrix = RateMatrix.build(directRates, pivot);
+        }
+        logger.debug("Exchange rates rebuilt, {} direct and {} derived rates", matrix.getDirectCount(),
+                matrix.getDerivedCount());
+    }
+
+    private void refresh() {
+        try {
+            reloadInBackground();
+        } catch (RuntimeException e) {
+            reloadFailures.mark();
+            logger.warn("Unable to reload exchange rates, previous snapshot is kept", e);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.rk.core;
+
+import com.rk.api.Currency;
+import com.rk.api.Money;
+
+/**
+ * Source of exchange rates for {@link CurrencyConverter}.
+ */
+@FunctionalInterface
+public interface ExchangeRateProvider {
+    long NO_RATE = -1L;
+
+    /**
+     * @param from currency to convert from
+     * @param to currency to convert to
+     * @return multiplier in {@link Money} nano-units which converts amount in {@code from} currency to {@code to}
+     * currency or {@link #NO_RATE} if there is no exchange rate for the pair
+     */
+    long getRate(Currency from, Currency to);
+
+    /**
+     * @return true if the rate for the pair is not set explicitly but derived from other rates
+     */
+    default boolean isDerived(Currency from, Currency to) {
+        return false;
+    }
+}
@@ -0,0 +1,91 @@
+package com.rk.core;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.RatioGauge;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
+import com.rk.api.Order;
+import com.rk.api.OrderBuilder;
+import io.dropwizard.util.Duration;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded in-memory map from idempotency key to the order created by the first request with the key.
+ *
+ * <p>Entries expire after the idempotency window and the least recently used ones are evicted when the cache is full.
+ * The cache is only a shortcut: order table has a unique idempotency key column, so a key missing in the cache should be
+ * looked up in database before a new order is created. Orders are copied on put and get, so cached responses are
+ * not changed by order processing.</p>
+ */
+public class IdempotencyCache {
+    public static final String HEADER = "Idempotency-Key";
+    public static final int MAX_KEY_LENGTH = 64;
+
+    private final Duration window;
+    private final Cache<String, Order> responses;
+    private final Meter hits;
+    private final Meter misses;
+    private final Meter evictions;
+
+    /**
+     * @param window how long repeated requests get the original response
+     * @param maxKeys maximum number of cached keys
+     * @param metrics registry for hit, miss and eviction metrics
+     */
+    public IdempotencyCache(Duration window, int maxKeys, MetricRegistry metrics) {
+        Objects.requireNonNull(window);
+        Objects.requireNonNull(metrics);
+        this.window = window;
+        this.hits = metrics.meter(MetricRegistry.name(IdempotencyCache.class, "hits"));
+        this.misses = metrics.meter(MetricRegistry.name(IdempotencyCache.class, "misses"));
+        this.evictions = metrics.meter(MetricRegistry.name(IdempotencyCache.class, "evictions"));
+        this.responses = CacheBuilder.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterWrite(window.toMilliseconds(), TimeUnit.MILLISECONDS)
+                .removalListener((RemovalNotification<String, Order> notification) -> {
+                    if (notification.wasEvicted()) {
+                        evictions.mark();
+                    }
+                })
+                .build();
+        metrics.register(MetricRegistry.name(IdempotencyCache.class, "size"), (Gauge<Long>) responses::size);
+        metrics.register(MetricRegistry.name(IdempotencyCache.class, "hit-ratio"), new RatioGauge() {
+            @Override
+            protected Ratio getRatio() {
+                return Ratio.of(hits.getFifteenMinuteRate(), hits.getFifteenMinuteRate() + misses.getFifteenMinuteRate());
+            }
+        });
+    }
+
+    /**
+     * @return copy of the order created by the first request with the key or null if the key is not cached
+     */
+    public Order get(String key) {
+        final Order order = responses.getIfPresent(key);
+        if (order == null) {
+            misses.mark();
+            return null;
+        }
+        hits.mark();
+        return OrderBuilder.anOrder().copyOf(order).build();
+    }
+
+    /**
+     * Remember the order created for the key. Should be called after the order is committed.
+     */
+    public void put(String key, Order order) {
+        responses.put(key, OrderBuilder.anOrder().copyOf(order).build());
+    }
+
+    /**
+     * @return true if an order created at the given time is still within idempotency window
+     */
+    public boolean isWithinWindow(long createdAtMillis) {
+        return System.currentTimeMillis() - createdAtMillis <= window.toMilliseconds();
+    }
+}
@@ -0,0 +1,51 @@
+package com.rk.core;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.rk.api.Order;
+
+import java.util.Objects;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+
+/**
+ * Order consumer which lets at most {@code maxConcurrent} orders into the delegate at the same time, other callers
+ * wait for their turn in arrival order.
+ *
+ * <p>It limits concurrent database transactions independently of the number of threads orders are processed in, which
+ * is not bounded at all for virtual threads. Number of orders in the delegate and number of waiting ones are exposed as
+ * {@code active} and {@code waiting}.</p>
+ */
+public class LimitedOrderConsumer implements Consumer<Order> {
+    private final Consumer<Order> delegate;
+    private final Semaphore permits;
+
+    public LimitedOrderConsumer(Consumer<Order> delegate, int maxConcurrent, MetricRegistry metrics) {
+        Objects.requireNonNull(delegate);
+        Objects.requireNonNull(metrics);
+        if (maxConcurrent < 1) {
+            throw new IllegalArgumentException("Limit should be positive");
+        }
+        this.delegate = delegate;
+        this.permits = new Semaphore(maxConcurrent, true);
+        metrics.register(MetricRegistry.name(LimitedOrderConsumer.class, "active"),
+                (Gauge<Integer>) () -> maxConcurrent - permits.availablePermits());
+        metrics.register(MetricRegistry.name(LimitedOrderConsumer.class, "waiting"),
+                (Gauge<Integer>) permits::getQueueLength);
+    }
+
+    @Override
+    public void accept(Order order) {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting to process order " + order.getId(), e);
+        }
+        try {
+            delegate.accept(order);
+        } finally {
+            permits.release();
+        }
+    }
+}
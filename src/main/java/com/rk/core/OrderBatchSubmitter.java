@@ -0,0 +1,144 @@
+package com.rk.core;
+
+import com.rk.api.Order;
+import com.rk.api.OrderBatchItem;
+import com.rk.api.OrderBuilder;
+import com.rk.api.OrderStatus;
+import com.rk.db.dao.OrderDAO;
+import com.rk.messaging.MessageSender;
+import io.dropwizard.hibernate.UnitOfWork;
+import io.dropwizard.validation.ValidationMethod;
+
+import javax.jms.JMSException;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Creates a batch of orders in one transaction. Orders are validated one by one and rejected orders do not prevent
+ * other orders of the batch from being created. Accounts are checked by {@link AccountIndex}, accepted orders are
+ * inserted with JDBC batching and sent to the queue in one broker transaction right before the database transaction
+ * commits, so failed send rolls the batch back. With {@link OrderJournal} accepted orders are appended to it before
+ * they are sent.
+ */
+public class OrderBatchSubmitter {
+    private static final String NULL_ORDER_MSG = "order may not be null";
+    private static final String SENDER_NOT_FOUND_MSG = "Sender account doesn't exist";
+    private static final String RECEIVER_NOT_FOUND_MSG = "Receiver account doesn't exist";
+
+    private final OrderDAO orderDAO;
+    private final AccountIndex accountIndex;
+    private final MessageSender<Order> ordersMessageProducer;
+    private final Validator validator;
+    private final OrderJournal orderJournal;
+
+    /**
+     * @param validator validator of single orders, the same as used by Jersey for request entities
+     */
+    public OrderBatchSubmitter(OrderDAO orderDAO, AccountIndex accountIndex,
+                               MessageSender<Order> ordersMessageProducer, Validator validator) {
+        this(orderDAO, accountIndex, ordersMessageProducer, validator, null);
+    }
+
+    /**
+     * @param validator validator of single orders, the same as used by Jersey for request entities
+     * @param orderJournal journal orders are appended to before they are sent, orders are not journaled if it is null
+     */
+    public OrderBatchSubmitter(OrderDAO orderDAO, AccountIndex accountIndex,
+                               MessageSender<Order> ordersMessageProducer, Validator validator,
+                               OrderJournal orderJournal) {
+        Objects.requireNonNull(validator);
+        this.orderDAO = orderDAO;
+        this.accountIndex = accountIndex;
+        this.ordersMessageProducer = ordersMessageProducer;
+        this.validator = validator;
+        this.orderJournal = orderJournal;
+    }
+
+    /**
+     * Create all valid orders and send them for processing.
+     * @return result for every order of the batch in the same order: id of created order or validation errors,
+     * index of a result is the index of the order in the batch
+     * @throws JMSException if orders cannot be sent, no orders are created in this case
+     * @throws IOException if orders cannot be journaled, no orders are created in this case
+     */
+    @UnitOfWork
+    public List<OrderBatchItem> submit(List<Order> orders) throws JMSException, IOException {
+        final List<OrderBatchItem> items = new ArrayList<>(orders.size());
+        for (int i = 0; i < orders.size(); i++) {
+            items.add(validate(i, orders.get(i)));
+        }
+        requireAccountsExist(orders, items);
+
+        final List<Order> accepted = new ArrayList<>(orders.size());
+        for (int i = 0; i < orders.size(); i++) {
+            if (items.get(i).getErrors().isEmpty()) {
+                final Order order = orders.get(i);
+                order.setId(null);
+                order.setStatus(OrderStatus.NEW);
+                order.setDerivedRate(false);
+                order.setIdempotencyKey(null);
+                accepted.add(order);
+            }
+        }
+        orderDAO.createAll(accepted);
+        // entities stay attached to the session, in-process consumers take the references themselves
+        final List<Order> sent = new ArrayList<>(accepted.size());
+        for (Order order : accepted) {
+            sent.add(OrderBuilder.anOrder().copyOf(order).build());
+        }
+        if (orderJournal != null) {
+            orderJournal.appendAll(sent);
+        }
+        try {
+            ordersMessageProducer.sendAll(sent);
+        } catch (JMSException e) {
+            if (orderJournal != null) {
+                // the orders are rolled back with the batch
+                for (Order order : sent) {
+                    orderJournal.complete(order.getId());
+                }
+            }
+            throw e;
+        }
+
+        for (int i = 0; i < orders.size(); i++) {
+            if (items.get(i).getErrors().isEmpty()) {
+                items.get(i).setId(orders.get(i).getId());
+            }
+        }
+        return items;
+    }
+
+    private OrderBatchItem validate(int index, Order order) {
+        final OrderBatchItem item = new OrderBatchItem(index);
+        if (order == null) {
+            item.getErrors().add(NULL_ORDER_MSG);
+            return item;
+        }
+        for (ConstraintViolation<Order> violation : validator.validate(order)) {
+            final boolean isValidationMethod = violation.getConstraintDescriptor().getAnnotation()
+                    instanceof ValidationMethod;
+            item.getErrors().add(isValidationMethod
+                    ? violation.getMessage()
+                    : violation.getPropertyPath() + " " + violation.getMessage());
+        }
+        return item;
+    }
+
+    private void requireAccountsExist(List<Order> orders, List<OrderBatchItem> items) {
+        for (int i = 0; i < orders.size(); i++) {
+            final OrderBatchItem item = items.get(i);
+            if (item.getErrors().isEmpty()) {
+                final Order order = orders.get(i);
+                if (order.getSenderAccount() != null && !accountIndex.contains(order.getSenderAccount()))
+                    item.getErrors().add(SENDER_NOT_FOUND_MSG);
+                if (order.getReceiverAccount() != null && !accountIndex.contains(order.getReceiverAccount()))
+                    item.getErrors().add(RECEIVER_NOT_FOUND_MSG);
+            }
+        }
+    }
+}
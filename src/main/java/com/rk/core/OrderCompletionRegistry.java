@@ -0,0 +1,98 @@
+package com.rk.core;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.rk.api.Order;
+import com.rk.api.OrderBuilder;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-process registry of requests waiting for orders to get their final status.
+ *
+ * <p>A waiter is a future registered by order id, order processing calls {@link #complete(Order)} after the order
+ * status is committed and all waiters of the order are completed with its copy. Number of parked waiters is bounded,
+ * registration fails when the limit is reached. The registry does not know whether an order is already processed:
+ * waiter should check order status after registration, so the completion cannot be missed between the check and the
+ * registration.</p>
+ */
+public class OrderCompletionRegistry {
+    private final int maxWaiters;
+    private final Map<Integer, Set<CompletableFuture<Order>>> waiters = new ConcurrentHashMap<>();
+    private final AtomicInteger parked = new AtomicInteger();
+    private final Meter completions;
+    private final Meter rejections;
+
+    /**
+     * @param maxWaiters maximum number of parked waiters of all orders
+     * @param metrics registry for waiter metrics
+     */
+    public OrderCompletionRegistry(int maxWaiters, MetricRegistry metrics) {
+        Objects.requireNonNull(metrics);
+        this.maxWaiters = maxWaiters;
+        this.completions = metrics.meter(MetricRegistry.name(OrderCompletionRegistry.class, "completions"));
+        this.rejections = metrics.meter(MetricRegistry.name(OrderCompletionRegistry.class, "rejections"));
+        metrics.register(MetricRegistry.name(OrderCompletionRegistry.class, "parked"), (Gauge<Integer>) parked::get);
+    }
+
+    /**
+     * @return future completed with the order when it gets final status, null if too many waiters are parked
+     */
+    public CompletableFuture<Order> register(int orderId) {
+        if (parked.incrementAndGet() > maxWaiters) {
+            parked.decrementAndGet();
+            rejections.mark();
+            return null;
+        }
+        final CompletableFuture<Order> waiter = new CompletableFuture<>();
+        waiters.compute(orderId, (id, orderWaiters) -> {
+            final Set<CompletableFuture<Order>> result = orderWaiters == null
+                    ? Collections.newSetFromMap(new ConcurrentHashMap<>()) : orderWaiters;
+            result.add(waiter);
+            return result;
+        });
+        return waiter;
+    }
+
+    /**
+     * Remove the waiter if it is still parked, e.g. on timeout.
+     */
+    public void cancel(int orderId, CompletableFuture<Order> waiter) {
+        waiters.computeIfPresent(orderId, (id, orderWaiters) -> {
+            if (orderWaiters.remove(waiter)) {
+                parked.decrementAndGet();
+            }
+            return orderWaiters.isEmpty() ? null : orderWaiters;
+        });
+    }
+
+    /**
+     * Complete all waiters of the order. Should be called after the final status of the order is committed.
+     */
+    public void complete(Order order) {
+        final Set<CompletableFuture<Order>> orderWaiters = waiters.remove(order.getId());
+        if (orderWaiters == null) {
+            return;
+        }
+        final Order completed = OrderBuilder.anOrder().copyOf(order).build();
+        for (CompletableFuture<Order> waiter : orderWaiters) {
+            parked.decrementAndGet();
+            completions.mark();
+            waiter.complete(completed);
+        }
+    }
+
+    /**
+     * @return number of parked waiters
+     */
+    public int size() {
+        return parked.get();
+    }
+}
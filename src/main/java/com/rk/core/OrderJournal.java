@@ -0,0 +1,483 @@
+package com.rk.core;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.rk.api.Order;
+import com.rk.api.OrderStatus;
+import com.rk.messaging.MessageSender;
+import com.rk.messaging.OrderCodec;
+import io.dropwizard.lifecycle.Managed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jms.JMSException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only write-ahead journal of accepted orders, so orders which were sent to a non-persistent queue but not
+ * processed are sent again after a crash.
+ *
+ * <p>Journal is a directory of fixed-size segment files mapped into memory. An order is appended as an entry record
+ * with the order encoded by {@link OrderCodec} before it is sent, and a completion record with its id is appended
+ * after its final status is committed. Every record is {@code length int, CRC32 int, type byte, payload}, a zero
+ * length marks the end of written records. When a record does not fit into the rest of a segment, the segment is
+ * forced to disk and the next one is created. Segments whose entries are all complete are deleted, starting from the
+ * oldest one, so an order which is never completed keeps its segment and the following ones until the next start.</p>
+ *
+ * <p>With {@code sync} an append returns after its records are forced to disk. Appending threads do not force the
+ * segment one by one: the first waiting thread forces all records written so far while others wait, and whoever is
+ * still waiting after that forces the next group (group commit). Completion records are never waited for, a lost one
+ * only makes the order be checked on the next start.</p>
+ *
+ * <p>On start records of all segments are read until the first zero length or checksum mismatch, the rest of the
+ * last segment is cleared and appending continues there. Entries without completion are sent again by
+ * {@link #replay(IntFunction, MessageSender)}.</p>
+ */
+public class OrderJournal implements Managed {
+    private static final Logger logger = LoggerFactory.getLogger(OrderJournal.class);
+    private static final String SEGMENT_PREFIX = "orders-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private static final int HEADER_SIZE = Integer.BYTES + Integer.BYTES + Byte.BYTES;
+    private static final byte ENTRY = 1;
+    private static final byte COMPLETION = 2;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final boolean sync;
+    private final OrderCodec codec = new OrderCodec();
+    private final CRC32 crc = new CRC32();
+    private final Meter appends;
+    private final Meter completions;
+    private final Timer syncs;
+    private final Histogram syncBatches;
+
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    private final Map<Integer, Segment> pending = new HashMap<>();
+    private List<Order> recovered = Collections.emptyList();
+    private Segment active;
+    private long writtenRecords;
+
+    private final Object syncMonitor = new Object();
+    private long syncedRecords;
+    private boolean isSyncing;
+
+    private static class Segment {
+        private final long index;
+        private final Path path;
+        private FileChannel channel;
+        private MappedByteBuffer buffer;
+        private int pendingCount;
+
+        private Segment(long index, Path path) {
+            this.index = index;
+            this.path = path;
+        }
+
+        private void close() throws IOException {
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+        }
+    }
+
+    /**
+     * @param directory directory of segment files, created on start if it does not exist
+     * @param segmentSize size of a segment file in bytes, an order should fit into it
+     * @param sync if true, append waits until the records are forced to disk
+     * @param metrics registry for journal metrics
+     */
+    public OrderJournal(Path directory, int segmentSize, boolean sync, MetricRegistry metrics) {
+        Objects.requireNonNull(directory);
+        Objects.requireNonNull(metrics);
+        if (segmentSize <= HEADER_SIZE) {
+            throw new IllegalArgumentException("Segment size is too small");
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.sync = sync;
+        this.appends = metrics.meter(MetricRegistry.name(OrderJournal.class, "appends"));
+        this.completions = metrics.meter(MetricRegistry.name(OrderJournal.class, "completions"));
+        this.syncs = metrics.timer(MetricRegistry.name(OrderJournal.class, "syncs"));
+        this.syncBatches = metrics.histogram(MetricRegistry.name(OrderJournal.class, "sync-batch"));
+        metrics.register(MetricRegistry.name(OrderJournal.class, "pending"), (Gauge<Integer>) this::getPendingCount);
+        metrics.register(MetricRegistry.name(OrderJournal.class, "segments"), (Gauge<Integer>) this::getSegmentsCount);
+    }
+
+    @Override
+    public synchronized void start() throws IOException {
+        Files.createDirectories(directory);
+        final List<Path> paths;
+        try (Stream<Path> files = Files.list(directory)) {
+            paths = files.filter(OrderJournal::isSegment).sorted().collect(Collectors.toList());
+        }
+        final Map<Integer, Order> orders = new LinkedHashMap<>();
+        for (int i = 0; i < paths.size(); i++) {
+            final Path path = paths.get(i);
+            final String name = path.getFileName().toString();
+            final Segment segment = new Segment(
+                    Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())),
+                    path);
+            segment.channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            segment.buffer = segment.channel.map(FileChannel.MapMode.READ_WRITE, 0, segment.channel.size());
+            read(segment, orders);
+            segments.addLast(segment);
+            if (i < paths.size() - 1) {
+                segment.close();
+                segment.buffer = null;
+            } else {
+                clearRest(segment.buffer);
+                active = segment;
+            }
+        }
+        if (active == null) {
+            active = create(0);
+            segments.addLast(active);
+        }
+        recovered = new ArrayList<>(orders.values());
+        compact();
+        logger.info("Journal {} is opened with {} segments and {} incomplete orders", directory, segments.size(),
+                recovered.size());
+    }
+
+    private static boolean isSegment(Path path) {
+        final String name = path.getFileName().toString();
+        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+    }
+
+    /**
+     * Read records from the start of the segment and leave its buffer positioned after the last valid one.
+     */
+    private void read(Segment segment, Map<Integer, Order> orders) {
+        final MappedByteBuffer buffer = segment.buffer;
+        while (buffer.remaining() >= HEADER_SIZE) {
+            final int start = buffer.position();
+            final int length = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining() - Integer.BYTES - Byte.BYTES) {
+                if (length != 0) {
+                    logger.warn("Journal segment {} has broken record at {}, the rest is ignored", segment.path, start);
+                }
+                buffer.position(start);
+                return;
+            }
+            final int checksum = buffer.getInt();
+            final byte type = buffer.get();
+            final byte[] payload = new byte[length];
+            buffer.get(payload);
+            if (checksum(type, payload) != checksum) {
+                logger.warn("Journal segment {} has corrupted record at {}, the rest is ignored", segment.path, start);
+                buffer.position(start);
+                return;
+            }
+            if (type == ENTRY) {
+                final Order order = codec.decode(payload);
+                orders.put(order.getId(), order);
+                track(order.getId(), segment);
+            } else if (type == COMPLETION) {
+                final int orderId = ByteBuffer.wrap(payload).getInt();
+                orders.remove(orderId);
+                untrack(orderId);
+            }
+        }
+    }
+
+    private static void clearRest(MappedByteBuffer buffer) {
+        final byte[] zeros = new byte[Math.min(8192, buffer.remaining())];
+        final int position = buffer.position();
+        while (buffer.hasRemaining()) {
+            buffer.put(zeros, 0, Math.min(zeros.length, buffer.remaining()));
+        }
+        buffer.force();
+        buffer.position(position);
+    }
+
+    /**
+     * Append the order before it is sent for processing.
+     * @throws IOException if the order cannot be appended or, with {@code sync}, forced to disk
+     */
+    public void append(Order order) throws IOException {
+        appendAll(Collections.singletonList(order));
+    }
+
+    /**
+     * Append orders one after another and wait for them at once.
+     * @throws IOException if the orders cannot be appended or, with {@code sync}, forced to disk
+     */
+    public void appendAll(Collection<Order> orders) throws IOException {
+        if (orders.isEmpty()) {
+            return;
+        }
+        final List<byte[]> encoded = new ArrayList<>(orders.size());
+        for (Order order : orders) {
+            encoded.add(codec.encode(order));
+        }
+        final long lastRecord;
+        synchronized (this) {
+            if (active == null) {
+                throw new IOException("Journal " + directory + " is not started");
+            }
+            int i = 0;
+            for (Order order : orders) {
+                write(ENTRY, encoded.get(i++));
+                track(order.getId(), active);
+            }
+            lastRecord = writtenRecords;
+        }
+        appends.mark(orders.size());
+        if (sync) {
+            awaitSynced(lastRecord);
+        }
+    }
+
+    /**
+     * Append completion of the order after its final status is committed. Does nothing if the order has no
+     * incomplete entry.
+     */
+    public void complete(int orderId) {
+        synchronized (this) {
+            final Segment segment = untrack(orderId);
+            if (segment == null || active == null) {
+                return;
+            }
+            try {
+                write(COMPLETION, ByteBuffer.allocate(Integer.BYTES).putInt(orderId).array());
+                if (segment == segments.peekFirst()) {
+                    compact();
+                }
+            } catch (IOException e) {
+                logger.error("Unable to complete order_id: {} in journal, it is checked on the next start",
+                        orderId, e);
+                return;
+            }
+        }
+        completions.mark();
+    }
+
+    /**
+     * @return consumer which completes the order after the given consumer returns, i.e. after the order status is
+     * committed; the order is not completed if the consumer throws
+     */
+    public Consumer<Order> completing(Consumer<Order> consumer) {
+        Objects.requireNonNull(consumer);
+        return order -> {
+            consumer.accept(order);
+            complete(order.getId());
+        };
+    }
+
+    /**
+     * @return consumer of batches which completes all orders of a batch after the given consumer returns
+     */
+    public Consumer<List<Order>> completingAll(Consumer<List<Order>> consumer) {
+        Objects.requireNonNull(consumer);
+        return orders -> {
+            consumer.accept(orders);
+            for (Order order : orders) {
+                complete(order.getId());
+            }
+        };
+    }
+
+    /**
+     * Send orders left incomplete before the start again. Database is checked first: orders which already have final
+     * status, as well as orders which are not in database because their transaction was rolled back, are completed
+     * without sending. Sent orders stay incomplete until they are processed.
+     * @param loader loads order by id from database, returns null if there is no such order
+     * @return number of sent orders
+     * @throws JMSException if an order cannot be sent, orders which are not sent stay incomplete
+     */
+    public int replay(IntFunction<Order> loader, MessageSender<Order> sender) throws JMSException {
+        final List<Order> orders = recovered;
+        recovered = Collections.emptyList();
+        int replayed = 0;
+        for (Order order : orders) {
+            final Order stored = loader.apply(order.getId());
+            if (stored == null) {
+                logger.warn("Journaled order_id: {} is not in database, it is skipped", order.getId());
+                complete(order.getId());
+            } else if (stored.getStatus() != OrderStatus.NEW) {
+                complete(order.getId());
+            } else {
+                sender.send(order);
+                replayed++;
+            }
+        }
+        if (!orders.isEmpty()) {
+            logger.info("{} of {} incomplete orders are sent again from journal", replayed, orders.size());
+        }
+        return replayed;
+    }
+
+    /**
+     * Writes the record into the active segment, which is rolled if the record does not fit.
+     */
+    private void write(byte type, byte[] payload) throws IOException {
+        final int size = HEADER_SIZE + payload.length;
+        if (size > segmentSize) {
+            throw new IOException(String.format("Record of %d bytes does not fit into journal segment", size));
+        }
+        if (active.buffer.remaining() < size) {
+            roll();
+        }
+        crc.reset();
+        crc.update(type);
+        crc.update(payload, 0, payload.length);
+        active.buffer.putInt(payload.length).putInt((int) crc.getValue()).put(type).put(payload);
+        writtenRecords++;
+    }
+
+    private int checksum(byte type, byte[] payload) {
+        crc.reset();
+        crc.update(type);
+        crc.update(payload, 0, payload.length);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Forces the active segment, so waiters of its records do not have to, and creates the next one.
+     */
+    private void roll() throws IOException {
+        final Segment next = create(active.index + 1);
+        active.buffer.force();
+        active.close();
+        active.buffer = null;
+        active = next;
+        segments.addLast(active);
+        compact();
+    }
+
+    private Segment create(long index) throws IOException {
+        final Segment segment = new Segment(index,
+                directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX)));
+        segment.channel = FileChannel.open(segment.path,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment.buffer = segment.channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        // size of the new file is metadata, which is not forced with the mapped records
+        segment.channel.force(true);
+        return segment;
+    }
+
+    /**
+     * Deletes the oldest segments while all their entries are complete.
+     */
+    private void compact() throws IOException {
+        while (segments.peekFirst() != active && segments.peekFirst().pendingCount == 0) {
+            final Segment segment = segments.removeFirst();
+            segment.close();
+            Files.deleteIfExists(segment.path);
+            logger.debug("Journal segment {} is deleted", segment.path);
+        }
+    }
+
+    private void track(int orderId, Segment segment) {
+        final Segment previous = pending.put(orderId, segment);
+        if (previous != null) {
+            previous.pendingCount--;
+        }
+        segment.pendingCount++;
+    }
+
+    private Segment untrack(int orderId) {
+        final Segment segment = pending.remove(orderId);
+        if (segment != null) {
+            segment.pendingCount--;
+        }
+        return segment;
+    }
+
+    /**
+     * Waits until the record with the given number is forced, forcing the active segment if nobody else does.
+     */
+    private void awaitSynced(long record) throws IOException {
+        while (true) {
+            synchronized (syncMonitor) {
+                while (syncedRecords < record && isSyncing) {
+                    try {
+                        syncMonitor.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Interrupted while waiting for journal sync");
+                    }
+                }
+                if (syncedRecords >= record) {
+                    return;
+                }
+                isSyncing = true;
+            }
+            final long lastRecord;
+            final MappedByteBuffer buffer;
+            synchronized (this) {
+                lastRecord = writtenRecords;
+                // a rolled segment is forced by roll
+                buffer = active == null ? null : active.buffer;
+            }
+            boolean isSynced = false;
+            final long start = System.nanoTime();
+            try {
+                if (buffer != null) {
+                    buffer.force();
+                }
+                isSynced = true;
+            } finally {
+                synchronized (syncMonitor) {
+                    isSyncing = false;
+                    if (isSynced && lastRecord > syncedRecords) {
+                        syncBatches.update(lastRecord - syncedRecords);
+                        syncedRecords = lastRecord;
+                    }
+                    syncMonitor.notifyAll();
+                }
+            }
+            syncs.update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    public synchronized int getSegmentsCount() {
+        return segments.size();
+    }
+
+    @Override
+    public synchronized void stop() throws IOException {
+        if (active == null) {
+            return;
+        }
+        logger.info("Closing journal {} with {} incomplete orders", directory, pending.size());
+        active.buffer.force();
+        for (Segment segment : segments) {
+            segment.close();
+        }
+        segments.clear();
+        pending.clear();
+        active = null;
+    }
+}
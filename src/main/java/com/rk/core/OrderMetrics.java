@@ -0,0 +1,205 @@
+package com.rk.core;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SlidingWindowReservoir;
+import com.codahale.metrics.Timer;
+import com.rk.api.Currency;
+import com.rk.api.Order;
+import com.rk.api.OrderType;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntFunction;
+
+/**
+ * Timers of stages of order pipeline, from submission to final status. Every timer is named by stage, order type,
+ * currency pair and outcome, e.g. {@code com.rk.core.OrderMetrics.processing.pricing.TRANSFER.EUR-USD.OK}.
+ *
+ * <p>Currency pair is the currency money leaves, that is sender account currency or operation currency of income, and
+ * the currency it enters, that is receiver account currency or operation currency of outcome. Operation currency is
+ * used for an account which is not known as well. Timers are created on first use and then found by ordinals, so
+ * recording takes a few array reads besides the timer update; the currency pair is resolved once per {@link Sample}.</p>
+ */
+public class OrderMetrics {
+    public enum Stage {
+        /** check of order accounts on submission */
+        SUBMISSION_VALIDATION("submission.validation"),
+        /** order insertion into session, the statement itself is executed on commit */
+        SUBMISSION_INSERT("submission.insert"),
+        /** append to order journal, including the wait for the disk if it is synchronous */
+        SUBMISSION_JOURNAL("submission.journal"),
+        /** send to orders queue, only hand over to producer if sending is asynchronous */
+        SUBMISSION_SEND("submission.send"),
+        /** flush and commit of submission transaction */
+        SUBMISSION_COMMIT("submission.commit"),
+        /** from order creation to start of its processing attempt, includes submission commit */
+        QUEUE_WAIT("queue-wait"),
+        /** account queries of processing */
+        ACCOUNT_LOAD("processing.account-load"),
+        /** exchange rate lookups, conversions and balance checks in memory */
+        PRICING("processing.pricing"),
+        /** account updates, single-statement debit and credit for atomic posting */
+        BALANCE_UPDATE("processing.balance-update"),
+        /** flush and commit of processing transaction */
+        PROCESSING_COMMIT("processing.commit"),
+        /** from order creation to commit of its final status */
+        END_TO_END("end-to-end");
+
+        private final String metricName;
+
+        Stage(String metricName) {
+            this.metricName = metricName;
+        }
+    }
+
+    public enum Outcome {
+        /** order is created on submission, DONE on processing */
+        OK,
+        /** order is rejected on submission, FAILED on processing */
+        REJECTED,
+        /** exception, the transaction is rolled back */
+        ERROR
+    }
+
+    private static final Stage[] STAGES = Stage.values();
+    private static final OrderType[] ORDER_TYPES = OrderType.values();
+    private static final Currency[] CURRENCIES = Currency.values();
+    private static final Outcome[] OUTCOMES = Outcome.values();
+    private static final int SERIES_COUNT = ORDER_TYPES.length * CURRENCIES.length * CURRENCIES.length;
+    private static final int WINDOW_SIZE = 1028;
+    /**
+     * Default decaying reservoir takes a lock and updates a skip list on every update, which costs more than most of
+     * the stages measured; sliding window keeps the last updates in an array.
+     */
+    private static final MetricRegistry.MetricSupplier<Timer> TIMER_SUPPLIER =
+            () -> new Timer(new SlidingWindowReservoir(WINDOW_SIZE));
+
+    private final MetricRegistry metrics;
+    private final IntFunction<Currency> accountCurrencies;
+    private final AtomicReferenceArray<Timer> timers = new AtomicReferenceArray<>(
+            STAGES.length * SERIES_COUNT * OUTCOMES.length);
+
+    /**
+     * @param accountCurrencies lookup of account currency by id, returns null for unknown account
+     */
+    public OrderMetrics(IntFunction<Currency> accountCurrencies, MetricRegistry metrics) {
+        Objects.requireNonNull(accountCurrencies);
+        Objects.requireNonNull(metrics);
+        this.accountCurrencies = accountCurrencies;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Durations of stages of one order, recorded together once the outcome is known. Not thread-safe.
+     */
+    public static class Sample {
+        /**
+         * Sample which ignores everything, for code paths with metrics turned off.
+         */
+        public static final Sample NONE = new Sample(null, null);
+
+        private final OrderMetrics orderMetrics;
+        private final Order order;
+        private final int seriesIndex;
+        private final long[] nanos;
+        private long mark;
+
+        private Sample(OrderMetrics orderMetrics, Order order) {
+            this.orderMetrics = orderMetrics;
+            this.order = order;
+            this.seriesIndex = orderMetrics == null ? 0 : orderMetrics.seriesIndex(order);
+            this.nanos = orderMetrics == null ? null : new long[STAGES.length];
+            this.mark = orderMetrics == null ? 0 : System.nanoTime();
+        }
+
+        /**
+         * Add time since the previous lap, or since the sample is started, to the stage.
+         */
+        public void lap(Stage stage) {
+            if (orderMetrics != null) {
+                final long now = System.nanoTime();
+                nanos[stage.ordinal()] += now - mark;
+                mark = now;
+            }
+        }
+
+        /**
+         * Add time measured elsewhere, e.g. shared by a batch of orders, to the stage.
+         */
+        public void add(Stage stage, long nanos) {
+            if (orderMetrics != null) {
+                this.nanos[stage.ordinal()] += nanos;
+            }
+        }
+
+        /**
+         * Add time from order creation until now to the stage, nothing is added if the order has no creation date.
+         */
+        public void sinceCreation(Stage stage) {
+            if (orderMetrics != null && order.getCreationDate() != null) {
+                nanos[stage.ordinal()] += TimeUnit.MILLISECONDS.toNanos(
+                        System.currentTimeMillis() - order.getCreationDate().getTime());
+            }
+        }
+
+        /**
+         * Record every stage added to the sample.
+         */
+        public void record(Outcome outcome) {
+            if (orderMetrics == null) {
+                return;
+            }
+            for (int i = 0; i < nanos.length; i++) {
+                if (nanos[i] > 0) {
+                    orderMetrics.timer(STAGES[i], seriesIndex, outcome, order).update(nanos[i], TimeUnit.NANOSECONDS);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return new sample of the order started now
+     */
+    public Sample sample(Order order) {
+        return new Sample(this, order);
+    }
+
+    public void record(Stage stage, Order order, Outcome outcome, long duration, TimeUnit unit) {
+        timer(stage, order, outcome).update(duration, unit);
+    }
+
+    public Timer timer(Stage stage, Order order, Outcome outcome) {
+        return timer(stage, seriesIndex(order), outcome, order);
+    }
+
+    /**
+     * @return index of order type and currency pair
+     */
+    private int seriesIndex(Order order) {
+        final Currency source = currencyOf(order.getOrderType().isOutgoing() ? order.getSenderAccount() : null, order);
+        final Currency target = currencyOf(order.getOrderType().isIngoing() ? order.getReceiverAccount() : null, order);
+        return (order.getOrderType().ordinal() * CURRENCIES.length + source.ordinal()) * CURRENCIES.length
+                + target.ordinal();
+    }
+
+    private Timer timer(Stage stage, int seriesIndex, Outcome outcome, Order order) {
+        final int index = (stage.ordinal() * SERIES_COUNT + seriesIndex) * OUTCOMES.length + outcome.ordinal();
+        Timer timer = timers.get(index);
+        if (timer == null) {
+            final int pairIndex = seriesIndex % (CURRENCIES.length * CURRENCIES.length);
+            // registry returns the same timer to concurrent callers
+            timer = metrics.timer(MetricRegistry.name(OrderMetrics.class, stage.metricName,
+                    order.getOrderType().name(),
+                    CURRENCIES[pairIndex / CURRENCIES.length].name() + "-" + CURRENCIES[pairIndex % CURRENCIES.length].name(),
+                    outcome.name()), TIMER_SUPPLIER);
+            timers.set(index, timer);
+        }
+        return timer;
+    }
+
+    private Currency currencyOf(Integer accountId, Order order) {
+        final Currency currency = accountId == null ? null : accountCurrencies.apply(accountId);
+        return currency == null ? order.getOperationCurrency() : currency;
+    }
+}
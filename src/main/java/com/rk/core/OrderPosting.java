@@ -0,0 +1,254 @@
+package com.rk.core;
+
+import com.rk.api.Account;
+import com.rk.api.AccountEvent;
+import com.rk.api.Currency;
+import com.rk.api.Money;
+import com.rk.api.Order;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.IntFunction;
+
+/**
+ * In-memory part of order processing: checks order against accounts and changes their balances.
+ * All checks and conversions are done before any balance is changed, so accounts are either changed completely or
+ * not changed at all. The class is not aware of persistence, changed accounts should be saved by caller.
+ *
+ * <p>All amounts are {@link Money} micro-units. Converted amounts are rounded with {@link #CONVERSION_ROUNDING} both
+ * for sender and receiver, so posting does not allocate unless the order is rejected or debug logging is on.</p>
+ */
+public class OrderPosting {
+    private static final int DISPLAY_AND_COMPARE_SCALE = 2;
+    public static final RoundingMode CONVERSION_ROUNDING = RoundingMode.HALF_EVEN;
+    public static final String SENDER_ACCOUNT_DOES_NOT_EXIST_MSG = "Sender account with id: %s does not exist";
+    public static final String RECEIVER_ACCOUNT_DOES_NOT_EXIST_MSG = "Receiver account with id: %s does not exist";
+    public static final String INSUFFICIENT_FUNDS_MSG = "Insufficient funds. '%s' is required, '%s' is available";
+    public static final String AMOUNT_OUT_OF_RANGE_MSG = "Amount is out of range";
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderPosting.class);
+    private static final NumberFormat currencyFormat = NumberFormat.getCurrencyInstance();
+
+    private final CurrencyConverter converter;
+
+    public OrderPosting(CurrencyConverter converter) {
+        this.converter = converter;
+    }
+
+    public static class PostingException extends Exception {
+        private PostingException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Sums an order changes balances by, in currencies of the accounts. Account id is null if the order does not
+     * change its balance.
+     */
+    public static class Amounts {
+        private final Integer senderId;
+        private final long debit;
+        private final Integer receiverId;
+        private final long credit;
+
+        private Amounts(Integer senderId, long debit, Integer receiverId, long credit) {
+            this.senderId = senderId;
+            this.debit = debit;
+            this.receiverId = receiverId;
+            this.credit = credit;
+        }
+
+        public Integer getSenderId() {
+            return senderId;
+        }
+
+        /**
+         * @return micro-units to subtract from sender balance
+         */
+        public long getDebit() {
+            return debit;
+        }
+
+        public Integer getReceiverId() {
+            return receiverId;
+        }
+
+        /**
+         * @return micro-units to add to receiver balance
+         */
+        public long getCredit() {
+            return credit;
+        }
+
+        /**
+         * @param orderId id of the order the sums are of
+         * @param accounts lookup of changed accounts by id, their balances should be already changed by the order
+         * @return debit and credit events of the order
+         */
+        public List<AccountEvent> toEvents(int orderId, IntFunction<Account> accounts) {
+            final List<AccountEvent> events = new ArrayList<>(2);
+            if (senderId != null) {
+                final Account sender = accounts.apply(senderId);
+                // balance right after the debit, receiver of the order may be the same account
+                final long balance = senderId.equals(receiverId)
+                        ? sender.getBalanceMicros() - credit : sender.getBalanceMicros();
+                events.add(new AccountEvent(AccountEvent.Type.DEBIT, senderId, orderId, sender.getCurrency(), debit,
+                        balance));
+            }
+            if (receiverId != null) {
+                final Account receiver = accounts.apply(receiverId);
+                events.add(new AccountEvent(AccountEvent.Type.CREDIT, receiverId, orderId, receiver.getCurrency(),
+                        credit, receiver.getBalanceMicros()));
+            }
+            return events;
+        }
+    }
+
+    /**
+     * Converts order amount to currencies of its accounts without loading the accounts and marks order if any of the
+     * used exchange rates was derived. Balances are neither checked nor changed, it is left to the caller.
+     * @param order order to price
+     * @param currencies lookup of account currency by id, returns null for non-existent account
+     * @throws PostingException if an account does not exist or amount cannot be converted
+     */
+    public Amounts price(Order order, IntFunction<Currency> currencies) throws PostingException {
+        Integer senderId = null;
+        Integer receiverId = null;
+        long debit = 0;
+        long credit = 0;
+        boolean derivedRate = false;
+
+        try {
+            if (order.getOrderType().isOutgoing()) {
+                senderId = order.getSenderAccount();
+                final Currency currency = Optional.ofNullable(currencies.apply(senderId))
+                        .orElseThrow(() -> new PostingException(
+                                String.format(SENDER_ACCOUNT_DOES_NOT_EXIST_MSG, order.getSenderAccount())));
+                debit = converter.convert(order.getOperationCurrency(), currency, order.getAmountMicros(),
+                        CONVERSION_ROUNDING);
+                derivedRate = converter.isDerived(order.getOperationCurrency(), currency);
+            }
+
+            if (order.getOrderType().isIngoing()) {
+                receiverId = order.getReceiverAccount();
+                final Currency currency = Optional.ofNullable(currencies.apply(receiverId))
+                        .orElseThrow(() -> new PostingException(
+                                String.format(RECEIVER_ACCOUNT_DOES_NOT_EXIST_MSG, order.getReceiverAccount())));
+                credit = converter.convert(order.getOperationCurrency(), currency, order.getAmountMicros(),
+                        CONVERSION_ROUNDING);
+                derivedRate |= converter.isDerived(order.getOperationCurrency(), currency);
+            }
+        } catch (CurrencyConverter.ConvertingException e) {
+            throw new PostingException(e.getMessage());
+        } catch (ArithmeticException e) {
+            throw new PostingException(AMOUNT_OUT_OF_RANGE_MSG);
+        }
+
+        order.setDerivedRate(derivedRate);
+        return new Amounts(senderId, debit, receiverId, credit);
+    }
+
+    /**
+     * Applies order to accounts and marks order if any of the used exchange rates was derived.
+     * @param order order to apply
+     * @param accounts lookup of accounts by id, returns null for non-existent account
+     * @return accounts which balances were changed
+     * @throws PostingException if order cannot be applied, accounts are not changed in this case
+     */
+    public List<Account> apply(Order order, IntFunction<Account> accounts) throws PostingException {
+        final List<Account> changed = new ArrayList<>(2);
+        apply(order, accounts, changed);
+        return changed;
+    }
+
+    /**
+     * Applies order to accounts like {@link #apply(Order, IntFunction)} and reports sums balances were changed by.
+     * @param changed list changed accounts are added to
+     * @return sums the balances were changed by
+     * @throws PostingException if order cannot be applied, accounts are not changed in this case
+     */
+    public Amounts apply(Order order, IntFunction<Account> accounts, List<Account> changed) throws PostingException {
+        Account sender = null;
+        Account receiver = null;
+        long requiredFromSender = 0;
+        long transferToReceiver = 0;
+        boolean derivedRate = false;
+
+        try {
+            if (order.getOrderType().isOutgoing()) {
+                sender = Optional.ofNullable(accounts.apply(order.getSenderAccount()))
+                        .orElseThrow(() -> new PostingException(
+                                String.format(SENDER_ACCOUNT_DOES_NOT_EXIST_MSG, order.getSenderAccount())));
+                requiredFromSender = converter.convert(order.getOperationCurrency(), sender.getCurrency(),
+                        order.getAmountMicros(), CONVERSION_ROUNDING);
+                derivedRate = converter.isDerived(order.getOperationCurrency(), sender.getCurrency());
+                assertBalanceIsSufficient(sender, requiredFromSender);
+            }
+
+            if (order.getOrderType().isIngoing()) {
+                receiver = Optional.ofNullable(accounts.apply(order.getReceiverAccount()))
+                        .orElseThrow(() -> new PostingException(
+                                String.format(RECEIVER_ACCOUNT_DOES_NOT_EXIST_MSG, order.getReceiverAccount())));
+                transferToReceiver = converter.convert(order.getOperationCurrency(), receiver.getCurrency(),
+                        order.getAmountMicros(), CONVERSION_ROUNDING);
+                derivedRate |= converter.isDerived(order.getOperationCurrency(), receiver.getCurrency());
+                // fail before any balance is changed if credited balance overflows
+                Money.add(receiver.getBalanceMicros(), transferToReceiver);
+            }
+        } catch (CurrencyConverter.ConvertingException e) {
+            throw new PostingException(e.getMessage());
+        } catch (ArithmeticException e) {
+            throw new PostingException(AMOUNT_OUT_OF_RANGE_MSG);
+        }
+
+        order.setDerivedRate(derivedRate);
+        if (sender != null) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Decreasing balance of {} by {}", sender.getId(), formatCurrency(requiredFromSender, sender.getCurrency()));
+            }
+            sender.setBalanceMicros(Money.subtract(sender.getBalanceMicros(), requiredFromSender));
+            changed.add(sender);
+        }
+        if (receiver != null) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Increasing balance of {} by {}", receiver.getId(), formatCurrency(transferToReceiver, receiver.getCurrency()));
+            }
+            receiver.setBalanceMicros(Money.add(receiver.getBalanceMicros(), transferToReceiver));
+            changed.add(receiver);
+        }
+        return new Amounts(sender == null ? null : sender.getId(), requiredFromSender,
+                receiver == null ? null : receiver.getId(), transferToReceiver);
+    }
+
+    private void assertBalanceIsSufficient(Account account, long required) throws PostingException {
+        logger.debug("Checking balance of {}", account.getId());
+        if (account.getBalanceMicros() < required) {
+            throw insufficientFunds(account.getCurrency(), required, account.getBalanceMicros());
+        }
+        logger.debug("Balance of {} is sufficient", account.getId());
+    }
+
+    /**
+     * @param required micro-units required from the account
+     * @param available balance of the account in micro-units
+     * @return rejection of an order which requires more than the account has
+     */
+    public static PostingException insufficientFunds(Currency currency, long required, long available) {
+        final BigDecimal requiredRounded = BigDecimal.valueOf(
+                Money.round(required, DISPLAY_AND_COMPARE_SCALE, RoundingMode.UP), DISPLAY_AND_COMPARE_SCALE);
+        final BigDecimal availableRounded = BigDecimal.valueOf(
+                Money.round(available, DISPLAY_AND_COMPARE_SCALE, RoundingMode.DOWN), DISPLAY_AND_COMPARE_SCALE);
+        return new PostingException(String.format(INSUFFICIENT_FUNDS_MSG,
+                requiredRounded.toString() + currency.toString(), availableRounded.toString()));
+    }
+
+    private String formatCurrency(long micros, Currency currency) {
+        return currencyFormat.format(Money.toBigDecimal(micros)) + currency.toString();
+    }
+}
@@ -1,20 +1,17 @@
 package com.rk.core;
 
 import com.rk.api.Account;
-import com.rk.api.Currency;
+import com.rk.api.AccountEvent;
 import com.rk.api.Order;
 import com.rk.api.OrderStatus;
 import com.rk.db.dao.AccountDAO;
-import com.rk.db.dao.ExchangeRateDAO;
 import com.rk.db.dao.OrderDAO;
 import io.dropwizard.hibernate.UnitOfWork;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
-import java.text.NumberFormat;
-import java.util.Optional;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.Consumer;
 
 /**
@@ -28,102 +25,198 @@ import java.util.function.Consumer;
  * </ul>
  * <p>* Exchange rates can change between order submission and processing. Order processing will not do anything with that. Calculations are
  * performed with current exchange rate.</p>
+ * <p>Changed accounts are published to {@link AccountCache}, processed order to {@link OrderCompletionRegistry} and
+ * balance changes to {@link AccountEventFeed} after the transaction commits.</p>
+ * <p>With atomic posting accounts are not loaded: amounts are converted to account currencies known to
+ * {@link AccountIndex} and balances are changed by single-statement {@link AccountDAO#debit(int, long)} and
+ * {@link AccountDAO#credit(int, long)}, the debit fails if balance is insufficient. Such updates do not conflict with
+ * each other, concurrent orders of the same account just wait for each other's row update. An order which fails
+ * after the sender is debited throws {@link RejectAfterRollbackException} instead of failing in its transaction.</p>
  */
 public class OrderProcessingWorker implements Consumer<Order> {
-    private static final int DISPLAY_AND_COMPARE_SCALE = 2;
-    public static final String SENDER_ACCOUNT_DOES_NOT_EXIST_MSG = "Sender account with id: %s does not exist";
-    public static final String RECEIVER_ACCOUNT_DOES_NOT_EXIST_MSG = "Receiver account with id: %s does not exist";
-    public static final String INSUFFICIENT_FUNDS_MSG = "Insufficient funds. '%s' is required, '%s' is available";
-
     private final Logger logger = LoggerFactory.getLogger(getClass().getName());
 
-    private static final NumberFormat currencyFormat = NumberFormat.getCurrencyInstance();
+    /**
+     * Order can not be posted and its transaction must be rolled back, because balances are changed already. The order
+     * should be marked FAILED by {@link #reject(Order, String)} in a new unit of work.
+     */
+    public static class RejectAfterRollbackException extends RuntimeException {
+        public RejectAfterRollbackException(String message) {
+            super(message);
+        }
+    }
 
     private final OrderDAO orderDAO;
     private final AccountDAO accountDAO;
-    private final ExchangeRateDAO exchangeRateDAO;
-
-    public OrderProcessingWorker(OrderDAO orderDAO, AccountDAO accountDAO, ExchangeRateDAO exchangeRateDAO) {
+    private final CurrencyConverter currencyConverter;
+    private final AccountCache accountCache;
+    private final OrderCompletionRegistry completionRegistry;
+    private final AccountEventFeed eventFeed;
+    private final OrderMetrics orderMetrics;
+    private final AccountIndex accountIndex;
+    private final boolean isAtomicPosting;
+
+    /**
+     * @param accountCache cache to publish committed accounts to, nothing is published if it is null
+     * @param completionRegistry registry to notify about processed orders after commit, ignored if it is null
+     * @param eventFeed feed to publish committed balance changes to, ignored if it is null
+     * @param orderMetrics timers of processing stages, nothing is measured if it is null
+     * @param accountIndex currencies of accounts for atomic posting, may be null without it
+     * @param isAtomicPosting whether orders are posted by atomic balance updates instead of loaded accounts
+     */
+    public OrderProcessingWorker(OrderDAO orderDAO, AccountDAO accountDAO, CurrencyConverter currencyConverter,
+                                 AccountCache accountCache, OrderCompletionRegistry completionRegistry,
+                                 AccountEventFeed eventFeed, OrderMetrics orderMetrics, AccountIndex accountIndex,
+                                 boolean isAtomicPosting) {
+        if (isAtomicPosting && accountIndex == null) {
+            throw new IllegalArgumentException("Atomic posting requires account index");
+        }
         this.orderDAO = orderDAO;
         this.accountDAO = accountDAO;
-        this.exchangeRateDAO = exchangeRateDAO;
-    }
-
-    private class TransferFailException extends Exception {
-        private TransferFailException(String message) {
-            super(message);
-        }
+        this.currencyConverter = currencyConverter;
+        this.accountCache = accountCache;
+        this.completionRegistry = completionRegistry;
+        this.eventFeed = eventFeed;
+        this.orderMetrics = orderMetrics;
+        this.accountIndex = accountIndex;
+        this.isAtomicPosting = isAtomicPosting;
     }
 
     @Override
     @UnitOfWork
     public void accept(Order order) {
         logger.debug("Start order processing job for order_id: {}", order.getId());
-        final CurrencyConverter converter = new CurrencyConverter(exchangeRateDAO);
+        final OrderMetrics.Sample sample = orderMetrics == null
+                ? OrderMetrics.Sample.NONE : orderMetrics.sample(order);
+        sample.sinceCreation(OrderMetrics.Stage.QUEUE_WAIT);
+        final OrderPosting posting = new OrderPosting(currencyConverter);
 
         try {
-            Account sender = null;
-            Account receiver = null;
-            if (order.getOrderType().isOutgoing()) {
-                sender = Optional.ofNullable(accountDAO.findById(order.getSenderAccount()))
-                        .orElseThrow(() -> new TransferFailException(
-                                String.format(SENDER_ACCOUNT_DOES_NOT_EXIST_MSG, order.getSenderAccount())));
-                decreaseSenderBalance(sender, converter, order);
-            }
-
-            if (order.getOrderType().isIngoing()) {
-                receiver = Optional.ofNullable(accountDAO.findById(order.getReceiverAccount()))
-                        .orElseThrow(() -> new TransferFailException(
-                                String.format(RECEIVER_ACCOUNT_DOES_NOT_EXIST_MSG, order.getReceiverAccount())));
-                increaseReceiverBalance(receiver, converter, order);
+            if (isAtomicPosting) {
+                postAtomically(order, posting, sample);
+            } else {
+                post(order, posting, sample);
             }
-
-            if (sender != null) accountDAO.update(sender);
-            if (receiver != null) accountDAO.update(receiver);
-
             order.setStatus(OrderStatus.DONE);
-        } catch (TransferFailException | CurrencyConverter.ConvertingException e) {
+        } catch (OrderPosting.PostingException e) {
+            sample.lap(OrderMetrics.Stage.PRICING);
             logger.warn("Error during order processing with message: {}", e);
             order.setStatus(OrderStatus.FAILED);
             order.setDescription(e.getMessage());
         } finally {
             logger.debug("Finish order processing job for order_id: {}", order.getId());
             orderDAO.update(order);
+            notifyAfterCommit(order);
+            if (orderMetrics != null) {
+                recordAfterCompletion(order, sample);
+            }
         }
     }
 
-    private void decreaseSenderBalance(Account sender, CurrencyConverter converter, Order order)
-            throws TransferFailException, CurrencyConverter.ConvertingException {
-        BigDecimal requiredFromSender = converter.convert(order.getOperationCurrency(), sender.getCurrency(), order.getAmount());
-        assertBalanceIsSufficient(sender, requiredFromSender);
-        if (logger.isDebugEnabled()) {
-            logger.debug("Decreasing balance of {} by {}", sender.getId(), formatCurrency(requiredFromSender, sender.getCurrency()));
+    private void post(Order order, OrderPosting posting, OrderMetrics.Sample sample)
+            throws OrderPosting.PostingException {
+        final List<Account> changed = new ArrayList<>(2);
+        // time between account loads is spent on pricing
+        final OrderPosting.Amounts amounts = posting.apply(order, orderMetrics == null ? accountDAO::findById : id -> {
+            sample.lap(OrderMetrics.Stage.PRICING);
+            final Account account = accountDAO.findById(id);
+            sample.lap(OrderMetrics.Stage.ACCOUNT_LOAD);
+            return account;
+        }, changed);
+        sample.lap(OrderMetrics.Stage.PRICING);
+        for (Account account : changed) {
+            accountDAO.update(account);
         }
-        sender.setBalance(sender.getBalance().subtract(requiredFromSender));
+        sample.lap(OrderMetrics.Stage.BALANCE_UPDATE);
+        publishAfterCommit(order, amounts, changed);
     }
 
-    private void increaseReceiverBalance(Account receiver, CurrencyConverter converter, Order order)
-            throws CurrencyConverter.ConvertingException {
-        BigDecimal transferToReceiver = converter.convert(order.getOperationCurrency(), receiver.getCurrency(), order.getAmount());
-        if (logger.isDebugEnabled()) {
-            logger.debug("Increasing balance of {} by {}", receiver.getId(), formatCurrency(transferToReceiver, receiver.getCurrency()));
+    private void postAtomically(Order order, OrderPosting posting, OrderMetrics.Sample sample)
+            throws OrderPosting.PostingException {
+        final OrderPosting.Amounts amounts = posting.price(order, accountIndex::getCurrency);
+        sample.lap(OrderMetrics.Stage.PRICING);
+        final List<Integer> changedIds = new ArrayList<>(2);
+        if (amounts.getSenderId() != null) {
+            final int senderId = amounts.getSenderId();
+            final boolean isDebited = accountDAO.debit(senderId, amounts.getDebit());
+            sample.lap(OrderMetrics.Stage.BALANCE_UPDATE);
+            if (!isDebited) {
+                final Long available = accountDAO.findBalanceMicros(senderId);
+                sample.lap(OrderMetrics.Stage.ACCOUNT_LOAD);
+                throw OrderPosting.insufficientFunds(accountIndex.getCurrency(senderId), amounts.getDebit(),
+                        available == null ? 0 : available);
+            }
+            changedIds.add(senderId);
         }
-        receiver.setBalance(receiver.getBalance().add(transferToReceiver));
+        if (amounts.getReceiverId() != null) {
+            final int receiverId = amounts.getReceiverId();
+            if (!accountDAO.credit(receiverId, amounts.getCredit())) {
+                // sender may be debited already, so the transaction must be rolled back
+                throw new RejectAfterRollbackException(
+                        String.format(OrderPosting.RECEIVER_ACCOUNT_DOES_NOT_EXIST_MSG, receiverId));
+            }
+            sample.lap(OrderMetrics.Stage.BALANCE_UPDATE);
+            changedIds.add(receiverId);
+        }
+        if (accountCache != null || eventFeed != null) {
+            final List<Account> changed = accountDAO.findDetachedByIds(changedIds);
+            sample.lap(OrderMetrics.Stage.ACCOUNT_LOAD);
+            publishAfterCommit(order, amounts, changed);
+        }
+    }
+
+    /**
+     * Flush and commit are done by unit of work after the worker returns, so they are timed by transaction completion.
+     */
+    private void recordAfterCompletion(Order order, OrderMetrics.Sample sample) {
+        orderDAO.afterCompletion(isCommitted -> {
+            sample.lap(OrderMetrics.Stage.PROCESSING_COMMIT);
+            final OrderMetrics.Outcome outcome;
+            if (!isCommitted) {
+                outcome = OrderMetrics.Outcome.ERROR;
+            } else {
+                sample.sinceCreation(OrderMetrics.Stage.END_TO_END);
+                outcome = order.getStatus() == OrderStatus.DONE
+                        ? OrderMetrics.Outcome.OK : OrderMetrics.Outcome.REJECTED;
+            }
+            sample.record(outcome);
+        });
     }
 
-    private void assertBalanceIsSufficient(Account account, BigDecimal required) throws TransferFailException {
-        logger.debug("Checking balance of {}", account.getId());
-        if (account.getBalance().compareTo(required) < 0) {
-            final BigDecimal requiredFromSenderRounded = required.setScale(DISPLAY_AND_COMPARE_SCALE, RoundingMode.UP);
-            final BigDecimal senderActualRounded = account.getBalance().setScale(DISPLAY_AND_COMPARE_SCALE, RoundingMode.DOWN);
-            throw new TransferFailException(String.format(INSUFFICIENT_FUNDS_MSG,
-                    requiredFromSenderRounded.toString() + account.getCurrency().toString(),
-                    senderActualRounded.toString()));
+    private void publishAfterCommit(Order order, OrderPosting.Amounts amounts, List<Account> changed) {
+        if (accountCache != null) {
+            accountDAO.afterCommit(() -> accountCache.putAll(changed));
+        }
+        if (eventFeed != null) {
+            final List<AccountEvent> events = amounts.toEvents(order.getId(), id -> find(changed, id));
+            accountDAO.afterCommit(() -> eventFeed.publish(events));
         }
-        logger.debug("Balance of {} is sufficient", account.getId());
     }
 
-    private String formatCurrency(BigDecimal value, Currency currency) {
-        return currencyFormat.format(value.doubleValue()) + currency.toString();
+    private static Account find(List<Account> accounts, int id) {
+        for (Account account : accounts) {
+            if (account.getId() == id) {
+                return account;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Mark the order FAILED without processing it.
+     */
+    @UnitOfWork
+    public void reject(Order order, String description) {
+        logger.debug("Rejecting order_id: {} with message: {}", order.getId(), description);
+        order.setStatus(OrderStatus.FAILED);
+        order.setDescription(description);
+        orderDAO.update(order);
+        notifyAfterCommit(order);
+    }
+
+    private void notifyAfterCommit(Order order) {
+        if (completionRegistry != null) {
+            orderDAO.afterCommit(() -> completionRegistry.complete(order));
+        }
     }
 }
@@ -0,0 +1,105 @@
+package com.rk.core;
+
+import com.rk.api.Currency;
+import com.rk.api.Money;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Map;
+
+/**
+ * Immutable dense table of exchange rates for every pair of currencies, indexed by {@link Currency#ordinal()}.
+ *
+ * <p>Matrix is built from direct rates. Missing pairs are derived: first as an inverse of the opposite direct rate,
+ * then as a cross rate through the pivot currency, where both legs may be direct or inverse rates themselves. Direct
+ * rate always wins over a derived one. Derived rates are calculated with {@link MathContext#DECIMAL64} precision, then
+ * all rates are stored as {@link Money} nano-units, so lookups do not allocate.</p>
+ */
+public final class RateMatrix implements ExchangeRateProvider {
+    private static final MathContext DERIVED_RATE_PRECISION = MathContext.DECIMAL64;
+    private static final int CURRENCIES_COUNT = Currency.values().length;
+
+    public static final RateMatrix EMPTY = new RateMatrix(new BigDecimal[CURRENCIES_COUNT][CURRENCIES_COUNT],
+            new boolean[CURRENCIES_COUNT][CURRENCIES_COUNT], 0, 0);
+
+    private final long[][] rates;
+    private final boolean[][] derived;
+    private final int directCount;
+    private final int derivedCount;
+
+    private RateMatrix(BigDecimal[][] rates, boolean[][] derived, int directCount, int derivedCount) {
+        this.rates = new long[CURRENCIES_COUNT][CURRENCIES_COUNT];
+        for (int from = 0; from < CURRENCIES_COUNT; from++) {
+            for (int to = 0; to < CURRENCIES_COUNT; to++) {
+                this.rates[from][to] = rates[from][to] == null ? NO_RATE : Money.toRate(rates[from][to]);
+            }
+        }
+        this.derived = derived;
+        this.directCount = directCount;
+        this.derivedCount = derivedCount;
+    }
+
+    /**
+     * @param directRates rates set explicitly, by source and target currency
+     * @param pivot currency to derive cross rates through, cross rates are not derived if it is null
+     * @return matrix of direct and derived rates
+     */
+    public static RateMatrix build(Map<Currency, Map<Currency, BigDecimal>> directRates, Currency pivot) {
+        final BigDecimal[][] rates = new BigDecimal[CURRENCIES_COUNT][CURRENCIES_COUNT];
+        final boolean[][] derived = new boolean[CURRENCIES_COUNT][CURRENCIES_COUNT];
+        int directCount = 0;
+        int derivedCount = 0;
+
+        for (Map.Entry<Currency, Map<Currency, BigDecimal>> row : directRates.entrySet()) {
+            for (Map.Entry<Currency, BigDecimal> cell : row.getValue().entrySet()) {
+                if (row.getKey() != cell.getKey()) {
+                    rates[row.getKey().ordinal()][cell.getKey().ordinal()] = cell.getValue();
+                    directCount++;
+                }
+            }
+        }
+
+        for (int from = 0; from < CURRENCIES_COUNT; from++) {
+            for (int to = 0; to < CURRENCIES_COUNT; to++) {
+                if (from != to && rates[from][to] == null && rates[to][from] != null) {
+                    rates[from][to] = BigDecimal.ONE.divide(rates[to][from], DERIVED_RATE_PRECISION);
+                    derived[from][to] = true;
+                    derivedCount++;
+                }
+            }
+        }
+
+        if (pivot != null) {
+            final int p = pivot.ordinal();
+            for (int from = 0; from < CURRENCIES_COUNT; from++) {
+                for (int to = 0; to < CURRENCIES_COUNT; to++) {
+                    if (from != to && from != p && to != p && rates[from][to] == null
+                            && rates[from][p] != null && rates[p][to] != null) {
+                        rates[from][to] = rates[from][p].multiply(rates[p][to], DERIVED_RATE_PRECISION);
+                        derived[from][to] = true;
+                        derivedCount++;
+                    }
+                }
+            }
+        }
+        return new RateMatrix(rates, derived, directCount, derivedCount);
+    }
+
+    @Override
+    public long getRate(Currency from, Currency to) {
+        return rates[from.ordinal()][to.ordinal()];
+    }
+
+    @Override
+    public boolean isDerived(Currency from, Currency to) {
+        return derived[from.ordinal()][to.ordinal()];
+    }
+
+    public int getDirectCount() {
+        return directCount;
+    }
+
+    public int getDerivedCount() {
+        return derivedCount;
+    }
+}
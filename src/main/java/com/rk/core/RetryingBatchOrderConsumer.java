@@ -0,0 +1,117 @@
+package com.rk.core;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.rk.api.Order;
+import com.rk.api.OrderBuilder;
+import io.dropwizard.util.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Batch counterpart of {@link RetryingOrderConsumer}: processes a batch again when its transaction is rolled back
+ * because an account was changed by a concurrent batch.
+ *
+ * <p>Every attempt gets fresh copies of the received orders, pauses between attempts are random up to the backoff,
+ * which is doubled after every conflict up to the maximum. When retries of the batch are exhausted, its orders are
+ * processed one by one with the same retries, so only the orders which keep conflicting are marked FAILED and the
+ * batch is not redelivered again and again. Any other failure is not retried.</p>
+ */
+public class RetryingBatchOrderConsumer implements Consumer<List<Order>> {
+    private static final Logger logger = LoggerFactory.getLogger(RetryingBatchOrderConsumer.class);
+
+    private final BatchOrderProcessingWorker worker;
+    private final int maxRetries;
+    private final long backoffMs;
+    private final long maxBackoffMs;
+    private final Meter conflicts;
+    private final Meter exhausted;
+    private final Histogram retries;
+
+    /**
+     * @param worker worker which processes every batch in its own unit of work
+     * @param maxRetries how many times a batch, and then each of its orders, is retried after conflicts
+     * @param backoff backoff before the first retry
+     * @param maxBackoff upper bound of backoff
+     * @param metrics registry for conflict and retry metrics
+     */
+    public RetryingBatchOrderConsumer(BatchOrderProcessingWorker worker, int maxRetries, Duration backoff,
+                                      Duration maxBackoff, MetricRegistry metrics) {
+        Objects.requireNonNull(worker);
+        Objects.requireNonNull(metrics);
+        if (maxRetries < 0) {
+            throw new IllegalArgumentException("Number of retries should not be negative");
+        }
+        this.worker = worker;
+        this.maxRetries = maxRetries;
+        this.backoffMs = backoff.toMilliseconds();
+        this.maxBackoffMs = maxBackoff.toMilliseconds();
+        this.conflicts = metrics.meter(MetricRegistry.name(RetryingBatchOrderConsumer.class, "conflicts"));
+        this.exhausted = metrics.meter(MetricRegistry.name(RetryingBatchOrderConsumer.class, "exhausted"));
+        this.retries = metrics.histogram(MetricRegistry.name(RetryingBatchOrderConsumer.class, "retries"));
+    }
+
+    @Override
+    public void accept(List<Order> orders) {
+        if (process(orders) || orders.size() == 1) {
+            return;
+        }
+        logger.info("Batch of {} orders keeps conflicting, processing its orders one by one", orders.size());
+        final Set<Integer> processedIds = new HashSet<>(orders.size() * 2);
+        for (Order order : orders) {
+            // redelivered duplicates are skipped, as the worker does within a batch
+            if (processedIds.add(order.getId())) {
+                process(Collections.singletonList(order));
+            }
+        }
+    }
+
+    /**
+     * @return false if retries are exhausted, a single order is rejected then
+     */
+    private boolean process(List<Order> orders) {
+        long backoff = backoffMs;
+        for (int retry = 0; ; retry++) {
+            try {
+                worker.accept(copyOf(orders));
+                retries.update(retry);
+                return true;
+            } catch (RuntimeException e) {
+                if (!RetryingOrderConsumer.isConflict(e)) {
+                    throw e;
+                }
+                conflicts.mark();
+                logger.info("Conflict processing batch of {} orders starting with order_id: {}, attempt {}",
+                        orders.size(), orders.get(0).getId(), retry + 1);
+                if (retry == maxRetries) {
+                    retries.update(retry);
+                    exhausted.mark();
+                    if (orders.size() == 1) {
+                        worker.reject(OrderBuilder.anOrder().copyOf(orders.get(0)).build(),
+                                String.format(RetryingOrderConsumer.TOO_MANY_CONFLICTS_MSG, maxRetries));
+                    }
+                    return false;
+                }
+            }
+            RetryingOrderConsumer.pause(backoff);
+            backoff = Math.min(backoff * 2, maxBackoffMs);
+        }
+    }
+
+    private static List<Order> copyOf(List<Order> orders) {
+        final List<Order> copies = new ArrayList<>(orders.size());
+        for (Order order : orders) {
+            copies.add(OrderBuilder.anOrder().copyOf(order).build());
+        }
+        return copies;
+    }
+}
@@ -0,0 +1,129 @@
+package com.rk.core;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.rk.api.Order;
+import com.rk.api.OrderBuilder;
+import io.dropwizard.util.Duration;
+import org.hibernate.StaleStateException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.persistence.OptimisticLockException;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Order consumer which processes an order again when its transaction is rolled back because an account was changed by
+ * a concurrent transaction.
+ *
+ * <p>Every attempt gets a fresh copy of the received order. Before a retry the thread sleeps for a random time between
+ * zero and the backoff, backoff is doubled after every conflict up to the maximum, so orders competing for a hot
+ * account spread out instead of conflicting again. When retries are exhausted the order is marked FAILED, as well as
+ * an order which the worker has rolled back by {@link OrderProcessingWorker.RejectAfterRollbackException}. Any other
+ * failure is not retried.</p>
+ */
+public class RetryingOrderConsumer implements Consumer<Order> {
+    static final String TOO_MANY_CONFLICTS_MSG = "Account is being changed concurrently, order failed after %d retries";
+
+    private static final Logger logger = LoggerFactory.getLogger(RetryingOrderConsumer.class);
+
+    private final OrderProcessingWorker worker;
+    private final int maxRetries;
+    private final long backoffMs;
+    private final long maxBackoffMs;
+    private final Meter conflicts;
+    private final Meter exhausted;
+    private final Histogram retries;
+
+    /**
+     * @param worker worker which processes every order in its own unit of work
+     * @param maxRetries how many times an order is retried after conflicts before it fails
+     * @param backoff backoff before the first retry
+     * @param maxBackoff upper bound of backoff
+     * @param metrics registry for conflict and retry metrics
+     */
+    public RetryingOrderConsumer(OrderProcessingWorker worker, int maxRetries, Duration backoff, Duration maxBackoff,
+                                 MetricRegistry metrics) {
+        Objects.requireNonNull(worker);
+        Objects.requireNonNull(metrics);
+        if (maxRetries < 0) {
+            throw new IllegalArgumentException("Number of retries should not be negative");
+        }
+        this.worker = worker;
+        this.maxRetries = maxRetries;
+        this.backoffMs = backoff.toMilliseconds();
+        this.maxBackoffMs = maxBackoff.toMilliseconds();
+        this.conflicts = metrics.meter(MetricRegistry.name(RetryingOrderConsumer.class, "conflicts"));
+        this.exhausted = metrics.meter(MetricRegistry.name(RetryingOrderConsumer.class, "exhausted"));
+        this.retries = metrics.histogram(MetricRegistry.name(RetryingOrderConsumer.class, "retries"));
+    }
+
+    @Override
+    public void accept(Order order) {
+        long backoff = backoffMs;
+        for (int retry = 0; ; retry++) {
+            try {
+                worker.accept(OrderBuilder.anOrder().copyOf(order).build());
+                retries.update(retry);
+                return;
+            } catch (RuntimeException e) {
+                final OrderProcessingWorker.RejectAfterRollbackException rejection = findRejection(e);
+                if (rejection != null) {
+                    logger.warn("Order_id: {} is rolled back and failed: {}", order.getId(), rejection.getMessage());
+                    retries.update(retry);
+                    worker.reject(OrderBuilder.anOrder().copyOf(order).build(), rejection.getMessage());
+                    return;
+                }
+                if (!isConflict(e)) {
+                    throw e;
+                }
+                conflicts.mark();
+                logger.info("Conflict on accounts {} -> {} processing order_id: {}, attempt {}",
+                        order.getSenderAccount(), order.getReceiverAccount(), order.getId(), retry + 1);
+                if (retry == maxRetries) {
+                    retries.update(retry);
+                    exhausted.mark();
+                    worker.reject(OrderBuilder.anOrder().copyOf(order).build(),
+                            String.format(TOO_MANY_CONFLICTS_MSG, maxRetries));
+                    return;
+                }
+            }
+            pause(backoff);
+            backoff = Math.min(backoff * 2, maxBackoffMs);
+        }
+    }
+
+    static void pause(long backoffMs) {
+        if (backoffMs <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.MILLISECONDS.sleep(ThreadLocalRandom.current().nextLong(backoffMs + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting to retry order", e);
+        }
+    }
+
+    private static OrderProcessingWorker.RejectAfterRollbackException findRejection(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof OrderProcessingWorker.RejectAfterRollbackException) {
+                return (OrderProcessingWorker.RejectAfterRollbackException) cause;
+            }
+        }
+        return null;
+    }
+
+    static boolean isConflict(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof OptimisticLockException || cause instanceof StaleStateException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
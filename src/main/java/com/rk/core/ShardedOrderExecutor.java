@@ -0,0 +1,306 @@
+package com.rk.core;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.rk.api.Order;
+import io.dropwizard.lifecycle.Managed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Order consumer which routes orders to a fixed set of single-threaded execution lanes.
+ *
+ * <p>Lane is chosen by account id, so all orders of an account are executed one by one in the order they were
+ * accepted, while orders of unrelated accounts are executed in parallel. It makes read-modify-write of account
+ * balance safe without database locks.</p>
+ *
+ * <p>Transfer between accounts of two different lanes is enqueued to both lanes at once: the lane with the lower
+ * index executes the order, the other one receives a barrier and stays parked until the order is finished. Both
+ * enqueue operations are done under a common lock, so all lanes see cross-lane orders in the same relative order
+ * and two lanes can never wait for each other.</p>
+ *
+ * <p>{@link #execute(Order, Runnable, Runnable)} runs a task of the order in its lanes, e.g. processing of the order
+ * message, so the message is acknowledged only after the order is processed. It returns as soon as the task is handed
+ * over to the lanes and blocks only when a lane queue is full, which throttles message consumption. An accepted task
+ * is either run or, if its lane is interrupted on stop, cancelled; tasks are rejected once the executor is stopped.
+ * {@link #accept(Order)} runs the worker for the order in the same way, there is nothing to redeliver the order then,
+ * so its failures are only logged.</p>
+ */
+public class ShardedOrderExecutor implements Consumer<Order>, Managed {
+    private static final Logger logger = LoggerFactory.getLogger(ShardedOrderExecutor.class);
+    private static final long STOP_TIMEOUT_SECONDS = 30;
+    private static final LaneTask STOP = new LaneTask(() -> {}, () -> {});
+
+    private final Consumer<Order> worker;
+    private final Lane[] lanes;
+    private final Object crossLaneLock = new Object();
+    // tasks are enqueued under the read lock, so none of them is enqueued after STOP
+    private final ReadWriteLock stopLock = new ReentrantReadWriteLock();
+    private boolean isStopped;
+
+    /**
+     * Task with the action to run instead when its lane can not run it.
+     */
+    private static class LaneTask {
+        private final Runnable task;
+        private final Runnable onCancel;
+
+        private LaneTask(Runnable task, Runnable onCancel) {
+            this.task = task;
+            this.onCancel = onCancel;
+        }
+    }
+
+    private class Lane implements Runnable {
+        private final BlockingQueue<LaneTask> queue;
+        private final Meter processed;
+        private final Thread thread;
+
+        private Lane(int index, int capacity, MetricRegistry metrics) {
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            this.processed = metrics.meter(MetricRegistry.name(ShardedOrderExecutor.class, laneName(index), "processed"));
+            metrics.register(MetricRegistry.name(ShardedOrderExecutor.class, laneName(index), "queue-depth"),
+                    (Gauge<Integer>) queue::size);
+            this.thread = new Thread(this, "order-" + laneName(index));
+        }
+
+        private void put(LaneTask task) throws InterruptedException {
+            queue.put(task);
+        }
+
+        @Override
+        public void run() {
+            try {
+                LaneTask task;
+                while ((task = queue.take()) != STOP) {
+                    try {
+                        task.task.run();
+                    } catch (RuntimeException e) {
+                        logger.error("Unexpected error in execution lane {}", thread.getName(), e);
+                    }
+                }
+            } catch (InterruptedException e) {
+                logger.warn("Execution lane {} is interrupted", thread.getName());
+                Thread.currentThread().interrupt();
+            } finally {
+                final List<LaneTask> left = new ArrayList<>();
+                queue.drainTo(left);
+                for (LaneTask task : left) {
+                    task.onCancel.run();
+                }
+            }
+        }
+    }
+
+    /**
+     * Task of an order enqueued to two lanes: the executing lane runs it when the other lane is parked by the barrier.
+     * The task is settled once: it is either run, cancelled or withdrawn when the barrier can not be enqueued.
+     */
+    private static class CrossLaneTask {
+        private final CountDownLatch parkedLatch = new CountDownLatch(1);
+        private final CountDownLatch doneLatch = new CountDownLatch(1);
+        private final AtomicBoolean isSettled = new AtomicBoolean();
+        private final Runnable task;
+        private final Runnable onCancel;
+
+        private CrossLaneTask(Runnable task, Runnable onCancel) {
+            this.task = task;
+            this.onCancel = onCancel;
+        }
+
+        private void execute() {
+            try {
+                parkedLatch.await();
+                if (isSettled.compareAndSet(false, true)) {
+                    task.run();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancel();
+            } finally {
+                doneLatch.countDown();
+            }
+        }
+
+        private void cancel() {
+            try {
+                if (isSettled.compareAndSet(false, true)) {
+                    onCancel.run();
+                }
+            } finally {
+                doneLatch.countDown();
+            }
+        }
+
+        private void park() {
+            parkedLatch.countDown();
+            try {
+                doneLatch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Parked lane is stopped, so it can not run concurrently with the executing one any more.
+         */
+        private void unpark() {
+            parkedLatch.countDown();
+        }
+
+        /**
+         * @return true if the task is withdrawn, false if it is cancelled already
+         */
+        private boolean withdraw() {
+            final boolean isWithdrawn = isSettled.compareAndSet(false, true);
+            parkedLatch.countDown();
+            return isWithdrawn;
+        }
+    }
+
+    public ShardedOrderExecutor(Consumer<Order> worker, int lanesCount, int laneCapacity, MetricRegistry metrics) {
+        Objects.requireNonNull(worker);
+        Objects.requireNonNull(metrics);
+        if (lanesCount < 1) {
+            throw new IllegalArgumentException("At least one execution lane is required");
+        }
+
+        this.worker = worker;
+        this.lanes = new Lane[lanesCount];
+        for (int i = 0; i < lanesCount; i++) {
+            lanes[i] = new Lane(i, laneCapacity, metrics);
+        }
+    }
+
+    /**
+     * @throws RejectedExecutionException if the executor is stopped
+     */
+    @Override
+    public void accept(Order order) {
+        execute(order, () -> {
+            try {
+                worker.accept(order);
+            } catch (RuntimeException e) {
+                logger.error("Unexpected error during processing of order_id: {}", order.getId(), e);
+            }
+        }, () -> logger.error("Processing of order_id: {} is cancelled on stop", order.getId()));
+    }
+
+    /**
+     * Runs the task in the lanes of the order accounts after the tasks of these accounts accepted before.
+     * @param onCancel is run instead of the task if its lane is interrupted before the task is run
+     * @throws RejectedExecutionException if the executor is stopped or the calling thread is interrupted, neither the
+     *                                    task nor the cancellation is run then
+     */
+    public void execute(Order order, Runnable task, Runnable onCancel) {
+        final int senderLane = order.getOrderType().isOutgoing() ? laneOf(order.getSenderAccount()) : -1;
+        final int receiverLane = order.getOrderType().isIngoing() ? laneOf(order.getReceiverAccount()) : -1;
+
+        stopLock.readLock().lock();
+        try {
+            if (isStopped) {
+                throw new RejectedExecutionException("Execution lanes are stopped, order_id: " + order.getId()
+                        + " is rejected");
+            }
+            if (senderLane < 0 || receiverLane < 0 || senderLane == receiverLane) {
+                final Lane lane = lanes[Math.max(Math.max(senderLane, receiverLane), 0)];
+                lane.put(new LaneTask(() -> run(task, lane), onCancel));
+            } else {
+                final Lane executing = lanes[Math.min(senderLane, receiverLane)];
+                enqueueCrossLane(new CrossLaneTask(() -> run(task, executing), onCancel),
+                        executing, lanes[Math.max(senderLane, receiverLane)]);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while handing order " + order.getId()
+                    + " to execution lane", e);
+        } finally {
+            stopLock.readLock().unlock();
+        }
+    }
+
+    private void enqueueCrossLane(CrossLaneTask crossLaneTask, Lane executing, Lane parked)
+            throws InterruptedException {
+        synchronized (crossLaneLock) {
+            executing.put(new LaneTask(crossLaneTask::execute, crossLaneTask::cancel));
+            try {
+                parked.put(new LaneTask(crossLaneTask::park, crossLaneTask::unpark));
+            } catch (InterruptedException e) {
+                // executing lane must not wait for the barrier which is never enqueued
+                if (crossLaneTask.withdraw()) {
+                    throw e;
+                }
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static void run(Runnable task, Lane lane) {
+        try {
+            task.run();
+        } finally {
+            lane.processed.mark();
+        }
+    }
+
+    /**
+     * Account ids are sequential, so plain modulo spreads them evenly between lanes.
+     */
+    private int laneOf(Integer accountId) {
+        return accountId == null ? -1 : Math.floorMod(accountId, lanes.length);
+    }
+
+    private static String laneName(int index) {
+        return "lane-" + index;
+    }
+
+    @Override
+    public void start() {
+        logger.debug("Starting {} order execution lanes", lanes.length);
+        for (Lane lane : lanes) {
+            lane.thread.start();
+        }
+    }
+
+    /**
+     * Lets lanes finish already accepted orders and stops lane threads. Tasks of a lane which does not finish in time
+     * are cancelled.
+     */
+    @Override
+    public void stop() throws InterruptedException {
+        logger.debug("Stopping order execution lanes");
+        stopLock.writeLock().lock();
+        try {
+            if (isStopped) {
+                return;
+            }
+            isStopped = true;
+            for (Lane lane : lanes) {
+                lane.put(STOP);
+            }
+        } finally {
+            stopLock.writeLock().unlock();
+        }
+        for (Lane lane : lanes) {
+            lane.thread.join(TimeUnit.SECONDS.toMillis(STOP_TIMEOUT_SECONDS));
+            if (lane.thread.isAlive()) {
+                logger.warn("Execution lane {} did not finish in time", lane.thread.getName());
+                lane.thread.interrupt();
+            }
+        }
+    }
+}
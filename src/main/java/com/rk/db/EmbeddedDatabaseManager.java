@@ -0,0 +1,203 @@
+package com.rk.db;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import io.dropwizard.lifecycle.Managed;
+import liquibase.Contexts;
+import liquibase.LabelExpression;
+import liquibase.Liquibase;
+import liquibase.database.Database;
+import liquibase.database.DatabaseFactory;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.exception.LiquibaseException;
+import liquibase.resource.ClassLoaderResourceAccessor;
+import org.hsqldb.Server;
+import org.hsqldb.persist.HsqlProperties;
+import org.hsqldb.server.ServerAcl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class which manages embedded database.
+ *
+ * <p>The instance is in charge of starting and stopping embedded sql db server in accordance with application
+ * lifecycle. During start phase it creates database schema to avoid explicit liquibase update call. Database start is
+ * not an immediate procedure and is not synchronized with attempts of database layer to connect, so during application
+ * startup "Connection refused" exceptions are possible which do not affect the application itself. This effect should
+ * take place only for standalone "fat-jar" application. In case of separate persistence db which will be started before
+ * readers and writers there should be no "Connection refused" exceptions.</p>
+ *
+ * <p>The idea of embedded sql db is that it is possible to switch to a persistence storage easily. In current
+ * application it can be done via setting custom datasource in config file.</p>
+ *
+ * <p>Database is either in memory ({@value #MEMORY_DATABASE}) and lost on stop, or kept in files. Tables of a file
+ * database are kept in memory and written to its script on checkpoint, except cached tables which are kept in the data
+ * file with only a part of rows cached in memory. Every change is appended to the log, which is replayed on start
+ * after a crash, and a checkpoint writes the data and clears the log. HSQLDB checkpoints when the log reaches its size
+ * limit and on stop; with a checkpoint interval checkpoints are also made in background, so the log stays short.</p>
+ */
+public class EmbeddedDatabaseManager implements Managed {
+    public static final String MEMORY_DATABASE = "mem:temp";
+
+    private static final String MIGRATIONS_FILE = "migrations.xml";
+    private static final String TABLE_TYPE_QUERY = "select hsqldb_type from information_schema.system_tables "
+            + "where table_schem = 'PUBLIC' and table_name = ?";
+    private static final String CACHED = "CACHED";
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddedDatabaseManager.class);
+    private final Server databaseServer;
+    private final DataSource dataSource;
+    private final boolean isInMemory;
+    private final List<String> settings;
+    private final Collection<String> cachedTables;
+    private final long checkpointIntervalMs;
+    private final Timer checkpoints;
+    private ScheduledExecutorService checkpointExecutor;
+
+    /**
+     * @param database HSQLDB database served as {@code money_transfer}, e.g. {@value #MEMORY_DATABASE} or
+     *                 {@code file:data/money_transfer}
+     * @param settings statements executed on every start before schema update, e.g. {@code SET FILES} settings
+     * @param cachedTables tables converted to CACHED type after schema update
+     * @param checkpointIntervalMs interval of background checkpoints, 0 disables them
+     * @param metrics registry for checkpoint metrics
+     */
+    public EmbeddedDatabaseManager(DataSource dataSource, String database, List<String> settings,
+                                   Collection<String> cachedTables, long checkpointIntervalMs,
+                                   MetricRegistry metrics) {
+        Objects.requireNonNull(database);
+        Objects.requireNonNull(settings);
+        Objects.requireNonNull(cachedTables);
+        Objects.requireNonNull(metrics);
+        this.dataSource = dataSource;
+        this.isInMemory = database.startsWith("mem:");
+        this.settings = settings;
+        this.cachedTables = cachedTables;
+        this.checkpointIntervalMs = checkpointIntervalMs;
+        this.checkpoints = metrics.timer(MetricRegistry.name(EmbeddedDatabaseManager.class, "checkpoints"));
+        HsqlProperties hsqlProperties = new HsqlProperties();
+        hsqlProperties.setProperty("server.database.0", database + ";user=root;password=password");
+        hsqlProperties.setProperty("server.dbname.0", "money_transfer");
+        hsqlProperties.setProperty("server.silent", "false");
+        hsqlProperties.setProperty("server.trace", "false");
+        hsqlProperties.setProperty("server.address", "127.0.0.1");
+
+        databaseServer = new Server();
+        try {
+            databaseServer.setProperties(hsqlProperties);
+        } catch (IOException | ServerAcl.AclFormatException e) {
+            logger.error("Unable to set database properties", e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void start() {
+        logger.info("Starting database");
+        try {
+            databaseServer.start();
+        } catch (Exception e) {
+            logger.error("Unable to start database", e);
+            throw e;
+        }
+        logger.info("Database started");
+
+        logger.info("Start database schema initialization");
+        try (Connection connection = dataSource.getConnection()) {
+            try (Statement statement = connection.createStatement()) {
+                for (String setting : settings) {
+                    statement.execute(setting);
+                }
+            }
+            Database database = DatabaseFactory.getInstance().findCorrectDatabaseImplementation(new JdbcConnection(connection));
+            Liquibase liquibase = new Liquibase(MIGRATIONS_FILE, new ClassLoaderResourceAccessor(), database);
+            liquibase.update(new Contexts(), new LabelExpression());
+            for (String table : cachedTables) {
+                cache(connection, table.toUpperCase(Locale.ROOT));
+            }
+        } catch (SQLException e) {
+            logger.error("Cannot obtain database connection, apply its settings or update database schema", e);
+        } catch (LiquibaseException e) {
+            logger.error("Cannot init or update database schema.", e);
+            return;
+        }
+        logger.info("Database schema initialized");
+
+        if (checkpointIntervalMs > 0) {
+            checkpointExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                final Thread thread = new Thread(runnable, "database-checkpoint");
+                thread.setDaemon(true);
+                return thread;
+            });
+            checkpointExecutor.scheduleWithFixedDelay(this::checkpointSafely, checkpointIntervalMs,
+                    checkpointIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Rows of a table are moved to the data file once, when it is converted, later starts find it CACHED already.
+     */
+    private static void cache(Connection connection, String table) throws SQLException {
+        try (PreparedStatement query = connection.prepareStatement(TABLE_TYPE_QUERY)) {
+            query.setString(1, table);
+            try (ResultSet resultSet = query.executeQuery()) {
+                if (!resultSet.next() || CACHED.equals(resultSet.getString(1))) {
+                    return;
+                }
+            }
+        }
+        logger.info("Converting table {} to CACHED", table);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("SET TABLE PUBLIC." + table + " TYPE CACHED");
+        }
+    }
+
+    /**
+     * Write all tables to database files and clear the log, so a restart after a crash has less log to replay.
+     */
+    public void checkpoint() throws SQLException {
+        try (Timer.Context ignored = checkpoints.time();
+             Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("CHECKPOINT");
+        }
+    }
+
+    private void checkpointSafely() {
+        try {
+            checkpoint();
+        } catch (SQLException e) {
+            logger.error("Unable to checkpoint database", e);
+        }
+    }
+
+    @Override
+    public void stop() throws InterruptedException {
+        if (checkpointExecutor != null) {
+            // a running checkpoint is let to finish
+            checkpointExecutor.shutdown();
+            checkpointExecutor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        logger.info("Stopping database");
+        if (isInMemory) {
+            databaseServer.stop();
+        } else {
+            // server stop does not close the database, so without shutdown the whole log is replayed on start
+            databaseServer.shutdownWithCatalogs(org.hsqldb.Database.CLOSEMODE_NORMAL);
+        }
+    }
+}
@@ -1,10 +1,26 @@
 package com.rk.db.dao;
 
 import com.rk.api.Account;
-import io.dropwizard.hibernate.AbstractDAO;
+import com.rk.api.Currency;
+import com.rk.api.Money;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.SessionFactory;
 
-public class AccountDAO extends AbstractDAO<Account> {
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.ObjIntConsumer;
+
+public class AccountDAO extends TransactionalDAO<Account> {
+    private static final int FETCH_SIZE = 1000;
+    private static final String DEBIT_SQL = "UPDATE accounts SET balance = balance - :amount, version = version + 1 "
+            + "WHERE account_id = :id AND balance >= :amount";
+    private static final String CREDIT_SQL = "UPDATE accounts SET balance = balance + :amount, version = version + 1 "
+            + "WHERE account_id = :id";
+
     public AccountDAO(SessionFactory sessionFactory) {
         super(sessionFactory);
     }
@@ -20,4 +36,92 @@ public class AccountDAO extends AbstractDAO<Account> {
     public Account findById(int id) {
         return get(id);
     }
+
+    /**
+     * Pass id and currency of every account to the consumer. Rows are scrolled, entities are not loaded.
+     */
+    public void forEachIdAndCurrency(ObjIntConsumer<Currency> consumer) {
+        try (ScrollableResults rows = currentSession()
+                .createQuery("select a.id, a.currency from Account a")
+                .setFetchSize(FETCH_SIZE)
+                .scroll(ScrollMode.FORWARD_ONLY)) {
+            while (rows.next()) {
+                consumer.accept((Currency) rows.get(1), (Integer) rows.get(0));
+            }
+        }
+    }
+
+    /**
+     * Loads all accounts with specified ids by single query.
+     * @param ids account ids
+     * @return found accounts, non-existent ids are skipped
+     */
+    public List<Account> findByIds(Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return list(query("from Account where id in (:ids)")
+                .setParameterList("ids", ids));
+    }
+
+    /**
+     * Decrease balance by a single conditional statement, the account is neither loaded nor locked before. Version is
+     * incremented, so a concurrent entity update of the account fails.
+     * @param amountMicros amount in {@link Money} micro-units
+     * @return false if there is no such account or its balance is less than the amount, nothing is changed then
+     */
+    public boolean debit(int id, long amountMicros) {
+        return executeUpdate(DEBIT_SQL, id, amountMicros) == 1;
+    }
+
+    /**
+     * Increase balance by a single statement, the account is neither loaded nor locked before.
+     * @param amountMicros amount in {@link Money} micro-units
+     * @return false if there is no such account
+     */
+    public boolean credit(int id, long amountMicros) {
+        return executeUpdate(CREDIT_SQL, id, amountMicros) == 1;
+    }
+
+    /**
+     * @return balance in {@link Money} micro-units, null if there is no such account
+     */
+    public Long findBalanceMicros(int id) {
+        final BigDecimal balance = (BigDecimal) currentSession()
+                .createQuery("select a.balance from Account a where a.id = :id")
+                .setParameter("id", id)
+                .uniqueResult();
+        return balance == null ? null : Money.toMicros(balance);
+    }
+
+    /**
+     * Loads accounts by single query without attaching them to the session, so they can be published after commit
+     * and are never flushed.
+     * @return found accounts, non-existent ids are skipped
+     */
+    public List<Account> findDetachedByIds(Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        final List<?> rows = currentSession()
+                .createQuery("select a.id, a.currency, a.balance, a.version from Account a where a.id in (:ids)")
+                .setParameterList("ids", ids)
+                .list();
+        final List<Account> accounts = new ArrayList<>(rows.size());
+        for (Object row : rows) {
+            final Object[] columns = (Object[]) row;
+            final Account account = new Account((Integer) columns[0], (Currency) columns[1], (BigDecimal) columns[2]);
+            account.setVersion((Long) columns[3]);
+            accounts.add(account);
+        }
+        return accounts;
+    }
+
+    private int executeUpdate(String sql, int id, long amountMicros) {
+        return currentSession().createNativeQuery(sql)
+                .addSynchronizedEntityClass(Account.class)
+                .setParameter("amount", Money.toBigDecimal(amountMicros))
+                .setParameter("id", id)
+                .executeUpdate();
+    }
 }
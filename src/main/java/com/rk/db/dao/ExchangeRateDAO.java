@@ -3,12 +3,11 @@ package com.rk.db.dao;
 
 import com.rk.api.Currency;
 import com.rk.api.ExchangeRate;
-import io.dropwizard.hibernate.AbstractDAO;
 import org.hibernate.SessionFactory;
 
 import java.util.List;
 
-public class ExchangeRateDAO extends AbstractDAO<ExchangeRate> {
+public class ExchangeRateDAO extends TransactionalDAO<ExchangeRate> {
     public ExchangeRateDAO(SessionFactory sessionFactory) {
         super(sessionFactory);
     }
@@ -30,4 +29,8 @@ public class ExchangeRateDAO extends AbstractDAO<ExchangeRate> {
          return res.isEmpty() ? null : res.get(0);
     }
 
+    public List<ExchangeRate> findAll() {
+        return list(query("from ExchangeRate"));
+    }
+
 }
@@ -1,16 +1,37 @@
 package com.rk.db.dao;
 
 import com.rk.api.Order;
-import io.dropwizard.hibernate.AbstractDAO;
 import org.hibernate.SessionFactory;
 
-public class OrderDAO extends AbstractDAO<Order> {
+import java.util.List;
+
+public class OrderDAO extends TransactionalDAO<Order> {
     public OrderDAO(SessionFactory sessionFactory) {
         super(sessionFactory);
     }
 
+    /**
+     * Insert order and flush it, so the order row exists before the order is sent for processing.
+     * @return id of the order, it is allocated in memory from a block of the ids sequence
+     */
     public int create(Order order) {
-        return persist(order).getId();
+        final int id = persist(order).getId();
+        currentSession().flush();
+        return id;
+    }
+
+    /**
+     * Insert all orders in current transaction and flush them. Ids are allocated in memory, so inserts are sent in
+     * JDBC batches of {@code hibernate.jdbc.batch_size}.
+     */
+    public void createAll(List<Order> orders) {
+        if (orders.isEmpty()) {
+            return;
+        }
+        for (Order order : orders) {
+            persist(order);
+        }
+        currentSession().flush();
     }
 
     public void update(Order order) {
@@ -20,4 +41,12 @@ public class OrderDAO extends AbstractDAO<Order> {
     public Order findById(int id) {
         return get(id);
     }
+
+    public Order findByIdempotencyKey(String idempotencyKey) {
+        List<Order> res = query("from Order where idempotencyKey=:idempotencyKey")
+                .setParameter("idempotencyKey", idempotencyKey)
+                .getResultList();
+
+        return res.isEmpty() ? null : res.get(0);
+    }
 }
@@ -0,0 +1,47 @@
+package com.rk.db.dao;
+
+import io.dropwizard.hibernate.AbstractDAO;
+import org.hibernate.SessionFactory;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import java.util.function.Consumer;
+
+/**
+ * Base DAO which lets callers publish results of current transaction to in-memory caches only once it is committed.
+ */
+public abstract class TransactionalDAO<E> extends AbstractDAO<E> {
+    protected TransactionalDAO(SessionFactory sessionFactory) {
+        super(sessionFactory);
+    }
+
+    /**
+     * Register action to run after current transaction is committed. Action is not run if transaction is rolled back.
+     * @param action action to run, it is executed in the thread which commits the transaction
+     */
+    public void afterCommit(Runnable action) {
+        afterCompletion(isCommitted -> {
+            if (isCommitted) {
+                action.run();
+            }
+        });
+    }
+
+    /**
+     * Register action to run after current transaction is flushed and either committed or rolled back.
+     * @param action action to run with true if the transaction is committed, it is executed in the thread which
+     *               completes the transaction
+     */
+    public void afterCompletion(Consumer<Boolean> action) {
+        currentSession().getTransaction().registerSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                action.accept(status == Status.STATUS_COMMITTED);
+            }
+        });
+    }
+}
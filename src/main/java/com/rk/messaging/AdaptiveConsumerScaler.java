@@ -0,0 +1,180 @@
+package com.rk.messaging;
+
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import io.dropwizard.lifecycle.Managed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically resizes a {@link ConsumerPool} between minimum and maximum number of consumers by queue depth and
+ * listener latency.
+ *
+ * <p>Needed consumers are estimated by Little's law: throughput the pool should have, that is messages handled
+ * during the last interval plus the backlog drained within {@code drainTime}, multiplied by mean time a listener
+ * spends on a message. So slow database, which makes listeners slower, leads to more consumers for the same backlog,
+ * and idle queue leads to as many consumers as the current load keeps busy.</p>
+ *
+ * <p>Pool grows to the estimate at once, but shrinks by one consumer at a time and only if the estimate is below
+ * {@code scaleDownRatio} of the current size, so small fluctuations do not change the pool. After every change the
+ * pool is left as it is for {@code cooldown}, to let the change take effect on latency and depth. Nothing is changed
+ * while queue depth is unknown.</p>
+ */
+public class AdaptiveConsumerScaler implements Managed {
+    private static final Logger logger = LoggerFactory.getLogger(AdaptiveConsumerScaler.class);
+
+    private final ConsumerPool pool;
+    private final QueueDepthProbe queueDepthProbe;
+    private final int minConsumers;
+    private final int maxConsumers;
+    private final long intervalMs;
+    private final long cooldownNanos;
+    private final long drainTimeNanos;
+    private final double scaleDownRatio;
+    private final Clock clock;
+    private final Meter scaleUps;
+    private final Meter scaleDowns;
+    private ScheduledExecutorService executor;
+    private long lastTick;
+    private long lastHandledCount;
+    private long lastBusyNanos;
+    private long lastScale;
+    private volatile long meanLatencyNanos;
+
+    public AdaptiveConsumerScaler(ConsumerPool pool, QueueDepthProbe queueDepthProbe, int minConsumers,
+                                  int maxConsumers, long intervalMs, long cooldownMs, long drainTimeMs,
+                                  double scaleDownRatio, MetricRegistry metrics) {
+        this(pool, queueDepthProbe, minConsumers, maxConsumers, intervalMs, cooldownMs, drainTimeMs, scaleDownRatio,
+                metrics, Clock.defaultClock());
+    }
+
+    /**
+     * @param minConsumers the pool never shrinks below it
+     * @param maxConsumers the pool never grows above it
+     * @param intervalMs pool is checked this often
+     * @param cooldownMs pool is not changed for this time after a change
+     * @param drainTimeMs time the current backlog should be handled within
+     * @param scaleDownRatio pool shrinks when estimated consumers are below this part of the current consumers
+     */
+    public AdaptiveConsumerScaler(ConsumerPool pool, QueueDepthProbe queueDepthProbe, int minConsumers,
+                                  int maxConsumers, long intervalMs, long cooldownMs, long drainTimeMs,
+                                  double scaleDownRatio, MetricRegistry metrics, Clock clock) {
+        Objects.requireNonNull(pool);
+        Objects.requireNonNull(queueDepthProbe);
+        Objects.requireNonNull(metrics);
+        Objects.requireNonNull(clock);
+        if (minConsumers < 1 || maxConsumers < minConsumers) {
+            throw new IllegalArgumentException("Consumers range should be positive and non-empty");
+        }
+        if (intervalMs < 1 || drainTimeMs < 1 || scaleDownRatio <= 0 || scaleDownRatio > 1) {
+            throw new IllegalArgumentException("Interval and drain time should be positive, ratio within (0, 1]");
+        }
+        this.pool = pool;
+        this.queueDepthProbe = queueDepthProbe;
+        this.minConsumers = minConsumers;
+        this.maxConsumers = maxConsumers;
+        this.intervalMs = intervalMs;
+        this.cooldownNanos = TimeUnit.MILLISECONDS.toNanos(cooldownMs);
+        this.drainTimeNanos = TimeUnit.MILLISECONDS.toNanos(drainTimeMs);
+        this.scaleDownRatio = scaleDownRatio;
+        this.clock = clock;
+        this.scaleUps = metrics.meter(MetricRegistry.name(AdaptiveConsumerScaler.class, "scale-ups"));
+        this.scaleDowns = metrics.meter(MetricRegistry.name(AdaptiveConsumerScaler.class, "scale-downs"));
+        metrics.register(MetricRegistry.name(AdaptiveConsumerScaler.class, "consumers"),
+                (Gauge<Integer>) pool::getConsumersCount);
+        metrics.register(MetricRegistry.name(AdaptiveConsumerScaler.class, "mean-latency-ms"),
+                (Gauge<Double>) () -> meanLatencyNanos / 1e6);
+        this.lastTick = clock.getTick();
+        this.lastScale = lastTick - cooldownNanos;
+    }
+
+    @Override
+    public void start() {
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "consumer-scaler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::scaleSafely, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void stop() throws InterruptedException {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor.awaitTermination(intervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void scaleSafely() {
+        try {
+            scale();
+        } catch (Exception e) {
+            logger.error("Unable to resize consumers pool", e);
+        }
+    }
+
+    /**
+     * Measure the pool since the previous call and resize it if needed. Called by the scheduler, should not be called
+     * concurrently.
+     */
+    public void scale() throws Exception {
+        final long now = clock.getTick();
+        final long handledCount = pool.getHandledCount();
+        final long busyNanos = pool.getBusyNanos();
+        final long handled = handledCount - lastHandledCount;
+        final long busy = busyNanos - lastBusyNanos;
+        final long elapsed = Math.max(1, now - lastTick);
+        lastTick = now;
+        lastHandledCount = handledCount;
+        lastBusyNanos = busyNanos;
+        if (handled > 0) {
+            meanLatencyNanos = busy / handled;
+        }
+
+        final long queueDepth = queueDepthProbe.getQueueDepth();
+        if (queueDepth == QueueDepthProbe.UNKNOWN_DEPTH || now - lastScale < cooldownNanos) {
+            return;
+        }
+        final int current = pool.getConsumersCount();
+        final int needed = neededConsumers(current, queueDepth, handled, busy, elapsed);
+        final int target;
+        if (needed > current) {
+            target = needed;
+            scaleUps.mark();
+        } else if (current > minConsumers && needed < current * scaleDownRatio) {
+            target = current - 1;
+            scaleDowns.mark();
+        } else {
+            return;
+        }
+        logger.info("Resizing consumers pool from {} to {}: queue depth {}, handled {} in {} ms, mean latency {} ms",
+                current, target, queueDepth, handled, TimeUnit.NANOSECONDS.toMillis(elapsed),
+                TimeUnit.NANOSECONDS.toMillis(meanLatencyNanos));
+        pool.resize(target);
+        lastScale = now;
+    }
+
+    private int neededConsumers(int current, long queueDepth, long handled, long busy, long elapsed) {
+        final long needed;
+        if (handled == 0) {
+            // nothing is measured: either the queue is idle or every consumer is stuck on a long message
+            needed = queueDepth > 0 ? current + 1 : minConsumers;
+        } else {
+            // consumers kept busy by the current load plus consumers handling the backlog within drain time
+            needed = ceilDiv(busy, elapsed) + ceilDiv(queueDepth * meanLatencyNanos, drainTimeNanos);
+        }
+        return (int) Math.max(minConsumers, Math.min(maxConsumers, needed));
+    }
+
+    private static long ceilDiv(long dividend, long divisor) {
+        return (dividend + divisor - 1) / divisor;
+    }
+}
@@ -0,0 +1,12 @@
+package com.rk.messaging;
+
+import javax.jms.Message;
+import java.util.List;
+
+/**
+ * Batch counterpart of {@link javax.jms.MessageListener}. Receives all messages consumed by a session at once.
+ */
+@FunctionalInterface
+public interface BatchMessageListener {
+    void onMessages(List<Message> messages);
+}
@@ -0,0 +1,20 @@
+package com.rk.messaging;
+
+import javax.jms.MessageConsumer;
+
+/**
+ * Source of the number of messages the broker has dispatched to a consumer, used to find consumers which get more
+ * messages than others.
+ */
+public interface ConsumerDispatchProbe {
+    /**
+     * Returned when the count cannot be measured, e.g. the broker is remote or the consumer is closed.
+     */
+    long UNKNOWN_COUNT = -1;
+
+    /**
+     * @return number of messages dispatched to the consumer since it is created, including prefetched ones, or
+     * {@link #UNKNOWN_COUNT}
+     */
+    long getDispatchedCount(MessageConsumer consumer);
+}
@@ -0,0 +1,30 @@
+package com.rk.messaging;
+
+import io.dropwizard.lifecycle.Managed;
+
+import javax.jms.JMSException;
+
+/**
+ * Pool of message consumers which can be resized while it is running.
+ */
+public interface ConsumerPool extends Managed {
+    /**
+     * @return number of consuming sessions
+     */
+    int getConsumersCount();
+
+    /**
+     * Open or close sessions so that the given number of them is consuming.
+     */
+    void resize(int consumersCount) throws JMSException;
+
+    /**
+     * @return number of messages handled by listeners since start, every message of a batch is counted
+     */
+    long getHandledCount();
+
+    /**
+     * @return total time spent by listeners since start, in nanoseconds
+     */
+    long getBusyNanos();
+}
@@ -0,0 +1,59 @@
+package com.rk.messaging;
+
+import org.apache.activemq.ActiveMQMessageConsumer;
+import org.apache.activemq.broker.BrokerRegistry;
+import org.apache.activemq.broker.BrokerService;
+import org.apache.activemq.broker.region.Destination;
+import org.apache.activemq.broker.region.Subscription;
+import org.apache.activemq.command.ActiveMQQueue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jms.MessageConsumer;
+import java.util.Objects;
+
+/**
+ * Reads dispatched messages of a consumer from subscription statistics of ActiveMQ broker embedded into this JVM
+ * ({@code vm://} transport). Like {@link EmbeddedActiveMQQueueDepthProbe}, broker and queue are looked up on every
+ * call; the subscription is found among queue consumers by consumer id.
+ */
+public class EmbeddedActiveMQConsumerDispatchProbe implements ConsumerDispatchProbe {
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddedActiveMQConsumerDispatchProbe.class);
+
+    private final String brokerName;
+    private final ActiveMQQueue queue;
+
+    public EmbeddedActiveMQConsumerDispatchProbe(String brokerName, String queueName) {
+        Objects.requireNonNull(brokerName);
+        Objects.requireNonNull(queueName);
+        this.brokerName = brokerName;
+        this.queue = new ActiveMQQueue(queueName);
+    }
+
+    @Override
+    public long getDispatchedCount(MessageConsumer consumer) {
+        if (!(consumer instanceof ActiveMQMessageConsumer)) {
+            return UNKNOWN_COUNT;
+        }
+        final BrokerService broker = BrokerRegistry.getInstance().lookup(brokerName);
+        if (broker == null || !broker.isStarted()) {
+            return UNKNOWN_COUNT;
+        }
+        try {
+            final Destination destination = broker.getDestination(queue);
+            if (destination == null) {
+                return UNKNOWN_COUNT;
+            }
+            for (Subscription subscription : destination.getConsumers()) {
+                if (subscription.getConsumerInfo().getConsumerId()
+                        .equals(((ActiveMQMessageConsumer) consumer).getConsumerId())) {
+                    return subscription.getDispatchedCounter();
+                }
+            }
+            return UNKNOWN_COUNT;
+        } catch (Exception e) {
+            logger.debug("Unable to get dispatched messages of {}", queue.getPhysicalName(), e);
+            return UNKNOWN_COUNT;
+        }
+    }
+}
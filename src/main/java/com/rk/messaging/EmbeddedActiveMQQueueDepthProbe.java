@@ -0,0 +1,44 @@
+package com.rk.messaging;
+
+import org.apache.activemq.broker.BrokerRegistry;
+import org.apache.activemq.broker.BrokerService;
+import org.apache.activemq.broker.region.Destination;
+import org.apache.activemq.command.ActiveMQQueue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Objects;
+
+/**
+ * Reads queue depth from statistics of ActiveMQ broker embedded into this JVM ({@code vm://} transport). Broker and
+ * queue are looked up on every call, so the probe may be created before the broker is started. Depth of a queue of a
+ * remote broker is always {@link #UNKNOWN_DEPTH}.
+ */
+public class EmbeddedActiveMQQueueDepthProbe implements QueueDepthProbe {
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddedActiveMQQueueDepthProbe.class);
+
+    private final String brokerName;
+    private final ActiveMQQueue queue;
+
+    public EmbeddedActiveMQQueueDepthProbe(String brokerName, String queueName) {
+        Objects.requireNonNull(brokerName);
+        Objects.requireNonNull(queueName);
+        this.brokerName = brokerName;
+        this.queue = new ActiveMQQueue(queueName);
+    }
+
+    @Override
+    public long getQueueDepth() {
+        final BrokerService broker = BrokerRegistry.getInstance().lookup(brokerName);
+        if (broker == null || !broker.isStarted()) {
+            return UNKNOWN_DEPTH;
+        }
+        try {
+            final Destination destination = broker.getDestination(queue);
+            return destination == null ? UNKNOWN_DEPTH : destination.getDestinationStatistics().getMessages().getCount();
+        } catch (Exception e) {
+            logger.debug("Unable to get depth of {}", queue.getPhysicalName(), e);
+            return UNKNOWN_DEPTH;
+        }
+    }
+}
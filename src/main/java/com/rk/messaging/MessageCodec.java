@@ -0,0 +1,14 @@
+package com.rk.messaging;
+
+/**
+ * Binary encoding of objects sent through the message broker as {@link javax.jms.BytesMessage} body.
+ * @param <T> type of encoded objects
+ */
+public interface MessageCodec<T> {
+    byte[] encode(T obj);
+
+    /**
+     * @throws IllegalArgumentException if bytes are not a valid encoding of an object
+     */
+    T decode(byte[] bytes);
+}
@@ -0,0 +1,21 @@
+package com.rk.messaging;
+
+import javax.jms.Message;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Executor which {@link SimpleMessageListenerContainer} hands message processing over to. Unlike
+ * {@link java.util.concurrent.Executor} it knows the message, so it may choose where the task runs, e.g. run tasks of
+ * the same account one by one.
+ */
+@FunctionalInterface
+public interface MessageExecutor {
+    /**
+     * Either runs the task or, if the accepted task can not be run any more, e.g. its thread is interrupted on stop,
+     * runs the cancellation instead, so the message is redelivered rather than lost.
+     * @param task processes the message
+     * @param onCancel is run instead of the task
+     * @throws RejectedExecutionException if the task is not accepted, neither of them is run then
+     */
+    void execute(Message message, Runnable task, Runnable onCancel);
+}
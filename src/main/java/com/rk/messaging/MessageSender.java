@@ -0,0 +1,38 @@
+package com.rk.messaging;
+
+import io.dropwizard.lifecycle.Managed;
+
+import javax.jms.JMSException;
+import java.util.Collection;
+
+/**
+ * Sender of objects to the queue they are processed from, either through a message broker or within the JVM.
+ * An object should not be changed after it is sent: in-process senders hand the reference itself to consumers.
+ */
+public interface MessageSender<T> extends Managed {
+    /**
+     * Called when asynchronous send completes.
+     */
+    interface CompletionCallback<O> {
+        void onCompletion(O obj);
+
+        void onException(O obj, Exception exception);
+    }
+
+    /**
+     * Send object and wait until the queue accepts it.
+     */
+    void send(T obj) throws JMSException;
+
+    /**
+     * Send all objects at once. Either all objects are sent or none.
+     */
+    void sendAll(Collection<? extends T> objs) throws JMSException;
+
+    /**
+     * Send object without waiting for the queue, if the sender supports it.
+     * @param callback is called when the queue accepts the object or when send finally fails
+     * @throws JMSException if the object cannot be accepted for sending in time
+     */
+    void sendAsync(T obj, CompletionCallback<? super T> callback) throws JMSException;
+}
@@ -1,43 +1,361 @@
 package com.rk.messaging;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jms.BytesMessage;
 import javax.jms.Connection;
 import javax.jms.ConnectionFactory;
 import javax.jms.JMSException;
 import javax.jms.MessageProducer;
 import javax.jms.Session;
-import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Queue object message producer.
- * Open connection for specified queue for each {@link #send(Serializable)} call, so is recommended to use with pooled
- * session factory.
+ * Queue object message producer. Objects are encoded by {@link MessageCodec} and sent as {@link BytesMessage}.
+ *
+ * <p>Keeps a single connection and a bounded pool of sessions with their producers open between calls. Every send
+ * borrows a session exclusively, so JMS single-thread rule for sessions holds, and at most {@code sessionsCount}
+ * sessions are ever open. If more threads send at the same time, they wait for a free session.</p>
+ *
+ * <p>{@link #sendAsync(Object, CompletionCallback)} hands the message to producer's own threads and returns
+ * without waiting for the broker. Number of messages accepted but not yet sent is limited by {@code maxInFlight}:
+ * when the window is full, caller waits up to {@code sendTimeoutMs} and gets {@link JMSException} after that.</p>
+ *
+ * <p>Sessions are transacted: every send is committed separately, except {@link #sendAll(Collection)} which sends
+ * all messages in one broker transaction, so the broker is waited for once per call instead of once per message.</p>
+ *
+ * <p>When a send fails, its session is discarded, connection is recreated and the send is retried once with a new
+ * session. Sessions of the old connection are discarded when they are borrowed next time. Messages of a failed
+ * transaction are not delivered, so the retry resends all of them.</p>
  */
-public class ObjectMessageProducer {
+public class ObjectMessageProducer<T> implements MessageSender<T> {
+    private static final Logger logger = LoggerFactory.getLogger(ObjectMessageProducer.class);
+    private static final long STOP_TIMEOUT_MS = 5000;
+
     private final String queueName;
     private final ConnectionFactory connectionFactory;
+    private final MessageCodec<T> codec;
+    private final int sessionsCount;
+    private final int maxInFlight;
+    private final long sendTimeoutMs;
+    private final BlockingQueue<Channel> idleChannels;
+    private final AtomicInteger openSessions = new AtomicInteger();
+    private final Semaphore inFlightWindow;
+    private final ExecutorService asyncSender;
+    private final Timer sends;
+    private final Meter sendFailures;
+    private final Meter reconnects;
+
+    private Connection connection;
+    private int connectionGeneration;
+
+    /**
+     * Session and producer created for a specific connection.
+     */
+    private static class Channel {
+        private final int connectionGeneration;
+        private final Session session;
+        private final MessageProducer producer;
 
-    public ObjectMessageProducer(String queueName, ConnectionFactory connectionFactory) {
+        private Channel(int connectionGeneration, Session session, MessageProducer producer) {
+            this.connectionGeneration = connectionGeneration;
+            this.session = session;
+            this.producer = producer;
+        }
+    }
+
+    /**
+     * @param sessionsCount maximum number of sessions kept open, also the number of threads of asynchronous sending
+     * @param maxInFlight maximum number of asynchronous sends accepted but not completed yet
+     * @param sendTimeoutMs maximum time to wait for a free session or for a place in the in-flight window
+     */
+    public ObjectMessageProducer(String queueName, ConnectionFactory connectionFactory, MessageCodec<T> codec,
+                                 int sessionsCount, int maxInFlight, long sendTimeoutMs, MetricRegistry metrics) {
         Objects.requireNonNull(queueName);
         Objects.requireNonNull(connectionFactory);
+        Objects.requireNonNull(codec);
+        Objects.requireNonNull(metrics);
+        if (sessionsCount < 1 || maxInFlight < 1) {
+            throw new IllegalArgumentException("Sessions count and in-flight window should be positive");
+        }
         this.queueName = queueName;
         this.connectionFactory = connectionFactory;
+        this.codec = codec;
+        this.sessionsCount = sessionsCount;
+        this.maxInFlight = maxInFlight;
+        this.sendTimeoutMs = sendTimeoutMs;
+        this.idleChannels = new ArrayBlockingQueue<>(sessionsCount);
+        this.inFlightWindow = new Semaphore(maxInFlight);
+        this.asyncSender = new ThreadPoolExecutor(sessionsCount, sessionsCount, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                new ThreadFactoryBuilder().setNameFormat(queueName + "-producer-%d").setDaemon(true).build());
+
+        this.sends = metrics.timer(MetricRegistry.name(ObjectMessageProducer.class, queueName, "sends"));
+        this.sendFailures = metrics.meter(MetricRegistry.name(ObjectMessageProducer.class, queueName, "send-failures"));
+        this.reconnects = metrics.meter(MetricRegistry.name(ObjectMessageProducer.class, queueName, "reconnects"));
+        metrics.register(MetricRegistry.name(ObjectMessageProducer.class, queueName, "open-sessions"),
+                (Gauge<Integer>) openSessions::get);
+        metrics.register(MetricRegistry.name(ObjectMessageProducer.class, queueName, "in-flight"),
+                (Gauge<Integer>) () -> maxInFlight - inFlightWindow.availablePermits());
+    }
+
+    /**
+     * Send object and wait until broker accepts it.
+     */
+    @Override
+    public void send(T obj) throws JMSException {
+        Objects.requireNonNull(obj);
+        try (Timer.Context ignored = sends.time()) {
+            sendWithRetry(Collections.singletonList(codec.encode(obj)));
+        } catch (JMSException | RuntimeException e) {
+            sendFailures.mark();
+            throw e;
+        }
+    }
+
+    /**
+     * Send all objects in one broker transaction and wait until broker commits it. Either all objects are sent or
+     * none.
+     */
+    @Override
+    public void sendAll(Collection<? extends T> objs) throws JMSException {
+        if (objs.isEmpty()) {
+            return;
+        }
+        final List<byte[]> bodies = new ArrayList<>(objs.size());
+        for (T obj : objs) {
+            bodies.add(codec.encode(Objects.requireNonNull(obj)));
+        }
+        try (Timer.Context ignored = sends.time()) {
+            sendWithRetry(bodies);
+        } catch (JMSException | RuntimeException e) {
+            sendFailures.mark();
+            throw e;
+        }
     }
 
-    public <T extends Serializable> void send(T obj) throws JMSException {
+    /**
+     * Send object in background. Waits only if in-flight window is full.
+     * @param callback is called in producer's thread when broker accepts the object or when send finally fails
+     * @throws JMSException if in-flight window is still full after send timeout
+     */
+    @Override
+    public void sendAsync(T obj, CompletionCallback<? super T> callback) throws JMSException {
         Objects.requireNonNull(obj);
-        Connection connection = null;
-        Session session = null;
+        Objects.requireNonNull(callback);
+        try {
+            if (!inFlightWindow.tryAcquire(sendTimeoutMs, TimeUnit.MILLISECONDS)) {
+                sendFailures.mark();
+                throw new JMSException(String.format("%s messages are already waiting to be sent to %s",
+                        maxInFlight, queueName));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JMSException("Interrupted while waiting for in-flight window");
+        }
+
+        final Timer.Context timer = sends.time();
+        try {
+            asyncSender.execute(() -> {
+                Exception failure = null;
+                try {
+                    sendWithRetry(Collections.singletonList(codec.encode(obj)));
+                    timer.stop();
+                } catch (JMSException | RuntimeException e) {
+                    sendFailures.mark();
+                    failure = e;
+                }
+                inFlightWindow.release();
+                if (failure == null) {
+                    callback.onCompletion(obj);
+                } else {
+                    callback.onException(obj, failure);
+                }
+            });
+        } catch (RuntimeException e) {
+            sendFailures.mark();
+            inFlightWindow.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens connection, sessions are opened on demand.
+     */
+    @Override
+    public void start() throws JMSException {
+        logger.debug("Starting producer for {} with up to {} sessions", queueName, sessionsCount);
+        currentConnection();
+    }
+
+    /**
+     * Waits for pending asynchronous sends, then closes all sessions and connection.
+     */
+    @Override
+    public void stop() throws InterruptedException {
+        logger.debug("Stopping producer for {}", queueName);
+        asyncSender.shutdown();
+        if (!asyncSender.awaitTermination(STOP_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+            logger.warn("Some messages were not sent to {} before shutdown", queueName);
+            asyncSender.shutdownNow();
+        }
+        Channel channel;
+        while ((channel = idleChannels.poll()) != null) {
+            discard(channel);
+        }
+        synchronized (this) {
+            closeConnection();
+        }
+    }
+
+    private void sendWithRetry(List<byte[]> bodies) throws JMSException {
+        Channel channel = borrow();
+        try {
+            sendInTransaction(channel, bodies);
+        } catch (JMSException e) {
+            logger.warn("Unable to send message to {}, reconnecting", queueName, e);
+            discard(channel);
+            reconnect(channel.connectionGeneration);
+            channel = borrow();
+            try {
+                sendInTransaction(channel, bodies);
+            } catch (JMSException | RuntimeException retryException) {
+                discard(channel);
+                throw retryException;
+            }
+        } catch (RuntimeException e) {
+            discard(channel);
+            throw e;
+        }
+        release(channel);
+    }
+
+    private static void sendInTransaction(Channel channel, List<byte[]> bodies) throws JMSException {
+        for (byte[] body : bodies) {
+            final BytesMessage message = channel.session.createBytesMessage();
+            message.writeBytes(body);
+            channel.producer.send(message);
+        }
+        channel.session.commit();
+    }
+
+    private Channel borrow() throws JMSException {
+        while (true) {
+            Channel channel = idleChannels.poll();
+            if (channel == null) {
+                if (openSessions.incrementAndGet() <= sessionsCount) {
+                    try {
+                        return openChannel();
+                    } catch (JMSException | RuntimeException e) {
+                        openSessions.decrementAndGet();
+                        throw e;
+                    }
+                }
+                openSessions.decrementAndGet();
+                try {
+                    channel = idleChannels.poll(sendTimeoutMs, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new JMSException("Interrupted while waiting for a free session");
+                }
+                if (channel == null) {
+                    throw new JMSException("No free session to send message to " + queueName);
+                }
+            }
+            if (isCurrent(channel)) {
+                return channel;
+            }
+            discard(channel);
+        }
+    }
+
+    private void release(Channel channel) {
+        if (!isCurrent(channel) || !idleChannels.offer(channel)) {
+            discard(channel);
+        }
+    }
+
+    private Channel openChannel() throws JMSException {
+        final int generation;
+        final Connection current;
+        synchronized (this) {
+            current = currentConnection();
+            generation = connectionGeneration;
+        }
+        final Session session = current.createSession(true, Session.SESSION_TRANSACTED);
+        try {
+            return new Channel(generation, session, session.createProducer(session.createQueue(queueName)));
+        } catch (JMSException | RuntimeException e) {
+            session.close();
+            throw e;
+        }
+    }
 
+    private void discard(Channel channel) {
+        openSessions.decrementAndGet();
         try {
-            connection = connectionFactory.createConnection();
-            connection.start();
-            session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
-            MessageProducer messageProducer = session.createProducer(session.createQueue(queueName));
-            messageProducer.send(session.createObjectMessage(obj));
-        } finally {
-            if (session != null) session.close();
-            if (connection != null) connection.close();
+            channel.session.close();
+        } catch (JMSException | RuntimeException e) {
+            logger.debug("Unable to close session of {}", queueName, e);
+        }
+    }
+
+    private synchronized boolean isCurrent(Channel channel) {
+        return channel.connectionGeneration == connectionGeneration && connection != null;
+    }
+
+    private synchronized Connection currentConnection() throws JMSException {
+        if (connection == null) {
+            final Connection created = connectionFactory.createConnection();
+            try {
+                created.start();
+            } catch (JMSException | RuntimeException e) {
+                created.close();
+                throw e;
+            }
+            connection = created;
+        }
+        return connection;
+    }
+
+    /**
+     * Recreate connection unless another thread has already done it after the failed session was opened.
+     */
+    private synchronized void reconnect(int failedGeneration) {
+        if (failedGeneration != connectionGeneration) {
+            return;
+        }
+        reconnects.mark();
+        closeConnection();
+    }
+
+    private synchronized void closeConnection() {
+        connectionGeneration++;
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (JMSException | RuntimeException e) {
+                logger.debug("Unable to close connection of {}", queueName, e);
+            }
+            connection = null;
         }
     }
 }
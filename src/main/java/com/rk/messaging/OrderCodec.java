@@ -0,0 +1,136 @@
+package com.rk.messaging;
+
+import com.rk.api.Currency;
+import com.rk.api.Order;
+import com.rk.api.OrderStatus;
+import com.rk.api.OrderType;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+/**
+ * Versioned binary encoding of orders for the orders queue. Only fields needed by order processing are encoded, so
+ * decoded order always has NEW status and no derived rate flag. Creation date is encoded to measure how long the
+ * order waits in the queue, it is absent in orders of version 1.
+ *
+ * <p>Version 2 layout, big-endian:</p>
+ * <pre>
+ * version           byte    1
+ * fields length     ushort  number of bytes after this field
+ * order id          int
+ * order type        byte    {@link OrderType} ordinal, the same as in database
+ * currency          3 bytes ISO code in ASCII
+ * flags             byte    1 - sender present, 2 - receiver present, 4 - description present
+ * sender account    int     if present
+ * receiver account  int     if present
+ * amount            long    {@link com.rk.api.Money} micro-units
+ * description       ushort length and UTF-8 bytes, if present
+ * creation date     long    milliseconds since epoch, 0 if absent; since version 2
+ * </pre>
+ *
+ * <p>New versions may only append fields, so fields length lets a reader skip fields it does not know, and a reader of
+ * a newer version must read older messages without appended fields. Changes which are not append-only need a new
+ * queue or message type.</p>
+ */
+public class OrderCodec implements MessageCodec<Order> {
+    public static final byte VERSION = 2;
+
+    private static final int HEADER_SIZE = Byte.BYTES + Short.BYTES;
+    private static final int CURRENCY_CODE_SIZE = 3;
+    private static final int MAX_FIELDS_SIZE = 0xFFFF;
+    private static final int HAS_SENDER = 1;
+    private static final int HAS_RECEIVER = 1 << 1;
+    private static final int HAS_DESCRIPTION = 1 << 2;
+    private static final OrderType[] ORDER_TYPES = OrderType.values();
+
+    @Override
+    public byte[] encode(Order order) {
+        final byte[] description = order.getDescription() == null
+                ? null
+                : order.getDescription().getBytes(StandardCharsets.UTF_8);
+        final int flags = (order.getSenderAccount() != null ? HAS_SENDER : 0)
+                | (order.getReceiverAccount() != null ? HAS_RECEIVER : 0)
+                | (description != null ? HAS_DESCRIPTION : 0);
+
+        final int fieldsSize = Integer.BYTES + Byte.BYTES + CURRENCY_CODE_SIZE + Byte.BYTES
+                + (order.getSenderAccount() != null ? Integer.BYTES : 0)
+                + (order.getReceiverAccount() != null ? Integer.BYTES : 0)
+                + Long.BYTES
+                + (description != null ? Short.BYTES + description.length : 0)
+                + Long.BYTES;
+        // fields length is an unsigned short, description length fits in it as well then
+        if (fieldsSize > MAX_FIELDS_SIZE) {
+            throw new IllegalArgumentException("Order description is too long to encode");
+        }
+        final ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + fieldsSize);
+
+        buffer.put(VERSION);
+        buffer.putShort((short) fieldsSize);
+        buffer.putInt(order.getId());
+        buffer.put((byte) order.getOrderType().ordinal());
+        final String currencyCode = order.getOperationCurrency().name();
+        for (int i = 0; i < CURRENCY_CODE_SIZE; i++) {
+            buffer.put((byte) currencyCode.charAt(i));
+        }
+        buffer.put((byte) flags);
+        if (order.getSenderAccount() != null) {
+            buffer.putInt(order.getSenderAccount());
+        }
+        if (order.getReceiverAccount() != null) {
+            buffer.putInt(order.getReceiverAccount());
+        }
+        buffer.putLong(order.getAmountMicros());
+        if (description != null) {
+            buffer.putShort((short) description.length);
+            buffer.put(description);
+        }
+        buffer.putLong(order.getCreationDate() == null ? 0 : order.getCreationDate().getTime());
+        return buffer.array();
+    }
+
+    @Override
+    public Order decode(byte[] bytes) {
+        final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        try {
+            final byte version = buffer.get();
+            if (version < 1) {
+                throw new IllegalArgumentException("Unsupported order encoding version " + version);
+            }
+            final int fieldsSize = buffer.getShort() & 0xFFFF;
+            if (fieldsSize > buffer.remaining()) {
+                throw new IllegalArgumentException("Encoded order is truncated");
+            }
+            final int fieldsEnd = buffer.position() + fieldsSize;
+
+            final Order order = new Order();
+            order.setId(buffer.getInt());
+            order.setOrderType(ORDER_TYPES[buffer.get()]);
+            final byte[] currencyCode = new byte[CURRENCY_CODE_SIZE];
+            buffer.get(currencyCode);
+            order.setOperationCurrency(Currency.valueOf(new String(currencyCode, StandardCharsets.US_ASCII)));
+            final int flags = buffer.get();
+            if ((flags & HAS_SENDER) != 0) {
+                order.setSenderAccount(buffer.getInt());
+            }
+            if ((flags & HAS_RECEIVER) != 0) {
+                order.setReceiverAccount(buffer.getInt());
+            }
+            order.setAmountMicros(buffer.getLong());
+            if ((flags & HAS_DESCRIPTION) != 0) {
+                final byte[] description = new byte[buffer.getShort() & 0xFFFF];
+                buffer.get(description);
+                order.setDescription(new String(description, StandardCharsets.UTF_8));
+            }
+            if (fieldsEnd - buffer.position() >= Long.BYTES) {
+                final long creationTime = buffer.getLong();
+                order.setCreationDate(creationTime == 0 ? null : new Date(creationTime));
+            }
+            order.setStatus(OrderStatus.NEW);
+            return order;
+        } catch (BufferUnderflowException | ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Encoded order is malformed", e);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.rk.messaging;
+
+/**
+ * Source of the number of messages waiting in a queue, used to slow down producers when consumers fall behind.
+ */
+public interface QueueDepthProbe {
+    /**
+     * Returned when queue depth cannot be measured, e.g. broker is not started yet or is not supported.
+     */
+    long UNKNOWN_DEPTH = -1;
+
+    /**
+     * @return number of messages which are enqueued but not acknowledged yet or {@link #UNKNOWN_DEPTH}
+     */
+    long getQueueDepth();
+}
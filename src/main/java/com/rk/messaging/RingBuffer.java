@@ -0,0 +1,272 @@
+package com.rk.messaging;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded lock-free queue of object references for many producers and many consumers of the same JVM.
+ *
+ * <p>Slots are allocated once. Every slot has a sequence number which tells whether it is free for the producer of
+ * the given position or filled for the consumer of it, so producers and consumers claim positions by a single CAS on
+ * the tail or the head and never take a lock. Objects are passed as they are, nothing is copied, so an object should
+ * not be changed after it is offered.</p>
+ *
+ * <p>When the buffer is full or empty, the thread waits according to {@link WaitStrategy}. With
+ * {@link WaitStrategy#BLOCKING} threads park on a condition and are signalled after every offer or poll, only if
+ * somebody waits.</p>
+ */
+public class RingBuffer<T> {
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 200;
+    private static final long SLEEP_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final Object[] items;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final WaitStrategy waitStrategy;
+    private final PaddedPosition tail = new PaddedPosition();
+    private final PaddedPosition head = new PaddedPosition();
+    private final AtomicInteger waiters = new AtomicInteger();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+
+    /**
+     * Keeps positions claimed by producers and by consumers on different cache lines.
+     */
+    @SuppressWarnings("unused")
+    private static class PaddedPosition extends AtomicLong {
+        private long p1, p2, p3, p4, p5, p6, p7;
+    }
+
+    /**
+     * @param capacity number of slots, rounded up to a power of two of at least 2: the sequence of a single slot
+     *                 filled at a position would be the same as of the slot free for the next position
+     */
+    public RingBuffer(int capacity, WaitStrategy waitStrategy) {
+        Objects.requireNonNull(waitStrategy);
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Capacity should be within [1, 2^30]");
+        }
+        final int size = Math.max(2, Integer.highestOneBit(capacity) == capacity
+                ? capacity : Integer.highestOneBit(capacity) << 1);
+        this.items = new Object[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        this.mask = size - 1;
+        this.waitStrategy = waitStrategy;
+    }
+
+    public int capacity() {
+        return items.length;
+    }
+
+    /**
+     * @return number of objects offered and not polled yet, approximate while the buffer is changed
+     */
+    public int size() {
+        final long size = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(items.length, size));
+    }
+
+    /**
+     * Put the object, waiting for a free slot.
+     * @return false if there is no free slot within the timeout
+     */
+    public boolean offer(T item, long timeout, TimeUnit unit) throws InterruptedException {
+        Objects.requireNonNull(item);
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (int tries = 0; !tryOffer(item); tries++) {
+            if (!idle(tries, deadline, 1)) {
+                return false;
+            }
+        }
+        signal();
+        return true;
+    }
+
+    /**
+     * Put all objects into consecutive slots, waiting until there are enough free slots. Either all objects are put
+     * or none.
+     * @return false if there are not enough free slots within the timeout
+     * @throws IllegalArgumentException if there are more objects than slots
+     */
+    public boolean offerAll(List<? extends T> items, long timeout, TimeUnit unit) throws InterruptedException {
+        if (items.size() > this.items.length) {
+            throw new IllegalArgumentException(String.format("%d objects do not fit into %d slots", items.size(),
+                    this.items.length));
+        }
+        items.forEach(Objects::requireNonNull);
+        if (items.isEmpty()) {
+            return true;
+        }
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (int tries = 0; !tryOfferAll(items); tries++) {
+            if (!idle(tries, deadline, items.size())) {
+                return false;
+            }
+        }
+        signal();
+        return true;
+    }
+
+    /**
+     * Take the oldest object, waiting for one.
+     * @return null if there is no object within the timeout
+     */
+    @SuppressWarnings("unchecked")
+    public T poll(long timeout, TimeUnit unit) throws InterruptedException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        Object item;
+        for (int tries = 0; (item = tryPoll()) == null; tries++) {
+            if (!idle(tries, deadline, 0)) {
+                return null;
+            }
+        }
+        signal();
+        return (T) item;
+    }
+
+    private boolean tryOffer(T item) {
+        long position = tail.get();
+        while (true) {
+            final int index = (int) (position & mask);
+            final long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    items[index] = item;
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                // the slot is not polled yet since the previous lap
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Slots of the range can be freed only by consumers and claimed only by moving the tail over the whole range, so
+     * if all of them are free and the tail has not moved, they are all ours.
+     */
+    private boolean tryOfferAll(List<? extends T> batch) {
+        long position = tail.get();
+        search:
+        while (true) {
+            for (int i = 0; i < batch.size(); i++) {
+                final long difference = sequences.get((int) ((position + i) & mask)) - (position + i);
+                if (difference < 0) {
+                    return false;
+                } else if (difference > 0) {
+                    position = tail.get();
+                    continue search;
+                }
+            }
+            if (tail.compareAndSet(position, position + batch.size())) {
+                for (int i = 0; i < batch.size(); i++) {
+                    final int index = (int) ((position + i) & mask);
+                    items[index] = batch.get(i);
+                    sequences.set(index, position + i + 1);
+                }
+                return true;
+            }
+            position = tail.get();
+        }
+    }
+
+    private Object tryPoll() {
+        long position = head.get();
+        while (true) {
+            final int index = (int) (position & mask);
+            final long difference = sequences.get(index) - (position + 1);
+            if (difference == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    final Object item = items[index];
+                    items[index] = null;
+                    sequences.set(index, position + items.length);
+                    return item;
+                }
+                position = head.get();
+            } else if (difference < 0) {
+                // the slot is not filled yet
+                return null;
+            } else {
+                position = head.get();
+            }
+        }
+    }
+
+    /**
+     * Wait before the next attempt.
+     * @param freeSlots number of free slots a producer needs, 0 for a consumer which needs a filled slot
+     * @return false if the deadline has passed
+     */
+    private boolean idle(int tries, long deadline, int freeSlots) throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        final long remainingNanos = deadline - System.nanoTime();
+        if (remainingNanos <= 0) {
+            return false;
+        }
+        switch (waitStrategy) {
+            case BUSY_SPIN:
+                break;
+            case YIELDING:
+                if (tries >= SPIN_TRIES) {
+                    Thread.yield();
+                }
+                break;
+            case SLEEPING:
+                if (tries >= YIELD_TRIES) {
+                    LockSupport.parkNanos(Math.min(SLEEP_NANOS, remainingNanos));
+                } else if (tries >= SPIN_TRIES) {
+                    Thread.yield();
+                }
+                break;
+            case BLOCKING:
+                lock.lockInterruptibly();
+                try {
+                    // the other side changes the buffer before it checks waiters, so either it sees this waiter or
+                    // this waiter sees the change
+                    waiters.incrementAndGet();
+                    if (!isReady(freeSlots)) {
+                        changed.awaitNanos(remainingNanos);
+                    }
+                } finally {
+                    waiters.decrementAndGet();
+                    lock.unlock();
+                }
+                break;
+            default:
+                throw new IllegalStateException("Unknown wait strategy " + waitStrategy);
+        }
+        return true;
+    }
+
+    private boolean isReady(int freeSlots) {
+        return freeSlots == 0 ? size() > 0 : size() <= items.length - freeSlots;
+    }
+
+    private void signal() {
+        if (waitStrategy == WaitStrategy.BLOCKING && waiters.get() > 0) {
+            lock.lock();
+            try {
+                changed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
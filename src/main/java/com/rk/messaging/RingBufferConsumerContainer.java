@@ -0,0 +1,162 @@
+package com.rk.messaging;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * In-process counterpart of {@link SimpleMessageListenerContainer}: a pool of threads which take objects from a
+ * {@link RingBuffer} and pass them to the consumer.
+ *
+ * <p>Threads wait for objects according to the wait strategy of the buffer. The pool can be resized at runtime, e.g.
+ * by {@link AdaptiveConsumerScaler}; a removed thread finishes its object first. On stop threads take the objects
+ * left in the buffer before they exit. An object whose consumer throws is logged and dropped, there is no
+ * redelivery.</p>
+ */
+public class RingBufferConsumerContainer<T> implements ConsumerPool {
+    private static final Logger logger = LoggerFactory.getLogger(RingBufferConsumerContainer.class);
+    private static final long POLL_TIMEOUT_MS = 1000;
+    private static final long STOP_TIMEOUT_MS = 30_000;
+
+    private final String name;
+    private final RingBuffer<T> ringBuffer;
+    private final int initialConsumersCount;
+    private final Consumer<T> consumer;
+    private final LongAdder handledCount = new LongAdder();
+    private final LongAdder busyNanos = new LongAdder();
+    private final Deque<Worker> workers = new ArrayDeque<>();
+    private int nextWorkerIndex;
+    private boolean isStarted;
+
+    private class Worker implements Runnable {
+        private final Thread thread;
+        private volatile boolean isConsuming = true;
+        private volatile boolean isDraining;
+
+        private Worker(int index) {
+            this.thread = new Thread(this, name + "-consumer-" + index);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (isConsuming) {
+                    final T obj = ringBuffer.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                    if (obj != null) {
+                        handle(obj);
+                    } else if (isDraining) {
+                        return;
+                    }
+                }
+            } catch (InterruptedException e) {
+                logger.warn("Consumer {} is interrupted", thread.getName());
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * @param name name of consumer threads
+     */
+    public RingBufferConsumerContainer(String name, RingBuffer<T> ringBuffer, int consumersCount,
+                                       Consumer<T> consumer) {
+        Objects.requireNonNull(name);
+        Objects.requireNonNull(ringBuffer);
+        Objects.requireNonNull(consumer);
+        this.name = name;
+        this.ringBuffer = ringBuffer;
+        this.initialConsumersCount = consumersCount;
+        this.consumer = consumer;
+    }
+
+    private void handle(T obj) {
+        final long start = System.nanoTime();
+        try {
+            consumer.accept(obj);
+        } catch (RuntimeException e) {
+            logger.error("Unexpected error during processing of message from {}", name, e);
+        } finally {
+            busyNanos.add(System.nanoTime() - start);
+            handledCount.increment();
+        }
+    }
+
+    @Override
+    public synchronized void start() {
+        logger.debug("Starting {} in-process consumers of {}", initialConsumersCount, name);
+        isStarted = true;
+        resize(initialConsumersCount);
+    }
+
+    /**
+     * Start or stop threads so that the given number of them is consuming. Threads are stopped in reverse order of
+     * their start. Does nothing if the container is not started.
+     */
+    @Override
+    public synchronized void resize(int consumersCount) {
+        if (!isStarted) {
+            return;
+        }
+        while (workers.size() < consumersCount) {
+            final Worker worker = new Worker(nextWorkerIndex++);
+            workers.addLast(worker);
+            worker.thread.start();
+        }
+        while (workers.size() > consumersCount) {
+            final Worker worker = workers.removeLast();
+            worker.isConsuming = false;
+            join(worker);
+        }
+    }
+
+    @Override
+    public synchronized int getConsumersCount() {
+        return workers.size();
+    }
+
+    @Override
+    public long getHandledCount() {
+        return handledCount.sum();
+    }
+
+    @Override
+    public long getBusyNanos() {
+        return busyNanos.sum();
+    }
+
+    /**
+     * Lets threads take the objects left in the buffer and stops them.
+     */
+    @Override
+    public synchronized void stop() {
+        if (!isStarted) {
+            return;
+        }
+        logger.debug("Stopping in-process consumers of {}", name);
+        isStarted = false;
+        for (Worker worker : workers) {
+            worker.isDraining = true;
+        }
+        while (!workers.isEmpty()) {
+            join(workers.removeLast());
+        }
+    }
+
+    private void join(Worker worker) {
+        try {
+            worker.thread.join(STOP_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (worker.thread.isAlive()) {
+            logger.warn("Consumer {} did not finish in time", worker.thread.getName());
+            worker.thread.interrupt();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.rk.messaging;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jms.JMSException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sender which puts objects into a {@link RingBuffer} consumed by {@link RingBufferConsumerContainer} of the same JVM.
+ * Nothing is encoded or copied, objects are handed to consumers by reference.
+ *
+ * <p>Putting an object into the buffer is all the work a send does, so asynchronous send is the same as synchronous
+ * one and its callback is called in the caller's thread. Caller waits up to {@code sendTimeoutMs} for a free slot and
+ * gets {@link JMSException} after that. Objects are not persisted anywhere, the ones left in the buffer on shutdown
+ * are lost like messages of a non-persistent broker.</p>
+ */
+public class RingBufferMessageSender<T> implements MessageSender<T> {
+    private static final Logger logger = LoggerFactory.getLogger(RingBufferMessageSender.class);
+
+    private final String queueName;
+    private final RingBuffer<T> ringBuffer;
+    private final long sendTimeoutMs;
+    private final Meter sendFailures;
+
+    public RingBufferMessageSender(String queueName, RingBuffer<T> ringBuffer, long sendTimeoutMs,
+                                   MetricRegistry metrics) {
+        Objects.requireNonNull(queueName);
+        Objects.requireNonNull(ringBuffer);
+        Objects.requireNonNull(metrics);
+        this.queueName = queueName;
+        this.ringBuffer = ringBuffer;
+        this.sendTimeoutMs = sendTimeoutMs;
+        this.sendFailures = metrics.meter(MetricRegistry.name(RingBufferMessageSender.class, queueName,
+                "send-failures"));
+        metrics.register(MetricRegistry.name(RingBufferMessageSender.class, queueName, "depth"),
+                (Gauge<Integer>) ringBuffer::size);
+    }
+
+    @Override
+    public void send(T obj) throws JMSException {
+        Objects.requireNonNull(obj);
+        final boolean isSent;
+        try {
+            isSent = ringBuffer.offer(obj, sendTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            sendFailures.mark();
+            throw new JMSException("Interrupted while waiting for a free slot of " + queueName);
+        }
+        if (!isSent) {
+            sendFailures.mark();
+            throw new JMSException(String.format("%s messages are already waiting in %s", ringBuffer.capacity(),
+                    queueName));
+        }
+    }
+
+    /**
+     * Put all objects into consecutive slots, waiting until there are enough of them.
+     * @throws JMSException if there are more objects than slots or not enough slots are freed in time
+     */
+    @Override
+    public void sendAll(Collection<? extends T> objs) throws JMSException {
+        if (objs.size() > ringBuffer.capacity()) {
+            sendFailures.mark();
+            throw new JMSException(String.format("%d messages do not fit into %s of %d slots", objs.size(), queueName,
+                    ringBuffer.capacity()));
+        }
+        final boolean isSent;
+        try {
+            isSent = ringBuffer.offerAll(new ArrayList<>(objs), sendTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            sendFailures.mark();
+            throw new JMSException("Interrupted while waiting for free slots of " + queueName);
+        }
+        if (!isSent) {
+            sendFailures.mark();
+            throw new JMSException(String.format("No room for %d messages in %s", objs.size(), queueName));
+        }
+    }
+
+    @Override
+    public void sendAsync(T obj, CompletionCallback<? super T> callback) throws JMSException {
+        Objects.requireNonNull(callback);
+        send(obj);
+        callback.onCompletion(obj);
+    }
+
+    @Override
+    public void start() {
+        logger.debug("Starting in-process sender for {} of {} slots", queueName, ringBuffer.capacity());
+    }
+
+    @Override
+    public void stop() {
+        if (ringBuffer.size() > 0) {
+            logger.warn("{} messages are left in {} on shutdown", ringBuffer.size(), queueName);
+        }
+    }
+}
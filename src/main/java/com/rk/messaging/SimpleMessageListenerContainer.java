@@ -1,10 +1,15 @@
 package com.rk.messaging;
 
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
 import io.dropwizard.lifecycle.Managed;
+import org.apache.activemq.ActiveMQSession;
+import org.apache.activemq.MessageAvailableConsumer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.annotation.concurrent.NotThreadSafe;
+import javax.jms.BytesMessage;
 import javax.jms.Connection;
 import javax.jms.ConnectionFactory;
 import javax.jms.Destination;
@@ -12,12 +17,19 @@ import javax.jms.JMSException;
 import javax.jms.Message;
 import javax.jms.MessageConsumer;
 import javax.jms.MessageListener;
-import javax.jms.ObjectMessage;
 import javax.jms.Session;
-import java.io.Serializable;
-import java.util.HashSet;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
 import java.util.Objects;
-import java.util.Set;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
 
 /**
@@ -27,46 +39,168 @@ import java.util.function.Consumer;
  * Connection-based pooling is omitted for the sake of brevity, but is possible by creating several
  * SimpleMessageListenerContainer instances with few amount of listeners per connection.</p>
  *
- * <p>Creates fixed-size non-adjustable pool of sessions. Adjustable polling-based pool is more efficient but such
- * implementation is about ten times larger than fixed-size listenter-based container.</p>
+ * <p>Starts the given number of sessions, the pool can be resized at runtime by {@link #resize(int)}, e.g. by
+ * {@link AdaptiveConsumerScaler}. Removed session is closed after its listener returns, messages prefetched by it are
+ * redelivered to other sessions. Number of handled messages and time spent in listeners are counted, so the load of
+ * the pool can be measured.</p>
  *
- * <p>Be aware that listeners are executed in message broker client's thread, so their execution blocks one
- * client's thread. There are no explicit set of pre-fetching or dispatching policy. Experiments on ActiveMQ
- * implementation showed that the implementation is quite fast and most messages are dispatched to the first session
- * for moderate load. As soon as database start freezing dispatching will involve all threads.</p>
+ * <p>Be aware that without an executor listeners are executed in message broker client's thread, so their execution
+ * blocks one client's thread. Broker pushes up to prefetch limit of messages to a session before they are
+ * acknowledged, so with default ActiveMQ prefetch of 1000 most messages are dispatched to the first session under
+ * moderate load. Prefetch and dispatch policy are set on connection factory, see
+ * {@code ConnectionFactoryConfiguration}. With metrics, messages dispatched to and processed by every session are
+ * exposed as {@code session-N.dispatched} and {@code session-N.processed}, so the skew is visible.</p>
+ *
+ * <p>With an executor, each session is polled by its own thread which only hands messages over to the executor, so a
+ * slow database does not hold consuming threads and the number of sessions does not define the number of concurrent
+ * transactions. Sessions are then created in ActiveMQ individual acknowledge mode. A session is used by its polling
+ * thread only: executor threads queue processed messages back to it, and it acknowledges the ones processed
+ * successfully. When a listener throws, the polling thread stops handing messages over until the rest are done, then
+ * recovers the session, so the failed messages are redelivered as a failed batch is. Before a session is closed,
+ * messages it has handed over are let finish. A {@link MessageExecutor} may choose where a message is processed by
+ * the message itself, e.g. {@link #executorFor(MessageCodec, ObjectExecutor)} routes it by the decoded object.</p>
+ *
+ * <p>In batch mode each session is polled by its own thread instead of listener. Thread waits for the first message,
+ * then drains up to batch size messages during batch wait time and passes all of them to
+ * {@link BatchMessageListener} at once. Messages are acknowledged after successful batch processing.</p>
+ *
+ * <p>A polling thread which fails on a JMS exception, e.g. when receive or acknowledge fails, stops. Its session is
+ * then closed, so its unacknowledged messages are redelivered to other sessions, and a new session takes its place.
+ * If the new one can not be created, the pool shrinks, so {@link #getConsumersCount()} shows the loss.</p>
  */
-@NotThreadSafe
-public class SimpleMessageListenerContainer implements Managed {
+public class SimpleMessageListenerContainer implements Managed, ConsumerPool {
     private static final Logger logger = LoggerFactory.getLogger(SimpleMessageListenerContainer.class);
+    private static final long POLL_TIMEOUT_MS = 1000;
 
-    private final int consumersCount;
+    private final int initialConsumersCount;
     private final ConnectionFactory connectionFactory;
     private final Destination destination;
     private final MessageListener messageListener;
+    private final BatchMessageListener batchMessageListener;
+    private final int batchSize;
+    private final long batchWaitMs;
+    private final MetricRegistry metrics;
+    private final ConsumerDispatchProbe dispatchProbe;
+    private final MessageExecutor executor;
 
-    private Set<MessageConsumer> consumers;
-    private Set<Session> sessions;
+    private final LongAdder handledCount = new LongAdder();
+    private final LongAdder busyNanos = new LongAdder();
+    private final Deque<ConsumerSession> consumerSessions = new ArrayDeque<>();
+    private int nextSessionIndex;
     private Connection connection;
-    private boolean isStarted;
+    private volatile boolean isStarted;
+
+    /**
+     * Session with its consumer and, in batch mode, its polling thread.
+     */
+    private class ConsumerSession {
+        private final String name;
+        private final Session session;
+        private final MessageConsumer consumer;
+        private final Thread pollingThread;
+        private final Counter processed = new Counter();
+        // messages handed over to the executor and queued back after processing, in executor mode only
+        private final Queue<Processed> handedBack = new ConcurrentLinkedQueue<>();
+        private final Semaphore signals = new Semaphore(0);
+        private volatile boolean isPolling = true;
+
+        private ConsumerSession(int index) throws JMSException {
+            name = "session-" + index;
+            if (batchMessageListener == null && executor == null) {
+                session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+                consumer = session.createConsumer(destination);
+                consumer.setMessageListener(message -> handle(this, message));
+                pollingThread = null;
+            } else if (batchMessageListener == null) {
+                session = connection.createSession(false, ActiveMQSession.INDIVIDUAL_ACKNOWLEDGE);
+                consumer = session.createConsumer(destination);
+                if (consumer instanceof MessageAvailableConsumer) {
+                    ((MessageAvailableConsumer) consumer).setAvailableListener(available -> signals.release());
+                }
+                pollingThread = new Thread(() -> pollHandedOver(this), "consumer-" + index);
+                pollingThread.start();
+            } else {
+                session = connection.createSession(false, Session.CLIENT_ACKNOWLEDGE);
+                consumer = session.createConsumer(destination);
+                pollingThread = new Thread(() -> pollBatches(this), "batch-consumer-" + index);
+                pollingThread.start();
+            }
+            if (metrics != null) {
+                metrics.register(MetricRegistry.name(SimpleMessageListenerContainer.class, name, "processed"),
+                        processed);
+                if (dispatchProbe != null) {
+                    metrics.register(MetricRegistry.name(SimpleMessageListenerContainer.class, name, "dispatched"),
+                            (Gauge<Long>) () -> dispatchProbe.getDispatchedCount(consumer));
+                }
+            }
+        }
+
+        /**
+         * Wakes up the polling thread waiting for a message or a processed message.
+         */
+        private void handBack(Message message, boolean isSuccessful) {
+            handedBack.add(new Processed(message, isSuccessful));
+            signals.release();
+        }
+
+        private void awaitSignal() throws InterruptedException {
+            signals.tryAcquire(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            signals.drainPermits();
+        }
+
+        private void close() throws JMSException {
+            isPolling = false;
+            signals.release();
+            if (pollingThread != null) {
+                try {
+                    // handed over messages are acknowledged by the polling thread, it should wait until they are done
+                    pollingThread.join(executor == null ? POLL_TIMEOUT_MS * 2 : 0);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            consumer.close();
+            // waits until listener in progress returns
+            session.close();
+            if (metrics != null) {
+                metrics.removeMatching((metricName, metric) -> metricName.startsWith(
+                        MetricRegistry.name(SimpleMessageListenerContainer.class, name) + "."));
+            }
+        }
+    }
+
+    /**
+     * Message processed by the executor, queued back to the polling thread of its session.
+     */
+    private static class Processed {
+        private final Message message;
+        private final boolean isSuccessful;
+
+        private Processed(Message message, boolean isSuccessful) {
+            this.message = message;
+            this.isSuccessful = isSuccessful;
+        }
+    }
 
     /**
      * Wrapper class which intended to make actual message consumer simple and encapsulate jms specific.
+     * Messages are decoded from {@link BytesMessage} body with {@link MessageCodec}.
      * @param <T>
      */
-    public static class ObjectMessageListener<T extends Serializable> implements MessageListener {
+    public static class ObjectMessageListener<T> implements MessageListener {
+        private final MessageCodec<T> codec;
         private final Consumer<T> consumer;
 
-        private ObjectMessageListener(Consumer<T> consumer) {
+        private ObjectMessageListener(MessageCodec<T> codec, Consumer<T> consumer) {
+            Objects.requireNonNull(codec);
             Objects.requireNonNull(consumer);
+            this.codec = codec;
             this.consumer = consumer;
         }
 
         public void onMessage(Message message) {
             try {
-                ObjectMessage objectMessage = (ObjectMessage) message;
-                @SuppressWarnings("unchecked")
-                T obj = (T) objectMessage.getObject();
-                consumer.accept(obj);
+                consumer.accept(decode(codec, message));
             } catch (JMSException e) {
                 logger.debug("Unexpected JMS exception", e);
                 throw new RuntimeException(e);
@@ -74,28 +208,201 @@ public class SimpleMessageListenerContainer implements Managed {
         }
     }
 
-    public SimpleMessageListenerContainer(ConnectionFactory connectionFactory,
-                                          Destination destination,
-                                          int consumersCount,
-                                         MessageListener messageListener) {
-        Objects.requireNonNull(connectionFactory);
-        Objects.requireNonNull(destination);
-        Objects.requireNonNull(messageListener);
+    /**
+     * Batch counterpart of {@link ObjectMessageListener}.
+     * @param <T>
+     */
+    public static class ObjectBatchMessageListener<T> implements BatchMessageListener {
+        private final MessageCodec<T> codec;
+        private final Consumer<List<T>> consumer;
+
+        private ObjectBatchMessageListener(MessageCodec<T> codec, Consumer<List<T>> consumer) {
+            Objects.requireNonNull(codec);
+            Objects.requireNonNull(consumer);
+            this.codec = codec;
+            this.consumer = consumer;
+        }
 
-        this.consumersCount = consumersCount;
-        this.connectionFactory = connectionFactory;
-        this.destination = destination;
-        this.messageListener = messageListener;
+        public void onMessages(List<Message> messages) {
+            try {
+                List<T> objects = new ArrayList<>(messages.size());
+                for (Message message : messages) {
+                    objects.add(decode(codec, message));
+                }
+                consumer.accept(objects);
+            } catch (JMSException e) {
+                logger.debug("Unexpected JMS exception", e);
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    private SimpleMessageListenerContainer(Builder builder) {
+        this.initialConsumersCount = builder.consumersCount;
+        this.connectionFactory = builder.connectionFactory;
+        this.destination = builder.destination;
+        this.messageListener = builder.messageListener;
+        this.batchMessageListener = builder.batchMessageListener;
+        this.batchSize = builder.batchSize;
+        this.batchWaitMs = builder.batchWaitMs;
+        this.metrics = builder.metrics;
+        this.dispatchProbe = builder.dispatchProbe;
+        this.executor = builder.executor;
+    }
+
+    /**
+     * @return builder of a container consuming from the destination with a single session by default
+     */
+    public static Builder aContainer(ConnectionFactory connectionFactory, Destination destination) {
+        return new Builder(connectionFactory, destination);
+    }
+
+    /**
+     * Either a listener or a batch listener should be set.
+     */
+    public static final class Builder {
+        private final ConnectionFactory connectionFactory;
+        private final Destination destination;
+        private int consumersCount = 1;
+        private MessageListener messageListener;
+        private BatchMessageListener batchMessageListener;
+        private int batchSize = 1;
+        private long batchWaitMs;
+        private MetricRegistry metrics;
+        private ConsumerDispatchProbe dispatchProbe;
+        private MessageExecutor executor;
+
+        private Builder(ConnectionFactory connectionFactory, Destination destination) {
+            Objects.requireNonNull(connectionFactory);
+            Objects.requireNonNull(destination);
+            this.connectionFactory = connectionFactory;
+            this.destination = destination;
+        }
+
+        public Builder withConsumers(int consumersCount) {
+            this.consumersCount = consumersCount;
+            return this;
+        }
+
+        public Builder withListener(MessageListener messageListener) {
+            this.messageListener = messageListener;
+            return this;
+        }
+
+        /**
+         * Switches the container to batch mode.
+         * @param batchSize maximum count of messages in a batch
+         * @param batchWaitMs maximum time to wait for batch completion after the first message is received
+         */
+        public Builder withBatchListener(BatchMessageListener batchMessageListener, int batchSize, long batchWaitMs) {
+            if (batchSize < 1) {
+                throw new IllegalArgumentException("Batch size should be positive");
+            }
+            this.batchMessageListener = batchMessageListener;
+            this.batchSize = batchSize;
+            this.batchWaitMs = batchWaitMs;
+            return this;
+        }
+
+        /**
+         * @param metrics registry of per-session metrics, nothing is registered if it is null
+         * @param dispatchProbe source of dispatched messages of a session, not registered if it is null
+         */
+        public Builder withMetrics(MetricRegistry metrics, ConsumerDispatchProbe dispatchProbe) {
+            this.metrics = metrics;
+            this.dispatchProbe = dispatchProbe;
+            return this;
+        }
+
+        /**
+         * @param executor executor messages are handed over to, listeners are called in broker client threads if it
+         *                 is null; it should block rather than reject when it is full
+         */
+        public Builder withExecutor(Executor executor) {
+            this.executor = executor == null ? null : (message, task, onCancel) -> executor.execute(task);
+            return this;
+        }
+
+        /**
+         * @param executor executor which chooses where a message is processed by the message
+         */
+        public Builder withExecutor(MessageExecutor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        public SimpleMessageListenerContainer build() {
+            if ((messageListener == null) == (batchMessageListener == null)) {
+                throw new IllegalStateException("Either a listener or a batch listener should be set");
+            }
+            if (batchMessageListener != null && executor != null) {
+                throw new IllegalStateException("Batch mode does not hand messages over to an executor");
+            }
+            return new SimpleMessageListenerContainer(this);
+        }
     }
 
     /**
      * Method for obtaining a listener instance for specific consumer.
+     * @param codec
      * @param consumer
      * @param <T>
      * @return
      */
-    public static <T extends Serializable> ObjectMessageListener<T> listenerFor(Consumer<T> consumer) {
-        return new ObjectMessageListener<>(consumer);
+    public static <T> ObjectMessageListener<T> listenerFor(MessageCodec<T> codec, Consumer<T> consumer) {
+        return new ObjectMessageListener<>(codec, consumer);
+    }
+
+    /**
+     * Method for obtaining a batch listener instance for specific consumer.
+     * @param codec
+     * @param consumer
+     * @param <T>
+     * @return
+     */
+    public static <T> ObjectBatchMessageListener<T> batchListenerFor(MessageCodec<T> codec,
+                                                                     Consumer<List<T>> consumer) {
+        return new ObjectBatchMessageListener<>(codec, consumer);
+    }
+
+    /**
+     * Executor of tasks which is given the object a message carries.
+     * @param <T>
+     */
+    @FunctionalInterface
+    public interface ObjectExecutor<T> {
+        /**
+         * @see MessageExecutor#execute(Message, Runnable, Runnable)
+         */
+        void execute(T obj, Runnable task, Runnable onCancel);
+    }
+
+    /**
+     * Method for obtaining a message executor which decodes a message and hands its task over to the executor with
+     * the decoded object, e.g. to run it in the execution lane of an order's accounts. The listener decodes the
+     * message once more when the task runs. A message which can not be decoded is rejected.
+     */
+    public static <T> MessageExecutor executorFor(MessageCodec<T> codec, ObjectExecutor<T> executor) {
+        Objects.requireNonNull(codec);
+        Objects.requireNonNull(executor);
+        return (message, task, onCancel) -> {
+            final T obj;
+            try {
+                obj = decode(codec, message);
+            } catch (JMSException | RuntimeException e) {
+                throw new RejectedExecutionException("Unable to decode message", e);
+            }
+            executor.execute(obj, task, onCancel);
+        };
+    }
+
+    private static <T> T decode(MessageCodec<T> codec, Message message) throws JMSException {
+        final BytesMessage bytesMessage = (BytesMessage) message;
+        // body may have been read already by the message executor
+        bytesMessage.reset();
+        final byte[] body = new byte[(int) bytesMessage.getBodyLength()];
+        bytesMessage.readBytes(body);
+        return codec.decode(body);
     }
 
     /**
@@ -103,41 +410,218 @@ public class SimpleMessageListenerContainer implements Managed {
      * @throws JMSException
      */
     @Override
-    public void start() throws JMSException {
-        logger.debug("Starting message listening container with {} consumes", consumersCount);
-        if (consumers == null) {
-            sessions = new HashSet<>(consumersCount);
-            consumers = new HashSet<>(consumersCount);
+    public synchronized void start() throws JMSException {
+        logger.debug("Starting message listening container with {} consumes", initialConsumersCount);
+        isStarted = true;
+        if (connection == null) {
             connection = connectionFactory.createConnection();
             connection.start();
+            resize(initialConsumersCount);
+        }
+    }
 
-            for (int i = 0; i < consumersCount; i++) {
-                Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
-                MessageConsumer consumer = session.createConsumer(destination);
-                consumer.setMessageListener(messageListener);
+    /**
+     * Open or close sessions so that the given number of them is consuming. Sessions are closed in reverse order of
+     * their creation. Does nothing if the container is not started.
+     */
+    @Override
+    public synchronized void resize(int consumersCount) throws JMSException {
+        if (!isStarted || connection == null) {
+            return;
+        }
+        while (consumerSessions.size() < consumersCount) {
+            consumerSessions.addLast(new ConsumerSession(nextSessionIndex++));
+        }
+        while (consumerSessions.size() > consumersCount) {
+            consumerSessions.removeLast().close();
+        }
+    }
 
-                sessions.add(session);
-                consumers.add(consumer);
+    @Override
+    public synchronized int getConsumersCount() {
+        return consumerSessions.size();
+    }
+
+    @Override
+    public long getHandledCount() {
+        return handledCount.sum();
+    }
+
+    @Override
+    public long getBusyNanos() {
+        return busyNanos.sum();
+    }
+
+    private void pollHandedOver(ConsumerSession consumerSession) {
+        final MessageConsumer consumer = consumerSession.consumer;
+        int inFlight = 0;
+        boolean hasFailed = false;
+        try {
+            while (isStarted && consumerSession.isPolling) {
+                Processed done;
+                while ((done = consumerSession.handedBack.poll()) != null) {
+                    inFlight--;
+                    if (done.isSuccessful) {
+                        done.message.acknowledge();
+                    } else {
+                        hasFailed = true;
+                    }
+                }
+                if (hasFailed) {
+                    // recover redelivers every unacknowledged message, so the ones in flight are let finish first
+                    if (inFlight == 0) {
+                        consumerSession.session.recover();
+                        hasFailed = false;
+                    } else {
+                        consumerSession.awaitSignal();
+                    }
+                    continue;
+                }
+                final Message message = consumer.receiveNoWait();
+                if (message == null) {
+                    consumerSession.awaitSignal();
+                    continue;
+                }
+                inFlight++;
+                try {
+                    executor.execute(message, () -> {
+                        boolean isSuccessful = false;
+                        try {
+                            handle(consumerSession, message);
+                            isSuccessful = true;
+                        } catch (RuntimeException e) {
+                            logger.error("Unable to process message, it will be redelivered", e);
+                        } finally {
+                            consumerSession.handBack(message, isSuccessful);
+                        }
+                    }, () -> {
+                        logger.error("Message processing is cancelled, it will be redelivered");
+                        consumerSession.handBack(message, false);
+                    });
+                } catch (RejectedExecutionException e) {
+                    logger.error("Unable to hand message over, it will be redelivered", e);
+                    consumerSession.handBack(message, false);
+                }
+            }
+            // closing session redelivers unacknowledged messages, so successful ones are acknowledged before that
+            while (inFlight > 0) {
+                final Processed done = consumerSession.handedBack.poll();
+                if (done == null) {
+                    consumerSession.awaitSignal();
+                    continue;
+                }
+                inFlight--;
+                if (done.isSuccessful) {
+                    done.message.acknowledge();
+                }
+            }
+        } catch (JMSException e) {
+            if (isStarted && consumerSession.isPolling) {
+                logger.error("Unexpected JMS exception during polling, {} will be replaced", consumerSession.name, e);
+                replaceLater(consumerSession);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void handle(ConsumerSession consumerSession, Message message) {
+        final long start = System.nanoTime();
+        try {
+            messageListener.onMessage(message);
+        } finally {
+            busyNanos.add(System.nanoTime() - start);
+            handledCount.increment();
+            consumerSession.processed.inc();
+        }
+    }
+
+    private void pollBatches(ConsumerSession consumerSession) {
+        final MessageConsumer consumer = consumerSession.consumer;
+        final List<Message> batch = new ArrayList<>(batchSize);
+        while (isStarted && consumerSession.isPolling) {
+            try {
+                Message first = consumer.receive(POLL_TIMEOUT_MS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(batchWaitMs);
+                while (batch.size() < batchSize) {
+                    long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                    Message next = remainingMs > 0 ? consumer.receive(remainingMs) : consumer.receiveNoWait();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                final long start = System.nanoTime();
+                try {
+                    batchMessageListener.onMessages(batch);
+                    batch.get(batch.size() - 1).acknowledge();
+                } catch (RuntimeException e) {
+                    logger.error("Unable to process batch of {} messages, batch will be redelivered", batch.size(), e);
+                    consumerSession.session.recover();
+                } finally {
+                    busyNanos.add(System.nanoTime() - start);
+                    handledCount.add(batch.size());
+                    consumerSession.processed.inc(batch.size());
+                }
+            } catch (JMSException e) {
+                if (isStarted && consumerSession.isPolling) {
+                    logger.error("Unexpected JMS exception during batch polling, {} will be replaced",
+                            consumerSession.name, e);
+                    replaceLater(consumerSession);
+                }
+                return;
+            } finally {
+                batch.clear();
             }
         }
-        isStarted = true;
     }
 
     /**
-     * Closes related connection, consumers and sessions.
+     * Closing a session joins its polling thread, and resize or stop may hold the container lock while they wait for
+     * that thread, so the session whose polling thread has failed is replaced by another thread.
+     */
+    private void replaceLater(ConsumerSession failed) {
+        new Thread(() -> replace(failed), "replace-" + failed.name).start();
+    }
+
+    private synchronized void replace(ConsumerSession failed) {
+        // resize or stop has closed the session already
+        if (!consumerSessions.remove(failed)) {
+            return;
+        }
+        try {
+            failed.close();
+        } catch (JMSException e) {
+            logger.warn("Unable to close failed {}", failed.name, e);
+        }
+        if (!isStarted) {
+            return;
+        }
+        try {
+            consumerSessions.addLast(new ConsumerSession(nextSessionIndex++));
+        } catch (JMSException e) {
+            logger.error("Unable to replace failed {}, consumers count is decreased", failed.name, e);
+        }
+    }
+
+    /**
+     * Closes related connection, consumers and sessions, after messages handed over to the executor are processed.
      * @throws JMSException
      */
     @Override
-    public void stop() throws JMSException {
+    public synchronized void stop() throws JMSException {
         if (!isStarted) {
             return;
         }
         logger.debug("Shutting down message listening container");
-        for (MessageConsumer consumer : consumers) {
-            consumer.close();
-        }
-        for (Session session : sessions) {
-            session.close();
+        isStarted = false;
+        while (!consumerSessions.isEmpty()) {
+            consumerSessions.removeLast().close();
         }
         connection.close();
     }
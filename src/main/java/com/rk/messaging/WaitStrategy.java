@@ -0,0 +1,16 @@
+package com.rk.messaging;
+
+/**
+ * How a thread waits for {@link RingBuffer} when it is full for producers or empty for consumers, from the lowest
+ * latency and a busy core per waiting thread to the highest latency and no CPU while idle.
+ */
+public enum WaitStrategy {
+    /** spin until the buffer is ready */
+    BUSY_SPIN,
+    /** spin for a while, then yield the core to other threads between attempts */
+    YIELDING,
+    /** spin and yield for a while, then park for a short time between attempts */
+    SLEEPING,
+    /** park until the other side signals a change, signalling costs a lock when somebody waits */
+    BLOCKING
+}
@@ -0,0 +1,135 @@
+package com.rk.resources;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.rk.api.AccountEvent;
+import com.rk.core.AccountEventFeed;
+import com.rk.core.AccountIndex;
+import org.glassfish.jersey.server.ChunkedOutput;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.NotFoundException;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.ServiceUnavailableException;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import java.io.IOException;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stream of committed balance changes of an account in Server-Sent Events format. Every event has its id, so client
+ * resumes the stream after reconnection by sending the id of the last received event in {@code Last-Event-ID} header,
+ * events published in between are replayed from {@link AccountEventFeed} without database.
+ *
+ * <p>If some events cannot be replayed, the stream starts with {@code reset} event: client should read the account
+ * again. The stream is ended by server when the client is too slow to take events or on shutdown, client should
+ * reconnect. Streams are written asynchronously by a bounded executor, they do not hold server threads.</p>
+ */
+@Path("accounts/{id}/events")
+public class AccountEventsResource {
+    public static final String EVENT_STREAM = "text/event-stream";
+    public static final String LAST_EVENT_ID = "Last-Event-ID";
+
+    private static final String RESET_EVENT = "event: reset\ndata: {}\n\n";
+    private static final String HEARTBEAT = ": heartbeat\n\n";
+    private static final String MALFORMED_LAST_EVENT_ID_MSG = "Malformed " + LAST_EVENT_ID + ": %s";
+    private static final String TOO_MANY_SUBSCRIBERS_MSG = "Too many event streams are open, retry later";
+
+    private static final Logger logger = LoggerFactory.getLogger(AccountEventsResource.class);
+
+    private final AccountEventFeed eventFeed;
+    private final AccountIndex accountIndex;
+    private final Executor executor;
+    private final ObjectWriter eventWriter;
+    private final long heartbeatMs;
+
+    /**
+     * @param eventFeed feed events are taken from
+     * @param accountIndex index of existing accounts
+     * @param executor executor streams are written in, every open stream takes one of its threads
+     * @param heartbeatMs comment is written to an idle stream this often
+     */
+    public AccountEventsResource(AccountEventFeed eventFeed, AccountIndex accountIndex, Executor executor,
+                                 ObjectMapper objectMapper, long heartbeatMs) {
+        Objects.requireNonNull(eventFeed);
+        Objects.requireNonNull(accountIndex);
+        Objects.requireNonNull(executor);
+        Objects.requireNonNull(objectMapper);
+        this.eventFeed = eventFeed;
+        this.accountIndex = accountIndex;
+        this.executor = executor;
+        this.eventWriter = objectMapper.writerFor(AccountEvent.class);
+        this.heartbeatMs = heartbeatMs;
+    }
+
+    @GET
+    @Produces(EVENT_STREAM)
+    public Response get(@PathParam("id") int id, @HeaderParam(LAST_EVENT_ID) String lastEventId) {
+        if (!accountIndex.contains(id)) {
+            throw new NotFoundException();
+        }
+        final AccountEventFeed.Subscription subscription = eventFeed.subscribe(id, parseEventId(lastEventId));
+        if (subscription == null) {
+            throw new ServiceUnavailableException(TOO_MANY_SUBSCRIBERS_MSG);
+        }
+        // every chunk is flushed as soon as it is written, chunks are whole events so no delimiter is needed
+        final ChunkedOutput<String> output = new ChunkedOutput<>(String.class, "");
+        try {
+            executor.execute(() -> stream(subscription, output));
+        } catch (RejectedExecutionException e) {
+            subscription.close();
+            throw new ServiceUnavailableException(TOO_MANY_SUBSCRIBERS_MSG);
+        }
+        // gzip would hold events until its buffer is full
+        return Response.ok(output)
+                .header(HttpHeaders.CACHE_CONTROL, "no-cache")
+                .header(HttpHeaders.CONTENT_ENCODING, "identity")
+                .build();
+    }
+
+    private void stream(AccountEventFeed.Subscription subscription, ChunkedOutput<String> output) {
+        try (AccountEventFeed.Subscription ignored = subscription; ChunkedOutput<String> closed = output) {
+            if (!subscription.isResumed()) {
+                output.write(RESET_EVENT);
+            }
+            for (AccountEvent event : subscription.getReplay()) {
+                output.write(format(event));
+            }
+            while (!output.isClosed()) {
+                final AccountEvent event = subscription.poll(heartbeatMs, TimeUnit.MILLISECONDS);
+                output.write(event == null ? HEARTBEAT : format(event));
+            }
+        } catch (AccountEventFeed.EndOfFeedException e) {
+            // client reconnects and resumes from the last event it has received
+        } catch (IOException e) {
+            logger.debug("Account events stream is closed: {}", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private String format(AccountEvent event) throws IOException {
+        return "id: " + event.getId() + "\nevent: " + event.getType() + "\ndata: "
+                + eventWriter.writeValueAsString(event) + "\n\n";
+    }
+
+    private static Long parseEventId(String lastEventId) {
+        if (lastEventId == null || lastEventId.isEmpty()) {
+            return null;
+        }
+        try {
+            return Long.parseLong(lastEventId.trim());
+        } catch (NumberFormatException e) {
+            throw new BadRequestException(String.format(MALFORMED_LAST_EVENT_ID_MSG, lastEventId));
+        }
+    }
+}
@@ -1,6 +1,10 @@
 package com.rk.resources;
 
 import com.rk.api.Account;
+import com.rk.api.AccountBuilder;
+import com.rk.api.Currency;
+import com.rk.core.AccountCache;
+import com.rk.core.AccountIndex;
 import com.rk.db.dao.AccountDAO;
 import io.dropwizard.hibernate.UnitOfWork;
 
@@ -19,6 +23,7 @@ import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriInfo;
 import java.math.BigDecimal;
+import java.util.Collections;
 import java.util.Optional;
 
 @Path("accounts")
@@ -28,9 +33,17 @@ public class AccountResource {
     @Context
     private UriInfo uriInfo;
     private final AccountDAO accountDAO;
+    private final AccountIndex accountIndex;
+    private final AccountCache accountCache;
 
-    public AccountResource(AccountDAO accountDAO) {
+    /**
+     * @param accountIndex index of existing accounts, created accounts are added to it after commit
+     * @param accountCache cache accounts are read from, created accounts are put to it after commit
+     */
+    public AccountResource(AccountDAO accountDAO, AccountIndex accountIndex, AccountCache accountCache) {
         this.accountDAO = accountDAO;
+        this.accountIndex = accountIndex;
+        this.accountCache = accountCache;
     }
 
     @POST
@@ -42,6 +55,12 @@ public class AccountResource {
         account.setBalance(BigDecimal.ZERO);
         Integer accountId = accountDAO.create(account);
         account.setId(accountId);
+        final Currency currency = account.getCurrency();
+        final Account created = AccountBuilder.anAccount().copyOf(account).build();
+        accountDAO.afterCommit(() -> {
+            accountIndex.add(accountId, currency);
+            accountCache.putAll(Collections.singletonList(created));
+        });
         return Response.created(
                 uriInfo.getAbsolutePathBuilder()
                         .path(accountId.toString())
@@ -66,12 +85,14 @@ public class AccountResource {
         return post(account);
     }
 
+    /**
+     * Account is read from {@link AccountCache}, database is queried only on cache miss.
+     */
     @GET
     @Path("{id}")
     @Produces(MediaType.APPLICATION_JSON)
-    @UnitOfWork(readOnly = true)
     public Response get(@PathParam("id") int id) {
-        return Optional.ofNullable(accountDAO.findById(id))
+        return Optional.ofNullable(accountCache.get(id))
                 .map(account -> Response.created(
                         uriInfo.getAbsolutePathBuilder()
                                 .path(Integer.toString(id))
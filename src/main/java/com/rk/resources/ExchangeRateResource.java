@@ -2,6 +2,7 @@ package com.rk.resources;
 
 import com.rk.api.Currency;
 import com.rk.api.ExchangeRate;
+import com.rk.core.ExchangeRateCache;
 import com.rk.db.dao.ExchangeRateDAO;
 import io.dropwizard.hibernate.UnitOfWork;
 
@@ -26,9 +27,11 @@ public class ExchangeRateResource {
     @Context
     private UriInfo uriInfo;
     private final ExchangeRateDAO exchangeRateDAO;
+    private final ExchangeRateCache exchangeRateCache;
 
-    public ExchangeRateResource(ExchangeRateDAO exchangeRateDAO) {
+    public ExchangeRateResource(ExchangeRateDAO exchangeRateDAO, ExchangeRateCache exchangeRateCache) {
         this.exchangeRateDAO = exchangeRateDAO;
+        this.exchangeRateCache = exchangeRateCache;
     }
 
     @POST
@@ -41,6 +44,7 @@ public class ExchangeRateResource {
                     Response.Status.CONFLICT);
         }
         exchangeRateDAO.create(exchangeRate);
+        publishAfterCommit(exchangeRate);
         return Response.created(
                 uriInfo.getAbsolutePathBuilder()
                         .path(exchangeRate.getCurrencyCodeFrom().name())
@@ -76,6 +80,15 @@ public class ExchangeRateResource {
         }
         existing.setRate(exchangeRate.getRate());
         exchangeRateDAO.update(existing);
+        publishAfterCommit(existing);
         return Response.ok().build();
     }
+
+    /**
+     * The response is sent after the hook returns, so an order submitted right after it already sees the rate.
+     */
+    private void publishAfterCommit(ExchangeRate exchangeRate) {
+        final ExchangeRate committed = new ExchangeRate(exchangeRate);
+        exchangeRateDAO.afterCommit(() -> exchangeRateCache.put(committed).join());
+    }
 }
@@ -0,0 +1,50 @@
+package com.rk.resources;
+
+import com.rk.api.Order;
+import com.rk.core.IdempotencyCache;
+
+import javax.annotation.Priority;
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.core.Response;
+import java.util.Objects;
+
+/**
+ * Answers repeated order requests from {@link IdempotencyCache} before the resource method is invoked, so repeated
+ * request opens no database transaction and sends nothing to the broker. Requests without the key and keys missing in
+ * the cache are passed to the resource, which checks the key in database.
+ */
+@Idempotent
+@Priority(Priorities.USER)
+public class IdempotencyKeyFilter implements ContainerRequestFilter {
+    private static final String INVALID_KEY_MSG = "Idempotency-Key should be a non-blank string of at most %s characters";
+
+    private final IdempotencyCache idempotencyCache;
+
+    public IdempotencyKeyFilter(IdempotencyCache idempotencyCache) {
+        Objects.requireNonNull(idempotencyCache);
+        this.idempotencyCache = idempotencyCache;
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) {
+        final String key = requestContext.getHeaderString(IdempotencyCache.HEADER);
+        if (key == null) {
+            return;
+        }
+        if (key.trim().isEmpty() || key.length() > IdempotencyCache.MAX_KEY_LENGTH) {
+            throw new BadRequestException(String.format(INVALID_KEY_MSG, IdempotencyCache.MAX_KEY_LENGTH));
+        }
+        final Order order = idempotencyCache.get(key);
+        if (order != null) {
+            requestContext.abortWith(Response.created(
+                    requestContext.getUriInfo().getAbsolutePathBuilder()
+                            .path(Integer.toString(order.getId()))
+                            .build())
+                    .entity(order)
+                    .build());
+        }
+    }
+}
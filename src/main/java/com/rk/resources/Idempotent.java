@@ -0,0 +1,17 @@
+package com.rk.resources;
+
+import javax.ws.rs.NameBinding;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks resource method which creates an order and supports {@link com.rk.core.IdempotencyCache#HEADER} header.
+ * Repeated requests are answered by {@link IdempotencyKeyFilter}.
+ */
+@NameBinding
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Idempotent {
+}
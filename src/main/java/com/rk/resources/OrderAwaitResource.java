@@ -0,0 +1,135 @@
+package com.rk.resources;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.rk.api.Order;
+import com.rk.api.OrderStatus;
+import com.rk.core.OrderCompletionRegistry;
+import com.rk.db.dao.OrderDAO;
+import io.dropwizard.hibernate.UnitOfWork;
+import io.dropwizard.jersey.params.DurationParam;
+import io.dropwizard.util.Duration;
+
+import javax.validation.constraints.Min;
+import javax.ws.rs.GET;
+import javax.ws.rs.NotFoundException;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.ServiceUnavailableException;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.MediaType;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+/**
+ * Long poll of order status. Request is suspended without holding a server thread until the order gets final status
+ * or the timeout expires, then it is resumed with the order, which is read from database on timeout. Zero or negative
+ * timeout reads the order at once.
+ */
+@Path("orders/{id}/await")
+public class OrderAwaitResource {
+    private static final String TOO_MANY_WAITERS_MSG = "Too many requests are waiting for orders, retry later";
+
+    private final IntFunction<Order> loader;
+    private final OrderCompletionRegistry completionRegistry;
+    private final Executor executor;
+    private final Duration maxTimeout;
+    private final Meter timeouts;
+
+    /**
+     * Loads an order from database in its own read-only unit of work. Intended to be created with
+     * {@link io.dropwizard.hibernate.UnitOfWorkAwareProxyFactory}.
+     */
+    public static class DatabaseLoader implements IntFunction<Order> {
+        private final OrderDAO orderDAO;
+
+        public DatabaseLoader(OrderDAO orderDAO) {
+            this.orderDAO = orderDAO;
+        }
+
+        @Override
+        @UnitOfWork(readOnly = true)
+        public Order apply(int id) {
+            return orderDAO.findById(id);
+        }
+    }
+
+    /**
+     * @param loader loads order by id, returns null if there is no such order
+     * @param completionRegistry registry notified by order processing
+     * @param executor executor responses of completed waiters are written in, so order processing does not write them
+     * @param maxTimeout default and maximum wait time
+     */
+    public OrderAwaitResource(IntFunction<Order> loader, OrderCompletionRegistry completionRegistry, Executor executor,
+                              Duration maxTimeout, MetricRegistry metrics) {
+        Objects.requireNonNull(loader);
+        Objects.requireNonNull(completionRegistry);
+        Objects.requireNonNull(executor);
+        Objects.requireNonNull(maxTimeout);
+        Objects.requireNonNull(metrics);
+        this.loader = loader;
+        this.completionRegistry = completionRegistry;
+        this.executor = executor;
+        this.maxTimeout = maxTimeout;
+        this.timeouts = metrics.meter(MetricRegistry.name(OrderAwaitResource.class, "timeouts"));
+    }
+
+    /**
+     * Respond with the order as soon as it is DONE or FAILED, or with its current state after the timeout.
+     * @param timeout how long to wait, at most and by default {@code maxTimeout}
+     */
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public void await(@PathParam("id") @Min(0) int id, @QueryParam("timeout") DurationParam timeout,
+                      @Suspended AsyncResponse response) {
+        final long timeoutMs = timeoutMillis(timeout);
+        if (timeoutMs <= 0) {
+            // zero timeout of asynchronous response means no timeout at all
+            final Order current = loader.apply(id);
+            if (current == null) {
+                response.resume(new NotFoundException());
+            } else {
+                response.resume(current);
+            }
+            return;
+        }
+        final CompletableFuture<Order> waiter = completionRegistry.register(id);
+        final Order current = loader.apply(id);
+        if (current == null || isFinal(current) || waiter == null) {
+            if (waiter != null) {
+                completionRegistry.cancel(id, waiter);
+            }
+            if (current == null) {
+                response.resume(new NotFoundException());
+            } else if (isFinal(current)) {
+                response.resume(current);
+            } else {
+                response.resume(new ServiceUnavailableException(TOO_MANY_WAITERS_MSG));
+            }
+            return;
+        }
+
+        response.setTimeoutHandler(timedOut -> {
+            completionRegistry.cancel(id, waiter);
+            timeouts.mark();
+            executor.execute(() -> timedOut.resume(loader.apply(id)));
+        });
+        response.setTimeout(timeoutMs, TimeUnit.MILLISECONDS);
+        waiter.thenAcceptAsync(response::resume, executor);
+    }
+
+    private long timeoutMillis(DurationParam timeout) {
+        final long max = maxTimeout.toMilliseconds();
+        return timeout == null ? max : Math.min(timeout.get().toMilliseconds(), max);
+    }
+
+    private static boolean isFinal(Order order) {
+        return order.getStatus() == OrderStatus.DONE || order.getStatus() == OrderStatus.FAILED;
+    }
+}
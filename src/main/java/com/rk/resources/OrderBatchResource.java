@@ -0,0 +1,58 @@
+package com.rk.resources;
+
+import com.rk.api.Order;
+import com.rk.api.OrderBatchItem;
+import com.rk.core.OrderBatchSubmitter;
+
+import javax.jms.JMSException;
+import javax.validation.constraints.NotNull;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.io.IOException;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Bulk order submission. All orders of a request are created by {@link OrderBatchSubmitter} in one transaction.
+ */
+@Path("orders/batch")
+public class OrderBatchResource {
+    private static final String TOO_MANY_ORDERS_MSG = "At most %s orders can be submitted at once";
+
+    private final OrderBatchSubmitter orderBatchSubmitter;
+    private final int maxBatchSize;
+
+    /**
+     * @param orderBatchSubmitter submitter which opens its own unit of work
+     * @param maxBatchSize maximum number of orders in one request
+     */
+    public OrderBatchResource(OrderBatchSubmitter orderBatchSubmitter, int maxBatchSize) {
+        Objects.requireNonNull(orderBatchSubmitter);
+        this.orderBatchSubmitter = orderBatchSubmitter;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * Create all valid orders and send them for processing.
+     * @return result for every order of the request in the same order: id of created order or validation errors
+     */
+    @POST
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public List<OrderBatchItem> post(@NotNull List<Order> orders) {
+        if (orders.size() > maxBatchSize) {
+            throw new WebApplicationException(String.format(TOO_MANY_ORDERS_MSG, maxBatchSize),
+                    Response.Status.REQUEST_ENTITY_TOO_LARGE);
+        }
+        try {
+            return orderBatchSubmitter.submit(orders);
+        } catch (JMSException | IOException e) {
+            throw new WebApplicationException(e.getMessage(), e, Response.Status.INTERNAL_SERVER_ERROR);
+        }
+    }
+}
@@ -2,19 +2,29 @@ package com.rk.resources;
 
 
 import com.rk.api.Order;
+import com.rk.api.OrderBuilder;
 import com.rk.api.OrderStatus;
-import com.rk.db.dao.AccountDAO;
+import com.rk.core.AccountIndex;
+import com.rk.core.IdempotencyCache;
+import com.rk.core.OrderJournal;
+import com.rk.core.OrderMetrics;
 import com.rk.db.dao.OrderDAO;
-import com.rk.messaging.ObjectMessageProducer;
+import com.rk.messaging.MessageSender;
+import com.google.common.base.Throwables;
 import io.dropwizard.hibernate.UnitOfWork;
+import org.hibernate.exception.ConstraintViolationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.jms.JMSException;
+import javax.persistence.PersistenceException;
 import javax.validation.Valid;
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 import javax.ws.rs.BadRequestException;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
@@ -24,43 +34,136 @@ import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriInfo;
+import java.io.IOException;
 import java.util.Optional;
 
 @Path("orders")
 public class OrderResource {
+    private static final Logger logger = LoggerFactory.getLogger(OrderResource.class);
+    private static final String IDEMPOTENCY_KEY_CONSTRAINT = "uq_orders_idempotency_key";
+    private static final String IDEMPOTENCY_KEY_IN_PROGRESS_MSG = "Order with this Idempotency-Key is being created";
+    private static final String IDEMPOTENCY_KEY_EXPIRED_MSG = "Idempotency-Key was used by an order created too long ago";
+
     @Context
     private UriInfo uriInfo;
     private final OrderDAO orderDAO;
-    private final AccountDAO accountDAO;
-    private final ObjectMessageProducer ordersMessageProducer;
+    private final AccountIndex accountIndex;
+    private final MessageSender<Order> ordersMessageProducer;
+    private final boolean asyncSend;
+    private final IdempotencyCache idempotencyCache;
+    private final OrderMetrics orderMetrics;
+    private final OrderJournal orderJournal;
+
+    /**
+     * Logs orders which were saved but could not be sent to the queue in background. Such orders stay NEW, or until
+     * the next start if they are journaled.
+     */
+    private static final MessageSender.CompletionCallback<Order> ASYNC_SEND_CALLBACK =
+            new MessageSender.CompletionCallback<Order>() {
+                @Override
+                public void onCompletion(Order order) {
+                    logger.debug("Order {} is sent", order.getId());
+                }
 
-    public OrderResource(OrderDAO orderDAO, AccountDAO accountDAO, ObjectMessageProducer ordersMessageProducer) {
+                @Override
+                public void onException(Order order, Exception exception) {
+                    logger.error("Order {} is saved but not sent for processing", order.getId(), exception);
+                }
+            };
+
+    /**
+     * @param accountIndex index of existing accounts, orders of unknown accounts are rejected
+     * @param asyncSend if true, response does not wait until the order is accepted by message broker
+     * @param idempotencyCache cache of orders created with idempotency key, the same as used by
+     *                         {@link IdempotencyKeyFilter}
+     * @param orderMetrics timers of submission stages, nothing is measured if it is null
+     * @param orderJournal journal orders are appended to before they are sent, orders are not journaled if it is null
+     */
+    public OrderResource(OrderDAO orderDAO, AccountIndex accountIndex, MessageSender<Order> ordersMessageProducer,
+                         boolean asyncSend, IdempotencyCache idempotencyCache, OrderMetrics orderMetrics,
+                         OrderJournal orderJournal) {
         this.orderDAO = orderDAO;
-        this.accountDAO = accountDAO;
+        this.accountIndex = accountIndex;
         this.ordersMessageProducer = ordersMessageProducer;
+        this.asyncSend = asyncSend;
+        this.idempotencyCache = idempotencyCache;
+        this.orderMetrics = orderMetrics;
+        this.orderJournal = orderJournal;
     }
 
+    /**
+     * Create order and send it for processing. If request has {@link IdempotencyCache#HEADER} header, order created by
+     * the first request with the same key is returned instead of creating a new one. Repeats are usually answered by
+     * {@link IdempotencyKeyFilter} from cache, so here the key is checked only in database.
+     */
     @POST
+    @Idempotent
     @UnitOfWork()
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
-    public Response post(@NotNull @Valid Order order) {
-        requireAccountsExist(order);
+    public Response post(@HeaderParam(IdempotencyCache.HEADER) String idempotencyKey, @NotNull @Valid Order order) {
+        if (idempotencyKey != null) {
+            final Order existing = orderDAO.findByIdempotencyKey(idempotencyKey);
+            if (existing != null) {
+                return replay(idempotencyKey, existing);
+            }
+        }
+        final OrderMetrics.Sample sample = orderMetrics == null
+                ? OrderMetrics.Sample.NONE : orderMetrics.sample(order);
+        try {
+            requireAccountsExist(order);
+        } catch (BadRequestException e) {
+            sample.lap(OrderMetrics.Stage.SUBMISSION_VALIDATION);
+            sample.record(OrderMetrics.Outcome.REJECTED);
+            throw e;
+        }
+        sample.lap(OrderMetrics.Stage.SUBMISSION_VALIDATION);
+        order.setId(null);
         order.setStatus(OrderStatus.NEW);
-        int orderId = orderDAO.create(order);
+        order.setDerivedRate(false);
+        order.setIdempotencyKey(idempotencyKey);
+        final int orderId = create(order);
         order.setId(orderId);
+        sample.lap(OrderMetrics.Stage.SUBMISSION_INSERT);
+        if (orderMetrics != null) {
+            orderDAO.afterCompletion(isCommitted -> {
+                sample.lap(OrderMetrics.Stage.SUBMISSION_COMMIT);
+                sample.record(isCommitted ? OrderMetrics.Outcome.OK : OrderMetrics.Outcome.ERROR);
+            });
+        }
 
+        if (orderJournal != null) {
+            try {
+                orderJournal.append(order);
+            } catch (IOException e) {
+                throw new WebApplicationException(e.getMessage(), e, Response.Status.INTERNAL_SERVER_ERROR);
+            } finally {
+                sample.lap(OrderMetrics.Stage.SUBMISSION_JOURNAL);
+            }
+        }
         try {
-            ordersMessageProducer.send(order);
+            // the entity stays attached to the request's session, so the queue gets its own copy: background thread
+            // encodes it later and in-process consumers take the reference itself
+            final Order sent = OrderBuilder.anOrder().copyOf(order).build();
+            if (asyncSend) {
+                ordersMessageProducer.sendAsync(sent, ASYNC_SEND_CALLBACK);
+            } else {
+                ordersMessageProducer.send(sent);
+            }
         } catch (JMSException e) {
+            if (orderJournal != null) {
+                // the order is rolled back with the request
+                orderJournal.complete(orderId);
+            }
             throw new WebApplicationException(e.getMessage(), e, Response.Status.INTERNAL_SERVER_ERROR);
+        } finally {
+            sample.lap(OrderMetrics.Stage.SUBMISSION_SEND);
         }
-        return Response.created(
-                uriInfo.getAbsolutePathBuilder()
-                        .path(Integer.toString(orderId))
-                        .build())
-                .entity(order)
-                .build();
+        if (idempotencyKey != null) {
+            final Order response = OrderBuilder.anOrder().copyOf(order).build();
+            orderDAO.afterCommit(() -> idempotencyCache.put(idempotencyKey, response));
+        }
+        return created(order);
     }
 
     @GET
@@ -75,13 +178,59 @@ public class OrderResource {
                 .orElseThrow(() -> new WebApplicationException(Response.Status.NOT_FOUND));
     }
 
+    private int create(Order order) {
+        try {
+            return orderDAO.create(order);
+        } catch (PersistenceException e) {
+            // concurrent request with the same key has inserted its order first
+            final boolean isKeyConflict = Throwables.getCausalChain(e).stream()
+                    .filter(ConstraintViolationException.class::isInstance)
+                    .map(cause -> ((ConstraintViolationException) cause).getConstraintName())
+                    .anyMatch(name -> name != null && name.toLowerCase().contains(IDEMPOTENCY_KEY_CONSTRAINT));
+            if (isKeyConflict) {
+                throw new WebApplicationException(IDEMPOTENCY_KEY_IN_PROGRESS_MSG, Response.Status.CONFLICT);
+            }
+            throw e;
+        }
+    }
+
+    private Response replay(String idempotencyKey, Order existing) {
+        if (existing.getCreationDate() == null || !idempotencyCache.isWithinWindow(existing.getCreationDate().getTime())) {
+            throw new WebApplicationException(IDEMPOTENCY_KEY_EXPIRED_MSG, Response.Status.CONFLICT);
+        }
+        final Order response = asCreated(existing);
+        idempotencyCache.put(idempotencyKey, response);
+        return created(response);
+    }
+
+    /**
+     * Repeated request gets the same response as the first one, not the state processing has brought the order to:
+     * processing sets status and derived rate and replaces description of a failed order.
+     */
+    private static Order asCreated(Order order) {
+        return OrderBuilder.anOrder().copyOf(order)
+                .withStatus(OrderStatus.NEW)
+                .withDerivedRate(false)
+                .withDescription(order.getStatus() == OrderStatus.FAILED ? null : order.getDescription())
+                .build();
+    }
+
+    private Response created(Order order) {
+        return Response.created(
+                uriInfo.getAbsolutePathBuilder()
+                        .path(Integer.toString(order.getId()))
+                        .build())
+                .entity(order)
+                .build();
+    }
+
     private void requireAccountsExist(Order order) {
         Integer sender = order.getSenderAccount();
-        if (sender != null && accountDAO.findById(sender) == null)
+        if (sender != null && !accountIndex.contains(sender))
             throw new BadRequestException("Cannot submit order. Sender account doesn't exist");
 
         Integer receiver = order.getReceiverAccount();
-        if (receiver != null && accountDAO.findById(receiver) == null)
+        if (receiver != null && !accountIndex.contains(receiver))
             throw new BadRequestException("Cannot submit order. Receiver account doesn't exist");
     }
 }
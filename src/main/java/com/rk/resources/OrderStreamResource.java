@@ -0,0 +1,236 @@
+package com.rk.resources;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.rk.api.Order;
+import com.rk.api.OrderBatchItem;
+import com.rk.core.OrderBatchSubmitter;
+import com.rk.messaging.QueueDepthProbe;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jms.JMSException;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streaming order ingestion. Request body is newline-delimited JSON, one order per line; response is newline-delimited
+ * JSON as well, one {@link OrderBatchItem} per non-blank line of the request, its index is the line number.
+ *
+ * <p>Lines are read one by one while response is written, every {@code chunkSize} orders are created by
+ * {@link OrderBatchSubmitter} in their own transaction and their results are written and flushed right after commit.
+ * Only one chunk is kept in memory, so memory use does not depend on request size. Before every chunk is read, depth of
+ * orders queue is checked: while it is above {@code maxQueueDepth}, reading is paused, so client is slowed down by TCP
+ * flow control instead of filling the queue.</p>
+ */
+@Path("orders/stream")
+public class OrderStreamResource {
+    public static final String NDJSON = "application/x-ndjson";
+    /**
+     * Longer lines are rejected without being parsed, so a single line cannot exhaust memory.
+     */
+    public static final int MAX_LINE_BYTES = 16 * 1024;
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderStreamResource.class);
+    private static final String LINE_TOO_LONG_MSG = "Line is longer than " + MAX_LINE_BYTES + " bytes";
+    private static final String MALFORMED_ORDER_MSG = "Malformed order: %s";
+    private static final String CHUNK_FAILED_MSG = "Order is not created: %s";
+
+    private final OrderBatchSubmitter orderBatchSubmitter;
+    private final QueueDepthProbe queueDepthProbe;
+    private final ObjectReader orderReader;
+    private final ObjectWriter itemWriter;
+    private final int chunkSize;
+    private final long maxQueueDepth;
+    private final long throttlePauseMs;
+    private final Meter lines;
+    private final Meter throttled;
+    private final Timer chunks;
+
+    /**
+     * @param orderBatchSubmitter submitter which opens its own unit of work
+     * @param queueDepthProbe depth of the queue orders are sent to
+     * @param chunkSize number of orders created in one transaction
+     * @param maxQueueDepth reading is paused while queue depth is above this
+     * @param throttlePauseMs how long to wait before queue depth is checked again
+     */
+    public OrderStreamResource(OrderBatchSubmitter orderBatchSubmitter, QueueDepthProbe queueDepthProbe,
+                               ObjectMapper objectMapper, int chunkSize, long maxQueueDepth, long throttlePauseMs,
+                               MetricRegistry metrics) {
+        Objects.requireNonNull(orderBatchSubmitter);
+        Objects.requireNonNull(queueDepthProbe);
+        Objects.requireNonNull(objectMapper);
+        Objects.requireNonNull(metrics);
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size should be positive");
+        }
+        this.orderBatchSubmitter = orderBatchSubmitter;
+        this.queueDepthProbe = queueDepthProbe;
+        this.orderReader = objectMapper.readerFor(Order.class);
+        this.itemWriter = objectMapper.writerFor(OrderBatchItem.class);
+        this.chunkSize = chunkSize;
+        this.maxQueueDepth = maxQueueDepth;
+        this.throttlePauseMs = throttlePauseMs;
+        this.lines = metrics.meter(MetricRegistry.name(OrderStreamResource.class, "lines"));
+        this.throttled = metrics.meter(MetricRegistry.name(OrderStreamResource.class, "throttled"));
+        this.chunks = metrics.timer(MetricRegistry.name(OrderStreamResource.class, "chunks"));
+    }
+
+    @POST
+    @Consumes(NDJSON)
+    @Produces(NDJSON)
+    public StreamingOutput post(InputStream body) {
+        return output -> ingest(new BufferedInputStream(body), output);
+    }
+
+    private void ingest(InputStream input, OutputStream output) throws IOException {
+        final ByteArrayOutputStream line = new ByteArrayOutputStream();
+        final List<Line> chunk = new ArrayList<>(chunkSize);
+        int lineNumber = 0;
+        boolean isEndOfStream = false;
+        while (!isEndOfStream) {
+            awaitQueueBelowLimit();
+            while (chunk.size() < chunkSize) {
+                line.reset();
+                final int length = readLine(input, line);
+                if (length < 0) {
+                    isEndOfStream = true;
+                    break;
+                }
+                lineNumber++;
+                final byte[] bytes = line.toByteArray();
+                if (isBlank(bytes)) {
+                    continue;
+                }
+                lines.mark();
+                chunk.add(parse(lineNumber, length, bytes));
+            }
+            submit(chunk);
+            for (Line parsed : chunk) {
+                output.write(itemWriter.writeValueAsBytes(parsed.item));
+                output.write('\n');
+            }
+            output.flush();
+            chunk.clear();
+        }
+    }
+
+    private Line parse(int lineNumber, int length, byte[] bytes) {
+        final OrderBatchItem item = new OrderBatchItem(lineNumber);
+        if (length > MAX_LINE_BYTES) {
+            item.getErrors().add(LINE_TOO_LONG_MSG);
+            return new Line(item, null);
+        }
+        try {
+            final Order order = orderReader.readValue(bytes);
+            if (order == null) {
+                item.getErrors().add(String.format(MALFORMED_ORDER_MSG, "null"));
+            }
+            return new Line(item, order);
+        } catch (IOException e) {
+            final String reason = e instanceof JsonProcessingException
+                    ? ((JsonProcessingException) e).getOriginalMessage()
+                    : e.getMessage();
+            item.getErrors().add(String.format(MALFORMED_ORDER_MSG, reason));
+            return new Line(item, null);
+        }
+    }
+
+    /**
+     * Create parsed orders of the chunk and copy their results to items of their lines.
+     */
+    private void submit(List<Line> chunk) {
+        final List<Order> orders = new ArrayList<>(chunk.size());
+        final List<OrderBatchItem> items = new ArrayList<>(chunk.size());
+        for (Line line : chunk) {
+            if (line.order != null) {
+                orders.add(line.order);
+                items.add(line.item);
+            }
+        }
+        if (orders.isEmpty()) {
+            return;
+        }
+        try (Timer.Context ignored = chunks.time()) {
+            final List<OrderBatchItem> results = orderBatchSubmitter.submit(orders);
+            for (int i = 0; i < results.size(); i++) {
+                items.get(i).setId(results.get(i).getId());
+                items.get(i).getErrors().addAll(results.get(i).getErrors());
+            }
+        } catch (JMSException | IOException | RuntimeException e) {
+            logger.error("Unable to create chunk of {} orders", orders.size(), e);
+            final String error = String.format(CHUNK_FAILED_MSG, e.getMessage());
+            for (OrderBatchItem item : items) {
+                item.getErrors().add(error);
+            }
+        }
+    }
+
+    private void awaitQueueBelowLimit() throws InterruptedIOException {
+        while (queueDepthProbe.getQueueDepth() > maxQueueDepth) {
+            throttled.mark();
+            try {
+                TimeUnit.MILLISECONDS.sleep(throttlePauseMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for orders queue to drain");
+            }
+        }
+    }
+
+    /**
+     * Read bytes up to the next line feed into the line, at most {@link #MAX_LINE_BYTES}, the rest of a longer line is
+     * skipped.
+     * @return full length of the line, -1 if the stream has ended
+     */
+    private static int readLine(InputStream input, ByteArrayOutputStream line) throws IOException {
+        int length = 0;
+        int b;
+        while ((b = input.read()) >= 0 && b != '\n') {
+            if (++length <= MAX_LINE_BYTES) {
+                line.write(b);
+            }
+        }
+        return b < 0 && length == 0 ? -1 : length;
+    }
+
+    private static boolean isBlank(byte[] bytes) {
+        for (byte b : bytes) {
+            if (!Character.isWhitespace(b)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Non-blank line of the request: its result and the order parsed from it, null if it cannot be parsed.
+     */
+    private static class Line {
+        private final OrderBatchItem item;
+        private final Order order;
+
+        private Line(OrderBatchItem item, Order order) {
+            this.item = item;
+            this.order = order;
+        }
+    }
+}
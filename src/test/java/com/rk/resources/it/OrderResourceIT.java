@@ -1,26 +1,41 @@
 package com.rk.resources.it;
 
-import com.google.common.util.concurrent.Uninterruptibles;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.rk.api.Account;
 import com.rk.api.AccountBuilder;
+import com.rk.api.AccountEvent;
 import com.rk.api.Currency;
 import com.rk.api.ExchangeRate;
 import com.rk.api.Order;
+import com.rk.api.OrderBatchItem;
 import com.rk.api.OrderBuilder;
 import com.rk.api.OrderStatus;
 import com.rk.api.OrderType;
+import com.rk.core.IdempotencyCache;
+import com.rk.resources.AccountEventsResource;
 import com.rk.resources.AccountResource;
+import com.rk.resources.OrderBatchResource;
 import com.rk.resources.ExchangeRateResource;
 import com.rk.resources.OrderResource;
+import com.rk.resources.OrderStreamResource;
 import com.rk.resources.it.testutil.ResourceRequest;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.core.Response;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
 import java.math.BigDecimal;
-import java.util.concurrent.TimeUnit;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
 
 public class OrderResourceIT extends ResourceIT {
+    private static final String AWAIT_PATH = "await";
+    private static final String AWAIT_TIMEOUT = "4s";
     private static ResourceRequest<Order> orderRequest;
     private static ResourceRequest<Account> accountRequest;
     private static ResourceRequest<ExchangeRate> exchangeRateRequest;
@@ -109,18 +124,157 @@ public class OrderResourceIT extends ResourceIT {
                 receiverBalanceExpected.compareTo(receiverBalanceActual) == 0);
     }
 
+    @Test
+    public void repeatedOrderWithIdempotencyKeyIsProcessedOnce() {
+        final Account account = accountRequest.post(
+                AccountBuilder.anAccount()
+                        .withCurrency(Currency.USD)
+                        .withBalance(BigDecimal.ZERO)
+                        .build()).getEntity();
+        final Order income = OrderBuilder.anOrder()
+                .withType(OrderType.INCOME)
+                .withOperationCurrencyCode(Currency.USD)
+                .withReceiverAccount(account.getId())
+                .withAmount(BigDecimal.TEN)
+                .build();
+        final ResourceRequest<Order> idempotentRequest = orderRequest
+                .header(IdempotencyCache.HEADER, "income-" + account.getId());
+
+        final Order first = idempotentRequest.post(income).getEntity();
+        waitForOrderProcessedAndGet(first.getId());
+        final Order repeated = idempotentRequest.post(income).getEntity();
+
+        Assert.assertEquals(first.getId(), repeated.getId());
+        final Account accountActual = accountRequest.path(account.getId().toString()).get().getEntity();
+        Assert.assertEquals(0, BigDecimal.TEN.compareTo(accountActual.getBalance()));
+    }
+
+    @Test
+    public void batchOfOrdersIsCreatedAndProcessed() {
+        final Account account = accountRequest.post(
+                AccountBuilder.anAccount()
+                        .withCurrency(Currency.USD)
+                        .withBalance(BigDecimal.ZERO)
+                        .build()).getEntity();
+        final Order income = OrderBuilder.anOrder()
+                .withType(OrderType.INCOME)
+                .withOperationCurrencyCode(Currency.USD)
+                .withReceiverAccount(account.getId())
+                .withAmount(BigDecimal.ONE)
+                .build();
+        final Order withMissingAccount = OrderBuilder.anOrder().copyOf(income).withReceiverAccount(-1).build();
+        final ResourceRequest<Order[]> batchRequest = createRequest(OrderBatchResource.class, Order[].class);
+
+        final OrderBatchItem[] items = batchRequest.post(new Order[] {income, withMissingAccount, income},
+                OrderBatchItem[].class, Response.Status.OK.getStatusCode()).getEntity();
+
+        Assert.assertNull(items[1].getId());
+        Assert.assertFalse(items[1].getErrors().isEmpty());
+        Assert.assertNotEquals(items[0].getId(), items[2].getId());
+        waitForOrderProcessedAndGet(items[0].getId());
+        waitForOrderProcessedAndGet(items[2].getId());
+        final Account accountActual = accountRequest.path(account.getId().toString()).get().getEntity();
+        Assert.assertEquals(0, BigDecimal.valueOf(2).compareTo(accountActual.getBalance()));
+    }
+
+    @Test
+    public void streamOfOrdersIsCreatedAndProcessed() throws IOException {
+        final Account account = accountRequest.post(
+                AccountBuilder.anAccount()
+                        .withCurrency(Currency.USD)
+                        .withBalance(BigDecimal.ZERO)
+                        .build()).getEntity();
+        final String income = String.format("{\"orderType\": \"INCOME\", \"operationCurrency\": \"USD\", "
+                + "\"receiverAccount\": %s, \"amount\": 1.5}", account.getId());
+        final ResourceRequest<String> streamRequest = createRequest(OrderStreamResource.class, String.class);
+
+        final String response = streamRequest.post(
+                Entity.entity(String.join("\n", income, "{", income), OrderStreamResource.NDJSON),
+                String.class, Response.Status.OK.getStatusCode()).getEntity();
+
+        final String[] lines = response.split("\n");
+        Assert.assertEquals(3, lines.length);
+        final ObjectMapper mapper = RULE.getObjectMapper();
+        final OrderBatchItem first = mapper.readValue(lines[0], OrderBatchItem.class);
+        final OrderBatchItem malformed = mapper.readValue(lines[1], OrderBatchItem.class);
+        final OrderBatchItem last = mapper.readValue(lines[2], OrderBatchItem.class);
+        Assert.assertNull(malformed.getId());
+        Assert.assertEquals(3, last.getIndex());
+        waitForOrderProcessedAndGet(first.getId());
+        waitForOrderProcessedAndGet(last.getId());
+        final Account accountActual = accountRequest.path(account.getId().toString()).get().getEntity();
+        Assert.assertEquals(0, BigDecimal.valueOf(3).compareTo(accountActual.getBalance()));
+    }
+
+    @Test
+    public void awaitRespondsWithProcessedOrder() {
+        final Account account = accountRequest.post(
+                AccountBuilder.anAccount()
+                        .withCurrency(Currency.USD)
+                        .withBalance(BigDecimal.ZERO)
+                        .build()).getEntity();
+        final Order income = orderRequest.post(OrderBuilder.anOrder()
+                .withType(OrderType.INCOME)
+                .withOperationCurrencyCode(Currency.USD)
+                .withReceiverAccount(account.getId())
+                .withAmount(BigDecimal.ONE)
+                .build()).getEntity();
+
+        final Order processed = orderRequest.path(income.getId().toString()).path(AWAIT_PATH)
+                .queryParam("timeout", AWAIT_TIMEOUT).get().getEntity();
+        final Order repeated = orderRequest.path(income.getId().toString()).path(AWAIT_PATH).get().getEntity();
+
+        Assert.assertEquals(OrderStatus.DONE, processed.getStatus());
+        Assert.assertEquals(OrderStatus.DONE, repeated.getStatus());
+        orderRequest.path(String.valueOf(Integer.MAX_VALUE)).path(AWAIT_PATH)
+                .get(String.class, Response.Status.NOT_FOUND.getStatusCode());
+    }
+
+    @Test
+    public void accountEventsAreReplayedFromLastEventId() throws IOException {
+        final Account account = accountRequest.post(
+                AccountBuilder.anAccount()
+                        .withCurrency(Currency.USD)
+                        .withBalance(BigDecimal.ZERO)
+                        .build()).getEntity();
+        final Order income = orderRequest.post(OrderBuilder.anOrder()
+                .withType(OrderType.INCOME)
+                .withOperationCurrencyCode(Currency.USD)
+                .withReceiverAccount(account.getId())
+                .withAmount(BigDecimal.ONE)
+                .build()).getEntity();
+        waitForOrderProcessedAndGet(income.getId());
+
+        // the stream does not end, so it is read by a connection which is closed without reading it to the end
+        final HttpURLConnection connection = (HttpURLConnection) new URL(String.format(
+                "http://127.0.0.1:%d/accounts/%d/events", RULE.getLocalPort(), account.getId())).openConnection();
+        connection.setReadTimeout(5000);
+        connection.setRequestProperty(AccountEventsResource.LAST_EVENT_ID, "0");
+        final AccountEvent event;
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+            Assert.assertEquals(AccountEventsResource.EVENT_STREAM, connection.getContentType());
+            Assert.assertTrue(reader.readLine().startsWith("id: "));
+            Assert.assertEquals("event: CREDIT", reader.readLine());
+            event = RULE.getObjectMapper().readValue(reader.readLine().substring("data: ".length()),
+                    AccountEvent.class);
+        } finally {
+            connection.disconnect();
+        }
+
+        Assert.assertEquals(account.getId().intValue(), event.getAccountId());
+        Assert.assertEquals(income.getId().intValue(), event.getOrderId());
+        Assert.assertEquals(0, BigDecimal.ONE.compareTo(event.getAmount()));
+        Assert.assertEquals(0, BigDecimal.ONE.compareTo(event.getBalance()));
+    }
+
     private void waitForOrderProcessedAndGet(Integer orderId) {
-        Order orderActual = null;
-        final int ATTEMPTS_COUNT = 10;
-        for (int i = 0; i < ATTEMPTS_COUNT; i ++) {
-            Uninterruptibles.sleepUninterruptibly(1, TimeUnit.SECONDS);
-            orderActual = orderRequest.path(orderId.toString()).get().getEntity();
-            if (orderActual.getStatus().equals(OrderStatus.DONE)) {
-                return;
-            }
+        final Order orderActual = orderRequest.path(orderId.toString()).path(AWAIT_PATH)
+                .queryParam("timeout", AWAIT_TIMEOUT).get().getEntity();
+        if (!orderActual.getStatus().equals(OrderStatus.DONE)) {
+            final String msg = "Order is expected to be '%s', but actual is '%s' after '%s'. Description: '%s'";
+            throw new AssertionError(String.format(msg, OrderStatus.DONE.toString(), orderActual.getStatus(),
+                    AWAIT_TIMEOUT, orderActual.getDescription()));
         }
-        final String msg = "Order is expected to be '%s', but actual is '%s' after '%s' attempts. Description: '%s'";
-        throw new AssertionError(String.format(msg, OrderStatus.DONE.toString(), orderActual.getStatus(),
-                ATTEMPTS_COUNT, orderActual.getDescription()));
     }
 }
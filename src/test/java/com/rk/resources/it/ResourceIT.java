@@ -4,7 +4,9 @@ import com.rk.MoneyTransferApplicationStandalone;
 import com.rk.configuration.MoneyTransferConfiguration;
 import com.rk.resources.it.testutil.ResourceRequest;
 import io.dropwizard.client.JerseyClientBuilder;
+import io.dropwizard.client.JerseyClientConfiguration;
 import io.dropwizard.testing.junit.DropwizardAppRule;
+import io.dropwizard.util.Duration;
 import org.junit.BeforeClass;
 import org.junit.ClassRule;
 
@@ -19,12 +21,16 @@ abstract public class ResourceIT {
     public static final DropwizardAppRule<MoneyTransferConfiguration> RULE =
             new DropwizardAppRule<>(MoneyTransferApplicationStandalone.class);
     private static final String HOST_PATTERN = "http://127.0.0.1:%d/%s";
+    private static final Duration CLIENT_TIMEOUT = Duration.seconds(5);
     private static Client client;
 
     @BeforeClass
     public static void initClass() {
-        if (client == null)
-            client = new JerseyClientBuilder(RULE.getEnvironment()).build("test client");
+        if (client == null) {
+            JerseyClientConfiguration clientConfiguration = new JerseyClientConfiguration();
+            clientConfiguration.setTimeout(CLIENT_TIMEOUT);
+            client = new JerseyClientBuilder(RULE.getEnvironment()).using(clientConfiguration).build("test client");
+        }
     }
 
     protected <T> ResourceRequest<T> createRequest(Class<?> resourceClass, Class<T> entityClass) {
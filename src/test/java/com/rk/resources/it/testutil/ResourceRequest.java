@@ -4,6 +4,8 @@ import org.apache.commons.lang3.ArrayUtils;
 
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.Response;
 
 public class ResourceRequest<T> {
@@ -12,45 +14,67 @@ public class ResourceRequest<T> {
 
     private final WebTarget webTarget;
     private final Class<T> requestEntityClass;
+    private final MultivaluedMap<String, Object> headers;
 
     public ResourceRequest(WebTarget webTarget, Class<T> requestEntity) {
+        this(webTarget, requestEntity, new MultivaluedHashMap<>());
+    }
+
+    private ResourceRequest(WebTarget webTarget, Class<T> requestEntity, MultivaluedMap<String, Object> headers) {
         this.webTarget = webTarget;
         this.requestEntityClass = requestEntity;
+        this.headers = headers;
     }
 
     public ResourceRequest<T> path(String path) {
-        return new ResourceRequest<>(webTarget.path(path), requestEntityClass);
+        return new ResourceRequest<>(webTarget.path(path), requestEntityClass, headers);
+    }
+
+    public ResourceRequest<T> queryParam(String name, Object value) {
+        return new ResourceRequest<>(webTarget.queryParam(name, value), requestEntityClass, headers);
+    }
+
+    public ResourceRequest<T> header(String name, Object value) {
+        final MultivaluedMap<String, Object> newHeaders = new MultivaluedHashMap<>();
+        newHeaders.putAll(headers);
+        newHeaders.add(name, value);
+        return new ResourceRequest<>(webTarget, requestEntityClass, newHeaders);
     }
 
     public ResourceResponse<T> post(T entityObject) {
-        Response response = webTarget.request().post(Entity.json(entityObject));
+        Response response = webTarget.request().headers(headers).post(Entity.json(entityObject));
         return getEntityResponse(response, requestEntityClass, Response.Status.CREATED.getStatusCode());
     }
 
     public <K> ResourceResponse<K> post(T entityObject, Class<K> responseType, int... expectedStatusCode) {
-        Response response = webTarget.request().post(Entity.json(entityObject));
+        Response response = webTarget.request().headers(headers).post(Entity.json(entityObject));
+        return getEntityResponse(response, responseType, expectedStatusCode);
+    }
+
+    public <K> ResourceResponse<K> post(Entity<?> entity, Class<K> responseType, int... expectedStatusCode) {
+        Response response = webTarget.request().headers(headers).post(entity);
         return getEntityResponse(response, responseType, expectedStatusCode);
     }
 
     public ResourceResponse<T> put(T entityObject) {
-        Response response = webTarget.request().put(Entity.json(entityObject));
+        Response response = webTarget.request().headers(headers).put(Entity.json(entityObject));
         return getEntityResponse(response, requestEntityClass, Response.Status.OK.getStatusCode(),
                 Response.Status.CREATED.getStatusCode());
     }
 
     public <K> ResourceResponse<K> put(T entityObject, Class<K> responseType, int... expectedStatusCode) {
-        Response response = webTarget.request().put(Entity.json(entityObject));
+        Response response = webTarget.request().headers(headers).put(Entity.json(entityObject));
         return getEntityResponse(response, responseType, expectedStatusCode);
     }
 
     public ResourceResponse<T> get() {
-        Response response = webTarget.request().get();
+        Response response = webTarget.request().headers(headers).get();
         return getEntityResponse(response, requestEntityClass,
                 Response.Status.OK.getStatusCode(), Response.Status.CREATED.getStatusCode());
     }
 
     public <K> ResourceResponse<K> get(Class<K> responseType, int expectedCode) {
-        Response response = webTarget.request().get();
+        Response response = webTarget.request().headers(headers).get();
         return getEntityResponse(response, responseType, expectedCode);
     }
 
@@ -0,0 +1,70 @@
+package com.rk.resources.unit;
+
+import com.codahale.metrics.MetricRegistry;
+import com.rk.api.Account;
+import com.rk.api.Currency;
+import com.rk.core.AccountCache;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class AccountCacheTest {
+    private final MetricRegistry metrics = new MetricRegistry();
+
+    @Test
+    public void accountIsLoadedOnceAndAbsentAccountIsNotCached() {
+        final AtomicInteger loads = new AtomicInteger();
+        final AccountCache cache = new AccountCache(id -> {
+            loads.incrementAndGet();
+            return id == 1 ? new Account(1, Currency.USD, BigDecimal.TEN) : null;
+        }, 16, metrics);
+
+        Assert.assertEquals(BigDecimal.TEN.setScale(6), cache.get(1).getBalance());
+        cache.get(1).setBalance(BigDecimal.ONE);
+        Assert.assertEquals(BigDecimal.TEN.setScale(6), cache.get(1).getBalance());
+        Assert.assertNull(cache.get(2));
+        Assert.assertNull(cache.get(2));
+
+        Assert.assertEquals(3, loads.get());
+        Assert.assertEquals(2, metrics.meter(MetricRegistry.name(AccountCache.class, "hits")).getCount());
+        Assert.assertEquals(3, metrics.timer(MetricRegistry.name(AccountCache.class, "loads")).getCount());
+    }
+
+    @Test
+    public void committedAccountReplacesLoadedOne() {
+        final AccountCache cache = new AccountCache(id -> new Account(id, Currency.USD, BigDecimal.TEN), 16, metrics);
+        cache.get(1);
+
+        cache.putAll(Collections.singletonList(new Account(1, Currency.USD, BigDecimal.ONE)));
+
+        Assert.assertEquals(BigDecimal.ONE.setScale(6), cache.get(1).getBalance());
+    }
+
+    @Test
+    public void olderAccountDoesNotReplaceNewerOne() {
+        final AccountCache cache = new AccountCache(id -> null, 16, metrics);
+
+        cache.putAll(Collections.singletonList(anAccount(BigDecimal.ONE, 2L)));
+        cache.putAll(Collections.singletonList(anAccount(BigDecimal.TEN, 1L)));
+
+        Assert.assertEquals(BigDecimal.ONE.setScale(6), cache.get(1).getBalance());
+    }
+
+    @Test
+    public void leastRecentAccountsAreEvictedWhenCacheIsFull() {
+        final AccountCache cache = new AccountCache(id -> new Account(id, Currency.USD, BigDecimal.TEN), 1, metrics);
+        cache.get(1);
+        cache.get(2);
+
+        Assert.assertEquals(1, metrics.meter(MetricRegistry.name(AccountCache.class, "evictions")).getCount());
+    }
+
+    private static Account anAccount(BigDecimal balance, long version) {
+        final Account account = new Account(1, Currency.USD, balance);
+        account.setVersion(version);
+        return account;
+    }
+}
@@ -0,0 +1,82 @@
+package com.rk.resources.unit;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableList;
+import com.rk.api.AccountEvent;
+import com.rk.api.Currency;
+import com.rk.core.AccountEventFeed;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+public class AccountEventFeedTest {
+    private final MetricRegistry metrics = new MetricRegistry();
+
+    @Test
+    public void subscriberResumesAfterLastSeenEvent() throws Exception {
+        final AccountEventFeed feed = new AccountEventFeed(16, 16, 16, metrics);
+        feed.publish(ImmutableList.of(credit(1), credit(2), credit(1)));
+        feed.publish(ImmutableList.of(credit(1)));
+
+        final AccountEventFeed.Subscription subscription = feed.subscribe(1, 1L);
+        feed.publish(ImmutableList.of(credit(1), credit(2)));
+
+        Assert.assertTrue(subscription.isResumed());
+        Assert.assertEquals(2, subscription.getReplay().size());
+        Assert.assertEquals(3, subscription.getReplay().get(0).getId());
+        Assert.assertEquals(4, subscription.getReplay().get(1).getId());
+        Assert.assertEquals(5, subscription.poll(0, TimeUnit.MILLISECONDS).getId());
+        Assert.assertNull(subscription.poll(0, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void subscriberIsNotResumedWhenEventsAreOverwritten() {
+        final AccountEventFeed feed = new AccountEventFeed(2, 16, 16, metrics);
+        feed.publish(ImmutableList.of(credit(1), credit(1), credit(1)));
+
+        final AccountEventFeed.Subscription tooOld = feed.subscribe(1, 0L);
+        Assert.assertFalse(tooOld.isResumed());
+        Assert.assertEquals(2, tooOld.getReplay().size());
+        Assert.assertFalse(feed.subscribe(1, 100L).isResumed());
+        Assert.assertTrue(feed.subscribe(1, 1L).isResumed());
+    }
+
+    @Test
+    public void replayIsInOrderWhenRingBufferWrapsAround() {
+        final AccountEventFeed feed = new AccountEventFeed(4, 16, 16, metrics);
+        feed.publish(ImmutableList.of(credit(1), credit(2), credit(1), credit(2), credit(1), credit(1)));
+
+        final AccountEventFeed.Subscription subscription = feed.subscribe(1, 2L);
+
+        Assert.assertTrue(subscription.isResumed());
+        Assert.assertEquals(ImmutableList.of(3L, 5L, 6L), subscription.getReplay().stream()
+                .map(AccountEvent::getId).collect(Collectors.toList()));
+    }
+
+    @Test(expected = AccountEventFeed.EndOfFeedException.class)
+    public void slowSubscriberIsDropped() throws Exception {
+        final AccountEventFeed feed = new AccountEventFeed(16, 2, 16, metrics);
+        final AccountEventFeed.Subscription subscription = feed.subscribe(1, null);
+        feed.publish(ImmutableList.of(credit(1), credit(1), credit(1)));
+
+        Assert.assertEquals(1, metrics.meter(MetricRegistry.name(AccountEventFeed.class, "dropped")).getCount());
+        Assert.assertNotNull(feed.subscribe(1, null));
+        subscription.poll(0, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void subscriptionsAreLimited() {
+        final AccountEventFeed feed = new AccountEventFeed(16, 16, 1, metrics);
+        final AccountEventFeed.Subscription subscription = feed.subscribe(1, null);
+
+        Assert.assertNull(feed.subscribe(2, null));
+        subscription.close();
+        Assert.assertNotNull(feed.subscribe(2, null));
+    }
+
+    private static AccountEvent credit(int accountId) {
+        return new AccountEvent(AccountEvent.Type.CREDIT, accountId, 1, Currency.USD, 1, 1);
+    }
+}
@@ -0,0 +1,66 @@
+package com.rk.resources.unit;
+
+import com.codahale.metrics.MetricRegistry;
+import com.rk.api.Currency;
+import com.rk.core.AccountIndex;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class AccountIndexTest {
+    private final MetricRegistry metrics = new MetricRegistry();
+
+    @Test
+    public void indexIsBuiltFromSource() {
+        final AccountIndex index = new AccountIndex(consumer -> {
+            consumer.accept(Currency.USD, 0);
+            consumer.accept(Currency.EUR, 2);
+        }, metrics);
+        index.start();
+
+        Assert.assertTrue(index.contains(0));
+        Assert.assertFalse(index.contains(1));
+        Assert.assertEquals(Currency.EUR, index.getCurrency(2));
+        Assert.assertFalse(index.contains(-1));
+        Assert.assertEquals(2, index.size());
+        Assert.assertEquals(1, metrics.timer(MetricRegistry.name(AccountIndex.class, "rebuilds")).getCount());
+    }
+
+    @Test
+    public void indexGrowsWhenAccountsAreAdded() {
+        final AccountIndex index = new AccountIndex(consumer -> { }, metrics);
+        index.start();
+        final int id = 1_000_000;
+
+        Assert.assertFalse(index.contains(id));
+        index.add(id, Currency.GBP);
+        index.add(id, Currency.GBP);
+
+        Assert.assertEquals(Currency.GBP, index.getCurrency(id));
+        Assert.assertEquals(1, index.size());
+        Assert.assertTrue((Integer) metrics.getGauges()
+                .get(MetricRegistry.name(AccountIndex.class, "memory-bytes")).getValue() > id);
+    }
+
+    @Test
+    public void accountsStayVisibleWhileIndexIsRebuilt() {
+        final List<Boolean> isVisibleDuringRebuild = new ArrayList<>();
+        final AccountIndex[] index = new AccountIndex[1];
+        index[0] = new AccountIndex(consumer -> {
+            consumer.accept(Currency.USD, 0);
+            if (index[0].size() > 0) {
+                isVisibleDuringRebuild.add(index[0].contains(0) && index[0].contains(5));
+            }
+            consumer.accept(Currency.EUR, 5);
+        }, metrics);
+        index[0].start();
+        index[0].rebuild();
+
+        Assert.assertEquals(Collections.singletonList(true), isVisibleDuringRebuild);
+        Assert.assertEquals(Currency.EUR, index[0].getCurrency(5));
+        Assert.assertEquals(2, index[0].size());
+    }
+}
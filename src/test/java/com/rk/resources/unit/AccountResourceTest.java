@@ -1,7 +1,10 @@
 package com.rk.resources.unit;
 
+import com.codahale.metrics.MetricRegistry;
 import com.rk.api.Account;
 import com.rk.api.AccountBuilder;
+import com.rk.core.AccountCache;
+import com.rk.core.AccountIndex;
 import com.rk.db.dao.AccountDAO;
 import com.rk.resources.AccountResource;
 import com.rk.resources.ResourceTest;
@@ -25,7 +28,8 @@ public class AccountResourceTest extends ResourceTest {
 
     @ClassRule
     public static final ResourceTestRule resources = ResourceTestRule.builder()
-            .addResource(new AccountResource(dao))
+            .addResource(new AccountResource(dao, Mockito.mock(AccountIndex.class),
+                    new AccountCache(dao::findById, 16, new MetricRegistry())))
             .build();
 
     @After
@@ -71,6 +75,18 @@ public class AccountResourceTest extends ResourceTest {
                 .put(INVALID_ACCOUNT_STRING, String.class, Response.Status.BAD_REQUEST.getStatusCode());
     }
 
+    @Test
+    public void accountIsReadFromDatabaseOnce() {
+        sampleAccount.setId(42);
+        Mockito.when(dao.findById(42)).thenReturn(sampleAccount);
+
+        Assert.assertEquals(sampleAccount, request.path("42").get().getEntity());
+        Assert.assertEquals(sampleAccount, request.path("42").get().getEntity());
+        request.path("43").get(String.class, Response.Status.NOT_FOUND.getStatusCode());
+
+        Mockito.verify(dao, Mockito.times(1)).findById(42);
+    }
+
     @Test
     public void accountModificationCausesError() {
         Integer accountId = request.post(sampleAccount).getEntity().getId();
@@ -0,0 +1,215 @@
+package com.rk.resources.unit;
+
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.MetricRegistry;
+import com.rk.messaging.AdaptiveConsumerScaler;
+import com.rk.messaging.ConsumerPool;
+import com.rk.messaging.QueueDepthProbe;
+import com.rk.messaging.SimpleMessageListenerContainer;
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.apache.activemq.broker.BrokerService;
+import org.apache.activemq.command.ActiveMQQueue;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.jms.Connection;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+import java.util.concurrent.TimeUnit;
+
+public class AdaptiveConsumerScalerTest {
+    private static final long COOLDOWN_MS = 10_000;
+
+    private final FakePool pool = new FakePool(2);
+    private final FakeClock clock = new FakeClock();
+    private final MetricRegistry metrics = new MetricRegistry();
+    private long queueDepth;
+    private final AdaptiveConsumerScaler scaler = new AdaptiveConsumerScaler(pool, () -> queueDepth, 1, 16, 1000,
+            COOLDOWN_MS, 1000, 0.5, metrics, clock);
+
+    @Test
+    public void poolGrowsToConsumersNeededForLoadAndBacklog() throws Exception {
+        // 1000 messages per second taking 4 ms each keep 4 consumers busy, 1000 more queued need 4 more for a second
+        pool.handle(1000, TimeUnit.MILLISECONDS.toNanos(4));
+        queueDepth = 1000;
+        clock.advance(1000);
+
+        scaler.scale();
+
+        Assert.assertEquals(8, pool.getConsumersCount());
+        Assert.assertEquals(1, metrics.meter(MetricRegistry.name(AdaptiveConsumerScaler.class, "scale-ups")).getCount());
+    }
+
+    @Test
+    public void poolIsNotChangedWithinCooldown() throws Exception {
+        pool.handle(1000, TimeUnit.MILLISECONDS.toNanos(4));
+        queueDepth = 1000;
+        clock.advance(1000);
+        scaler.scale();
+
+        pool.handle(4000, TimeUnit.MILLISECONDS.toNanos(4));
+        clock.advance(1000);
+        scaler.scale();
+
+        Assert.assertEquals(8, pool.getConsumersCount());
+    }
+
+    @Test
+    public void poolShrinksByOneOnlyBelowRatio() throws Exception {
+        pool.size = 8;
+        // 5 busy consumers of 8 is within the band
+        pool.handle(1000, TimeUnit.MILLISECONDS.toNanos(5));
+        clock.advance(1000);
+        scaler.scale();
+        Assert.assertEquals(8, pool.getConsumersCount());
+
+        // idle queue
+        clock.advance(1000);
+        scaler.scale();
+        Assert.assertEquals(7, pool.getConsumersCount());
+        Assert.assertEquals(1, metrics.meter(MetricRegistry.name(AdaptiveConsumerScaler.class, "scale-downs")).getCount());
+    }
+
+    @Test
+    public void poolStaysWithinBounds() throws Exception {
+        pool.handle(1000, TimeUnit.MILLISECONDS.toNanos(100));
+        queueDepth = 100_000;
+        clock.advance(1000);
+        scaler.scale();
+        Assert.assertEquals(16, pool.getConsumersCount());
+
+        pool.size = 1;
+        queueDepth = 0;
+        clock.advance(COOLDOWN_MS);
+        scaler.scale();
+        Assert.assertEquals(1, pool.getConsumersCount());
+    }
+
+    @Test
+    public void unknownDepthChangesNothing() throws Exception {
+        queueDepth = QueueDepthProbe.UNKNOWN_DEPTH;
+        clock.advance(1000);
+
+        scaler.scale();
+
+        Assert.assertEquals(2, pool.getConsumersCount());
+    }
+
+    @Test
+    public void batchContainerIsScaledByLatencyOfMessagesNotBatches() throws Exception {
+        final BrokerService broker = new BrokerService();
+        broker.setBrokerName("scaler-test");
+        broker.setPersistent(false);
+        broker.setUseJmx(false);
+        broker.start();
+        try {
+            final ActiveMQConnectionFactory connectionFactory =
+                    new ActiveMQConnectionFactory("vm://scaler-test?create=false");
+            final ActiveMQQueue queue = new ActiveMQQueue("orders");
+            send(connectionFactory, queue, 50);
+            // batches of 10 messages taking 10 ms each, 1 ms per message
+            final SimpleMessageListenerContainer container = SimpleMessageListenerContainer
+                    .aContainer(connectionFactory, queue).withBatchListener(batch -> sleep(10), 10, 1000).build();
+            final AdaptiveConsumerScaler batchScaler = new AdaptiveConsumerScaler(container, () -> 200, 1, 16, 1000,
+                    COOLDOWN_MS, 1000, 0.5, new MetricRegistry(), clock);
+            container.start();
+            try {
+                // a batch is counted after its listener returns
+                final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+                while (container.getHandledCount() < 50 && System.nanoTime() < deadline) {
+                    sleep(1);
+                }
+                clock.advance(1000);
+
+                batchScaler.scale();
+
+                Assert.assertEquals(50, container.getHandledCount());
+                // 200 queued messages of 1 ms are drained by one more consumer, batches of 10 ms would need two more;
+                // the margin covers sleeps several times longer on a loaded machine
+                Assert.assertEquals(2, container.getConsumersCount());
+            } finally {
+                container.stop();
+            }
+        } finally {
+            broker.stop();
+        }
+    }
+
+    private static void send(ActiveMQConnectionFactory connectionFactory, ActiveMQQueue queue, int count)
+            throws Exception {
+        final Connection connection = connectionFactory.createConnection();
+        try {
+            final Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            final MessageProducer producer = session.createProducer(queue);
+            for (int i = 0; i < count; i++) {
+                producer.send(session.createBytesMessage());
+            }
+        } finally {
+            connection.close();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class FakePool implements ConsumerPool {
+        private int size;
+        private long handledCount;
+        private long busyNanos;
+
+        private FakePool(int size) {
+            this.size = size;
+        }
+
+        private void handle(long count, long latencyNanos) {
+            handledCount += count;
+            busyNanos += count * latencyNanos;
+        }
+
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public void stop() {
+        }
+
+        @Override
+        public int getConsumersCount() {
+            return size;
+        }
+
+        @Override
+        public void resize(int consumersCount) {
+            size = consumersCount;
+        }
+
+        @Override
+        public long getHandledCount() {
+            return handledCount;
+        }
+
+        @Override
+        public long getBusyNanos() {
+            return busyNanos;
+        }
+    }
+
+    private static class FakeClock extends Clock {
+        private long tick;
+
+        private void advance(long millis) {
+            tick += TimeUnit.MILLISECONDS.toNanos(millis);
+        }
+
+        @Override
+        public long getTick() {
+            return tick;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.rk.resources.unit;
+
+import com.google.common.collect.ImmutableList;
+import com.rk.api.Account;
+import com.rk.api.Currency;
+import com.rk.api.Money;
+import com.rk.api.Order;
+import com.rk.api.OrderBuilder;
+import com.rk.api.OrderStatus;
+import com.rk.api.OrderType;
+import com.rk.core.BatchOrderProcessingWorker;
+import com.rk.core.CurrencyConverter;
+import com.rk.core.ExchangeRateProvider;
+import com.rk.core.OrderPosting;
+import com.rk.db.dao.AccountDAO;
+import com.rk.db.dao.OrderDAO;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.math.BigDecimal;
+
+public class BatchOrderProcessingTest {
+    private static final int RECEIVER_ID = 4;
+    private static final int SENDER_ID = 7;
+    private static final int NON_EXISTENT_ID = 100;
+
+    private final OrderDAO orderDAO = Mockito.mock(OrderDAO.class);
+    private final AccountDAO accountDAO = Mockito.mock(AccountDAO.class);
+    private final CurrencyConverter currencyConverter = new CurrencyConverter((from, to) ->
+            from == Currency.EUR && to == Currency.USD ? Money.toRate(BigDecimal.valueOf(1.25)) : ExchangeRateProvider.NO_RATE);
+    private final BatchOrderProcessingWorker worker = new BatchOrderProcessingWorker(orderDAO, accountDAO,
+            currencyConverter, null, null, null, null);
+
+    private Account receiver;
+    private Account sender;
+
+    @Before
+    public void mockDatabaseObjects() {
+        receiver = new Account(RECEIVER_ID, Currency.USD, BigDecimal.valueOf(5.0));
+        sender = new Account(SENDER_ID, Currency.EUR, BigDecimal.valueOf(5.0));
+        Mockito.when(accountDAO.findByIds(Mockito.any())).thenReturn(ImmutableList.of(receiver, sender));
+    }
+
+    @Test
+    public void failedOrderDoesNotAffectOtherOrdersOfBatch() {
+        Order income = order(1, OrderType.INCOME, null, SENDER_ID, BigDecimal.valueOf(10));
+        Order overdraft = order(2, OrderType.TRANSFER, SENDER_ID, RECEIVER_ID, BigDecimal.valueOf(100));
+        Order unknownReceiver = order(3, OrderType.TRANSFER, SENDER_ID, NON_EXISTENT_ID, BigDecimal.valueOf(1));
+        Order transfer = order(4, OrderType.TRANSFER, SENDER_ID, RECEIVER_ID, BigDecimal.valueOf(12));
+
+        worker.accept(ImmutableList.of(income, overdraft, unknownReceiver, transfer));
+
+        Assert.assertEquals(OrderStatus.DONE, income.getStatus());
+        Assert.assertEquals(OrderStatus.FAILED, overdraft.getStatus());
+        Assert.assertTrue(overdraft.getDescription().contains("Insufficient funds"));
+        Assert.assertEquals(OrderStatus.FAILED, unknownReceiver.getStatus());
+        Assert.assertEquals(String.format(OrderPosting.RECEIVER_ACCOUNT_DOES_NOT_EXIST_MSG, NON_EXISTENT_ID),
+                unknownReceiver.getDescription());
+        Assert.assertEquals(OrderStatus.DONE, transfer.getStatus());
+
+        Assert.assertEquals(0, BigDecimal.valueOf(3).compareTo(sender.getBalance()));
+        Assert.assertEquals(0, BigDecimal.valueOf(20).compareTo(receiver.getBalance()));
+        Mockito.verify(orderDAO, Mockito.times(4)).update(Mockito.any());
+    }
+
+    @Test
+    public void accountsAreLoadedOnceForBatch() {
+        worker.accept(ImmutableList.of(
+                order(1, OrderType.INCOME, null, SENDER_ID, BigDecimal.ONE),
+                order(2, OrderType.TRANSFER, SENDER_ID, RECEIVER_ID, BigDecimal.ONE),
+                order(3, OrderType.OUTCOME, RECEIVER_ID, null, BigDecimal.ONE)));
+
+        Mockito.verify(accountDAO, Mockito.times(1)).findByIds(Mockito.argThat(ids ->
+                ids.size() == 2 && ids.contains(SENDER_ID) && ids.contains(RECEIVER_ID)));
+        Mockito.verify(accountDAO, Mockito.never()).findById(Mockito.anyInt());
+    }
+
+    private static Order order(int id, OrderType type, Integer senderId, Integer receiverId, BigDecimal amount) {
+        return OrderBuilder.anOrder()
+                .withId(id)
+                .withType(type)
+                .withSenderAccount(senderId)
+                .withReceiverAccount(receiverId)
+                .withOperationCurrencyCode(Currency.EUR)
+                .withAmount(amount)
+                .build();
+    }
+}
@@ -0,0 +1,57 @@
+package com.rk.resources.unit;
+
+import com.codahale.metrics.MetricRegistry;
+import com.rk.core.BoundedExecutor;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class BoundedExecutorTest {
+    private final MetricRegistry metrics = new MetricRegistry();
+    private final BoundedExecutor executor = new BoundedExecutor("test", Executors.newFixedThreadPool(1), 2, metrics);
+
+    @After
+    public void stopExecutor() throws InterruptedException {
+        executor.stop();
+    }
+
+    @Test
+    public void submissionWaitsWhileExecutorIsFull() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch started = new CountDownLatch(1);
+        executor.execute(() -> {
+            started.countDown();
+            await(release);
+        });
+        executor.execute(() -> await(release));
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(1, gauge("active"));
+        Assert.assertEquals(1, gauge("queue-depth"));
+
+        final CountDownLatch third = new CountDownLatch(1);
+        final Thread submitter = new Thread(() -> executor.execute(third::countDown));
+        submitter.start();
+        Assert.assertFalse(third.await(100, TimeUnit.MILLISECONDS));
+        Assert.assertTrue(submitter.isAlive());
+
+        release.countDown();
+        Assert.assertTrue(third.await(5, TimeUnit.SECONDS));
+        submitter.join();
+    }
+
+    private int gauge(String name) {
+        return (Integer) metrics.getGauges().get(MetricRegistry.name(BoundedExecutor.class, "test", name)).getValue();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.rk.resources.unit;
+
+import com.rk.messaging.EmbeddedActiveMQQueueDepthProbe;
+import com.rk.messaging.QueueDepthProbe;
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.apache.activemq.broker.BrokerService;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.jms.Connection;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+
+public class EmbeddedActiveMQQueueDepthProbeTest {
+    private static final String BROKER = "depth-probe-test";
+    private static final String QUEUE = "orders";
+
+    private BrokerService broker;
+
+    @Before
+    public void setUp() throws Exception {
+        broker = new BrokerService();
+        broker.setBrokerName(BROKER);
+        broker.setPersistent(false);
+        broker.setUseJmx(false);
+        broker.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        broker.stop();
+    }
+
+    @Test
+    public void depthIsNumberOfEnqueuedMessages() throws Exception {
+        final QueueDepthProbe probe = new EmbeddedActiveMQQueueDepthProbe(BROKER, QUEUE);
+        final Connection connection = new ActiveMQConnectionFactory("vm://" + BROKER + "?create=false")
+                .createConnection();
+        try {
+            final Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            final MessageProducer producer = session.createProducer(session.createQueue(QUEUE));
+            for (int i = 0; i < 3; i++) {
+                producer.send(session.createBytesMessage());
+            }
+        } finally {
+            connection.close();
+        }
+
+        Assert.assertEquals(3, probe.getQueueDepth());
+        Assert.assertEquals(QueueDepthProbe.UNKNOWN_DEPTH,
+                new EmbeddedActiveMQQueueDepthProbe("unknown", QUEUE).getQueueDepth());
+    }
+}
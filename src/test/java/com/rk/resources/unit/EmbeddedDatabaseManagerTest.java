@@ -0,0 +1,86 @@
+package com.rk.resources.unit;
+
+import com.codahale.metrics.MetricRegistry;
+import com.rk.configuration.EmbeddedDatabaseConfiguration;
+import com.rk.configuration.MoneyTransferConfiguration;
+import com.rk.db.EmbeddedDatabaseManager;
+import io.dropwizard.db.ManagedDataSource;
+import io.dropwizard.util.Duration;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+public class EmbeddedDatabaseManagerTest {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void fileDatabaseKeepsDataAndCachedTablesAcrossRestart() throws Exception {
+        final MetricRegistry metrics = new MetricRegistry();
+        final EmbeddedDatabaseConfiguration configuration = new EmbeddedDatabaseConfiguration();
+        configuration.setStorage(EmbeddedDatabaseConfiguration.Storage.FILE);
+        configuration.setPath(folder.getRoot().toPath().resolve("money_transfer").toString());
+        configuration.setCheckpointInterval(Duration.seconds(0));
+
+        ManagedDataSource dataSource = dataSource();
+        EmbeddedDatabaseManager manager = configuration.build(dataSource, metrics);
+        manager.start();
+        Assert.assertEquals("CACHED", tableType(dataSource, "ORDERS"));
+        Assert.assertEquals("MEMORY", tableType(dataSource, "ACCOUNTS"));
+        execute(dataSource, "insert into accounts (account_id, balance, currency_code) values (1, 10, 'USD')");
+        manager.checkpoint();
+        Assert.assertEquals(1, metrics.timer(MetricRegistry.name(EmbeddedDatabaseManager.class, "checkpoints"))
+                .getCount());
+        manager.stop();
+        dataSource.stop();
+
+        final Path log = folder.getRoot().toPath().resolve("money_transfer.log");
+        Assert.assertTrue(Files.exists(folder.getRoot().toPath().resolve("money_transfer.script")));
+        Assert.assertFalse("clean stop leaves no log to replay", Files.exists(log));
+
+        dataSource = dataSource();
+        manager = configuration.build(dataSource, metrics);
+        manager.start();
+        try {
+            Assert.assertEquals("CACHED", tableType(dataSource, "ORDERS"));
+            Assert.assertEquals("1", query(dataSource, "select count(*) from accounts"));
+        } finally {
+            manager.stop();
+            dataSource.stop();
+        }
+    }
+
+    private static ManagedDataSource dataSource() {
+        return new MoneyTransferConfiguration().getDataSourceFactory()
+                .build(new MetricRegistry(), "test_datasource");
+    }
+
+    private static String tableType(ManagedDataSource dataSource, String table) throws SQLException {
+        return query(dataSource, "select hsqldb_type from information_schema.system_tables "
+                + "where table_schem = 'PUBLIC' and table_name = '" + table + "'");
+    }
+
+    private static String query(ManagedDataSource dataSource, String sql) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(sql)) {
+            Assert.assertTrue(resultSet.next());
+            return resultSet.getString(1);
+        }
+    }
+
+    private static void execute(ManagedDataSource dataSource, String sql) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.rk.resources.unit;
+
+import com.codahale.metrics.MetricRegistry;
+import com.rk.api.Currency;
+import com.rk.api.ExchangeRate;
+import com.rk.api.Money;
+import com.rk.core.ExchangeRateCache;
+import com.rk.core.ExchangeRateProvider;
+import io.dropwizard.util.Duration;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ExchangeRateCacheTest {
+    private final List<ExchangeRate> database = new ArrayList<>();
+    private final MetricRegistry metrics = new MetricRegistry();
+    private final ExchangeRateCache cache = new ExchangeRateCache(() -> new ArrayList<>(database),
+            Duration.seconds(0), Currency.USD, metrics);
+
+    @Test
+    public void ratesAreLoadedOnStartAndCountedAsHitsAndMisses() {
+        database.add(new ExchangeRate(Currency.EUR, Currency.USD, BigDecimal.valueOf(1.25)));
+        cache.start();
+
+        Assert.assertEquals(Money.toRate(BigDecimal.valueOf(1.25)), cache.getRate(Currency.EUR, Currency.USD));
+        Assert.assertEquals(ExchangeRateProvider.NO_RATE, cache.getRate(Currency.EUR, Currency.GBP));
+        Assert.assertEquals(1, metrics.meter(MetricRegistry.name(ExchangeRateCache.class, "hits")).getCount());
+        Assert.assertEquals(1, metrics.meter(MetricRegistry.name(ExchangeRateCache.class, "misses")).getCount());
+        Assert.assertEquals(1, metrics.timer(MetricRegistry.name(ExchangeRateCache.class, "reloads")).getCount());
+    }
+
+    @Test
+    public void putReplacesOnlyWrittenRate() {
+        database.add(new ExchangeRate(Currency.EUR, Currency.USD, BigDecimal.valueOf(1.25)));
+        database.add(new ExchangeRate(Currency.USD, Currency.EUR, BigDecimal.valueOf(0.8)));
+        cache.start();
+
+        cache.put(new ExchangeRate(Currency.EUR, Currency.USD, BigDecimal.valueOf(1.3)));
+        cache.put(new ExchangeRate(Currency.GBP, Currency.USD, BigDecimal.valueOf(1.5))).join();
+
+        Assert.assertEquals(Money.toRate(BigDecimal.valueOf(1.3)), cache.getRate(Currency.EUR, Currency.USD));
+        Assert.assertEquals(Money.toRate(BigDecimal.valueOf(0.8)), cache.getRate(Currency.USD, Currency.EUR));
+        Assert.assertEquals(Money.toRate(BigDecimal.valueOf(1.5)), cache.getRate(Currency.GBP, Currency.USD));
+    }
+
+    @Test
+    public void reloadPicksUpRatesChangedInDatabase() {
+        database.add(new ExchangeRate(Currency.EUR, Currency.USD, BigDecimal.valueOf(1.25)));
+        cache.start();
+
+        database.clear();
+        database.add(new ExchangeRate(Currency.USD, Currency.EUR, BigDecimal.valueOf(0.8)));
+        cache.reload();
+
+        Assert.assertTrue(cache.isDerived(Currency.EUR, Currency.USD));
+        Assert.assertEquals(Money.toRate(BigDecimal.valueOf(0.8)), cache.getRate(Currency.USD, Currency.EUR));
+        Assert.assertFalse(cache.isDerived(Currency.USD, Currency.EUR));
+    }
+
+    @Test
+    public void putRebuildsDerivedRates() {
+        database.add(new ExchangeRate(Currency.EUR, Currency.USD, BigDecimal.valueOf(1.25)));
+        cache.start();
+        Assert.assertEquals(ExchangeRateProvider.NO_RATE, cache.getRate(Currency.EUR, Currency.GBP));
+
+        cache.put(new ExchangeRate(Currency.GBP, Currency.USD, BigDecimal.valueOf(1.5))).join();
+
+        Assert.assertTrue(cache.isDerived(Currency.EUR, Currency.GBP));
+        Assert.assertEquals(Money.toRate(new BigDecimal("0.833333333")), cache.getRate(Currency.EUR, Currency.GBP));
+        Assert.assertEquals(2, metrics.timer(MetricRegistry.name(ExchangeRateCache.class, "rebuilds")).getCount());
+    }
+}
@@ -1,13 +1,19 @@
 package com.rk.resources.unit;
 
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.util.concurrent.Uninterruptibles;
 import com.rk.api.Currency;
 import com.rk.api.ExchangeRate;
+import com.rk.api.Money;
+import com.rk.core.ExchangeRateCache;
+import com.rk.core.ExchangeRateProvider;
 import com.rk.db.dao.ExchangeRateDAO;
 import com.rk.resources.ExchangeRateResource;
 import com.rk.resources.FixtureUtil;
 import com.rk.resources.ResourceTest;
 import com.rk.resources.it.testutil.ResourceRequest;
 import io.dropwizard.testing.junit.ResourceTestRule;
+import io.dropwizard.util.Duration;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.ClassRule;
@@ -18,21 +24,47 @@ import org.slf4j.LoggerFactory;
 
 import javax.ws.rs.core.Response;
 import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class ExchangeRateResourceTest extends ResourceTest {
     private static final Logger LOGGER = LoggerFactory.getLogger(OrderResourceTest.class);
     private static final ExchangeRateDAO dao = Mockito.mock(ExchangeRateDAO.class);
+    private static final ExchangeRateCache cache = Mockito.mock(ExchangeRateCache.class);
     private ResourceRequest<ExchangeRate> request;
     private ExchangeRate sampleRate;
 
+    private static final CountDownLatch reloadRelease = new CountDownLatch(1);
+    private static final AtomicBoolean isReloadBlocked = new AtomicBoolean();
+    private static final ExchangeRateCache realCache = new ExchangeRateCache(() -> {
+        if (isReloadBlocked.get()) {
+            Uninterruptibles.awaitUninterruptibly(reloadRelease);
+        }
+        return Collections.<ExchangeRate>emptyList();
+    }, Duration.seconds(0), null, new MetricRegistry());
+
     @ClassRule
     public static final ResourceTestRule resources = ResourceTestRule.builder()
-            .addResource(new ExchangeRateResource(dao))
+            .addResource(new ExchangeRateResource(dao, cache))
+            .build();
+
+    @ClassRule
+    public static final ResourceTestRule cachingResources = ResourceTestRule.builder()
+            .addResource(new ExchangeRateResource(dao, realCache))
             .build();
 
     @Before
     public void resetMock() {
-        Mockito.reset(dao);
+        Mockito.reset(dao, cache);
+        Mockito.doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(0).run();
+            return null;
+        }).when(dao).afterCommit(Mockito.any());
+        Mockito.when(cache.put(Mockito.any())).thenReturn(CompletableFuture.completedFuture(null));
         request = createRequest(resources, ExchangeRateResource.class, ExchangeRate.class);
         sampleRate = new ExchangeRate(Currency.EUR, Currency.USD, BigDecimal.valueOf(1.0));
     }
@@ -40,6 +72,38 @@ public class ExchangeRateResourceTest extends ResourceTest {
     @Test
     public void postValidExchangeRate() {
         Assert.assertEquals(sampleRate, request.post(sampleRate).getEntity());
+        Mockito.verify(cache).put(sampleRate);
+    }
+
+    @Test
+    public void putChangesRateInCache() {
+        Mockito.when(dao.find(sampleRate.getCurrencyCodeFrom(), sampleRate.getCurrencyCodeTo()))
+                .thenReturn(new ExchangeRate(sampleRate));
+        sampleRate.setRate(BigDecimal.TEN);
+
+        request.put(sampleRate, String.class, Response.Status.OK.getStatusCode());
+        Mockito.verify(cache).put(sampleRate);
+    }
+
+    @Test
+    public void postedRateIsVisibleToConversionWhenResponseIsReceived() throws Exception {
+        realCache.start();
+        // cache thread is busy with a reload, so the posted rate waits in its queue
+        isReloadBlocked.set(true);
+        final CompletableFuture<Void> reload = CompletableFuture.runAsync(realCache::reload);
+        new Thread(() -> {
+            Uninterruptibles.sleepUninterruptibly(200, TimeUnit.MILLISECONDS);
+            reloadRelease.countDown();
+        }).start();
+
+        createRequest(cachingResources, ExchangeRateResource.class, ExchangeRate.class).post(sampleRate);
+
+        final long rate = realCache.getRate(Currency.EUR, Currency.USD);
+        Assert.assertNotEquals(ExchangeRateProvider.NO_RATE, rate);
+        Assert.assertEquals(Money.toMicros(BigDecimal.TEN),
+                Money.convert(Money.toMicros(BigDecimal.TEN), rate, RoundingMode.HALF_EVEN));
+        reload.get(5, TimeUnit.SECONDS);
+        realCache.stop();
     }
 
     @Test
@@ -54,6 +118,7 @@ public class ExchangeRateResourceTest extends ResourceTest {
     public void postWithConflictCausesError() {
         Mockito.when(dao.find(Mockito.any(), Mockito.any())).thenReturn(new ExchangeRate());
         request.post(sampleRate, String.class, Response.Status.CONFLICT.getStatusCode());
+        Mockito.verify(cache, Mockito.never()).put(Mockito.any());
     }
 
     @Test
@@ -0,0 +1,65 @@
+package com.rk.resources.unit;
+
+import com.codahale.metrics.MetricRegistry;
+import com.rk.api.Currency;
+import com.rk.api.Order;
+import com.rk.api.OrderBuilder;
+import com.rk.api.OrderStatus;
+import com.rk.api.OrderType;
+import com.rk.core.IdempotencyCache;
+import io.dropwizard.util.Duration;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+
+public class IdempotencyCacheTest {
+    private final MetricRegistry metrics = new MetricRegistry();
+
+    @Test
+    public void cachedOrderIsNotChangedByProcessing() {
+        final IdempotencyCache cache = new IdempotencyCache(Duration.hours(1), 16, metrics);
+        final Order order = anOrder(1);
+        cache.put("key", order);
+        order.setStatus(OrderStatus.DONE);
+
+        final Order cached = cache.get("key");
+        Assert.assertEquals(OrderStatus.NEW, cached.getStatus());
+        cached.setStatus(OrderStatus.FAILED);
+        Assert.assertEquals(OrderStatus.NEW, cache.get("key").getStatus());
+
+        Assert.assertNull(cache.get("unknown"));
+        Assert.assertEquals(2, metrics.meter(MetricRegistry.name(IdempotencyCache.class, "hits")).getCount());
+        Assert.assertEquals(1, metrics.meter(MetricRegistry.name(IdempotencyCache.class, "misses")).getCount());
+    }
+
+    @Test
+    public void leastRecentKeysAreEvictedWhenCacheIsFull() {
+        final IdempotencyCache cache = new IdempotencyCache(Duration.hours(1), 1, metrics);
+        cache.put("first", anOrder(1));
+        cache.put("second", anOrder(2));
+
+        Assert.assertNull(cache.get("first"));
+        Assert.assertEquals(Integer.valueOf(2), cache.get("second").getId());
+        Assert.assertEquals(1, metrics.meter(MetricRegistry.name(IdempotencyCache.class, "evictions")).getCount());
+    }
+
+    @Test
+    public void windowIsCountedFromOrderCreation() {
+        final IdempotencyCache cache = new IdempotencyCache(Duration.minutes(1), 16, metrics);
+
+        Assert.assertTrue(cache.isWithinWindow(System.currentTimeMillis() - Duration.seconds(30).toMilliseconds()));
+        Assert.assertFalse(cache.isWithinWindow(System.currentTimeMillis() - Duration.minutes(2).toMilliseconds()));
+    }
+
+    private static Order anOrder(int id) {
+        return OrderBuilder.anOrder()
+                .withId(id)
+                .withType(OrderType.INCOME)
+                .withReceiverAccount(1)
+                .withOperationCurrencyCode(Currency.USD)
+                .withAmount(BigDecimal.TEN)
+                .withStatus(OrderStatus.NEW)
+                .build();
+    }
+}
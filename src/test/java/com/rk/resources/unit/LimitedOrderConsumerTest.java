@@ -0,0 +1,40 @@
+package com.rk.resources.unit;
+
+import com.codahale.metrics.MetricRegistry;
+import com.rk.api.Order;
+import com.rk.api.OrderBuilder;
+import com.rk.core.LimitedOrderConsumer;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class LimitedOrderConsumerTest {
+    @Test
+    public void atMostLimitOfOrdersIsProcessedConcurrently() throws Exception {
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        final LimitedOrderConsumer consumer = new LimitedOrderConsumer(order -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            inFlight.decrementAndGet();
+        }, 2, new MetricRegistry());
+
+        final ExecutorService threads = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 40; i++) {
+            final Order order = OrderBuilder.anOrder().withId(i).build();
+            threads.execute(() -> consumer.accept(order));
+        }
+        threads.shutdown();
+        Assert.assertTrue(threads.awaitTermination(10, TimeUnit.SECONDS));
+
+        Assert.assertEquals(2, maxInFlight.get());
+    }
+}
@@ -0,0 +1,61 @@
+package com.rk.resources.unit;
+
+import com.rk.api.Money;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+public class MoneyTest {
+    private static final RoundingMode[] ROUNDING_MODES = {RoundingMode.UP, RoundingMode.DOWN, RoundingMode.CEILING,
+            RoundingMode.FLOOR, RoundingMode.HALF_UP, RoundingMode.HALF_DOWN, RoundingMode.HALF_EVEN};
+
+    @Test
+    public void convertMatchesBigDecimalForEveryRoundingMode() {
+        final String[][] samples = {
+                {"123.450000", "1.170000000"},
+                {"0.000001", "0.500000000"},
+                {"0.000003", "0.500000000"},
+                {"20.000000", "0.017680339"},
+                {"999999999.999999", "1.000000001"},
+                {"1.000000", "9223372.036854775"},
+                {"8000000000.123457", "0.999999999"},
+        };
+        for (String[] sample : samples) {
+            final BigDecimal amount = new BigDecimal(sample[0]);
+            final BigDecimal rate = new BigDecimal(sample[1]);
+            for (RoundingMode roundingMode : ROUNDING_MODES) {
+                final BigDecimal expected = amount.multiply(rate).setScale(Money.SCALE, roundingMode);
+                final long actual = Money.convert(Money.toMicros(amount), Money.toRate(rate), roundingMode);
+                Assert.assertEquals(String.format("%s * %s with %s", amount, rate, roundingMode),
+                        expected, Money.toBigDecimal(actual));
+            }
+        }
+    }
+
+    @Test
+    public void roundToCents() {
+        final long micros = Money.toMicros(new BigDecimal("10.005000"));
+        Assert.assertEquals(1001, Money.round(micros, 2, RoundingMode.UP));
+        Assert.assertEquals(1000, Money.round(micros, 2, RoundingMode.DOWN));
+        Assert.assertEquals(1000, Money.round(micros, 2, RoundingMode.HALF_EVEN));
+        Assert.assertEquals(1001, Money.round(micros, 2, RoundingMode.HALF_UP));
+    }
+
+    @Test
+    public void roundingToMicrosIsHalfEven() {
+        Assert.assertEquals(2, Money.toMicros(new BigDecimal("0.0000025")));
+        Assert.assertEquals(4, Money.toMicros(new BigDecimal("0.0000035")));
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void overflowIsReported() {
+        Money.add(Long.MAX_VALUE, 1);
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void unnecessaryRoundingIsReported() {
+        Money.convert(1, Money.toRate(new BigDecimal("0.5")), RoundingMode.UNNECESSARY);
+    }
+}
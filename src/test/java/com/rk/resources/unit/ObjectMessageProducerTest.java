@@ -0,0 +1,129 @@
+package com.rk.resources.unit;
+
+import com.codahale.metrics.MetricRegistry;
+import com.rk.messaging.MessageCodec;
+import com.rk.messaging.ObjectMessageProducer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import javax.jms.BytesMessage;
+import javax.jms.Connection;
+import javax.jms.ConnectionFactory;
+import javax.jms.JMSException;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class ObjectMessageProducerTest {
+    private static final String QUEUE = "orders";
+    private static final MessageCodec<String> CODEC = new MessageCodec<String>() {
+        @Override
+        public byte[] encode(String obj) {
+            return obj.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public String decode(byte[] bytes) {
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    };
+
+    private final MetricRegistry metrics = new MetricRegistry();
+    private final ConnectionFactory connectionFactory = Mockito.mock(ConnectionFactory.class);
+    private final Connection connection = Mockito.mock(Connection.class);
+    private final Session session = Mockito.mock(Session.class);
+    private final MessageProducer messageProducer = Mockito.mock(MessageProducer.class);
+    private final BytesMessage message = Mockito.mock(BytesMessage.class);
+    private ObjectMessageProducer<String> producer;
+
+    @Before
+    public void setUp() throws JMSException {
+        Mockito.when(connectionFactory.createConnection()).thenReturn(connection);
+        Mockito.when(connection.createSession(true, Session.SESSION_TRANSACTED)).thenReturn(session);
+        Mockito.when(session.createProducer(Mockito.any())).thenReturn(messageProducer);
+        Mockito.when(session.createBytesMessage()).thenReturn(message);
+        producer = new ObjectMessageProducer<>(QUEUE, connectionFactory, CODEC, 2, 1, 100, metrics);
+        producer.start();
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        producer.stop();
+    }
+
+    @Test
+    public void sessionIsReusedBetweenSends() throws JMSException {
+        producer.send("first");
+        producer.send("second");
+
+        Mockito.verify(connectionFactory, Mockito.times(1)).createConnection();
+        Mockito.verify(connection, Mockito.times(1)).createSession(true, Session.SESSION_TRANSACTED);
+        Mockito.verify(messageProducer, Mockito.times(2)).send(Mockito.any(BytesMessage.class));
+        Mockito.verify(session, Mockito.times(2)).commit();
+        Mockito.verify(message).writeBytes("second".getBytes(StandardCharsets.UTF_8));
+        Assert.assertEquals(1, metrics.getGauges().get(
+                MetricRegistry.name(ObjectMessageProducer.class, QUEUE, "open-sessions")).getValue());
+        Assert.assertEquals(2, metrics.timer(MetricRegistry.name(ObjectMessageProducer.class, QUEUE, "sends")).getCount());
+    }
+
+    @Test
+    public void allMessagesAreSentInOneTransaction() throws JMSException {
+        producer.sendAll(Arrays.asList("first", "second", "third"));
+
+        Mockito.verify(messageProducer, Mockito.times(3)).send(Mockito.any(BytesMessage.class));
+        Mockito.verify(session, Mockito.times(1)).commit();
+        Assert.assertEquals(1, metrics.timer(MetricRegistry.name(ObjectMessageProducer.class, QUEUE, "sends")).getCount());
+    }
+
+    @Test
+    public void connectionIsRecreatedWhenSendFails() throws JMSException {
+        Mockito.doThrow(new JMSException("connection is lost")).doNothing()
+                .when(messageProducer).send(Mockito.any(BytesMessage.class));
+
+        producer.send("order");
+
+        Mockito.verify(connection).close();
+        Mockito.verify(connectionFactory, Mockito.times(2)).createConnection();
+        Mockito.verify(messageProducer, Mockito.times(2)).send(Mockito.any(BytesMessage.class));
+        Assert.assertEquals(1, metrics.meter(MetricRegistry.name(ObjectMessageProducer.class, QUEUE, "reconnects")).getCount());
+        Assert.assertEquals(0, metrics.meter(MetricRegistry.name(ObjectMessageProducer.class, QUEUE, "send-failures")).getCount());
+    }
+
+    @Test
+    public void asyncSendIsLimitedByInFlightWindow() throws Exception {
+        final CountDownLatch brokerBlocked = new CountDownLatch(1);
+        Mockito.doAnswer(invocation -> {
+            brokerBlocked.await();
+            return null;
+        }).when(messageProducer).send(Mockito.any(BytesMessage.class));
+        final CompletableFuture<String> completed = new CompletableFuture<>();
+
+        producer.sendAsync("first", new ObjectMessageProducer.CompletionCallback<String>() {
+            @Override
+            public void onCompletion(String obj) {
+                completed.complete(obj);
+            }
+
+            @Override
+            public void onException(String obj, Exception exception) {
+                completed.completeExceptionally(exception);
+            }
+        });
+        try {
+            producer.sendAsync("second", Mockito.mock(ObjectMessageProducer.CompletionCallback.class));
+            Assert.fail("Second message should not fit into in-flight window of one message");
+        } catch (JMSException e) {
+            Assert.assertFalse(completed.isDone());
+        }
+
+        brokerBlocked.countDown();
+        Assert.assertEquals("first", completed.get(1, TimeUnit.SECONDS));
+    }
+}
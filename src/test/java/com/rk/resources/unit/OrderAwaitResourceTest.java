@@ -0,0 +1,74 @@
+package com.rk.resources.unit;
+
+import com.codahale.metrics.MetricRegistry;
+import com.rk.api.Currency;
+import com.rk.api.Order;
+import com.rk.api.OrderBuilder;
+import com.rk.api.OrderStatus;
+import com.rk.api.OrderType;
+import com.rk.core.OrderCompletionRegistry;
+import com.rk.resources.OrderAwaitResource;
+import io.dropwizard.jersey.params.DurationParam;
+import io.dropwizard.util.Duration;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+
+import javax.ws.rs.NotFoundException;
+import javax.ws.rs.container.AsyncResponse;
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+public class OrderAwaitResourceTest {
+    private final Map<Integer, Order> database = new HashMap<>();
+    private final OrderCompletionRegistry completionRegistry = new OrderCompletionRegistry(16, new MetricRegistry());
+    private final OrderAwaitResource resource = new OrderAwaitResource(database::get, completionRegistry,
+            Runnable::run, Duration.seconds(30), new MetricRegistry());
+    private final AsyncResponse response = Mockito.mock(AsyncResponse.class);
+
+    @Test
+    public void zeroTimeoutReadsOrderAtOnceInsteadOfSuspendingIndefinitely() {
+        final Order order = OrderBuilder.anOrder()
+                .withId(1)
+                .withType(OrderType.INCOME)
+                .withReceiverAccount(2)
+                .withOperationCurrencyCode(Currency.USD)
+                .withAmount(BigDecimal.ONE)
+                .withStatus(OrderStatus.NEW)
+                .build();
+        database.put(1, order);
+
+        resource.await(1, new DurationParam("0ms"), response);
+
+        Mockito.verify(response).resume(order);
+        Mockito.verify(response, Mockito.never()).setTimeout(ArgumentMatchers.anyLong(), ArgumentMatchers.any());
+        Assert.assertEquals(0, completionRegistry.size());
+    }
+
+    @Test
+    public void zeroTimeoutOfMissingOrderIsNotFound() {
+        resource.await(2, new DurationParam("0ms"), response);
+
+        Mockito.verify(response).resume(ArgumentMatchers.any(NotFoundException.class));
+    }
+
+    @Test
+    public void timeoutIsBoundedByMaxTimeout() {
+        database.put(1, OrderBuilder.anOrder()
+                .withId(1)
+                .withType(OrderType.INCOME)
+                .withReceiverAccount(2)
+                .withOperationCurrencyCode(Currency.USD)
+                .withAmount(BigDecimal.ONE)
+                .withStatus(OrderStatus.NEW)
+                .build());
+
+        resource.await(1, new DurationParam("1h"), response);
+
+        Mockito.verify(response).setTimeout(30_000, TimeUnit.MILLISECONDS);
+        Assert.assertEquals(1, completionRegistry.size());
+    }
+}
@@ -0,0 +1,106 @@
+package com.rk.resources.unit;
+
+import com.rk.api.Currency;
+import com.rk.api.Order;
+import com.rk.api.OrderBatchItem;
+import com.rk.api.OrderBuilder;
+import com.rk.api.OrderStatus;
+import com.rk.api.OrderType;
+import com.rk.core.AccountIndex;
+import com.rk.core.OrderBatchSubmitter;
+import com.rk.db.dao.OrderDAO;
+import com.rk.messaging.ObjectMessageProducer;
+import com.rk.resources.OrderBatchResource;
+import io.dropwizard.jersey.validation.Validators;
+import io.dropwizard.testing.junit.ResourceTestRule;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import javax.jms.JMSException;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.core.GenericType;
+import javax.ws.rs.core.Response;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class OrderBatchResourceTest {
+    private static final int MAX_BATCH_SIZE = 3;
+    private static final int EXISTING_ACCOUNT_ID = 1;
+    private static final int MISSING_ACCOUNT_ID = 2;
+    private static OrderDAO orderDao = Mockito.mock(OrderDAO.class);
+    private static AccountIndex accountIndex = Mockito.mock(AccountIndex.class);
+    @SuppressWarnings("unchecked")
+    private static ObjectMessageProducer<Order> objectMessageProducer = Mockito.mock(ObjectMessageProducer.class);
+
+    @ClassRule
+    public static final ResourceTestRule resources = ResourceTestRule.builder()
+            .addResource(new OrderBatchResource(
+                    new OrderBatchSubmitter(orderDao, accountIndex, objectMessageProducer, Validators.newValidator()),
+                    MAX_BATCH_SIZE))
+            .build();
+
+    @Before
+    public void resetMock() {
+        Mockito.reset(orderDao, accountIndex, objectMessageProducer);
+        Mockito.when(accountIndex.contains(EXISTING_ACCOUNT_ID)).thenReturn(true);
+        Mockito.doAnswer(invocation -> {
+            int id = 100;
+            for (Order order : invocation.<List<Order>>getArgument(0)) {
+                order.setId(id++);
+            }
+            return null;
+        }).when(orderDao).createAll(Mockito.any());
+    }
+
+    @Test
+    public void validOrdersAreCreatedAndInvalidAreReported() throws JMSException {
+        final Order valid = income(EXISTING_ACCOUNT_ID);
+        final Order withMissingAccount = income(MISSING_ACCOUNT_ID);
+        final Order invalid = OrderBuilder.anOrder().copyOf(valid).withSenderAccount(EXISTING_ACCOUNT_ID).build();
+
+        final Response response = post(Arrays.asList(valid, withMissingAccount, invalid));
+
+        Assert.assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+        final List<OrderBatchItem> items = response.readEntity(new GenericType<List<OrderBatchItem>>() {});
+        Assert.assertEquals(Integer.valueOf(100), items.get(0).getId());
+        Assert.assertTrue(items.get(0).getErrors().isEmpty());
+        Assert.assertNull(items.get(1).getId());
+        Assert.assertEquals(Collections.singletonList("Receiver account doesn't exist"), items.get(1).getErrors());
+        Assert.assertNull(items.get(2).getId());
+        Assert.assertEquals(Collections.singletonList("Income order cannot contains sender"), items.get(2).getErrors());
+
+        valid.setStatus(OrderStatus.NEW);
+        valid.setId(100);
+        Mockito.verify(orderDao, Mockito.times(1)).createAll(Mockito.any());
+        Mockito.verify(objectMessageProducer, Mockito.times(1)).sendAll(Collections.singletonList(valid));
+        Mockito.verify(objectMessageProducer, Mockito.never()).send(Mockito.any());
+    }
+
+    @Test
+    public void tooLargeBatchIsRejected() throws JMSException {
+        final Order order = income(EXISTING_ACCOUNT_ID);
+
+        final Response response = post(Collections.nCopies(MAX_BATCH_SIZE + 1, order));
+
+        Assert.assertEquals(Response.Status.REQUEST_ENTITY_TOO_LARGE.getStatusCode(), response.getStatus());
+        Mockito.verifyZeroInteractions(orderDao, objectMessageProducer);
+    }
+
+    private static Response post(List<Order> orders) {
+        return resources.target("orders/batch").request().post(Entity.json(orders));
+    }
+
+    private static Order income(int receiver) {
+        return OrderBuilder.anOrder()
+                .withType(OrderType.INCOME)
+                .withReceiverAccount(receiver)
+                .withOperationCurrencyCode(Currency.USD)
+                .withAmount(BigDecimal.TEN)
+                .build();
+    }
+}
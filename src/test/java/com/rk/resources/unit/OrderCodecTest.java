@@ -0,0 +1,141 @@
+package com.rk.resources.unit;
+
+import com.rk.api.Currency;
+import com.rk.api.Order;
+import com.rk.api.OrderBuilder;
+import com.rk.api.OrderStatus;
+import com.rk.api.OrderType;
+import com.rk.messaging.OrderCodec;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Date;
+
+public class OrderCodecTest {
+    // other fields of an income order take 31 bytes
+    private static final int MAX_INCOME_DESCRIPTION_SIZE = 0xFFFF - 31;
+
+    private final OrderCodec codec = new OrderCodec();
+
+    @Test
+    public void transferIsDecodedAsEncoded() {
+        final Order order = OrderBuilder.anOrder()
+                .withId(42)
+                .withType(OrderType.TRANSFER)
+                .withSenderAccount(1)
+                .withReceiverAccount(2)
+                .withOperationCurrencyCode(Currency.EUR)
+                .withAmount(new BigDecimal("123.456789"))
+                .withDescription("Rent, été")
+                .withStatus(OrderStatus.NEW)
+                .build();
+
+        Assert.assertEquals(order, codec.decode(codec.encode(order)));
+    }
+
+    @Test
+    public void absentFieldsStayAbsent() {
+        final Order order = OrderBuilder.anOrder()
+                .withId(7)
+                .withType(OrderType.INCOME)
+                .withReceiverAccount(3)
+                .withOperationCurrencyCode(Currency.RUB)
+                .withAmount(BigDecimal.TEN)
+                .withStatus(OrderStatus.NEW)
+                .build();
+
+        final Order decoded = codec.decode(codec.encode(order));
+
+        Assert.assertEquals(order, decoded);
+        Assert.assertNull(decoded.getSenderAccount());
+        Assert.assertNull(decoded.getDescription());
+    }
+
+    @Test
+    public void fieldsOfNewerVersionAreSkipped() {
+        final Order order = OrderBuilder.anOrder()
+                .withId(5)
+                .withType(OrderType.OUTCOME)
+                .withSenderAccount(9)
+                .withOperationCurrencyCode(Currency.USD)
+                .withAmount(BigDecimal.ONE)
+                .withStatus(OrderStatus.NEW)
+                .build();
+        final byte[] encoded = codec.encode(order);
+        final ByteBuffer newer = ByteBuffer.allocate(encoded.length + Long.BYTES);
+        newer.put(encoded);
+        newer.putLong(Long.MAX_VALUE);
+        newer.put(0, (byte) (OrderCodec.VERSION + 1));
+        newer.putShort(1, (short) (encoded.length - 3 + Long.BYTES));
+
+        Assert.assertEquals(order, codec.decode(newer.array()));
+    }
+
+    @Test
+    public void creationDateIsDecodedAsEncoded() {
+        final Order order = OrderBuilder.anOrder()
+                .withId(3)
+                .withType(OrderType.INCOME)
+                .withReceiverAccount(4)
+                .withOperationCurrencyCode(Currency.GBP)
+                .withAmount(BigDecimal.ONE)
+                .withStatus(OrderStatus.NEW)
+                .build();
+        order.setCreationDate(new Date(1_500_000_000_123L));
+
+        Assert.assertEquals(order, codec.decode(codec.encode(order)));
+    }
+
+    @Test
+    public void orderOfVersionOneHasNoCreationDate() {
+        final Order order = OrderBuilder.anOrder()
+                .withId(8)
+                .withType(OrderType.OUTCOME)
+                .withSenderAccount(2)
+                .withOperationCurrencyCode(Currency.CAD)
+                .withAmount(BigDecimal.ONE)
+                .withStatus(OrderStatus.NEW)
+                .build();
+        order.setCreationDate(new Date());
+        final byte[] encoded = codec.encode(order);
+        final ByteBuffer older = ByteBuffer.wrap(Arrays.copyOf(encoded, encoded.length - Long.BYTES));
+        older.put(0, (byte) 1);
+        older.putShort(1, (short) (encoded.length - 3 - Long.BYTES));
+
+        final Order decoded = codec.decode(older.array());
+
+        Assert.assertNull(decoded.getCreationDate());
+        Assert.assertEquals(order.getAmountMicros(), decoded.getAmountMicros());
+    }
+
+    @Test
+    public void descriptionFillingFieldsLengthIsDecodedAsEncoded() {
+        final Order order = OrderBuilder.anOrder().withId(1).withType(OrderType.INCOME).withReceiverAccount(1)
+                .withOperationCurrencyCode(Currency.USD).withAmount(BigDecimal.ONE).withStatus(OrderStatus.NEW)
+                .withDescription(StringUtils.repeat('d', MAX_INCOME_DESCRIPTION_SIZE)).build();
+
+        Assert.assertEquals(order, codec.decode(codec.encode(order)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void orderLongerThanFieldsLengthIsRejectedInsteadOfWrapped() {
+        final Order order = OrderBuilder.anOrder().withId(1).withType(OrderType.INCOME).withReceiverAccount(1)
+                .withOperationCurrencyCode(Currency.USD).withAmount(BigDecimal.ONE)
+                .withDescription(StringUtils.repeat('d', MAX_INCOME_DESCRIPTION_SIZE + 1)).build();
+
+        codec.encode(order);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void truncatedOrderIsRejected() {
+        final Order order = OrderBuilder.anOrder().withId(1).withType(OrderType.INCOME).withReceiverAccount(1)
+                .withOperationCurrencyCode(Currency.USD).withAmount(BigDecimal.ONE).build();
+        final byte[] encoded = codec.encode(order);
+
+        codec.decode(Arrays.copyOf(encoded, encoded.length - 1));
+    }
+}
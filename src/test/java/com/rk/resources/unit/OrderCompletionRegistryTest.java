@@ -0,0 +1,73 @@
+package com.rk.resources.unit;
+
+import com.codahale.metrics.MetricRegistry;
+import com.rk.api.Currency;
+import com.rk.api.Order;
+import com.rk.api.OrderBuilder;
+import com.rk.api.OrderStatus;
+import com.rk.api.OrderType;
+import com.rk.core.OrderCompletionRegistry;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+
+public class OrderCompletionRegistryTest {
+    private final MetricRegistry metrics = new MetricRegistry();
+
+    @Test
+    public void allWaitersOfOrderAreCompletedWithItsCopy() {
+        final OrderCompletionRegistry registry = new OrderCompletionRegistry(16, metrics);
+        final CompletableFuture<Order> first = registry.register(1);
+        final CompletableFuture<Order> second = registry.register(1);
+        final CompletableFuture<Order> other = registry.register(2);
+        final Order order = anOrder(1);
+
+        registry.complete(order);
+        order.setStatus(OrderStatus.FAILED);
+
+        Assert.assertEquals(OrderStatus.DONE, first.getNow(null).getStatus());
+        Assert.assertSame(first.getNow(null), second.getNow(null));
+        Assert.assertFalse(other.isDone());
+        Assert.assertEquals(1, registry.size());
+        Assert.assertEquals(2,
+                metrics.meter(MetricRegistry.name(OrderCompletionRegistry.class, "completions")).getCount());
+    }
+
+    @Test
+    public void registrationFailsWhenTooManyWaitersAreParked() {
+        final OrderCompletionRegistry registry = new OrderCompletionRegistry(1, metrics);
+        final CompletableFuture<Order> waiter = registry.register(1);
+
+        Assert.assertNull(registry.register(2));
+        registry.cancel(1, waiter);
+        Assert.assertNotNull(registry.register(2));
+        Assert.assertEquals(1,
+                metrics.meter(MetricRegistry.name(OrderCompletionRegistry.class, "rejections")).getCount());
+    }
+
+    @Test
+    public void cancelledWaiterIsNotCompleted() {
+        final OrderCompletionRegistry registry = new OrderCompletionRegistry(16, metrics);
+        final CompletableFuture<Order> waiter = registry.register(1);
+
+        registry.cancel(1, waiter);
+        registry.cancel(1, waiter);
+        registry.complete(anOrder(1));
+
+        Assert.assertFalse(waiter.isDone());
+        Assert.assertEquals(0, registry.size());
+    }
+
+    private static Order anOrder(int id) {
+        return OrderBuilder.anOrder()
+                .withId(id)
+                .withType(OrderType.INCOME)
+                .withReceiverAccount(1)
+                .withOperationCurrencyCode(Currency.USD)
+                .withAmount(BigDecimal.TEN)
+                .withStatus(OrderStatus.DONE)
+                .build();
+    }
+}
@@ -0,0 +1,197 @@
+package com.rk.resources.unit;
+
+import com.codahale.metrics.MetricRegistry;
+import com.rk.api.Currency;
+import com.rk.api.Order;
+import com.rk.api.OrderBuilder;
+import com.rk.api.OrderStatus;
+import com.rk.api.OrderType;
+import com.rk.core.OrderJournal;
+import com.rk.messaging.MessageSender;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class OrderJournalTest {
+    private static final int SEGMENT_SIZE = 1024;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void incompleteOrdersAreReplayedAfterRestartUnlessDatabaseHasThemProcessed() throws Exception {
+        final Path directory = folder.getRoot().toPath();
+        final OrderJournal journal = new OrderJournal(directory, SEGMENT_SIZE, true, new MetricRegistry());
+        journal.start();
+        for (int id = 1; id <= 4; id++) {
+            journal.append(order(id));
+        }
+        journal.complete(2);
+        // no stop, as if the process crashed
+
+        final Map<Integer, Order> database = new HashMap<>();
+        database.put(1, withStatus(order(1), OrderStatus.NEW));
+        database.put(2, withStatus(order(2), OrderStatus.NEW));
+        database.put(3, withStatus(order(3), OrderStatus.DONE));
+        @SuppressWarnings("unchecked")
+        final MessageSender<Order> sender = Mockito.mock(MessageSender.class);
+        final OrderJournal restarted = new OrderJournal(directory, SEGMENT_SIZE, true, new MetricRegistry());
+        restarted.start();
+        Assert.assertEquals(3, restarted.getPendingCount());
+
+        Assert.assertEquals(1, restarted.replay(database::get, sender));
+
+        final ArgumentCaptor<Order> sent = ArgumentCaptor.forClass(Order.class);
+        Mockito.verify(sender).send(sent.capture());
+        Assert.assertEquals(Integer.valueOf(1), sent.getValue().getId());
+        Assert.assertEquals(order(1).getAmountMicros(), sent.getValue().getAmountMicros());
+        Assert.assertEquals(1, restarted.getPendingCount());
+
+        restarted.completing(order -> { }).accept(sent.getValue());
+        Assert.assertEquals(0, restarted.getPendingCount());
+        restarted.stop();
+    }
+
+    @Test
+    public void recoveryStopsAtCorruptedRecordAndAppendingContinuesThere() throws Exception {
+        final Path directory = folder.getRoot().toPath();
+        final OrderJournal journal = new OrderJournal(directory, SEGMENT_SIZE, false, new MetricRegistry());
+        journal.start();
+        journal.append(order(1));
+        journal.append(order(2));
+        journal.stop();
+
+        final Path segment = segments(directory).get(0);
+        final int recordSize = (int) firstRecordSize(segment);
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            // flip a payload byte of the second record
+            file.seek(recordSize + 12);
+            file.write(file.readByte() ^ 0xFF);
+        }
+
+        final OrderJournal recovered = new OrderJournal(directory, SEGMENT_SIZE, false, new MetricRegistry());
+        recovered.start();
+        Assert.assertEquals(1, recovered.getPendingCount());
+        recovered.append(order(3));
+        recovered.stop();
+
+        final OrderJournal reopened = new OrderJournal(directory, SEGMENT_SIZE, false, new MetricRegistry());
+        reopened.start();
+        @SuppressWarnings("unchecked")
+        final MessageSender<Order> sender = Mockito.mock(MessageSender.class);
+        reopened.replay(id -> withStatus(order(id), OrderStatus.NEW), sender);
+        final ArgumentCaptor<Order> sent = ArgumentCaptor.forClass(Order.class);
+        Mockito.verify(sender, Mockito.times(2)).send(sent.capture());
+        Assert.assertEquals(Integer.valueOf(1), sent.getAllValues().get(0).getId());
+        Assert.assertEquals(Integer.valueOf(3), sent.getAllValues().get(1).getId());
+        reopened.stop();
+    }
+
+    @Test
+    public void segmentsAreDeletedOnceAllTheirOrdersAreComplete() throws Exception {
+        final Path directory = folder.getRoot().toPath();
+        final OrderJournal journal = new OrderJournal(directory, SEGMENT_SIZE, false, new MetricRegistry());
+        journal.start();
+        final List<Order> orders = new ArrayList<>();
+        for (int id = 1; id <= 60; id++) {
+            orders.add(order(id));
+        }
+        journal.appendAll(orders);
+        final int segmentsCount = journal.getSegmentsCount();
+        Assert.assertTrue(segmentsCount > 2);
+        Assert.assertEquals(segmentsCount, segments(directory).size());
+
+        // the first order holds its segment and the following ones, completions go to new segments
+        for (int id = 2; id <= 60; id++) {
+            journal.complete(id);
+        }
+        Assert.assertTrue(journal.getSegmentsCount() >= segmentsCount);
+
+        journal.complete(1);
+        Assert.assertEquals(1, journal.getSegmentsCount());
+        Assert.assertEquals(1, segments(directory).size());
+        journal.stop();
+    }
+
+    @Test
+    public void concurrentSynchronousAppendsAreAllJournaled() throws Exception {
+        final Path directory = folder.getRoot().toPath();
+        final MetricRegistry metrics = new MetricRegistry();
+        final OrderJournal journal = new OrderJournal(directory, 64 * 1024, true, metrics);
+        journal.start();
+        final int threads = 4;
+        final int perThread = 200;
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final List<Future<?>> appenders = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final int first = t * perThread + 1;
+            appenders.add(executor.submit(() -> {
+                for (int id = first; id < first + perThread; id++) {
+                    journal.append(order(id));
+                }
+                return null;
+            }));
+        }
+        for (Future<?> appender : appenders) {
+            appender.get();
+        }
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        Assert.assertEquals(threads * perThread, journal.getPendingCount());
+        Assert.assertTrue(metrics.timer(MetricRegistry.name(OrderJournal.class, "syncs")).getCount() > 0);
+        Assert.assertEquals(threads * perThread, metrics.meter(MetricRegistry.name(OrderJournal.class, "appends"))
+                .getCount());
+        journal.stop();
+
+        final OrderJournal restarted = new OrderJournal(directory, 64 * 1024, true, new MetricRegistry());
+        restarted.start();
+        Assert.assertEquals(threads * perThread, restarted.getPendingCount());
+        restarted.stop();
+    }
+
+    private static Order order(int id) {
+        return OrderBuilder.anOrder()
+                .withId(id)
+                .withType(OrderType.TRANSFER)
+                .withSenderAccount(1)
+                .withReceiverAccount(2)
+                .withOperationCurrencyCode(Currency.EUR)
+                .withAmount(BigDecimal.valueOf(5))
+                .build();
+    }
+
+    private static Order withStatus(Order order, OrderStatus status) {
+        order.setStatus(status);
+        return order;
+    }
+
+    private static List<Path> segments(Path directory) throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static long firstRecordSize(Path segment) throws Exception {
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "r")) {
+            return Integer.BYTES + Integer.BYTES + Byte.BYTES + file.readInt();
+        }
+    }
+}
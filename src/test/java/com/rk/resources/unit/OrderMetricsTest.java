@@ -0,0 +1,70 @@
+package com.rk.resources.unit;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableMap;
+import com.rk.api.Currency;
+import com.rk.api.Order;
+import com.rk.api.OrderBuilder;
+import com.rk.api.OrderType;
+import com.rk.core.OrderMetrics;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+public class OrderMetricsTest {
+    private final MetricRegistry metrics = new MetricRegistry();
+    private final OrderMetrics orderMetrics = new OrderMetrics(
+            ImmutableMap.of(1, Currency.EUR, 2, Currency.GBP)::get, metrics);
+
+    @Test
+    public void timerIsNamedByStageTypeCurrencyPairAndOutcome() {
+        orderMetrics.record(OrderMetrics.Stage.BALANCE_UPDATE, order(OrderType.TRANSFER, 1, 2),
+                OrderMetrics.Outcome.REJECTED, 3, TimeUnit.MILLISECONDS);
+
+        Assert.assertEquals(1, metrics.timer(
+                "com.rk.core.OrderMetrics.processing.balance-update.TRANSFER.EUR-GBP.REJECTED").getCount());
+    }
+
+    @Test
+    public void operationCurrencyIsUsedForMissingAndUnknownAccounts() {
+        orderMetrics.record(OrderMetrics.Stage.QUEUE_WAIT, order(OrderType.INCOME, null, 2),
+                OrderMetrics.Outcome.OK, 1, TimeUnit.MILLISECONDS);
+        orderMetrics.record(OrderMetrics.Stage.QUEUE_WAIT, order(OrderType.OUTCOME, 42, null),
+                OrderMetrics.Outcome.OK, 1, TimeUnit.MILLISECONDS);
+
+        Assert.assertEquals(1, metrics.timer("com.rk.core.OrderMetrics.queue-wait.INCOME.USD-GBP.OK").getCount());
+        Assert.assertEquals(1, metrics.timer("com.rk.core.OrderMetrics.queue-wait.OUTCOME.USD-USD.OK").getCount());
+    }
+
+    @Test
+    public void sampleRecordsOnlyMeasuredStages() {
+        final Order order = order(OrderType.TRANSFER, 1, 2);
+        order.setCreationDate(new Date(System.currentTimeMillis() - 1000));
+        final OrderMetrics.Sample sample = orderMetrics.sample(order);
+        sample.sinceCreation(OrderMetrics.Stage.QUEUE_WAIT);
+        sample.add(OrderMetrics.Stage.ACCOUNT_LOAD, TimeUnit.MILLISECONDS.toNanos(2));
+        sample.add(OrderMetrics.Stage.ACCOUNT_LOAD, TimeUnit.MILLISECONDS.toNanos(3));
+
+        sample.record(OrderMetrics.Outcome.ERROR);
+
+        Assert.assertEquals(2, metrics.getTimers().size());
+        Assert.assertTrue(orderMetrics.timer(OrderMetrics.Stage.QUEUE_WAIT, order, OrderMetrics.Outcome.ERROR)
+                .getSnapshot().getMax() >= TimeUnit.SECONDS.toNanos(1));
+        Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(5), orderMetrics.timer(OrderMetrics.Stage.ACCOUNT_LOAD,
+                order, OrderMetrics.Outcome.ERROR).getSnapshot().getMax());
+    }
+
+    private static Order order(OrderType type, Integer sender, Integer receiver) {
+        return OrderBuilder.anOrder()
+                .withId(1)
+                .withType(type)
+                .withSenderAccount(sender)
+                .withReceiverAccount(receiver)
+                .withOperationCurrencyCode(Currency.USD)
+                .withAmount(BigDecimal.ONE)
+                .build();
+    }
+}
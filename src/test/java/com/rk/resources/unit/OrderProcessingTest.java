@@ -1,28 +1,40 @@
 package com.rk.resources.unit;
 
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableTable;
 import com.google.common.collect.Table;
 import com.rk.api.Account;
 import com.rk.api.AccountBuilder;
+import com.rk.api.AccountEvent;
 import com.rk.api.Currency;
-import com.rk.api.ExchangeRate;
+import com.rk.api.Money;
 import com.rk.api.Order;
 import com.rk.api.OrderBuilder;
 import com.rk.api.OrderStatus;
 import com.rk.api.OrderType;
+import com.rk.core.AccountCache;
+import com.rk.core.AccountEventFeed;
+import com.rk.core.AccountIndex;
 import com.rk.core.CurrencyConverter;
+import com.rk.core.OrderMetrics;
+import com.rk.core.OrderPosting;
 import com.rk.core.OrderProcessingWorker;
+import com.rk.core.RateMatrix;
 import com.rk.db.dao.AccountDAO;
-import com.rk.db.dao.ExchangeRateDAO;
 import com.rk.db.dao.OrderDAO;
 import org.apache.commons.lang3.StringUtils;
 import org.junit.After;
 import org.junit.Assert;
-import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 
 import java.math.BigDecimal;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 public class OrderProcessingTest {
     private static final Account RECEIVER_SAMPLE = new Account(4, Currency.USD, BigDecimal.valueOf(5.0));
@@ -47,9 +59,8 @@ public class OrderProcessingTest {
 
     private OrderDAO orderDAO = Mockito.mock(OrderDAO.class);
     private AccountDAO accountDAO = Mockito.mock(AccountDAO.class);
-    private ExchangeRateDAO exchangeRateDAO = Mockito.mock(ExchangeRateDAO.class);
-    private CurrencyConverter currencyConverter = new CurrencyConverter(exchangeRateDAO);
-    private OrderProcessingWorker orderProcessingWorker = new OrderProcessingWorker(orderDAO, accountDAO, exchangeRateDAO);
+    private CurrencyConverter currencyConverter = new CurrencyConverter(RateMatrix.build(exchangeRateTable.rowMap(), null));
+    private OrderProcessingWorker orderProcessingWorker = worker(null, null, null);
 
 
     private Account receiver;
@@ -58,27 +69,18 @@ public class OrderProcessingTest {
 
     @After
     public void resetMock() {
-        Mockito.reset(orderDAO, accountDAO, exchangeRateDAO);
+        Mockito.reset(orderDAO, accountDAO);
         receiver = null;
         sender = null;
     }
 
-    @Before
-    public void mockCurrencies() {
-        exchangeRateTable.rowKeySet().forEach(from ->
-                exchangeRateTable.rowKeySet().forEach(to ->
-                        Mockito.when(exchangeRateDAO.find(from, to)).thenReturn(
-                                new ExchangeRate(from, to, exchangeRateTable.get(from, to)))
-                ));
-    }
-
     @Test
     public void incomeNoReceiver() {
         order = buildOrderWithType(OrderType.INCOME);
         mockDatabaseObjects();
         orderProcessingWorker.accept(order);
 
-        String expectedMessage = String.format(OrderProcessingWorker.RECEIVER_ACCOUNT_DOES_NOT_EXIST_MSG, RECEIVER_SAMPLE.getId());
+        String expectedMessage = String.format(OrderPosting.RECEIVER_ACCOUNT_DOES_NOT_EXIST_MSG, RECEIVER_SAMPLE.getId());
         assertOrderStatusAndMessage(OrderStatus.FAILED, expectedMessage);
     }
 
@@ -100,7 +102,7 @@ public class OrderProcessingTest {
         mockDatabaseObjects();
         orderProcessingWorker.accept(order);
 
-        String expectedMessage = String.format(OrderProcessingWorker.SENDER_ACCOUNT_DOES_NOT_EXIST_MSG, SENDER_SAMPLE.getId());
+        String expectedMessage = String.format(OrderPosting.SENDER_ACCOUNT_DOES_NOT_EXIST_MSG, SENDER_SAMPLE.getId());
         assertOrderStatusAndMessage(OrderStatus.FAILED, expectedMessage);
 
         assertNoAccountUpdate();
@@ -139,7 +141,7 @@ public class OrderProcessingTest {
         mockDatabaseObjects();
 
         orderProcessingWorker.accept(order);
-        String expectedMessage = String.format(OrderProcessingWorker.SENDER_ACCOUNT_DOES_NOT_EXIST_MSG, SENDER_SAMPLE.getId());
+        String expectedMessage = String.format(OrderPosting.SENDER_ACCOUNT_DOES_NOT_EXIST_MSG, SENDER_SAMPLE.getId());
         assertOrderStatusAndMessage(OrderStatus.FAILED, expectedMessage);
 
         assertNoAccountUpdate();
@@ -152,7 +154,7 @@ public class OrderProcessingTest {
         mockDatabaseObjects();
 
         orderProcessingWorker.accept(order);//looks like no transaction here :(
-        String expectedMessage = String.format(OrderProcessingWorker.RECEIVER_ACCOUNT_DOES_NOT_EXIST_MSG, RECEIVER_SAMPLE.getId());
+        String expectedMessage = String.format(OrderPosting.RECEIVER_ACCOUNT_DOES_NOT_EXIST_MSG, RECEIVER_SAMPLE.getId());
         assertOrderStatusAndMessage(OrderStatus.FAILED, expectedMessage);
 
         assertNoAccountUpdate();
@@ -176,13 +178,168 @@ public class OrderProcessingTest {
         sender = AccountBuilder.anAccount().copyOf(SENDER_SAMPLE).build();
         receiver = AccountBuilder.anAccount().copyOf(RECEIVER_SAMPLE).build();
         order = buildOrderWithType(OrderType.TRANSFER);
-        order.setAmount(currencyConverter.convert(sender.getCurrency(), order.getOperationCurrency(),
-                sender.getBalance().subtract(BigDecimal.ONE)));
+        order.setAmount(Money.toBigDecimal(currencyConverter.convert(sender.getCurrency(), order.getOperationCurrency(),
+                Money.toMicros(sender.getBalance().subtract(BigDecimal.ONE)), OrderPosting.CONVERSION_ROUNDING)));
         mockDatabaseObjects();
 
         orderProcessingWorker.accept(order);
         assertOrderStatusAndMessage(OrderStatus.DONE, null);
         assertBalancesAreUpdatedCorrectly();
+        Assert.assertFalse(order.isDerivedRate());
+    }
+
+    @Test
+    public void transferWithDerivedRateIsMarked() {
+        sender = AccountBuilder.anAccount().copyOf(SENDER_SAMPLE).build();
+        receiver = AccountBuilder.anAccount().copyOf(RECEIVER_SAMPLE).build();
+        order = buildOrderWithType(OrderType.TRANSFER);
+        order.setAmount(BigDecimal.ONE);
+        mockDatabaseObjects();
+
+        final Map<Currency, Map<Currency, BigDecimal>> directRates = ImmutableMap.of(
+                Currency.RUB, ImmutableMap.of(Currency.USD, exchangeRateTable.get(Currency.RUB, Currency.USD)),
+                Currency.EUR, ImmutableMap.of(Currency.RUB, exchangeRateTable.get(Currency.EUR, Currency.RUB)));
+        new OrderProcessingWorker(orderDAO, accountDAO, new CurrencyConverter(RateMatrix.build(directRates, null)),
+                null, null, null, null, null, false).accept(order);
+
+        assertOrderStatusAndMessage(OrderStatus.DONE, null);
+        Assert.assertTrue(order.isDerivedRate());
+    }
+
+    @Test
+    public void changedAccountsArePublishedToCacheOnlyAfterCommit() {
+        sender = AccountBuilder.anAccount().copyOf(SENDER_SAMPLE).build();
+        receiver = AccountBuilder.anAccount().copyOf(RECEIVER_SAMPLE).build();
+        order = buildOrderWithType(OrderType.TRANSFER);
+        order.setAmount(BigDecimal.ONE);
+        mockDatabaseObjects();
+        final AccountCache accountCache = new AccountCache(id -> null, 16, new MetricRegistry());
+
+        worker(accountCache, null, null).accept(order);
+        Assert.assertNull(accountCache.get(receiver.getId()));
+
+        final ArgumentCaptor<Runnable> afterCommit = ArgumentCaptor.forClass(Runnable.class);
+        Mockito.verify(accountDAO).afterCommit(afterCommit.capture());
+        afterCommit.getValue().run();
+        Assert.assertEquals(receiver, accountCache.get(receiver.getId()));
+        Assert.assertEquals(sender, accountCache.get(sender.getId()));
+    }
+
+    @Test
+    public void balanceChangesArePublishedToFeedAfterCommit() throws Exception {
+        sender = AccountBuilder.anAccount().copyOf(SENDER_SAMPLE).build();
+        receiver = AccountBuilder.anAccount().copyOf(RECEIVER_SAMPLE).build();
+        order = buildOrderWithType(OrderType.TRANSFER);
+        order.setAmount(BigDecimal.ONE);
+        mockDatabaseObjects();
+        final AccountEventFeed eventFeed = new AccountEventFeed(16, 16, 16, new MetricRegistry());
+        final AccountEventFeed.Subscription subscription = eventFeed.subscribe(sender.getId(), null);
+
+        worker(null, eventFeed, null).accept(order);
+        Assert.assertNull(subscription.poll(0, TimeUnit.MILLISECONDS));
+
+        final ArgumentCaptor<Runnable> afterCommit = ArgumentCaptor.forClass(Runnable.class);
+        Mockito.verify(accountDAO).afterCommit(afterCommit.capture());
+        afterCommit.getValue().run();
+        final AccountEvent debit = subscription.poll(0, TimeUnit.MILLISECONDS);
+        Assert.assertEquals(AccountEvent.Type.DEBIT, debit.getType());
+        Assert.assertEquals(order.getId().intValue(), debit.getOrderId());
+        Assert.assertEquals(sender.getBalanceMicros(), debit.getBalanceMicros());
+        Assert.assertEquals(SENDER_SAMPLE.getBalanceMicros() - sender.getBalanceMicros(), debit.getAmountMicros());
+        Assert.assertNull(subscription.poll(0, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void stageTimersAreRecordedAfterCompletion() {
+        sender = AccountBuilder.anAccount().copyOf(SENDER_SAMPLE).build();
+        receiver = AccountBuilder.anAccount().copyOf(RECEIVER_SAMPLE).build();
+        order = buildOrderWithType(OrderType.TRANSFER);
+        order.setAmount(BigDecimal.ONE);
+        order.setCreationDate(new Date(System.currentTimeMillis() - 5));
+        mockDatabaseObjects();
+        final MetricRegistry metrics = new MetricRegistry();
+        final OrderMetrics orderMetrics = new OrderMetrics(
+                ImmutableMap.of(sender.getId(), sender.getCurrency(), receiver.getId(), receiver.getCurrency())::get,
+                metrics);
+
+        worker(null, null, orderMetrics)
+                .accept(order);
+        Assert.assertTrue(metrics.getTimers().isEmpty());
+
+        final ArgumentCaptor<Consumer<Boolean>> afterCompletion = ArgumentCaptor.forClass(Consumer.class);
+        Mockito.verify(orderDAO).afterCompletion(afterCompletion.capture());
+        afterCompletion.getValue().accept(true);
+        for (OrderMetrics.Stage stage : new OrderMetrics.Stage[] {OrderMetrics.Stage.QUEUE_WAIT,
+                OrderMetrics.Stage.ACCOUNT_LOAD, OrderMetrics.Stage.PRICING, OrderMetrics.Stage.BALANCE_UPDATE,
+                OrderMetrics.Stage.PROCESSING_COMMIT, OrderMetrics.Stage.END_TO_END}) {
+            Assert.assertEquals(stage.name(), 1,
+                    orderMetrics.timer(stage, order, OrderMetrics.Outcome.OK).getCount());
+        }
+        Assert.assertTrue(metrics.getTimers().containsKey(
+                "com.rk.core.OrderMetrics.processing.pricing.TRANSFER.EUR-USD.OK"));
+    }
+
+    @Test
+    public void atomicTransferDoesNotLoadAccounts() throws CurrencyConverter.ConvertingException {
+        order = buildOrderWithType(OrderType.TRANSFER);
+        order.setAmount(BigDecimal.ONE);
+        Mockito.when(accountDAO.debit(Mockito.anyInt(), Mockito.anyLong())).thenReturn(true);
+        Mockito.when(accountDAO.credit(Mockito.anyInt(), Mockito.anyLong())).thenReturn(true);
+
+        atomicWorker().accept(order);
+
+        assertOrderStatusAndMessage(OrderStatus.DONE, null);
+        Mockito.verify(accountDAO).debit(SENDER_SAMPLE.getId(), currencyConverter.convert(order.getOperationCurrency(),
+                SENDER_SAMPLE.getCurrency(), order.getAmountMicros(), OrderPosting.CONVERSION_ROUNDING));
+        Mockito.verify(accountDAO).credit(RECEIVER_SAMPLE.getId(), currencyConverter.convert(order.getOperationCurrency(),
+                RECEIVER_SAMPLE.getCurrency(), order.getAmountMicros(), OrderPosting.CONVERSION_ROUNDING));
+        Mockito.verify(accountDAO, Mockito.never()).findById(Mockito.anyInt());
+    }
+
+    @Test
+    public void atomicTransferFailsWhenDebitIsRejected() {
+        order = buildOrderWithType(OrderType.TRANSFER);
+        order.setAmount(BigDecimal.valueOf(1000000));
+        Mockito.when(accountDAO.debit(Mockito.anyInt(), Mockito.anyLong())).thenReturn(false);
+        Mockito.when(accountDAO.findBalanceMicros(SENDER_SAMPLE.getId())).thenReturn(SENDER_SAMPLE.getBalanceMicros());
+
+        atomicWorker().accept(order);
+
+        assertOrderStatusAndMessage(OrderStatus.FAILED, "Insufficient funds");
+        Mockito.verify(accountDAO, Mockito.never()).credit(Mockito.anyInt(), Mockito.anyLong());
+    }
+
+    @Test
+    public void atomicTransferToIndexedButMissingReceiverIsRolledBackForRejection() {
+        order = buildOrderWithType(OrderType.TRANSFER);
+        order.setAmount(BigDecimal.ONE);
+        order.setStatus(OrderStatus.NEW);
+        Mockito.when(accountDAO.debit(Mockito.anyInt(), Mockito.anyLong())).thenReturn(true);
+        Mockito.when(accountDAO.credit(Mockito.anyInt(), Mockito.anyLong())).thenReturn(false);
+
+        try {
+            atomicWorker().accept(order);
+            Assert.fail("Debited sender should be rolled back");
+        } catch (OrderProcessingWorker.RejectAfterRollbackException e) {
+            Assert.assertEquals(String.format(OrderPosting.RECEIVER_ACCOUNT_DOES_NOT_EXIST_MSG, RECEIVER_SAMPLE.getId()),
+                    e.getMessage());
+        }
+        Assert.assertEquals(OrderStatus.NEW, order.getStatus());
+    }
+
+    private OrderProcessingWorker worker(AccountCache accountCache, AccountEventFeed eventFeed,
+                                         OrderMetrics orderMetrics) {
+        return new OrderProcessingWorker(orderDAO, accountDAO, currencyConverter, accountCache, null, eventFeed,
+                orderMetrics, null, false);
+    }
+
+    private OrderProcessingWorker atomicWorker() {
+        final AccountIndex accountIndex = Mockito.mock(AccountIndex.class);
+        Mockito.when(accountIndex.getCurrency(SENDER_SAMPLE.getId())).thenReturn(SENDER_SAMPLE.getCurrency());
+        Mockito.when(accountIndex.getCurrency(RECEIVER_SAMPLE.getId())).thenReturn(RECEIVER_SAMPLE.getCurrency());
+        return new OrderProcessingWorker(orderDAO, accountDAO, currencyConverter, null, null, null, null,
+                accountIndex, true);
     }
 
     private Order buildOrderWithType(OrderType orderType) {
@@ -226,16 +383,16 @@ public class OrderProcessingTest {
 
         try {
             if (receiver != null) {
-                BigDecimal before = RECEIVER_SAMPLE.getBalance();
-                BigDecimal expected = before.add(currencyConverter.convert(operationalCurrency, receiver.getCurrency(),
-                        expectedOrderAmount));
+                long before = RECEIVER_SAMPLE.getBalanceMicros();
+                BigDecimal expected = Money.toBigDecimal(before + currencyConverter.convert(operationalCurrency,
+                        receiver.getCurrency(), Money.toMicros(expectedOrderAmount), OrderPosting.CONVERSION_ROUNDING));
                 BigDecimal actual = receiver.getBalance();
                 assertBigDecimalEquals(expected, actual);
             }
             if (sender != null) {
-                BigDecimal before = SENDER_SAMPLE.getBalance();
-                BigDecimal expected = before.subtract(currencyConverter.convert(operationalCurrency, sender.getCurrency(),
-                        expectedOrderAmount));
+                long before = SENDER_SAMPLE.getBalanceMicros();
+                BigDecimal expected = Money.toBigDecimal(before - currencyConverter.convert(operationalCurrency,
+                        sender.getCurrency(), Money.toMicros(expectedOrderAmount), OrderPosting.CONVERSION_ROUNDING));
                 BigDecimal actual = sender.getBalance();
                 assertBigDecimalEquals(expected, actual);
             }
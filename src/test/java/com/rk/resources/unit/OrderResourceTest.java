@@ -1,21 +1,24 @@
 package com.rk.resources.unit;
 
-import com.rk.api.Account;
-import com.rk.api.AccountBuilder;
+import com.codahale.metrics.MetricRegistry;
 import com.rk.api.Currency;
 import com.rk.api.Order;
 import com.rk.api.OrderBuilder;
 import com.rk.api.OrderStatus;
 import com.rk.api.OrderType;
-import com.rk.db.dao.AccountDAO;
+import com.rk.core.AccountIndex;
+import com.rk.core.IdempotencyCache;
 import com.rk.db.dao.ExchangeRateDAO;
 import com.rk.db.dao.OrderDAO;
 import com.rk.messaging.ObjectMessageProducer;
 import com.rk.resources.FixtureUtil;
+import com.rk.resources.IdempotencyKeyFilter;
 import com.rk.resources.OrderResource;
 import com.rk.resources.ResourceTest;
 import com.rk.resources.it.testutil.ResourceRequest;
 import io.dropwizard.testing.junit.ResourceTestRule;
+import io.dropwizard.util.Duration;
+import org.apache.commons.lang3.StringUtils;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.ClassRule;
@@ -27,6 +30,7 @@ import org.slf4j.LoggerFactory;
 import javax.jms.JMSException;
 import javax.ws.rs.core.Response;
 import java.math.BigDecimal;
+import java.util.Date;
 
 public class OrderResourceTest extends ResourceTest {
     private static final int SENDER_ID = 1;
@@ -35,20 +39,25 @@ public class OrderResourceTest extends ResourceTest {
     private final static Logger LOGGER = LoggerFactory.getLogger(OrderResourceTest.class);
     private static OrderDAO orderDao = Mockito.mock(OrderDAO.class);
     private static ExchangeRateDAO exchangeRateDAO = Mockito.mock(ExchangeRateDAO.class);
-    private static AccountDAO accountDAO = Mockito.mock(AccountDAO.class);
-    private static ObjectMessageProducer objectMessageProducer = Mockito.mock(ObjectMessageProducer.class);
+    private static AccountIndex accountIndex = Mockito.mock(AccountIndex.class);
+    @SuppressWarnings("unchecked")
+    private static ObjectMessageProducer<Order> objectMessageProducer = Mockito.mock(ObjectMessageProducer.class);
+    private static IdempotencyCache idempotencyCache =
+            new IdempotencyCache(Duration.hours(1), 16, new MetricRegistry());
     private ResourceRequest<Order> request;
     private Order sampleOrder;
 
 
     @ClassRule
     public static final ResourceTestRule resources = ResourceTestRule.builder()
-            .addResource(new OrderResource(orderDao, accountDAO, objectMessageProducer))
+            .addResource(new OrderResource(orderDao, accountIndex, objectMessageProducer, false, idempotencyCache,
+                    null, null))
+            .addProvider(new IdempotencyKeyFilter(idempotencyCache))
             .build();
 
     @Before
     public void resetMock() {
-        Mockito.reset(orderDao, exchangeRateDAO, accountDAO, objectMessageProducer);
+        Mockito.reset(orderDao, exchangeRateDAO, accountIndex, objectMessageProducer);
         request = createRequest(resources, OrderResource.class, Order.class);
         sampleOrder = OrderBuilder.anOrder()
                 .withId(ORDER_ID)
@@ -110,6 +119,107 @@ public class OrderResourceTest extends ResourceTest {
                 });
     }
 
+    @Test
+    public void postOrderWithoutAmountIsRejected() throws JMSException {
+        sampleOrder.setAmount(null);
+        final String error = request.post(sampleOrder, String.class, ResourceRequest.UNPROCESSABLE_ENTITY).getEntity();
+        Assert.assertTrue(error, error.contains("amount may not be null"));
+        assertOrderIsNotProcessed();
+    }
+
+    @Test
+    public void postOrderWithAmountBeyondMoneyScaleIsRejectedInsteadOfRounded() throws JMSException {
+        mockAccountExistence(SENDER_ID, RECEIVER_ID);
+        mockOrderCreation();
+        final ResourceRequest<String> jsonRequest = createRequest(resources, OrderResource.class, String.class);
+
+        final String error = jsonRequest.post(transferJson("5.0000005"), String.class,
+                ResourceRequest.UNPROCESSABLE_ENTITY).getEntity();
+        Assert.assertTrue(error, error.contains("Amount cannot have more than 6 decimal digits"));
+        jsonRequest.post(transferJson("5.00000050"), String.class, ResourceRequest.UNPROCESSABLE_ENTITY);
+        assertOrderIsNotProcessed();
+
+        // trailing zeros do not make an amount more precise
+        final Order order = jsonRequest.post(transferJson("5.0000000"), Order.class,
+                Response.Status.CREATED.getStatusCode()).getEntity();
+        Assert.assertEquals(new BigDecimal("5.000000"), order.getAmount());
+    }
+
+    @Test
+    public void postWithCachedIdempotencyKeyReturnsCachedOrder() throws JMSException {
+        final Order cachedOrder = OrderBuilder.anOrder().copyOf(sampleOrder).withStatus(OrderStatus.NEW).build();
+        idempotencyCache.put("cached-key", cachedOrder);
+
+        final Order actualOrder = request.header(IdempotencyCache.HEADER, "cached-key").post(sampleOrder).getEntity();
+
+        Assert.assertEquals(cachedOrder, actualOrder);
+        Mockito.verifyZeroInteractions(orderDao, accountIndex);
+        assertOrderIsNotProcessed();
+    }
+
+    @Test
+    public void postWithStoredIdempotencyKeyReturnsStoredOrderAsCreated() throws JMSException {
+        final Date creationDate = new Date();
+        final Order storedOrder = OrderBuilder.anOrder().copyOf(sampleOrder)
+                .withStatus(OrderStatus.FAILED)
+                .withDescription("Insufficient funds")
+                .withDerivedRate(true)
+                .withCreationDate(creationDate)
+                .build();
+        Mockito.when(orderDao.findByIdempotencyKey("stored-key")).thenReturn(storedOrder);
+
+        final Order actualOrder = request.header(IdempotencyCache.HEADER, "stored-key").post(sampleOrder).getEntity();
+
+        // the same response as the first request has got, also for the repeats served from cache
+        final Order createdOrder = OrderBuilder.anOrder().copyOf(sampleOrder)
+                .withStatus(OrderStatus.NEW)
+                .withCreationDate(creationDate)
+                .build();
+        Assert.assertEquals(createdOrder, actualOrder);
+        Assert.assertEquals(createdOrder, idempotencyCache.get("stored-key"));
+        Assert.assertEquals(OrderStatus.FAILED, storedOrder.getStatus());
+        Mockito.verify(orderDao, Mockito.never()).create(Mockito.any());
+        assertOrderIsNotProcessed();
+    }
+
+    @Test
+    public void postWithExpiredIdempotencyKeyIsRejected() throws JMSException {
+        final Order storedOrder = OrderBuilder.anOrder().copyOf(sampleOrder)
+                .withCreationDate(new Date(System.currentTimeMillis() - Duration.hours(2).toMilliseconds()))
+                .build();
+        Mockito.when(orderDao.findByIdempotencyKey("expired-key")).thenReturn(storedOrder);
+
+        request.header(IdempotencyCache.HEADER, "expired-key")
+                .post(sampleOrder, String.class, Response.Status.CONFLICT.getStatusCode());
+        assertOrderIsNotProcessed();
+    }
+
+    @Test
+    public void postWithNewIdempotencyKeySavesTheKey() throws JMSException {
+        mockAccountExistence(SENDER_ID, RECEIVER_ID);
+        mockOrderCreation();
+
+        request.header(IdempotencyCache.HEADER, "new-key").post(sampleOrder);
+
+        Mockito.verify(orderDao).create(Mockito.argThat(order -> "new-key".equals(order.getIdempotencyKey())));
+        Mockito.verify(orderDao).afterCommit(Mockito.any());
+        sampleOrder.setStatus(OrderStatus.NEW);
+        assertOrderProcessingStarted(sampleOrder);
+    }
+
+    @Test
+    public void postWithTooLongIdempotencyKeyIsRejected() throws JMSException {
+        final String key = StringUtils.repeat('k', IdempotencyCache.MAX_KEY_LENGTH + 1);
+        request.header(IdempotencyCache.HEADER, key)
+                .post(sampleOrder, String.class, Response.Status.BAD_REQUEST.getStatusCode());
+        assertOrderIsNotProcessed();
+    }
+
+    private static String transferJson(String amount) {
+        return "{\"senderAccount\": " + SENDER_ID + ", \"receiverAccount\": " + RECEIVER_ID
+                + ", \"operationCurrency\": \"EUR\", \"orderType\": \"TRANSFER\", \"amount\": " + amount + "}";
+    }
+
     private void mockOrderCreation() {
         Mockito.when(orderDao.create(Mockito.any())).thenReturn(ORDER_ID);
     }
@@ -124,14 +234,10 @@ public class OrderResourceTest extends ResourceTest {
 
     private void mockAccountExistence(Integer senderId, Integer receiverId) {
         if (senderId != null) {
-            Account sender = AccountBuilder.anAccount().validSample();
-            sender.setId(senderId);
-            Mockito.when(accountDAO.findById(Mockito.eq(senderId))).thenReturn(sender);
+            Mockito.when(accountIndex.contains(senderId)).thenReturn(true);
         }
         if (receiverId != null) {
-            Account receiver = AccountBuilder.anAccount().validSample();
-            receiver.setId(receiverId);
-            Mockito.when(accountDAO.findById(Mockito.eq(receiverId))).thenReturn(receiver);
+            Mockito.when(accountIndex.contains(receiverId)).thenReturn(true);
         }
     }
 }
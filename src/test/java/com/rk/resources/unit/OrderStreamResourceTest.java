@@ -0,0 +1,106 @@
+package com.rk.resources.unit;
+
+import com.codahale.metrics.MetricRegistry;
+import com.rk.api.Order;
+import com.rk.api.OrderBatchItem;
+import com.rk.core.OrderBatchSubmitter;
+import com.rk.messaging.QueueDepthProbe;
+import com.rk.resources.OrderStreamResource;
+import io.dropwizard.jackson.Jackson;
+import io.dropwizard.testing.junit.ResourceTestRule;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import javax.jms.JMSException;
+import javax.ws.rs.client.Entity;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class OrderStreamResourceTest {
+    private static final int CHUNK_SIZE = 2;
+    private static final long MAX_QUEUE_DEPTH = 100;
+    private static final String INCOME = "{\"orderType\": \"INCOME\", \"operationCurrency\": \"USD\", "
+            + "\"receiverAccount\": 1, \"amount\": 1.0}";
+    private static MetricRegistry metrics = new MetricRegistry();
+    private static OrderBatchSubmitter submitter = Mockito.mock(OrderBatchSubmitter.class);
+    private static QueueDepthProbe queueDepthProbe = Mockito.mock(QueueDepthProbe.class);
+
+    @ClassRule
+    public static final ResourceTestRule resources = ResourceTestRule.builder()
+            .addResource(new OrderStreamResource(submitter, queueDepthProbe, Jackson.newObjectMapper(), CHUNK_SIZE,
+                    MAX_QUEUE_DEPTH, 1, metrics))
+            .build();
+
+    @Before
+    public void resetMock() throws JMSException, IOException {
+        Mockito.reset(submitter, queueDepthProbe);
+        Mockito.when(submitter.submit(Mockito.any())).thenAnswer(invocation -> {
+            final List<OrderBatchItem> items = new ArrayList<>();
+            for (Order order : invocation.<List<Order>>getArgument(0)) {
+                final OrderBatchItem item = new OrderBatchItem(items.size());
+                item.setId(order.getReceiverAccount() * 10 + items.size());
+                items.add(item);
+            }
+            return items;
+        });
+    }
+
+    @Test
+    public void everyLineGetsResultAndOrdersAreCreatedInChunks() throws Exception {
+        final String body = String.join("\n", INCOME, "", "{not json", INCOME, INCOME) + "\n";
+
+        final List<OrderBatchItem> items = post(body);
+
+        Assert.assertEquals(4, items.size());
+        Assert.assertEquals(Arrays.asList(1, 3, 4, 5), Arrays.asList(items.get(0).getIndex(), items.get(1).getIndex(),
+                items.get(2).getIndex(), items.get(3).getIndex()));
+        Assert.assertEquals(Integer.valueOf(10), items.get(0).getId());
+        Assert.assertNull(items.get(1).getId());
+        Assert.assertTrue(items.get(1).getErrors().get(0).startsWith("Malformed order"));
+        Assert.assertEquals(Integer.valueOf(10), items.get(2).getId());
+        Assert.assertEquals(Integer.valueOf(11), items.get(3).getId());
+        // first chunk has two lines, one of them malformed; second chunk has two orders
+        Mockito.verify(submitter, Mockito.times(2)).submit(Mockito.any());
+    }
+
+    @Test
+    public void readingIsPausedWhileQueueIsFull() throws Exception {
+        Mockito.when(queueDepthProbe.getQueueDepth()).thenReturn(MAX_QUEUE_DEPTH + 1, MAX_QUEUE_DEPTH + 1, 0L);
+        final long throttledBefore = metrics.meter(MetricRegistry.name(OrderStreamResource.class, "throttled")).getCount();
+
+        final List<OrderBatchItem> items = post(INCOME);
+
+        Assert.assertEquals(1, items.size());
+        Assert.assertEquals(Integer.valueOf(10), items.get(0).getId());
+        Assert.assertEquals(2, metrics.meter(MetricRegistry.name(OrderStreamResource.class, "throttled")).getCount()
+                - throttledBefore);
+    }
+
+    @Test
+    public void failedChunkIsReportedForItsLines() throws Exception {
+        Mockito.doThrow(new JMSException("broker is down")).when(submitter).submit(Mockito.any());
+
+        final List<OrderBatchItem> items = post(INCOME + "\n" + INCOME);
+
+        Assert.assertEquals(2, items.size());
+        for (OrderBatchItem item : items) {
+            Assert.assertNull(item.getId());
+            Assert.assertEquals(Arrays.asList("Order is not created: broker is down"), item.getErrors());
+        }
+    }
+
+    private static List<OrderBatchItem> post(String body) throws Exception {
+        final String response = resources.target("orders/stream").request(OrderStreamResource.NDJSON)
+                .post(Entity.entity(body, OrderStreamResource.NDJSON), String.class);
+        final List<OrderBatchItem> items = new ArrayList<>();
+        for (String line : response.split("\n")) {
+            items.add(Jackson.newObjectMapper().readValue(line, OrderBatchItem.class));
+        }
+        return items;
+    }
+}
@@ -0,0 +1,57 @@
+package com.rk.resources.unit;
+
+import com.google.common.collect.ImmutableMap;
+import com.rk.api.Currency;
+import com.rk.api.Money;
+import com.rk.core.ExchangeRateProvider;
+import com.rk.core.RateMatrix;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+public class RateMatrixTest {
+    private final Map<Currency, Map<Currency, BigDecimal>> directRates = ImmutableMap.of(
+            Currency.EUR, ImmutableMap.of(Currency.USD, new BigDecimal("1.25")),
+            Currency.USD, ImmutableMap.of(Currency.RUB, new BigDecimal("60")));
+
+    @Test
+    public void inverseRateIsDerived() {
+        final RateMatrix matrix = RateMatrix.build(directRates, null);
+
+        assertRate("1.25", matrix.getRate(Currency.EUR, Currency.USD));
+        Assert.assertFalse(matrix.isDerived(Currency.EUR, Currency.USD));
+        assertRate("0.8", matrix.getRate(Currency.USD, Currency.EUR));
+        Assert.assertTrue(matrix.isDerived(Currency.USD, Currency.EUR));
+        Assert.assertEquals(ExchangeRateProvider.NO_RATE, matrix.getRate(Currency.EUR, Currency.RUB));
+    }
+
+    @Test
+    public void crossRateIsDerivedThroughPivot() {
+        final RateMatrix matrix = RateMatrix.build(directRates, Currency.USD);
+
+        assertRate("75", matrix.getRate(Currency.EUR, Currency.RUB));
+        Assert.assertTrue(matrix.isDerived(Currency.EUR, Currency.RUB));
+        assertRate("0.013333333", matrix.getRate(Currency.RUB, Currency.EUR));
+        Assert.assertEquals(ExchangeRateProvider.NO_RATE, matrix.getRate(Currency.EUR, Currency.GBP));
+        Assert.assertEquals(2, matrix.getDirectCount());
+        Assert.assertEquals(4, matrix.getDerivedCount());
+    }
+
+    @Test
+    public void directRateWinsOverDerived() {
+        final RateMatrix matrix = RateMatrix.build(ImmutableMap.of(
+                Currency.EUR, ImmutableMap.of(Currency.USD, new BigDecimal("1.25"), Currency.RUB, new BigDecimal("70")),
+                Currency.USD, ImmutableMap.of(Currency.EUR, new BigDecimal("0.81"), Currency.RUB, new BigDecimal("60"))),
+                Currency.USD);
+
+        assertRate("0.81", matrix.getRate(Currency.USD, Currency.EUR));
+        assertRate("70", matrix.getRate(Currency.EUR, Currency.RUB));
+        Assert.assertFalse(matrix.isDerived(Currency.EUR, Currency.RUB));
+    }
+
+    private static void assertRate(String expected, long actual) {
+        Assert.assertEquals(Money.toRate(new BigDecimal(expected)), actual);
+    }
+}
@@ -0,0 +1,82 @@
+package com.rk.resources.unit;
+
+import com.codahale.metrics.MetricRegistry;
+import com.rk.api.Currency;
+import com.rk.api.Order;
+import com.rk.api.OrderBuilder;
+import com.rk.api.OrderStatus;
+import com.rk.api.OrderType;
+import com.rk.core.BatchOrderProcessingWorker;
+import com.rk.core.RetryingBatchOrderConsumer;
+import io.dropwizard.util.Duration;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+
+import javax.persistence.OptimisticLockException;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class RetryingBatchOrderConsumerTest {
+    private final MetricRegistry metrics = new MetricRegistry();
+    private final BatchOrderProcessingWorker worker = Mockito.mock(BatchOrderProcessingWorker.class);
+    private final RetryingBatchOrderConsumer consumer = new RetryingBatchOrderConsumer(worker, 2,
+            Duration.milliseconds(1), Duration.milliseconds(2), metrics);
+    private final Order first = sampleOrder(1);
+    private final Order second = sampleOrder(2);
+    private final List<Order> batch = Arrays.asList(first, second);
+
+    @Test
+    public void conflictingBatchIsRetried() {
+        Mockito.doThrow(new OptimisticLockException())
+                .doNothing()
+                .when(worker).accept(ArgumentMatchers.any());
+
+        consumer.accept(batch);
+
+        Mockito.verify(worker, Mockito.times(2)).accept(batch);
+        Mockito.verify(worker, Mockito.never()).reject(ArgumentMatchers.any(), ArgumentMatchers.any());
+        Assert.assertEquals(1, metrics.meter(MetricRegistry.name(RetryingBatchOrderConsumer.class, "conflicts"))
+                .getCount());
+    }
+
+    @Test
+    public void onlyOrderWhichKeepsConflictingFailsWhenBatchRetriesAreExhausted() {
+        Mockito.doThrow(new OptimisticLockException()).when(worker).accept(batch);
+        Mockito.doThrow(new OptimisticLockException()).when(worker).accept(Collections.singletonList(second));
+
+        consumer.accept(batch);
+
+        Mockito.verify(worker, Mockito.times(3)).accept(batch);
+        Mockito.verify(worker).accept(Collections.singletonList(first));
+        Mockito.verify(worker, Mockito.times(3)).accept(Collections.singletonList(second));
+        Mockito.verify(worker).reject(ArgumentMatchers.eq(second), ArgumentMatchers.contains("2 retries"));
+        Mockito.verify(worker, Mockito.never()).reject(ArgumentMatchers.eq(first), ArgumentMatchers.any());
+        Assert.assertEquals(2, metrics.meter(MetricRegistry.name(RetryingBatchOrderConsumer.class, "exhausted"))
+                .getCount());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void otherFailuresAreNotRetried() {
+        Mockito.doThrow(new IllegalStateException()).when(worker).accept(ArgumentMatchers.any());
+        try {
+            consumer.accept(batch);
+        } finally {
+            Mockito.verify(worker).accept(batch);
+        }
+    }
+
+    private static Order sampleOrder(int id) {
+        return OrderBuilder.anOrder()
+                .withId(id)
+                .withType(OrderType.INCOME)
+                .withReceiverAccount(3)
+                .withOperationCurrencyCode(Currency.USD)
+                .withAmount(BigDecimal.ONE)
+                .withStatus(OrderStatus.NEW)
+                .build();
+    }
+}
@@ -0,0 +1,83 @@
+package com.rk.resources.unit;
+
+import com.codahale.metrics.MetricRegistry;
+import com.rk.api.Currency;
+import com.rk.api.Order;
+import com.rk.api.OrderBuilder;
+import com.rk.api.OrderStatus;
+import com.rk.api.OrderType;
+import com.rk.core.OrderProcessingWorker;
+import com.rk.core.RetryingOrderConsumer;
+import io.dropwizard.util.Duration;
+import org.hibernate.StaleObjectStateException;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+
+import javax.persistence.OptimisticLockException;
+import java.math.BigDecimal;
+
+public class RetryingOrderConsumerTest {
+    private final MetricRegistry metrics = new MetricRegistry();
+    private final OrderProcessingWorker worker = Mockito.mock(OrderProcessingWorker.class);
+    private final RetryingOrderConsumer consumer = new RetryingOrderConsumer(worker, 2, Duration.milliseconds(1),
+            Duration.milliseconds(2), metrics);
+    private final Order order = OrderBuilder.anOrder()
+            .withId(1)
+            .withType(OrderType.INCOME)
+            .withReceiverAccount(3)
+            .withOperationCurrencyCode(Currency.USD)
+            .withAmount(BigDecimal.ONE)
+            .withStatus(OrderStatus.NEW)
+            .build();
+
+    @Test
+    public void conflictingOrderIsRetried() {
+        Mockito.doThrow(new OptimisticLockException(new StaleObjectStateException("Account", 3)))
+                .doNothing()
+                .when(worker).accept(ArgumentMatchers.any());
+
+        consumer.accept(order);
+
+        Mockito.verify(worker, Mockito.times(2)).accept(order);
+        Mockito.verify(worker, Mockito.never()).reject(ArgumentMatchers.any(), ArgumentMatchers.any());
+        Assert.assertEquals(1, metrics.meter(MetricRegistry.name(RetryingOrderConsumer.class, "conflicts")).getCount());
+        Assert.assertEquals(1, metrics.histogram(MetricRegistry.name(RetryingOrderConsumer.class, "retries"))
+                .getSnapshot().getMax());
+    }
+
+    @Test
+    public void orderFailsWhenRetriesAreExhausted() {
+        Mockito.doThrow(new OptimisticLockException()).when(worker).accept(ArgumentMatchers.any());
+
+        consumer.accept(order);
+
+        Mockito.verify(worker, Mockito.times(3)).accept(order);
+        Mockito.verify(worker).reject(ArgumentMatchers.eq(order), ArgumentMatchers.contains("2 retries"));
+        Assert.assertEquals(1, metrics.meter(MetricRegistry.name(RetryingOrderConsumer.class, "exhausted")).getCount());
+    }
+
+    @Test
+    public void orderRolledBackForRejectionFailsWithoutRetry() {
+        final String description = "Receiver account with id: 3 does not exist";
+        Mockito.doThrow(new OrderProcessingWorker.RejectAfterRollbackException(description))
+                .when(worker).accept(ArgumentMatchers.any());
+
+        consumer.accept(order);
+
+        Mockito.verify(worker).accept(order);
+        Mockito.verify(worker).reject(order, description);
+        Assert.assertEquals(0, metrics.meter(MetricRegistry.name(RetryingOrderConsumer.class, "conflicts")).getCount());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void otherFailuresAreNotRetried() {
+        Mockito.doThrow(new IllegalStateException()).when(worker).accept(ArgumentMatchers.any());
+        try {
+            consumer.accept(order);
+        } finally {
+            Mockito.verify(worker).accept(order);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.rk.resources.unit;
+
+import com.codahale.metrics.MetricRegistry;
+import com.rk.messaging.RingBuffer;
+import com.rk.messaging.RingBufferConsumerContainer;
+import com.rk.messaging.RingBufferMessageSender;
+import com.rk.messaging.WaitStrategy;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.jms.JMSException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class RingBufferTransportTest {
+    @Test
+    public void objectsArePolledInOfferOrder() throws Exception {
+        final RingBuffer<Integer> ringBuffer = new RingBuffer<>(3, WaitStrategy.BUSY_SPIN);
+        Assert.assertEquals(4, ringBuffer.capacity());
+
+        for (int i = 0; i < 4; i++) {
+            Assert.assertTrue(ringBuffer.offer(i, 0, TimeUnit.MILLISECONDS));
+        }
+        Assert.assertFalse(ringBuffer.offer(4, 10, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(4, ringBuffer.size());
+
+        for (int i = 0; i < 4; i++) {
+            Assert.assertEquals(Integer.valueOf(i), ringBuffer.poll(0, TimeUnit.MILLISECONDS));
+        }
+        Assert.assertNull(ringBuffer.poll(10, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void objectsAreOfferedAllOrNone() throws Exception {
+        final RingBuffer<Integer> ringBuffer = new RingBuffer<>(4, WaitStrategy.SLEEPING);
+        Assert.assertTrue(ringBuffer.offer(0, 0, TimeUnit.MILLISECONDS));
+
+        Assert.assertFalse(ringBuffer.offerAll(Arrays.asList(1, 2, 3, 4), 10, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(1, ringBuffer.size());
+
+        Assert.assertTrue(ringBuffer.offerAll(Arrays.asList(1, 2, 3), 0, TimeUnit.MILLISECONDS));
+        for (int i = 0; i < 4; i++) {
+            Assert.assertEquals(Integer.valueOf(i), ringBuffer.poll(0, TimeUnit.MILLISECONDS));
+        }
+    }
+
+    @Test
+    public void everyObjectIsPolledOnceByConcurrentConsumers() throws Exception {
+        for (WaitStrategy waitStrategy : WaitStrategy.values()) {
+            final RingBuffer<Integer> ringBuffer = new RingBuffer<>(64, waitStrategy);
+            final int producers = 3;
+            final int perProducer = 2_000;
+            final ExecutorService threads = Executors.newFixedThreadPool(producers * 2);
+            for (int p = 0; p < producers; p++) {
+                final int first = p * perProducer;
+                threads.execute(() -> {
+                    try {
+                        for (int i = first; i < first + perProducer; i += 2) {
+                            Assert.assertTrue(ringBuffer.offerAll(Arrays.asList(i, i + 1), 5, TimeUnit.SECONDS));
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            }
+            final List<Future<BitSet>> consumed = new CopyOnWriteArrayList<>();
+            for (int c = 0; c < producers; c++) {
+                consumed.add(threads.submit(() -> {
+                    final BitSet seen = new BitSet();
+                    Integer item;
+                    while ((item = ringBuffer.poll(200, TimeUnit.MILLISECONDS)) != null) {
+                        seen.set(item);
+                    }
+                    return seen;
+                }));
+            }
+            threads.shutdown();
+            Assert.assertTrue(threads.awaitTermination(30, TimeUnit.SECONDS));
+
+            final BitSet all = new BitSet();
+            int total = 0;
+            for (Future<BitSet> seen : consumed) {
+                total += seen.get().cardinality();
+                all.or(seen.get());
+            }
+            Assert.assertEquals(waitStrategy.name(), producers * perProducer, total);
+            Assert.assertEquals(waitStrategy.name(), producers * perProducer, all.cardinality());
+        }
+    }
+
+    @Test
+    public void sentObjectsAreConsumedByReferenceAndDrainedOnStop() throws Exception {
+        final RingBuffer<Object> ringBuffer = new RingBuffer<>(16, WaitStrategy.BLOCKING);
+        final RingBufferMessageSender<Object> sender = new RingBufferMessageSender<>("orders", ringBuffer, 10,
+                new MetricRegistry());
+        final List<Object> consumed = new CopyOnWriteArrayList<>();
+        final RingBufferConsumerContainer<Object> container = new RingBufferConsumerContainer<>("orders", ringBuffer,
+                2, consumed::add);
+        final Object first = new Object();
+        final Object second = new Object();
+
+        container.start();
+        container.resize(1);
+        sender.sendAll(Arrays.asList(first, second));
+        container.stop();
+
+        Assert.assertEquals(2, container.getHandledCount());
+        Assert.assertSame(first, consumed.get(0));
+        Assert.assertSame(second, consumed.get(1));
+        Assert.assertEquals(0, container.getConsumersCount());
+    }
+
+    @Test(expected = JMSException.class)
+    public void sendFailsWhenBufferStaysFull() throws Exception {
+        final RingBufferMessageSender<Object> sender = new RingBufferMessageSender<>("orders",
+                new RingBuffer<>(1, WaitStrategy.YIELDING), 10, new MetricRegistry());
+        for (int i = 0; i < 3; i++) {
+            sender.send(new Object());
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.rk.resources.unit;
+
+import com.codahale.metrics.MetricRegistry;
+import com.rk.api.Currency;
+import com.rk.api.Order;
+import com.rk.api.OrderBuilder;
+import com.rk.api.OrderType;
+import com.rk.core.ShardedOrderExecutor;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+public class ShardedOrderExecutorTest {
+    private static final int LANES_COUNT = 4;
+    private static final int ACCOUNTS_COUNT = 10;
+
+    private final Map<Integer, AtomicInteger> inFlightByAccount = new ConcurrentHashMap<>();
+    private final Map<Integer, List<Integer>> processedByAccount = new ConcurrentHashMap<>();
+    private final List<String> errors = new CopyOnWriteArrayList<>();
+    private final AtomicInteger processedCount = new AtomicInteger();
+    private ShardedOrderExecutor executor;
+
+    private final Consumer<Order> recordingWorker = order -> {
+        List<Integer> accounts = accountsOf(order);
+        accounts.forEach(account -> {
+            if (inFlightByAccount.computeIfAbsent(account, key -> new AtomicInteger()).incrementAndGet() > 1) {
+                errors.add("Concurrent processing of account " + account);
+            }
+        });
+        try {
+            Thread.sleep(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        accounts.forEach(account -> {
+            processedByAccount.computeIfAbsent(account, key -> new CopyOnWriteArrayList<>()).add(order.getId());
+            inFlightByAccount.get(account).decrementAndGet();
+        });
+        processedCount.incrementAndGet();
+    };
+
+    @Before
+    public void startExecutor() {
+        executor = new ShardedOrderExecutor(recordingWorker, LANES_COUNT, 16, new MetricRegistry());
+        executor.start();
+    }
+
+    @After
+    public void stopExecutor() throws InterruptedException {
+        executor.stop();
+    }
+
+    @Test
+    public void ordersOfSameAccountAreNotProcessedConcurrently() throws InterruptedException {
+        List<Order> orders = IntStream.range(0, 400)
+                .mapToObj(this::sampleOrder)
+                .collect(Collectors.toList());
+
+        List<Thread> producers = IntStream.range(0, 4)
+                .mapToObj(producer -> new Thread(() -> orders.stream()
+                        .filter(order -> order.getId() % 4 == producer)
+                        .forEach(executor)))
+                .collect(Collectors.toList());
+        producers.forEach(Thread::start);
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        executor.stop();
+
+        Assert.assertEquals(errors.toString(), 0, errors.size());
+        Assert.assertEquals(orders.size(), processedCount.get());
+    }
+
+    @Test
+    public void ordersOfSameAccountAreProcessedInAcceptanceOrder() throws InterruptedException {
+        List<Order> orders = IntStream.range(0, 200)
+                .mapToObj(this::sampleOrder)
+                .collect(Collectors.toList());
+        orders.forEach(executor);
+        executor.stop();
+
+        processedByAccount.forEach((account, processedIds) -> {
+            List<Integer> expectedIds = orders.stream()
+                    .filter(order -> accountsOf(order).contains(account))
+                    .map(Order::getId)
+                    .collect(Collectors.toList());
+            Assert.assertEquals("Unexpected processing order for account " + account, expectedIds, processedIds);
+        });
+    }
+
+    @Test
+    public void acceptedTasksAreRunBeforeStopReturns() throws InterruptedException {
+        final AtomicInteger done = new AtomicInteger();
+        final AtomicInteger cancelled = new AtomicInteger();
+        IntStream.range(0, 100).mapToObj(this::sampleOrder).forEach(order -> executor.execute(order,
+                done::incrementAndGet, cancelled::incrementAndGet));
+        executor.stop();
+
+        Assert.assertEquals(100, done.get());
+        Assert.assertEquals(0, cancelled.get());
+    }
+
+    @Test
+    public void ordersAreRejectedAfterStop() throws InterruptedException {
+        executor.stop();
+        try {
+            executor.execute(sampleOrder(1), () -> {}, () -> {});
+            Assert.fail("Task is accepted by stopped executor");
+        } catch (RejectedExecutionException expected) {
+        }
+        try {
+            executor.accept(sampleOrder(2));
+            Assert.fail("Order is accepted by stopped executor");
+        } catch (RejectedExecutionException expected) {
+        }
+        Assert.assertEquals(0, processedCount.get());
+    }
+
+    private Order sampleOrder(int id) {
+        OrderType type = OrderType.values()[id % OrderType.values().length];
+        int sender = id % ACCOUNTS_COUNT;
+        int receiver = (id * 7 + 3) % ACCOUNTS_COUNT;
+        if (sender == receiver) {
+            receiver = (receiver + 1) % ACCOUNTS_COUNT;
+        }
+        return OrderBuilder.anOrder()
+                .withId(id)
+                .withType(type)
+                .withSenderAccount(type.isOutgoing() ? sender : null)
+                .withReceiverAccount(type.isIngoing() ? receiver : null)
+                .withOperationCurrencyCode(Currency.USD)
+                .withAmount(BigDecimal.ONE)
+                .build();
+    }
+
+    private static List<Integer> accountsOf(Order order) {
+        return IntStream.of(
+                order.getSenderAccount() == null ? -1 : order.getSenderAccount(),
+                order.getReceiverAccount() == null ? -1 : order.getReceiverAccount())
+                .filter(account -> account >= 0)
+                .boxed()
+                .collect(Collectors.toList());
+    }
+}
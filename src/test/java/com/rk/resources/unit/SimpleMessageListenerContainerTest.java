@@ -0,0 +1,263 @@
+package com.rk.resources.unit;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.rk.api.Currency;
+import com.rk.api.Order;
+import com.rk.api.OrderBuilder;
+import com.rk.api.OrderType;
+import com.rk.core.ShardedOrderExecutor;
+import com.rk.messaging.EmbeddedActiveMQConsumerDispatchProbe;
+import com.rk.messaging.OrderCodec;
+import com.rk.messaging.SimpleMessageListenerContainer;
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.apache.activemq.broker.BrokerService;
+import org.apache.activemq.command.ActiveMQQueue;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+
+import javax.jms.BytesMessage;
+import javax.jms.Connection;
+import javax.jms.ConnectionFactory;
+import javax.jms.JMSException;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class SimpleMessageListenerContainerTest {
+    private static final String BROKER = "listener-container-test";
+    private static final ActiveMQQueue QUEUE = new ActiveMQQueue("orders");
+
+    private BrokerService broker;
+    private ActiveMQConnectionFactory connectionFactory;
+
+    @Before
+    public void setUp() throws Exception {
+        broker = new BrokerService();
+        broker.setBrokerName(BROKER);
+        broker.setPersistent(false);
+        broker.setUseJmx(false);
+        broker.start();
+        connectionFactory = new ActiveMQConnectionFactory("vm://" + BROKER + "?create=false");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        broker.stop();
+    }
+
+    @Test
+    public void resizedPoolKeepsConsuming() throws Exception {
+        final CountDownLatch handled = new CountDownLatch(2);
+        final SimpleMessageListenerContainer container = SimpleMessageListenerContainer
+                .aContainer(connectionFactory, QUEUE)
+                .withListener(message -> handled.countDown())
+                .build();
+        container.start();
+        try {
+            container.resize(3);
+            Assert.assertEquals(3, container.getConsumersCount());
+            container.resize(1);
+            Assert.assertEquals(1, container.getConsumersCount());
+
+            send(2);
+
+            Assert.assertTrue(handled.await(5, TimeUnit.SECONDS));
+        } finally {
+            container.stop();
+        }
+        // closed sessions have waited for their listeners
+        Assert.assertEquals(2, container.getHandledCount());
+        Assert.assertEquals(0, container.getConsumersCount());
+    }
+
+    @Test
+    public void sessionCountersShowDispatchedAndProcessedMessages() throws Exception {
+        final MetricRegistry metrics = new MetricRegistry();
+        final CountDownLatch handled = new CountDownLatch(3);
+        final SimpleMessageListenerContainer container = SimpleMessageListenerContainer
+                .aContainer(connectionFactory, QUEUE)
+                .withListener(message -> handled.countDown())
+                .withMetrics(metrics, new EmbeddedActiveMQConsumerDispatchProbe(BROKER, QUEUE.getPhysicalName()))
+                .build();
+        container.start();
+        try {
+            send(3);
+            Assert.assertTrue(handled.await(5, TimeUnit.SECONDS));
+
+            Assert.assertEquals(3L, metrics.getGauges().get(
+                    MetricRegistry.name(SimpleMessageListenerContainer.class, "session-0", "dispatched")).getValue());
+            final Counter processed = metrics.getCounters().get(
+                    MetricRegistry.name(SimpleMessageListenerContainer.class, "session-0", "processed"));
+            // closed session has waited for its listener and its metrics are removed
+            container.resize(0);
+            Assert.assertEquals(3, processed.getCount());
+            Assert.assertTrue(metrics.getMetrics().isEmpty());
+        } finally {
+            container.stop();
+        }
+    }
+
+    @Test
+    public void failedMessageIsRedeliveredToItsSessionWhileOthersAreAcknowledged() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(2,
+                runnable -> new Thread(runnable, "order-executor"));
+        final AtomicBoolean isFailing = new AtomicBoolean(true);
+        final List<String> threads = new CopyOnWriteArrayList<>();
+        final List<Boolean> redeliveries = new CopyOnWriteArrayList<>();
+        final CountDownLatch handled = new CountDownLatch(4);
+        final SimpleMessageListenerContainer container = SimpleMessageListenerContainer
+                .aContainer(connectionFactory, QUEUE)
+                .withListener(message -> {
+                    threads.add(Thread.currentThread().getName());
+                    try {
+                        redeliveries.add(message.getJMSRedelivered());
+                    } catch (JMSException e) {
+                        throw new RuntimeException(e);
+                    }
+                    handled.countDown();
+                    if (isFailing.getAndSet(false)) {
+                        throw new IllegalStateException("database is down");
+                    }
+                })
+                .withExecutor(executor)
+                .build();
+        container.start();
+        try {
+            send(3);
+            // the failed message comes back without restart of the container
+            Assert.assertTrue(handled.await(10, TimeUnit.SECONDS));
+            // the session may recover before or after the other messages are received
+            Assert.assertEquals(3, Collections.frequency(redeliveries, false));
+            Assert.assertEquals(1, Collections.frequency(redeliveries, true));
+        } finally {
+            container.stop();
+            executor.shutdown();
+        }
+        Assert.assertEquals(Collections.nCopies(4, "order-executor"), threads);
+        Assert.assertEquals(4, container.getHandledCount());
+
+        // all messages are acknowledged, nothing is left for the next consumer
+        final CountDownLatch redelivered = new CountDownLatch(1);
+        final SimpleMessageListenerContainer next = SimpleMessageListenerContainer
+                .aContainer(connectionFactory, QUEUE)
+                .withListener(message -> redelivered.countDown())
+                .build();
+        next.start();
+        try {
+            Assert.assertFalse(redelivered.await(1, TimeUnit.SECONDS));
+        } finally {
+            next.stop();
+        }
+    }
+
+    @Test
+    public void orderMessageIsAcknowledgedAfterItsLaneHasProcessedIt() throws Exception {
+        final OrderCodec codec = new OrderCodec();
+        final ShardedOrderExecutor lanes = new ShardedOrderExecutor(order -> {}, 2, 16, new MetricRegistry());
+        final AtomicBoolean isFailing = new AtomicBoolean(true);
+        final List<String> threads = new CopyOnWriteArrayList<>();
+        final CountDownLatch handled = new CountDownLatch(2);
+        final SimpleMessageListenerContainer container = SimpleMessageListenerContainer
+                .aContainer(connectionFactory, QUEUE)
+                .withListener(SimpleMessageListenerContainer.listenerFor(codec, order -> {
+                    threads.add(Thread.currentThread().getName());
+                    handled.countDown();
+                    if (isFailing.getAndSet(false)) {
+                        throw new IllegalStateException("database is down");
+                    }
+                }))
+                .withExecutor(SimpleMessageListenerContainer.executorFor(codec, lanes::execute))
+                .build();
+        lanes.start();
+        container.start();
+        try {
+            final Order order = OrderBuilder.anOrder()
+                    .withId(1)
+                    .withType(OrderType.TRANSFER)
+                    .withSenderAccount(1)
+                    .withReceiverAccount(3)
+                    .withOperationCurrencyCode(Currency.USD)
+                    .withAmount(BigDecimal.ONE)
+                    .build();
+            send(codec.encode(order));
+            // the order failed in its lane comes back instead of being lost
+            Assert.assertTrue(handled.await(10, TimeUnit.SECONDS));
+        } finally {
+            container.stop();
+            lanes.stop();
+        }
+        Assert.assertEquals(Collections.nCopies(2, "order-lane-1"), threads);
+    }
+
+    @Test
+    public void sessionWhosePollingFailedIsReplaced() throws Exception {
+        final ConnectionFactory factory = Mockito.mock(ConnectionFactory.class);
+        final Connection connection = Mockito.mock(Connection.class);
+        final Session failedSession = Mockito.mock(Session.class);
+        final Session newSession = Mockito.mock(Session.class);
+        final MessageConsumer failedConsumer = Mockito.mock(MessageConsumer.class);
+        final MessageConsumer newConsumer = Mockito.mock(MessageConsumer.class);
+        Mockito.when(factory.createConnection()).thenReturn(connection);
+        Mockito.when(connection.createSession(ArgumentMatchers.anyBoolean(), ArgumentMatchers.anyInt()))
+                .thenReturn(failedSession, newSession);
+        Mockito.when(failedSession.createConsumer(QUEUE)).thenReturn(failedConsumer);
+        Mockito.when(newSession.createConsumer(QUEUE)).thenReturn(newConsumer);
+        Mockito.when(failedConsumer.receive(ArgumentMatchers.anyLong())).thenThrow(new JMSException("broken pipe"));
+        Mockito.when(newConsumer.receive(ArgumentMatchers.anyLong())).thenAnswer(invocation -> {
+            Thread.sleep(10);
+            return null;
+        });
+        final SimpleMessageListenerContainer container = SimpleMessageListenerContainer.aContainer(factory, QUEUE)
+                .withBatchListener(batch -> {}, 10, 100)
+                .build();
+        container.start();
+        try {
+            // unacknowledged messages of the failed session are redelivered to others
+            Mockito.verify(failedSession, Mockito.timeout(5000)).close();
+            Mockito.verify(newSession, Mockito.timeout(5000)).createConsumer(QUEUE);
+            Assert.assertEquals(1, container.getConsumersCount());
+        } finally {
+            container.stop();
+        }
+        Mockito.verify(newSession).close();
+    }
+
+    private void send(byte[] body) throws Exception {
+        final Connection connection = connectionFactory.createConnection();
+        try {
+            final Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            final BytesMessage message = session.createBytesMessage();
+            message.writeBytes(body);
+            session.createProducer(QUEUE).send(message);
+        } finally {
+            connection.close();
+        }
+    }
+
+    private void send(int count) throws Exception {
+        final Connection connection = connectionFactory.createConnection();
+        try {
+            final Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            final MessageProducer producer = session.createProducer(QUEUE);
+            for (int i = 0; i < count; i++) {
+                producer.send(session.createBytesMessage());
+            }
+        } finally {
+            connection.close();
+        }
+    }
+}